@@ -0,0 +1,325 @@
+/**
+ * File: BatchCompiler.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import Cache.CompileCache;
+import Statistics.BatchReport;
+import Visitors.IRGenerator;
+
+/**
+ * Compiles all the {@code .java} files of a directory tree, or all the files listed in a manifest file
+ * (one path per line; blank lines and lines starting with {@code #} are ignored), and writes the result
+ * of each file to a {@link BatchReport}, instead of printing its messages.
+ *
+ * If an output directory is given, the output of each file is placed in it, at the same relative path
+ * as the file (relative to the compiled directory, or to the current directory for a manifest);
+ * otherwise, it is placed next to the file.
+ *
+ * <p>The inputs are streamed: the directory is walked (or the manifest is read) while the files are being compiled,
+ * and at most a few files per worker are pending at a time, so the memory used does not depend on the number of files.
+ */
+public class BatchCompiler {
+
+    /** A file to be compiled, along with the time its compilation took. */
+    private static class Job implements Callable<Job> {
+        final String input;
+        final FileCompiler compiler;
+        long wallNs;
+
+        Job(String input, FileCompiler compiler)
+        {
+            this.input = input;
+            this.compiler = compiler;
+            this.wallNs = 0;
+        }
+
+        @Override
+        public Job call()
+        {
+            long start = System.nanoTime();
+            this.compiler.compile();
+            this.wallNs = System.nanoTime() - start;
+            return this;
+        }
+    }
+
+    private final BatchReport report;
+    /** The directory of the outputs ({@code null} to place each output next to its file). */
+    private final Path outputDirectory;
+    private CompileCache cache;
+    private ForkJoinPool irPool;
+    private ForkJoinPool analysisPool;
+    private boolean bitcode;
+    /** The maximum size (in instructions) of the inlined functions. */
+    private int inlineBudget;
+    /** The number of worker threads (0 to compile the files sequentially, on the calling thread). */
+    private int numWorkers;
+    private ExecutorService workers;
+    /** Files submitted to the workers, whose results have not been reported yet. */
+    private Deque<Future<Job>> pending;
+    /** The directory whose outputs were created last, so its parent directories are not created again. */
+    private Path lastCreatedDirectory;
+
+    /**
+     * Creates a batch compiler that writes the results to the given report,
+     * and the outputs to the given directory ({@code null} to place them next to the files).
+     */
+    public BatchCompiler(BatchReport report, String outputDirectory)
+    {
+        this.report = report;
+        this.outputDirectory = (outputDirectory == null) ? null : Paths.get(outputDirectory).toAbsolutePath().normalize();
+        this.cache = null;
+        this.irPool = null;
+        this.analysisPool = null;
+        this.bitcode = false;
+        this.inlineBudget = IRGenerator.DEFAULT_INLINE_BUDGET;
+        this.numWorkers = 0;
+        this.workers = null;
+        this.pending = null;
+        this.lastCreatedDirectory = null;
+    }
+
+    /** Makes each file be looked up in (and stored to) the given cache. */
+    public void setCache(CompileCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /** Makes the IR of the functions of each file be generated concurrently, on the given pool. */
+    public void setIRPool(ForkJoinPool pool)
+    {
+        this.irPool = pool;
+    }
+
+    /** Makes the method bodies of each file be analyzed concurrently, on the given pool. */
+    public void setAnalysisPool(ForkJoinPool pool)
+    {
+        this.analysisPool = pool;
+    }
+
+    /** Makes LLVM bitcode ({@code .bc} files) be produced instead of IR text. */
+    public void enableBitcode()
+    {
+        this.bitcode = true;
+    }
+
+    /**
+     * Makes the calls of the functions with at most {@code budget} instructions be inlined
+     * ({@link IRGenerator#DEFAULT_INLINE_BUDGET} by default), or no calls at all if it is {@code 0}.
+     */
+    public void setInlineBudget(int budget)
+    {
+        this.inlineBudget = budget;
+    }
+
+    /** Makes the files be compiled concurrently, by the given number of worker threads. */
+    public void setNumWorkers(int numWorkers)
+    {
+        this.numWorkers = numWorkers;
+    }
+
+    /**
+     * Compiles the files of the given directory tree, or the files listed in the given manifest file.
+     * Returns once all of them have been compiled and reported.
+     */
+    public void compile(String inputs) throws IOException
+    {
+        this.pending = new ArrayDeque<Future<Job>>();
+        if (this.numWorkers > 0)
+        {
+            this.workers = Executors.newFixedThreadPool(this.numWorkers);
+        }
+        try {
+            if (new File(inputs).isDirectory())
+            {
+                compileDirectory(Paths.get(inputs));
+            }
+            else
+            {
+                compileManifest(inputs);
+            }
+            while (!this.pending.isEmpty())
+            {
+                reportResult(this.pending.removeFirst());
+            }
+        }
+        finally {
+            if (this.workers != null)
+            {
+                this.workers.shutdownNow();
+                this.workers = null;
+            }
+        }
+    }
+
+    /** Compiles the {@code .java} files of the given directory tree, in the order they are found. */
+    private void compileDirectory(final Path directory) throws IOException
+    {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes)
+            {
+                // The outputs may be placed inside the compiled directory
+                boolean isOutput = outputDirectory != null && dir.toAbsolutePath().normalize().equals(outputDirectory);
+                return isOutput ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException
+            {
+                if (attributes.isRegularFile() && file.getFileName().toString().endsWith(".java"))
+                {
+                    submit(file, directory.relativize(file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException ex) throws IOException
+            {
+                // e.g. an unreadable directory
+                report.add(file.toString(), null, "internal_error", ex.toString(), 0, 0);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Compiles the files listed in the given manifest, which is read line by line. */
+    private void compileManifest(String manifest) throws IOException
+    {
+        Path currentDirectory = Paths.get("").toAbsolutePath();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), StandardCharsets.UTF_8));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                {
+                    continue;
+                }
+                Path file = Paths.get(line);
+                Path absolute = file.toAbsolutePath().normalize();
+                // Files outside the current directory are placed at their absolute path inside the output directory
+                Path relative = absolute.startsWith(currentDirectory) ? currentDirectory.relativize(absolute)
+                                                                      : absolute.getRoot().relativize(absolute);
+                submit(file, relative);
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Starts compiling the given file, whose output is placed at the given relative path inside the output directory.
+     * If too many files are pending, the result of the oldest one is reported first.
+     */
+    private void submit(Path file, Path relative) throws IOException
+    {
+        String extension = this.bitcode ? ".bc" : ".ll";
+        String output;
+        if (this.outputDirectory != null)
+        {
+            String name = FileCompiler.getOutputPath(relative.getFileName().toString(), extension);
+            Path outputPath = this.outputDirectory.resolve(relative).resolveSibling(name);
+            try {
+                createDirectories(outputPath.getParent());
+            }
+            catch (IOException ex) {
+                this.report.add(file.toString(), outputPath.toString(), "internal_error", ex.toString(), 0, 0);
+                return;
+            }
+            output = outputPath.toString();
+        }
+        else
+        {
+            output = FileCompiler.getOutputPath(file.toString(), extension);
+        }
+
+        FileCompiler compiler = new FileCompiler(file.toString(), output);
+        compiler.setCache(this.cache);
+        compiler.setIRPool(this.irPool);
+        compiler.setAnalysisPool(this.analysisPool);
+        if (this.bitcode)
+        {
+            compiler.enableBitcode();
+        }
+        compiler.setInlineBudget(this.inlineBudget);
+        Job job = new Job(file.toString(), compiler);
+        if (this.workers == null)
+        {
+            reportResult(job.call());
+            return;
+        }
+        if (this.pending.size() == this.numWorkers * 4)
+        {
+            reportResult(this.pending.removeFirst());
+        }
+        this.pending.addLast(this.workers.submit(job));
+    }
+
+    /** Creates the given directory (and its parents), unless it has just been created. */
+    private void createDirectories(Path directory) throws IOException
+    {
+        if (!directory.equals(this.lastCreatedDirectory))
+        {
+            Files.createDirectories(directory);
+            this.lastCreatedDirectory = directory;
+        }
+    }
+
+    /** Waits for the given file to be compiled, and reports its result. */
+    private void reportResult(Future<Job> result) throws IOException
+    {
+        try {
+            reportResult(result.get());
+        }
+        catch (InterruptedException ex) {
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException ex) {
+            // The FileCompiler handles all of its failures
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private void reportResult(Job job) throws IOException
+    {
+        FileCompiler compiler = job.compiler;
+        if (compiler.succeeded())
+        {
+            this.report.add(job.input, compiler.outputFile, "ok", null, job.wallNs, new File(compiler.outputFile).length());
+        }
+        else
+        {
+            MiniJavaCompiler.Diagnostic failure = compiler.getFailure();
+            String status = (failure == null) ? "internal_error" : failure.kind.name().toLowerCase(Locale.ROOT);
+            String error = (failure == null) ? "The output was not produced." : failure.message;
+            this.report.add(job.input, null, status, error, job.wallNs, 0);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/**
+ * File: BitcodeBenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import syntaxtree.Goal;
+import ClassInformation.ClassInfo;
+import IRModel.IRModule;
+import IROutput.*;
+import Visitors.IRGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the two output formats, LLVM IR text ({@code .ll}) & LLVM bitcode ({@code .bc}):
+ * the output size, the time to write it (from the same IR module), and the time clang takes
+ * to compile it to an object file ({@code clang -c}), which is dominated by reading the input
+ * for large programs. The clang times are only measured if {@code clang} is in the {@code PATH}.
+ *
+ * <p>The bitcode of each program is first checked with the LLVM tools (see {@link #check}), and the
+ * benchmark fails if it is not valid. If the tools are not in the {@code PATH}, this is reported and the
+ * bitcode is not checked. With {@code -check}, the bitcode is only checked (e.g. by {@code make check-bc}),
+ * and the tools are required.
+ *
+ * <p>Each program is given, or generated ({@code -g <numClasses>}); by default, programs
+ * of 50, 200 & 800 classes are generated.
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}:
+ * {@code java Benchmarks.BitcodeBenchmark [-check] [-n <runs>] [-g <numClasses>]* <file>*}
+ */
+public class BitcodeBenchmark {
+
+    private static final int WRITE_ITERATIONS = 10;
+    private static final String[] FORMATS = { ".ll", ".bc" };
+
+    public static void main(String[] args) throws Exception
+    {
+        int runs = 5;
+        boolean checkOnly = false;
+        List<String> names = new ArrayList<String>();
+        List<String> sources = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-check"))
+            {
+                checkOnly = true;
+            }
+            else if (args[i].equals("-n"))
+            {
+                runs = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-g"))
+            {
+                int numClasses = Integer.parseInt(args[++i]);
+                names.add("generated(" + numClasses + ")");
+                sources.add(new ProgramGenerator(42, numClasses, 10, 20).generate());
+            }
+            else
+            {
+                names.add(new File(args[i]).getName());
+                sources.add(new String(Files.readAllBytes(new File(args[i]).toPath()), StandardCharsets.UTF_8));
+            }
+        }
+        if (sources.isEmpty())
+        {
+            for (int numClasses: new int[] { 50, 200, 800 })
+            {
+                names.add("generated(" + numClasses + ")");
+                sources.add(new ProgramGenerator(42, numClasses, 10, 20).generate());
+            }
+        }
+
+        // Check the bitcode first, so that nothing is reported for invalid output (the log is kept if it is)
+        File log = File.createTempFile("bitcodebench", ".log");
+        boolean hasTools = true;
+        for (int p = 0; p < sources.size() && hasTools; p++)
+        {
+            try {
+                String error = check(Frontend.parse(sources.get(p)), log);
+                if (error != null)
+                {
+                    System.err.println("Invalid bitcode for " + names.get(p) + ": " + error + " (see " + log + ")");
+                    System.exit(1);
+                }
+            }
+            catch (IOException ex) {
+                // A tool could not be started
+                hasTools = false;
+            }
+        }
+        log.delete();
+        if (checkOnly)
+        {
+            if (!hasTools)
+            {
+                System.err.println("llvm-bcanalyzer, llvm-dis, llc & clang must be in the PATH to check the bitcode.");
+                System.exit(1);
+            }
+            System.out.println("The bitcode is valid for all the programs.");
+            return;
+        }
+        if (!hasTools)
+        {
+            System.out.println("The LLVM tools were not found in the PATH, so the bitcode was not checked.");
+        }
+
+        File discard = File.createTempFile("bitcodebench", ".log");
+        discard.deleteOnExit();
+        File object = File.createTempFile("bitcodebench", ".o");
+        object.deleteOnExit();
+        boolean hasClang = true;
+
+        System.out.println(String.format("%-24s %-6s %12s %12s %14s %14s", "program", "format", "size(KB)",
+                                         "write(ms)", "clang mean(ms)", "clang min(ms)"));
+        for (int p = 0; p < sources.size(); p++)
+        {
+            Goal root = Frontend.parse(sources.get(p));
+            for (String format: FORMATS)
+            {
+                // The first iteration is not measured (it warms up the writer)
+                double totalMs = 0;
+                for (int i = 0; i <= WRITE_ITERATIONS; i++)
+                {
+                    IRModule module = generate(root);
+                    NullIRSink sink = new NullIRSink();
+                    long start = System.nanoTime();
+                    write(module, format, sink);
+                    if (i > 0)
+                    {
+                        totalMs += (System.nanoTime() - start) / 1e6;
+                    }
+                }
+
+                File output = File.createTempFile("bitcodebench", format);
+                output.deleteOnExit();
+                ChannelIRSink sink = new ChannelIRSink(output.getPath());
+                write(generate(root), format, sink);
+                sink.close();
+
+                String clangMean = "-";
+                String clangMin = "-";
+                if (hasClang)
+                {
+                    try {
+                        double[] samples = new double[runs];
+                        // The first run is not measured (it warms up the file system cache & clang)
+                        for (int r = 0; r <= runs; r++)
+                        {
+                            double ms = timeProcess(discard, "clang", "-c", "-Wno-override-module",
+                                                    output.getPath(), "-o", object.getPath());
+                            if (r > 0)
+                            {
+                                samples[r - 1] = ms;
+                            }
+                        }
+                        double sum = 0;
+                        for (double sample: samples)
+                        {
+                            sum += sample;
+                        }
+                        Arrays.sort(samples);
+                        clangMean = String.format("%.2f", sum / runs);
+                        clangMin = String.format("%.2f", samples[0]);
+                    }
+                    catch (IOException ex) {
+                        // clang could not be started
+                        hasClang = false;
+                    }
+                }
+                System.out.println(String.format("%-24s %-6s %12.1f %12.2f %14s %14s", format.equals(FORMATS[0]) ? names.get(p) : "",
+                                                 format, output.length() / 1024.0, totalMs / WRITE_ITERATIONS, clangMean, clangMin));
+                output.delete();
+            }
+        }
+        if (!hasClang)
+        {
+            System.out.println("clang was not found in the PATH, so the clang times were not measured.");
+        }
+    }
+
+    /**
+     * Generates the IR module of the given program. Semantic Analysis is performed again each time,
+     * since the class information is modified by IR generation.
+     */
+    private static IRModule generate(Goal root) throws Exception
+    {
+        Map<String, ClassInfo> classInfos = Frontend.analyze(root);
+        IRGenerator irgen = new IRGenerator(classInfos);
+        irgen.generateVtables();
+        irgen.loadRuntime();
+        root.accept(irgen, null);
+        return irgen.getModule();
+    }
+
+    /**
+     * Checks the bitcode of the given program with the LLVM tools: {@code llvm-bcanalyzer -dump} must read it,
+     * {@code llvm-dis} must disassemble it and {@code llc} must compile it, and the executable that clang
+     * builds from it must print the same output (and exit with the same status) as the one built from the IR text.
+     * Returns what went wrong (the output of the tools is appended to the given log), or {@code null}
+     * if the bitcode is valid. Throws an IOException if a tool could not be started.
+     */
+    private static String check(Goal root, File log) throws Exception
+    {
+        File dir = Files.createTempDirectory("bitcodecheck").toFile();
+        File ll = new File(dir, "program.ll");
+        File bc = new File(dir, "program.bc");
+        File[] outputs = { new File(dir, "ll.out"), new File(dir, "bc.out") };
+        try {
+            for (String format: FORMATS)
+            {
+                ChannelIRSink sink = new ChannelIRSink(new File(dir, "program" + format).getPath());
+                write(generate(root), format, sink);
+                sink.close();
+            }
+            String[][] steps = {
+                { "llvm-bcanalyzer", "-dump", bc.getPath() },
+                { "llvm-dis", bc.getPath(), "-o", new File(dir, "program.dis.ll").getPath() },
+                { "llc", "-filetype=obj", bc.getPath(), "-o", new File(dir, "program.o").getPath() },
+                { "clang", "-Wno-override-module", ll.getPath(), "-o", new File(dir, "ll").getPath() },
+                { "clang", "-Wno-override-module", bc.getPath(), "-o", new File(dir, "bc").getPath() }
+            };
+            for (String[] step: steps)
+            {
+                if (runProcess(log, new File(dir, "step.out"), step) != 0)
+                {
+                    return step[0] + " failed";
+                }
+            }
+            int[] statuses = new int[2];
+            String[] executables = { "ll", "bc" };
+            for (int i = 0; i < 2; i++)
+            {
+                statuses[i] = runProcess(log, outputs[i], new File(dir, executables[i]).getPath());
+            }
+            if (statuses[0] != statuses[1]
+                || !Arrays.equals(Files.readAllBytes(outputs[0].toPath()), Files.readAllBytes(outputs[1].toPath())))
+            {
+                return "the executable built from it behaves differently than the one built from the IR text";
+            }
+            return null;
+        }
+        finally {
+            for (File file: dir.listFiles())
+            {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * Runs the given command, with its output written to the given file and its errors appended
+     * to the given log, and returns its exit status.
+     */
+    private static int runProcess(File log, File output, String... command) throws Exception
+    {
+        Process p = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.to(output))
+                                               .redirectError(ProcessBuilder.Redirect.appendTo(log))
+                                               .start();
+        return p.waitFor();
+    }
+
+    /** Writes the given module to the given sink, in the given format. */
+    private static void write(IRModule module, String format, IRSink sink) throws IOException
+    {
+        if (format.equals(".bc"))
+        {
+            new BitcodeWriter(sink).write(module);
+        }
+        else
+        {
+            new IRPrinter(sink).print(module);
+        }
+    }
+
+    /** Runs the given command and returns its wall time in milliseconds. */
+    private static double timeProcess(File log, String... command) throws Exception
+    {
+        long start = System.nanoTime();
+        Process p = new ProcessBuilder(command).redirectErrorStream(true)
+                                               .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                                               .start();
+        if (p.waitFor() != 0)
+        {
+            throw new IllegalStateException("clang failed (see " + log + ")");
+        }
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * File: Frontend.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import syntaxtree.Goal;
+import ClassInformation.ClassInfo;
+import Visitors.*;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Runs the compiler front end (parsing & semantic analysis) on in-memory sources,
+ * to be used by the benchmarks.
+ *
+ * The Parser classes are generated in the default package, which cannot be imported
+ * by named packages, so the Parser is created (once per source) through reflection.
+ */
+public class Frontend {
+
+    private static final Constructor<?> parserConstructor;
+    private static final Method goalMethod;
+
+    static {
+        try {
+            Class<?> parserClass = Class.forName("MiniJavaParser");
+            parserConstructor = parserClass.getConstructor(Reader.class);
+            goalMethod = parserClass.getMethod("Goal");
+        }
+        catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    /**
+     * Parses the given MiniJava source and returns the Parse Tree root.
+     */
+    public static Goal parse(String source) throws Exception
+    {
+        try {
+            Object parser = parserConstructor.newInstance(new StringReader(source));
+            return (Goal) goalMethod.invoke(parser);
+        }
+        catch (InvocationTargetException ex) {
+            // Throw the ParseException (or whatever the Parser threw) itself
+            throw (Exception) ex.getCause();
+        }
+    }
+
+    /**
+     * Performs Semantic Analysis on the given Parse Tree (as {@code Main} does),
+     * and returns the collected class information.
+     */
+    public static Map<String, ClassInfo> analyze(Goal root) throws Exception
+    {
+        ClassNameCollector classNameCollector = new ClassNameCollector();
+        root.accept(classNameCollector, null);
+        root.accept(new DeclarationCollector(classNameCollector.classInfos), null);
+        root.accept(new FunctionBodyAnalyzer(classNameCollector.classInfos), null);
+        return classNameCollector.classInfos;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * File: HierarchyBenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import syntaxtree.Goal;
+import Visitors.*;
+
+import java.util.Arrays;
+
+/**
+ * Measures the time spent in semantic analysis & IR generation on programs with deep
+ * inheritance chains, where each class uses fields and calls methods inherited from
+ * classes up the chain. If member lookups walk the superclass chain, the time per class
+ * grows with the depth of the hierarchy; with flattened member tables it should stay constant.
+ * The median time of each phase is reported.
+ *
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}:
+ * {@code java Benchmarks.HierarchyBenchmark [<depth>]*}
+ */
+public class HierarchyBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 31;
+    /** The number of inherited fields used & inherited methods called by each class. */
+    private static final int USES_PER_CLASS = 16;
+
+    public static void main(String[] args) throws Exception
+    {
+        int[] depths = { 50, 100, 200, 500 };
+        if (args.length > 0)
+        {
+            depths = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                depths[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println(String.format("%-8s %10s %16s %16s %18s", "depth", "lines",
+                                         "analysis(ms)", "irgen(ms)", "analysis/class(us)"));
+        for (int depth: depths)
+        {
+            String source = generate(depth);
+            Goal root = Frontend.parse(source);
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            {
+                analyzeAndGenerate(root);
+            }
+            long[] analysisNs = new long[ITERATIONS];
+            long[] irgenNs = new long[ITERATIONS];
+            for (int i = 0; i < ITERATIONS; i++)
+            {
+                long[] ns = analyzeAndGenerate(root);
+                analysisNs[i] = ns[0];
+                irgenNs[i] = ns[1];
+            }
+            int lines = source.split("\n").length;
+            double analysisMs = median(analysisNs) / 1e6;
+            double irgenMs = median(irgenNs) / 1e6;
+            System.out.println(String.format("%-8d %10d %16.2f %16.2f %18.2f", depth, lines,
+                                             analysisMs, irgenMs, analysisMs * 1000 / depth));
+        }
+    }
+
+    /**
+     * Returns the median of the given times, which (unlike the mean) is not affected
+     * by the few iterations that happen to include a long garbage collection.
+     */
+    private static long median(long[] times)
+    {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * Runs the semantic analysis passes & IR generation on the given program and returns
+     * the elapsed time (in ns) of each of the two. Class names are collected first (and are not
+     * measured), since the class information is filled in by the rest of the passes.
+     */
+    private static long[] analyzeAndGenerate(Goal root) throws Exception
+    {
+        ClassNameCollector classNameCollector = new ClassNameCollector();
+        root.accept(classNameCollector, null);
+        long start = System.nanoTime();
+        root.accept(new DeclarationCollector(classNameCollector.classInfos), null);
+        root.accept(new FunctionBodyAnalyzer(classNameCollector.classInfos), null);
+        long analyzed = System.nanoTime();
+        IRGenerator irgen = new IRGenerator(classNameCollector.classInfos);
+        irgen.generateVtables();
+        root.accept(irgen, null);
+        return new long[] { analyzed - start, System.nanoTime() - analyzed };
+    }
+
+    /**
+     * Returns a program with a chain of {@code depth} classes, {@code H0} to {@code H<depth-1>}.
+     * Each class {@code Hi} declares a field {@code gi} and a method {@code mi}, which uses
+     * fields declared in evenly spread classes up the chain, and calls the method of the root class.
+     */
+    static String generate(int depth)
+    {
+        StringBuilder out = new StringBuilder();
+        out.append("class Main {\n");
+        out.append("    public static void main(String[] args) {\n");
+        out.append("        System.out.println(new H").append(depth - 1).append("().m").append(depth - 1).append("(1));\n");
+        out.append("    }\n");
+        out.append("}\n\n");
+
+        for (int c = 0; c < depth; c++)
+        {
+            out.append("class H").append(c);
+            if (c > 0)
+            {
+                out.append(" extends H").append(c - 1);
+            }
+            out.append(" {\n");
+            out.append("    int g").append(c).append(";\n");
+            out.append("    public int m").append(c).append("(int p) {\n");
+            out.append("        int s;\n");
+            out.append("        s = p + g").append(c).append(";\n");
+            if (c > 0)
+            {
+                for (int u = 0; u < USES_PER_CLASS; u++)
+                {
+                    // An ancestor from the root (u = 0) to the direct superclass
+                    int ancestor = (int) ((long) (c - 1) * u / (USES_PER_CLASS - 1));
+                    out.append("        g").append(ancestor).append(" = s;\n");
+                    out.append("        s = s + g").append(ancestor).append(";\n");
+                    // Only m0 is called, so that the program does not take exponential time to run
+                    out.append("        s = this.m0(s);\n");
+                }
+            }
+            out.append("        return s;\n");
+            out.append("    }\n");
+            out.append("}\n\n");
+        }
+        return out.toString();
+    }
+}
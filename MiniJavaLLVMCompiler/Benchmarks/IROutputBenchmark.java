@@ -0,0 +1,112 @@
+/**
+ * File: IROutputBenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import syntaxtree.Goal;
+import ClassInformation.ClassInfo;
+import IROutput.*;
+import Visitors.IRGenerator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Map;
+
+/**
+ * Measures the IR output throughput (MB/s) of the different IR sinks,
+ * on large generated programs.
+ *
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}:
+ * {@code java Benchmarks.IROutputBenchmark [<numClasses>]*}
+ */
+public class IROutputBenchmark {
+
+    private static final int ITERATIONS = 10;
+    private static final String[] SINKS = { "FileWriter", "BufferedWriter", "ChannelIRSink", "NullIRSink" };
+
+    public static void main(String[] args) throws Exception
+    {
+        int[] sizes = { 50, 200, 800 };
+        if (args.length > 0)
+        {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        File output = File.createTempFile("iroutput", ".ll");
+        output.deleteOnExit();
+
+        System.out.println(String.format("%-8s %-16s %12s %10s %10s", "classes", "sink", "IR size(MB)", "time(ms)", "MB/s"));
+        for (int size: sizes)
+        {
+            String source = new ProgramGenerator(42, size, 10, 20).generate();
+            Goal root = Frontend.parse(source);
+
+            // Warm-up round for all sinks, so that no sink is measured before the others are JIT-compiled
+            for (String sinkName: SINKS)
+            {
+                for (int i = 0; i < ITERATIONS; i++)
+                {
+                    generate(root, createSink(sinkName, output));
+                }
+            }
+
+            for (String sinkName: SINKS)
+            {
+                double totalMs = 0;
+                long chars = 0;
+                for (int i = 0; i < ITERATIONS; i++)
+                {
+                    IRSink sink = createSink(sinkName, output);
+                    totalMs += generate(root, sink) / 1e6;
+                    chars = (sink instanceof NullIRSink) ? ((NullIRSink) sink).getCharsWritten() : output.length();
+                }
+                double mb = chars / (1024.0 * 1024.0);
+                double ms = totalMs / ITERATIONS;
+                System.out.println(String.format("%-8d %-16s %12.2f %10.2f %10.1f", size, sinkName, mb, ms, mb / (ms / 1000)));
+            }
+        }
+    }
+
+    /**
+     * Prints the IR of the given program to the given sink, and returns the elapsed time (in ns).
+     * Semantic Analysis and IR generation are performed before that (and are not measured),
+     * since the class information is modified by IR generation.
+     */
+    private static long generate(Goal root, IRSink sink) throws Exception
+    {
+        Map<String, ClassInfo> classInfos = Frontend.analyze(root);
+        IRGenerator irgen = new IRGenerator(classInfos);
+        irgen.generateVtables();
+        irgen.loadRuntime();
+        root.accept(irgen, null);
+        long start = System.nanoTime();
+        new IRPrinter(sink).print(irgen.getModule());
+        sink.close();
+        return System.nanoTime() - start;
+    }
+
+    private static IRSink createSink(String name, File output) throws Exception
+    {
+        if (name.equals("FileWriter"))
+        {
+            // The unbuffered path used before IR sinks were introduced
+            return new WriterIRSink(new FileWriter(output));
+        }
+        else if (name.equals("BufferedWriter"))
+        {
+            return new WriterIRSink(new BufferedWriter(new FileWriter(output), ChannelIRSink.DEFAULT_CAPACITY));
+        }
+        else if (name.equals("ChannelIRSink"))
+        {
+            return new ChannelIRSink(output.getPath());
+        }
+        return new NullIRSink();
+    }
+}
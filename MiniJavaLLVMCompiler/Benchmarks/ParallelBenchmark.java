@@ -0,0 +1,149 @@
+/**
+ * File: ParallelBenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import syntaxtree.Goal;
+import IROutput.IRPrinter;
+import IROutput.NullIRSink;
+import Visitors.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Shows the speedup of the concurrent method body analysis ({@code FunctionBodyAnalyzer})
+ * and IR generation & printing ({@code IRGenerator}, {@code IRPrinter}) over the sequential ones,
+ * on a large generated program, using pools of 1, 2, 4, ... threads (up to the number of available cores).
+ *
+ * For each phase and number of threads, the median time is reported, along with the speedup over
+ * the sequential phase and the parallel efficiency (the speedup divided by the number of threads).
+ * The 1-thread pool shows the overhead of submitting each body separately.
+ *
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}:
+ * {@code java Benchmarks.ParallelBenchmark [<numClasses> [<maxThreads>]]}
+ */
+public class ParallelBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 10;
+    private static final String[] PHASES = { "bodyAnalysis", "irgen" };
+
+    public static void main(String[] args) throws Exception
+    {
+        int numClasses = (args.length > 0) ? Integer.parseInt(args[0]) : 800;
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        String source = new ProgramGenerator(42, numClasses, 10, 20).generate();
+        Goal root = Frontend.parse(source);
+        System.out.println("Program: " + numClasses + " classes, " + source.split("\n").length + " lines, "
+                           + Runtime.getRuntime().availableProcessors() + " available cores");
+
+        // 0 threads stands for the sequential phase
+        List<Integer> threadCounts = new ArrayList<Integer>();
+        threadCounts.add(0);
+        for (int threads = 1; threads <= maxThreads; threads *= 2)
+        {
+            threadCounts.add(threads);
+        }
+        if (maxThreads > 0 && threadCounts.get(threadCounts.size() - 1) != maxThreads)
+        {
+            threadCounts.add(maxThreads);
+        }
+
+        System.out.println(String.format("%-14s %10s %12s %10s %12s", "phase", "threads", "time(ms)", "speedup", "efficiency"));
+        for (int p = 0; p < PHASES.length; p++)
+        {
+            double sequentialMs = 0;
+            for (int threads: threadCounts)
+            {
+                ForkJoinPool pool = (threads == 0) ? null : new ForkJoinPool(threads);
+                try {
+                    for (int i = 0; i < WARMUP_ITERATIONS; i++)
+                    {
+                        runPhase(p, root, pool);
+                    }
+                    long[] times = new long[ITERATIONS];
+                    for (int i = 0; i < ITERATIONS; i++)
+                    {
+                        times[i] = runPhase(p, root, pool);
+                    }
+                    double ms = median(times) / 1e6;
+                    if (threads == 0)
+                    {
+                        sequentialMs = ms;
+                        System.out.println(String.format("%-14s %10s %12.2f %10s %12s", PHASES[p], "seq", ms, "1.00", "-"));
+                    }
+                    else
+                    {
+                        double speedup = sequentialMs / ms;
+                        System.out.println(String.format("%-14s %10d %12.2f %10.2f %11.0f%%", PHASES[p], threads, ms,
+                                                         speedup, 100 * speedup / threads));
+                    }
+                }
+                finally {
+                    if (pool != null)
+                    {
+                        pool.shutdown();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the given phase once on the given program (on the given pool, or sequentially if it is {@code null}),
+     * and returns the elapsed time (in ns). The previous phases it depends on are run first, and are not measured.
+     */
+    private static long runPhase(int phase, Goal root, ForkJoinPool pool) throws Exception
+    {
+        ClassNameCollector classNameCollector = new ClassNameCollector();
+        root.accept(classNameCollector, null);
+        root.accept(new DeclarationCollector(classNameCollector.classInfos), null);
+
+        long start;
+        if (phase == 0)
+        {
+            FunctionBodyAnalyzer analyzer = new FunctionBodyAnalyzer(classNameCollector.classInfos);
+            analyzer.setPool(pool);
+            start = System.nanoTime();
+            root.accept(analyzer, null);
+        }
+        else
+        {
+            root.accept(new FunctionBodyAnalyzer(classNameCollector.classInfos), null);
+            IRGenerator irgen = new IRGenerator(classNameCollector.classInfos);
+            irgen.setPool(pool);
+            // Loading the runtime (only done the first time) is not part of the phase itself
+            irgen.loadRuntime();
+            start = System.nanoTime();
+            irgen.generateVtables();
+            root.accept(irgen, null);
+            IRPrinter printer = new IRPrinter(new NullIRSink());
+            if (pool != null)
+            {
+                printer.print(irgen.getModule(), pool);
+            }
+            else
+            {
+                printer.print(irgen.getModule());
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns the median of the given values, which (unlike the mean) is not affected
+     * by the few iterations that happen to include a long garbage collection.
+     */
+    private static long median(long[] values)
+    {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,330 @@
+/**
+ * File: PhaseBenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import syntaxtree.Goal;
+import ClassInformation.ClassInfo;
+import IROutput.IRPrinter;
+import IROutput.NullIRSink;
+import Visitors.*;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures each compiler phase separately, on a corpus of small, medium & very large
+ * generated programs, reporting (like a JMH throughput benchmark with {@code -prof gc}):
+ * <ul>
+ * <li>the throughput ({@code ops/s}) and the time per operation ({@code ms/op}),</li>
+ * <li>the allocation rate ({@code MB/s}) and the bytes allocated per operation ({@code KB/op}).</li>
+ * </ul>
+ * The phases are: parsing, {@code ClassNameCollector}, {@code DeclarationCollector},
+ * {@code FunctionBodyAnalyzer}, and {@code IRGenerator} (including printing the IR to a {@code NullIRSink}).
+ * Everything a phase depends on (e.g. the previous passes) is prepared before each operation,
+ * and is neither timed nor counted as allocation.
+ *
+ * <p>Each benchmark runs a number of warm-up and measurement iterations, each one repeating
+ * the operation for (at least) the iteration time. The median iteration is reported, which
+ * (unlike the mean) is not affected by the few iterations that happen to include a long garbage collection.
+ *
+ * <p>The results can be saved ({@code -o <file>}) and used as the baseline of a later run
+ * ({@code -b <file>}), which then also reports the change of the time & allocation per operation.
+ * Only the given phases and/or corpus sizes are run, if any are given.
+ *
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}:
+ * {@code java Benchmarks.PhaseBenchmark [-wi <n>] [-i <n>] [-r <seconds>] [-o <file>] [-b <file>] [<phase>|<corpus>]*}
+ */
+public class PhaseBenchmark {
+
+    private static final String[] PHASES = { "parse", "classNames", "declarations", "bodyAnalysis", "irgen" };
+    private static final String[] CORPORA = { "small", "medium", "large" };
+    /** The number of classes of the program of each corpus size (with 10 methods of 20 statements each). */
+    private static final int[] CORPUS_CLASSES = { 4, 40, 400 };
+
+    private static int warmupIterations = 3;
+    private static int iterations = 5;
+    private static long iterationNs = 1000000000L;
+
+    /** Used to measure the bytes allocated by the benchmark thread, if supported by the JVM. */
+    private static final com.sun.management.ThreadMXBean allocationBean;
+
+    static {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported())
+        {
+            allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+            allocationBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        else
+        {
+            allocationBean = null;
+        }
+    }
+
+    /** The measurements of a benchmark (a phase on a corpus program). */
+    private static class Result {
+        double opsPerSecond;
+        double msPerOp;
+        double allocMBPerSecond;
+        double bytesPerOp;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        String outputFile = null;
+        String baselineFile = null;
+        List<String> selected = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-wi") && i + 1 < args.length)
+            {
+                warmupIterations = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-i") && i + 1 < args.length)
+            {
+                iterations = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-r") && i + 1 < args.length)
+            {
+                iterationNs = (long) (Double.parseDouble(args[++i]) * 1e9);
+            }
+            else if (args[i].equals("-o") && i + 1 < args.length)
+            {
+                outputFile = args[++i];
+            }
+            else if (args[i].equals("-b") && i + 1 < args.length)
+            {
+                baselineFile = args[++i];
+            }
+            else
+            {
+                selected.add(args[i]);
+            }
+        }
+        Map<String, double[]> baseline = (baselineFile != null) ? readResults(baselineFile) : null;
+        if (allocationBean == null)
+        {
+            System.err.println("Thread allocation counting is not supported by this JVM: allocation is not reported.");
+        }
+
+        System.out.println(String.format("%-14s %-8s %8s %12s %12s %12s %12s%s", "phase", "corpus", "lines",
+                                         "ops/s", "ms/op", "alloc(MB/s)", "alloc(KB/op)",
+                                         baseline != null ? String.format(" %10s %10s", "time(%)", "alloc(%)") : ""));
+        Map<String, Result> results = new HashMap<String, Result>();
+        List<String> order = new ArrayList<String>();
+        for (int c = 0; c < CORPORA.length; c++)
+        {
+            if (!isSelected(selected, CORPORA[c], CORPORA))
+            {
+                continue;
+            }
+            String source = new ProgramGenerator(42, CORPUS_CLASSES[c], 10, 20).generate();
+            Goal root = Frontend.parse(source);
+            int lines = source.split("\n").length;
+            for (String phase: PHASES)
+            {
+                if (!isSelected(selected, phase, PHASES))
+                {
+                    continue;
+                }
+                Result result = run(phase, source, root);
+                String key = phase + "," + CORPORA[c];
+                results.put(key, result);
+                order.add(key);
+
+                String change = "";
+                if (baseline != null && baseline.containsKey(key))
+                {
+                    double[] base = baseline.get(key);
+                    change = String.format(" %+10.1f %+10.1f", 100 * (result.msPerOp / base[0] - 1),
+                                           base[1] == 0 ? 0.0 : 100 * (result.bytesPerOp / base[1] - 1));
+                }
+                System.out.println(String.format("%-14s %-8s %8d %12.2f %12.3f %12.1f %12.1f%s", phase, CORPORA[c], lines,
+                                                 result.opsPerSecond, result.msPerOp, result.allocMBPerSecond,
+                                                 result.bytesPerOp / 1024, change));
+            }
+        }
+
+        if (outputFile != null)
+        {
+            writeResults(outputFile, order, results);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the given phase/corpus should be run: if it was selected,
+     * or if nothing of its kind (phases or corpora) was selected.
+     */
+    private static boolean isSelected(List<String> selected, String name, String[] kind)
+    {
+        boolean anySelected = false;
+        for (String other: kind)
+        {
+            anySelected |= selected.contains(other);
+        }
+        return !anySelected || selected.contains(name);
+    }
+
+    /**
+     * Runs the warm-up & measurement iterations of the given phase on the given program,
+     * and returns the median measurement iteration.
+     */
+    private static Result run(String phase, String source, Goal root) throws Exception
+    {
+        for (int i = 0; i < warmupIterations; i++)
+        {
+            runIteration(phase, source, root);
+        }
+        Result[] measured = new Result[iterations];
+        for (int i = 0; i < iterations; i++)
+        {
+            measured[i] = runIteration(phase, source, root);
+        }
+        Arrays.sort(measured, new Comparator<Result>() {
+            public int compare(Result a, Result b) {
+                return Double.compare(a.msPerOp, b.msPerOp);
+            }
+        });
+        return measured[iterations / 2];
+    }
+
+    /**
+     * Repeats the given phase on the given program, until the measured time exceeds
+     * the iteration time, and returns the measurements of the iteration.
+     */
+    private static Result runIteration(String phase, String source, Goal root) throws Exception
+    {
+        long totalNs = 0;
+        long totalBytes = 0;
+        int ops = 0;
+        long[] measurement = new long[2];
+        do {
+            runPhase(phase, source, root, measurement);
+            totalNs += measurement[0];
+            totalBytes += measurement[1];
+            ops++;
+        } while (totalNs < iterationNs);
+
+        Result result = new Result();
+        result.opsPerSecond = ops / (totalNs / 1e9);
+        result.msPerOp = totalNs / 1e6 / ops;
+        result.allocMBPerSecond = totalBytes / (1024.0 * 1024.0) / (totalNs / 1e9);
+        result.bytesPerOp = (double) totalBytes / ops;
+        return result;
+    }
+
+    /**
+     * Runs the given phase once on the given program. The previous phases it depends on are run
+     * first, and are not measured. The elapsed time (in ns) and the bytes allocated by the phase
+     * are stored in {@code measurement}.
+     */
+    private static void runPhase(String phase, String source, Goal root, long[] measurement) throws Exception
+    {
+        ClassNameCollector classNameCollector = new ClassNameCollector();
+        if (!phase.equals("parse") && !phase.equals("classNames"))
+        {
+            root.accept(classNameCollector, null);
+            if (!phase.equals("declarations"))
+            {
+                root.accept(new DeclarationCollector(classNameCollector.classInfos), null);
+            }
+        }
+        Map<String, ClassInfo> classInfos = classNameCollector.classInfos;
+        IRGenerator irgen = null;
+        if (phase.equals("irgen"))
+        {
+            root.accept(new FunctionBodyAnalyzer(classInfos), null);
+            irgen = new IRGenerator(classInfos);
+            // Loading the runtime (only done the first time) is not part of the phase itself
+            irgen.loadRuntime();
+        }
+
+        long startBytes = allocatedBytes();
+        long start = System.nanoTime();
+        switch (phase)
+        {
+            case "parse":
+                Frontend.parse(source);
+                break;
+            case "classNames":
+                root.accept(classNameCollector, null);
+                break;
+            case "declarations":
+                root.accept(new DeclarationCollector(classInfos), null);
+                break;
+            case "bodyAnalysis":
+                root.accept(new FunctionBodyAnalyzer(classInfos), null);
+                break;
+            default:
+                irgen.generateVtables();
+                root.accept(irgen, null);
+                new IRPrinter(new NullIRSink()).print(irgen.getModule());
+                break;
+        }
+        measurement[0] = System.nanoTime() - start;
+        measurement[1] = allocatedBytes() - startBytes;
+    }
+
+    /** Returns the bytes allocated so far by the current thread, or 0 if unsupported. */
+    private static long allocatedBytes()
+    {
+        return (allocationBean != null) ? allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /**
+     * Writes the time & allocation per operation of the given results, as {@code phase,corpus,ms/op,bytes/op} lines.
+     */
+    private static void writeResults(String fileName, List<String> order, Map<String, Result> results) throws IOException
+    {
+        PrintWriter out = new PrintWriter(fileName);
+        try {
+            for (String key: order)
+            {
+                Result result = results.get(key);
+                out.println(key + "," + result.msPerOp + "," + result.bytesPerOp);
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the results written by {@code writeResults}, mapping each {@code phase,corpus}
+     * to its time & allocation per operation.
+     */
+    private static Map<String, double[]> readResults(String fileName) throws IOException
+    {
+        Map<String, double[]> results = new HashMap<String, double[]>();
+        BufferedReader in = new BufferedReader(new FileReader(fileName));
+        try {
+            for (String line = in.readLine(); line != null; line = in.readLine())
+            {
+                String[] fields = line.split(",");
+                if (fields.length == 4)
+                {
+                    results.put(fields[0] + "," + fields[1],
+                                new double[] { Double.parseDouble(fields[2]), Double.parseDouble(fields[3]) });
+                }
+            }
+        }
+        finally {
+            in.close();
+        }
+        return results;
+    }
+}
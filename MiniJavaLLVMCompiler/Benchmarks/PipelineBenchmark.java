@@ -0,0 +1,121 @@
+/**
+ * File: PipelineBenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the end-to-end (source to executable) latency of the two-step flow,
+ * where {@code java Main <file>} writes the {@code .ll} file and {@code clang} reads it back,
+ * with the integrated {@code java Main --clang <file>}, which streams the IR into clang
+ * while it is still being generated.
+ *
+ * <p>Each file is given, or generated ({@code -g <numClasses>}, e.g. to see the effect on very large programs).
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}, with {@code clang} in the {@code PATH}:
+ * {@code java Benchmarks.PipelineBenchmark [-n <runs>] [-g <numClasses>]* <file>*}
+ */
+public class PipelineBenchmark {
+
+    public static void main(String[] args) throws Exception
+    {
+        int runs = 5;
+        List<String> files = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-n"))
+            {
+                runs = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-g"))
+            {
+                int numClasses = Integer.parseInt(args[++i]);
+                File generated = File.createTempFile("Generated" + numClasses + "_", ".java");
+                generated.deleteOnExit();
+                Files.write(generated.toPath(), new ProgramGenerator(42, numClasses, 10, 20).generate().getBytes(StandardCharsets.UTF_8));
+                files.add(generated.getAbsolutePath());
+            }
+            else
+            {
+                files.add(new File(args[i]).getAbsolutePath());
+            }
+        }
+        if (files.isEmpty())
+        {
+            System.err.println("Usage: java Benchmarks.PipelineBenchmark [-n <runs>] [-g <numClasses>]* <file>*");
+            System.exit(1);
+        }
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        File discard = File.createTempFile("pipelinebench", ".log");
+        discard.deleteOnExit();
+
+        System.out.println(String.format("%-40s %-12s %10s %10s %10s", "file", "flow", "mean(ms)", "median(ms)", "min(ms)"));
+        for (String file: files)
+        {
+            // The outputs of java Main & java Main --clang
+            String base = file.endsWith(".java") ? file.substring(0, file.length() - ".java".length()) : file;
+            String llFile = base + ".ll";
+            String executable = file.endsWith(".java") ? base : file + ".out";
+            List<Double> twoStep = new ArrayList<Double>();
+            List<Double> piped = new ArrayList<Double>();
+            // The first run of each flow is not measured (it warms up the file system cache & clang)
+            for (int r = 0; r <= runs; r++)
+            {
+                double ms = timeProcess(discard, java, "-cp", ".", "Main", file)
+                          + timeProcess(discard, "clang", "-Wno-override-module", llFile, "-o", executable);
+                if (r > 0)
+                {
+                    twoStep.add(ms);
+                }
+                new File(llFile).delete();
+                new File(executable).delete();
+
+                ms = timeProcess(discard, java, "-cp", ".", "Main", "--clang", file);
+                if (r > 0)
+                {
+                    piped.add(ms);
+                }
+                if (!new File(executable).exists())
+                {
+                    throw new IllegalStateException("No executable was produced for " + file + " (see " + discard + ")");
+                }
+                new File(executable).delete();
+            }
+            report(new File(file).getName(), "two-step", twoStep);
+            report("", "--clang", piped);
+        }
+    }
+
+    /** Runs the given command and returns its wall time in milliseconds. */
+    private static double timeProcess(File log, String... command) throws Exception
+    {
+        long start = System.nanoTime();
+        Process p = new ProcessBuilder(command).redirectErrorStream(true)
+                                               .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                                               .start();
+        p.waitFor();
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    private static void report(String file, String flow, List<Double> samples)
+    {
+        double[] sorted = new double[samples.size()];
+        double sum = 0;
+        for (int i = 0; i < sorted.length; i++)
+        {
+            sorted[i] = samples.get(i);
+            sum += sorted[i];
+        }
+        Arrays.sort(sorted);
+        System.out.println(String.format("%-40s %-12s %10.2f %10.2f %10.2f", file, flow, sum / sorted.length,
+                                         sorted[sorted.length / 2], sorted[0]));
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * File: ProgramGenerator.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates large, semantically valid MiniJava programs, to be used as benchmark inputs.
+ * The same seed and parameters always produce the same program.
+ *
+ * Apart from the number of classes, methods per class & statements per method, the shape
+ * of the programs can be tuned (before calling {@code generate}):
+ * <ul>
+ * <li>{@code setInheritance}: the classes form trees of the given depth & fan-out,
+ * where every subclass overrides all the methods of its superclass,</li>
+ * <li>{@code setExpressionDepth}: the nesting depth of the generated arithmetic expressions,</li>
+ * <li>{@code setArrayLoopWeight}: how often array loops are generated, compared to each
+ * of the other kinds of statements.</li>
+ * </ul>
+ * With the default values, the generated programs are the same as before these were introduced,
+ * so the results of the existing benchmarks remain comparable.
+ *
+ * Each generated method only calls (at most once) methods declared before it in the same class,
+ * so the generated programs also terminate when executed.
+ */
+public class ProgramGenerator {
+
+    /** The int variables that can be used in generated statements. */
+    private static final String[] INT_VARS = { "a", "b", "p0", "p1", "f0", "f1" };
+    /** The length of the local arrays used in generated loops. */
+    private static final int ARRAY_LENGTH = 8;
+    /** The arithmetic operators used in nested expressions. */
+    private static final String[] OPERATORS = { " + ", " - ", " * " };
+    /** The kind of statement that is only generated for array loop weights above 1. */
+    private static final int ARRAY_LOOP = 7;
+
+    private final Random random;
+    private final int numClasses;
+    private final int methodsPerClass;
+    private final int statementsPerMethod;
+    private int inheritanceDepth = 0;
+    private int fanOut = 1;
+    private int expressionDepth = 1;
+    private int arrayLoopWeight = 1;
+    private StringBuilder out;
+
+    public ProgramGenerator(long seed, int numClasses, int methodsPerClass, int statementsPerMethod)
+    {
+        this.random = new Random(seed);
+        this.numClasses = numClasses;
+        this.methodsPerClass = methodsPerClass;
+        this.statementsPerMethod = statementsPerMethod;
+    }
+
+    /**
+     * Makes the classes form trees (in declaration order) of up to {@code depth} levels below the root,
+     * where each class has up to {@code fanOut} direct subclasses. A depth of 0 means no inheritance.
+     */
+    public ProgramGenerator setInheritance(int depth, int fanOut)
+    {
+        this.inheritanceDepth = depth;
+        this.fanOut = Math.max(fanOut, 1);
+        return this;
+    }
+
+    /**
+     * Sets the nesting depth of the expressions assigned to variables (at least 1):
+     * each level adds a parenthesized binary expression.
+     */
+    public ProgramGenerator setExpressionDepth(int depth)
+    {
+        this.expressionDepth = Math.max(depth, 1);
+        return this;
+    }
+
+    /**
+     * Sets how many times more often than each other kind of statement array loops are generated
+     * (0 for none). Weights above 1 also generate loops that read, write & shift array elements.
+     */
+    public ProgramGenerator setArrayLoopWeight(int weight)
+    {
+        this.arrayLoopWeight = Math.max(weight, 0);
+        return this;
+    }
+
+    /**
+     * Returns the source of a new program.
+     */
+    public String generate()
+    {
+        out = new StringBuilder();
+        generateMainClass();
+        for (int c = 0; c < numClasses; c++)
+        {
+            generateClass(c);
+        }
+        return out.toString();
+    }
+
+    private void generateMainClass()
+    {
+        out.append("class Main {\n");
+        out.append("    public static void main(String[] args) {\n");
+        out.append("        int r;\n");
+        for (int c = 0; c < numClasses; c++)
+        {
+            out.append("        C").append(c).append(" o").append(c).append(";\n");
+        }
+        for (int c = 0; c < numClasses; c++)
+        {
+            out.append("        o").append(c).append(" = new C").append(c).append("();\n");
+            out.append("        r = o").append(c).append(".m").append(methodsPerClass - 1)
+               .append("(").append(c).append(", ").append(random.nextInt(100)).append(");\n");
+            out.append("        System.out.println(r);\n");
+        }
+        out.append("    }\n");
+        out.append("}\n\n");
+    }
+
+    private void generateClass(int c)
+    {
+        int superClass = superClassOf(c);
+        out.append("class C").append(c);
+        if (superClass >= 0)
+        {
+            // The fields are inherited from the root of the tree
+            out.append(" extends C").append(superClass).append(" {\n");
+        }
+        else
+        {
+            out.append(" {\n");
+            out.append("    int f0;\n");
+            out.append("    int f1;\n");
+        }
+        for (int m = 0; m < methodsPerClass; m++)
+        {
+            generateMethod(m);
+        }
+        out.append("}\n\n");
+    }
+
+    /**
+     * Returns the superclass of class {@code c}, or -1 if it is the root of its tree.
+     * Each tree is a complete {@code fanOut}-ary tree of {@code inheritanceDepth} levels below the root,
+     * with its classes declared in breadth-first order, so every superclass is declared before its subclasses.
+     */
+    private int superClassOf(int c)
+    {
+        long treeSize = 1;
+        long levelSize = 1;
+        for (int level = 0; level < inheritanceDepth && treeSize < numClasses; level++)
+        {
+            levelSize *= fanOut;
+            treeSize += levelSize;
+        }
+        int position = (int) (c % treeSize);
+        return (position == 0) ? -1 : c - position + (position - 1) / fanOut;
+    }
+
+    private void generateMethod(int m)
+    {
+        out.append("    public int m").append(m).append("(int p0, int p1) {\n");
+        out.append("        int a;\n        int b;\n        int i;\n        int[] arr;\n        boolean flag;\n");
+        out.append("        a = p0;\n        b = p1;\n        i = 0;\n");
+        out.append("        arr = new int[").append(ARRAY_LENGTH).append("];\n");
+        out.append("        flag = false;\n");
+
+        boolean hasCall = false;
+        for (int s = 0; s < statementsPerMethod; s++)
+        {
+            switch (statementKind())
+            {
+                case 0:
+                    out.append("        ").append(intVar()).append(" = ").append(expression(expressionDepth)).append(";\n");
+                    break;
+                case 1:
+                    out.append("        ").append(intVar()).append(" = (").append(operand()).append(" - ")
+                       .append(operand()).append(") * ").append(operand()).append(";\n");
+                    break;
+                case 2:
+                    out.append("        if (").append(operand()).append(" < ").append(operand()).append(")\n");
+                    out.append("            a = a + 1;\n");
+                    out.append("        else\n");
+                    out.append("            b = b - 1;\n");
+                    break;
+                case 3:
+                    out.append("        i = 0;\n");
+                    out.append("        while (i < ").append(ARRAY_LENGTH).append(") {\n");
+                    out.append("            arr[i] = ").append(operand()).append(" + i;\n");
+                    out.append("            i = i + 1;\n");
+                    out.append("        }\n");
+                    break;
+                case 4:
+                    out.append("        System.out.println(").append(intVar()).append(");\n");
+                    break;
+                case ARRAY_LOOP:
+                    out.append("        i = 0;\n");
+                    out.append("        while (i < (arr.length)) {\n");
+                    out.append("            if (i < ((arr.length) - 1))\n");
+                    out.append("                arr[i + 1] = (arr[i]) + ").append(operand()).append(";\n");
+                    out.append("            else\n");
+                    out.append("                ").append(intVar()).append(" = (arr[i]) * (arr[0]);\n");
+                    out.append("            i = i + 1;\n");
+                    out.append("        }\n");
+                    break;
+                case 5:
+                    out.append("        flag = (").append(operand()).append(" < ").append(operand()).append(") && !flag;\n");
+                    out.append("        if (flag) ").append(intVar()).append(" = arr[")
+                       .append(random.nextInt(ARRAY_LENGTH)).append("]; else f1 = arr.length;\n");
+                    break;
+                default:
+                    if (m > 0 && !hasCall)
+                    {
+                        out.append("        a = this.m").append(random.nextInt(m)).append("(b, ").append(operand()).append(");\n");
+                        hasCall = true;
+                    }
+                    else
+                    {
+                        out.append("        f0 = a * ").append(operand()).append(";\n");
+                    }
+                    break;
+            }
+        }
+        out.append("        return a;\n");
+        out.append("    }\n");
+    }
+
+    /**
+     * Returns the kind (0-6, or {@code ARRAY_LOOP}) of the next statement. Array loops are
+     * generated {@code arrayLoopWeight} times as often as each one of the other 6 kinds
+     * (only one of the loops counted by the weight is of kind 3).
+     */
+    private int statementKind()
+    {
+        int kind = random.nextInt(6 + arrayLoopWeight);
+        if (kind < 3 || arrayLoopWeight == 1)
+        {
+            return kind;
+        }
+        else if (kind < 3 + arrayLoopWeight)
+        {
+            return (kind == 3) ? 3 : ARRAY_LOOP;
+        }
+        return kind - arrayLoopWeight + 1;
+    }
+
+    /**
+     * Returns a random int expression with the given nesting depth:
+     * a binary expression, one of whose operands is a (parenthesized) expression of the previous depth.
+     */
+    private String expression(int depth)
+    {
+        if (depth <= 1)
+        {
+            return operand() + " + " + operand();
+        }
+        String nested = "(" + expression(depth - 1) + ")";
+        String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+        return random.nextBoolean() ? nested + operator + operand() : operand() + operator + nested;
+    }
+
+    /** Returns a random int variable name. */
+    private String intVar()
+    {
+        return INT_VARS[random.nextInt(INT_VARS.length)];
+    }
+
+    /** Returns a random int variable name or literal. */
+    private String operand()
+    {
+        return random.nextInt(3) == 0 ? String.valueOf(random.nextInt(1000)) : intVar();
+    }
+}
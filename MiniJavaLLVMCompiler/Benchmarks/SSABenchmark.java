@@ -0,0 +1,206 @@
+/**
+ * File: SSABenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import syntaxtree.Goal;
+import ClassInformation.ClassInfo;
+import IRModel.*;
+import IROutput.*;
+import Visitors.IRGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the IR generated with & without the promotion of the local variables to registers
+ * ({@link IRGenerator#setPromoteAllocas}): the number of instructions (and of loads, stores & allocas)
+ * in the IR, the time IR generation takes, and the run time of the executable built with {@code clang -O0},
+ * which is how the fast-turnaround builds are made. The clang times are only measured if {@code clang}
+ * is in the {@code PATH}, and the executables are only run for the given programs (the generated ones
+ * do not do anything interesting).
+ *
+ * <p>Each program is given, or generated ({@code -g <numClasses>}); by default, programs
+ * of 50 & 200 classes are generated.
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}:
+ * {@code java Benchmarks.SSABenchmark [-n <runs>] [-g <numClasses>]* <file>*}
+ */
+public class SSABenchmark {
+
+    private static final int GENERATE_ITERATIONS = 10;
+
+    public static void main(String[] args) throws Exception
+    {
+        int runs = 5;
+        List<String> names = new ArrayList<String>();
+        List<String> sources = new ArrayList<String>();
+        List<Boolean> runnable = new ArrayList<Boolean>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-n"))
+            {
+                runs = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-g"))
+            {
+                int numClasses = Integer.parseInt(args[++i]);
+                names.add("generated(" + numClasses + ")");
+                sources.add(new ProgramGenerator(42, numClasses, 10, 20).generate());
+                runnable.add(false);
+            }
+            else
+            {
+                names.add(new File(args[i]).getName());
+                sources.add(new String(Files.readAllBytes(new File(args[i]).toPath()), StandardCharsets.UTF_8));
+                runnable.add(true);
+            }
+        }
+        if (sources.isEmpty())
+        {
+            for (int numClasses: new int[] { 50, 200 })
+            {
+                names.add("generated(" + numClasses + ")");
+                sources.add(new ProgramGenerator(42, numClasses, 10, 20).generate());
+                runnable.add(false);
+            }
+        }
+
+        File log = File.createTempFile("ssabench", ".log");
+        log.deleteOnExit();
+        File executable = File.createTempFile("ssabench", ".out");
+        executable.deleteOnExit();
+        boolean hasClang = true;
+
+        System.out.println(String.format("%-24s %-6s %10s %8s %8s %8s %10s %10s %12s", "program", "ssa", "insts",
+                                         "loads", "stores", "allocas", "irgen(ms)", "clang(ms)", "run min(ms)"));
+        for (int p = 0; p < sources.size(); p++)
+        {
+            Goal root = Frontend.parse(sources.get(p));
+            for (boolean promote: new boolean[] { false, true })
+            {
+                // The first iteration is not measured (it warms up the generator)
+                double totalMs = 0;
+                for (int i = 0; i <= GENERATE_ITERATIONS; i++)
+                {
+                    Map<String, ClassInfo> classInfos = Frontend.analyze(root);
+                    long start = System.nanoTime();
+                    generate(root, classInfos, promote);
+                    if (i > 0)
+                    {
+                        totalMs += (System.nanoTime() - start) / 1e6;
+                    }
+                }
+                IRModule module = generate(root, Frontend.analyze(root), promote);
+                int[] counts = count(module);
+
+                String clangTime = "-";
+                String runTime = "-";
+                if (hasClang)
+                {
+                    File output = File.createTempFile("ssabench", ".ll");
+                    output.deleteOnExit();
+                    ChannelIRSink sink = new ChannelIRSink(output.getPath());
+                    new IRPrinter(sink).print(module);
+                    sink.close();
+                    try {
+                        clangTime = String.format("%.2f", timeProcess(log, "clang", "-O0", "-Wno-override-module",
+                                                                      output.getPath(), "-o", executable.getPath()));
+                        if (runnable.get(p))
+                        {
+                            // The first run is not measured (it warms up the file system cache)
+                            double[] samples = new double[runs];
+                            for (int r = 0; r <= runs; r++)
+                            {
+                                double ms = timeProcess(log, executable.getPath());
+                                if (r > 0)
+                                {
+                                    samples[r - 1] = ms;
+                                }
+                            }
+                            Arrays.sort(samples);
+                            runTime = String.format("%.2f", samples[0]);
+                        }
+                    }
+                    catch (IOException ex) {
+                        // clang could not be started
+                        hasClang = false;
+                    }
+                    output.delete();
+                }
+                System.out.println(String.format("%-24s %-6s %10d %8d %8d %8d %10.2f %10s %12s", promote ? "" : names.get(p),
+                                                 promote ? "on" : "off", counts[0], counts[1], counts[2], counts[3],
+                                                 totalMs / GENERATE_ITERATIONS, clangTime, runTime));
+            }
+        }
+        if (!hasClang)
+        {
+            System.out.println("clang was not found in the PATH, so the clang & run times were not measured.");
+        }
+    }
+
+    /** Generates the IR module of the given program, with or without promoting the variables to registers. */
+    private static IRModule generate(Goal root, Map<String, ClassInfo> classInfos, boolean promote) throws Exception
+    {
+        IRGenerator irgen = new IRGenerator(classInfos);
+        irgen.setPromoteAllocas(promote);
+        irgen.generateVtables();
+        irgen.loadRuntime();
+        root.accept(irgen, null);
+        return irgen.getModule();
+    }
+
+    /** Returns the number of instructions, loads, stores & allocas in the (non-runtime) function bodies of the given module. */
+    private static int[] count(IRModule module)
+    {
+        int[] counts = new int[4];
+        for (Function function: module.getFunctions())
+        {
+            if (function.isDeclaration() || function.isRuntime())
+            {
+                continue;
+            }
+            for (BasicBlock block: function.getBlocks())
+            {
+                for (Instruction inst: block.getInstructions())
+                {
+                    counts[0]++;
+                    if (inst instanceof LoadInst)
+                    {
+                        counts[1]++;
+                    }
+                    else if (inst instanceof StoreInst)
+                    {
+                        counts[2]++;
+                    }
+                    else if (inst instanceof AllocaInst)
+                    {
+                        counts[3]++;
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    /** Runs the given command and returns its wall time in milliseconds. */
+    private static double timeProcess(File log, String... command) throws Exception
+    {
+        long start = System.nanoTime();
+        Process p = new ProcessBuilder(command).redirectErrorStream(true)
+                                               .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                                               .start();
+        if (p.waitFor() != 0)
+        {
+            throw new IllegalStateException(command[0] + " failed (see " + log + ")");
+        }
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * File: ScalingBenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import syntaxtree.Goal;
+import IROutput.IRPrinter;
+import IROutput.NullIRSink;
+import Visitors.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shows how the time & peak heap usage of each compiler phase scale with the program size,
+ * on generated programs of increasing numbers of classes (and of the same shape otherwise).
+ *
+ * For each size and phase, the median time is reported, along with:
+ * <ul>
+ * <li>the time per source line, which should stay (roughly) constant,</li>
+ * <li>the scaling exponent {@code k} from the previous size ({@code time ~ lines^k}):
+ * values well above 1 reveal super-linear behaviour,</li>
+ * <li>the peak heap usage during the phase (the sum of the peak usages of the heap memory pools,
+ * so it includes the data kept by the previous phases and the garbage not yet collected).</li>
+ * </ul>
+ * The results can also be written as CSV ({@code -o <file>}), to be plotted.
+ * The shape of the programs is set by the options, which correspond to the {@code ProgramGenerator}
+ * parameters: {@code -depth} & {@code -fanout} (inheritance), {@code -methods} (per class),
+ * {@code -statements} (per method), {@code -nesting} (expression depth) & {@code -loops} (array loop weight).
+ *
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}
+ * (with a fixed heap size, e.g. {@code -Xms2g -Xmx2g}):
+ * {@code java Benchmarks.ScalingBenchmark [-<option> <value>]* [-o <file>] [<numClasses>]*}
+ */
+public class ScalingBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int ITERATIONS = 5;
+    private static final String[] PHASES = { "parse", "classNames", "declarations", "bodyAnalysis", "irgen" };
+
+    private static int depth = 0;
+    private static int fanOut = 1;
+    private static int methods = 10;
+    private static int statements = 20;
+    private static int nesting = 1;
+    private static int loops = 1;
+
+    public static void main(String[] args) throws Exception
+    {
+        List<Integer> sizes = new ArrayList<Integer>();
+        String outputFile = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].startsWith("-") && i + 1 < args.length)
+            {
+                String option = args[i].substring(1);
+                if (option.equals("o"))
+                {
+                    outputFile = args[++i];
+                    continue;
+                }
+                int value = Integer.parseInt(args[++i]);
+                switch (option)
+                {
+                    case "depth": depth = value; break;
+                    case "fanout": fanOut = value; break;
+                    case "methods": methods = value; break;
+                    case "statements": statements = value; break;
+                    case "nesting": nesting = value; break;
+                    case "loops": loops = value; break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+                }
+            }
+            else
+            {
+                sizes.add(Integer.parseInt(args[i]));
+            }
+        }
+        if (sizes.isEmpty())
+        {
+            sizes.addAll(Arrays.asList(25, 50, 100, 200, 400, 800));
+        }
+
+        // Warm up the JIT compiler first, so that the first measured sizes are not penalized
+        String warmup = generate(50);
+        for (int i = 0; i < 5 * WARMUP_ITERATIONS; i++)
+        {
+            compile(warmup, false);
+        }
+
+        PrintWriter csv = null;
+        if (outputFile != null)
+        {
+            csv = new PrintWriter(outputFile);
+            csv.println("classes,lines,phase,ms,us_per_line,peak_heap_mb");
+        }
+        System.out.println(String.format("%-8s %10s %-14s %12s %14s %8s %16s", "classes", "lines", "phase",
+                                         "time(ms)", "time/line(us)", "k", "peak heap(MB)"));
+        double[] previousMs = null;
+        int previousLines = 0;
+        for (int size: sizes)
+        {
+            String source = generate(size);
+            int lines = source.split("\n").length;
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            {
+                compile(source, false);
+            }
+            long[][] times = new long[PHASES.length][ITERATIONS];
+            long[][] peaks = new long[PHASES.length][ITERATIONS];
+            for (int i = 0; i < ITERATIONS; i++)
+            {
+                long[][] measurement = compile(source, true);
+                for (int p = 0; p < PHASES.length; p++)
+                {
+                    times[p][i] = measurement[0][p];
+                    peaks[p][i] = measurement[1][p];
+                }
+            }
+
+            double[] ms = new double[PHASES.length];
+            for (int p = 0; p < PHASES.length; p++)
+            {
+                ms[p] = median(times[p]) / 1e6;
+                double peakMB = median(peaks[p]) / (1024.0 * 1024.0);
+                String exponent = "";
+                if (previousMs != null && lines != previousLines && previousMs[p] > 0)
+                {
+                    exponent = String.format("%.2f", Math.log(ms[p] / previousMs[p]) / Math.log((double) lines / previousLines));
+                }
+                System.out.println(String.format("%-8d %10d %-14s %12.2f %14.3f %8s %16.1f", size, lines, PHASES[p],
+                                                 ms[p], ms[p] * 1000 / lines, exponent, peakMB));
+                if (csv != null)
+                {
+                    csv.println(size + "," + lines + "," + PHASES[p] + "," + ms[p] + "," + (ms[p] * 1000 / lines) + "," + peakMB);
+                }
+            }
+            previousMs = ms;
+            previousLines = lines;
+        }
+        if (csv != null)
+        {
+            csv.close();
+        }
+    }
+
+    /** Returns a program with the given number of classes, and the shape set by the options. */
+    private static String generate(int numClasses)
+    {
+        return new ProgramGenerator(42, numClasses, methods, statements).setInheritance(depth, fanOut)
+                                                                         .setExpressionDepth(nesting)
+                                                                         .setArrayLoopWeight(loops)
+                                                                         .generate();
+    }
+
+    /**
+     * Runs all the phases on the given source, and returns the elapsed time (in ns)
+     * and the peak heap usage (in bytes) of each one. If {@code measureHeap} is set,
+     * a garbage collection is requested before each phase (and is not measured),
+     * so that its peak heap usage does not include the garbage of the previous phases.
+     */
+    private static long[][] compile(String source, boolean measureHeap) throws Exception
+    {
+        long[][] measurement = new long[2][PHASES.length];
+
+        startPhase(measureHeap);
+        long start = System.nanoTime();
+        Goal root = Frontend.parse(source);
+        endPhase(measurement, 0, start);
+
+        startPhase(measureHeap);
+        start = System.nanoTime();
+        ClassNameCollector classNameCollector = new ClassNameCollector();
+        root.accept(classNameCollector, null);
+        endPhase(measurement, 1, start);
+
+        startPhase(measureHeap);
+        start = System.nanoTime();
+        root.accept(new DeclarationCollector(classNameCollector.classInfos), null);
+        endPhase(measurement, 2, start);
+
+        startPhase(measureHeap);
+        start = System.nanoTime();
+        root.accept(new FunctionBodyAnalyzer(classNameCollector.classInfos), null);
+        endPhase(measurement, 3, start);
+
+        IRGenerator irgen = new IRGenerator(classNameCollector.classInfos);
+        // Loading the runtime (only done the first time) is not part of the phase itself
+        irgen.loadRuntime();
+        startPhase(measureHeap);
+        start = System.nanoTime();
+        irgen.generateVtables();
+        root.accept(irgen, null);
+        new IRPrinter(new NullIRSink()).print(irgen.getModule());
+        endPhase(measurement, 4, start);
+        return measurement;
+    }
+
+    /** Prepares the heap usage measurement of the next phase. */
+    private static void startPhase(boolean measureHeap)
+    {
+        if (measureHeap)
+        {
+            System.gc();
+        }
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP)
+            {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /** Stores the elapsed time & the peak heap usage of the given phase, which started at {@code start}. */
+    private static void endPhase(long[][] measurement, int phase, long start)
+    {
+        measurement[0][phase] = System.nanoTime() - start;
+        long peak = 0;
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP)
+            {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        measurement[1][phase] = peak;
+    }
+
+    /**
+     * Returns the median of the given values, which (unlike the mean) is not affected
+     * by the few iterations that happen to include a long garbage collection.
+     */
+    private static long median(long[] values)
+    {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
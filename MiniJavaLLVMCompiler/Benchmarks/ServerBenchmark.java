@@ -0,0 +1,190 @@
+/**
+ * File: ServerBenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the per-file latency of a cold {@code java Main <file>} invocation
+ * with the latency of the same compilation served by a warm {@code CompileServer}.
+ *
+ * <p>Three modes are measured:
+ * <ul>
+ * <li>cold: a new {@code java Main <file>} process per file,</li>
+ * <li>warm (client): a new {@code java CompileClient <file>} process per file, talking to the server,</li>
+ * <li>warm (socket): a request sent directly over the socket (server latency only).</li>
+ * </ul>
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}:
+ * {@code java Benchmarks.ServerBenchmark [-p <port>] [-n <runs>] <file>+}
+ */
+public class ServerBenchmark {
+
+    public static void main(String[] args) throws Exception
+    {
+        int port = 5960;
+        int runs = 5;
+        List<String> files = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-p"))
+            {
+                port = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-n"))
+            {
+                runs = Integer.parseInt(args[++i]);
+            }
+            else
+            {
+                files.add(new File(args[i]).getAbsolutePath());
+            }
+        }
+        if (files.isEmpty())
+        {
+            System.err.println("Usage: java Benchmarks.ServerBenchmark [-p <port>] [-n <runs>] <file>+");
+            System.exit(1);
+        }
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        File discard = File.createTempFile("serverbench", ".log");
+        discard.deleteOnExit();
+
+        // Cold: one JVM per file
+        List<Double> cold = new ArrayList<Double>();
+        for (int r = 0; r < runs; r++)
+        {
+            for (String file: files)
+            {
+                cold.add(timeProcess(discard, java, "-cp", ".", "Main", file));
+            }
+        }
+
+        // Start the server and wait until it accepts connections (a leftover secret file is removed first,
+        // so that the secret of the new server is read)
+        File secretFile = new File(System.getProperty("user.home"), ".minijava-server-" + port);
+        secretFile.delete();
+        Process server = new ProcessBuilder(java, "-cp", ".", "Main", "--server", "-p", String.valueOf(port))
+                            .redirectErrorStream(true)
+                            .redirectOutput(discard)
+                            .start();
+        try {
+            String secret = waitForServer(port, secretFile);
+
+            // Warm the server up, so that the measurements reflect a JIT-compiled compiler
+            for (int r = 0; r < 20; r++)
+            {
+                for (String file: files)
+                {
+                    request(port, secret + "\tCOMPILE\t" + file + "\t");
+                }
+            }
+
+            List<Double> warmSocket = new ArrayList<Double>();
+            List<Double> warmClient = new ArrayList<Double>();
+            for (int r = 0; r < runs; r++)
+            {
+                for (String file: files)
+                {
+                    long start = System.nanoTime();
+                    request(port, secret + "\tCOMPILE\t" + file + "\t");
+                    warmSocket.add((System.nanoTime() - start) / 1e6);
+                    warmClient.add(timeProcess(discard, java, "-cp", ".", "CompileClient", "-p", String.valueOf(port), file));
+                }
+            }
+
+            System.out.println(String.format("%-16s %10s %10s %10s", "mode", "mean(ms)", "median(ms)", "min(ms)"));
+            report("cold", cold);
+            report("warm (client)", warmClient);
+            report("warm (socket)", warmSocket);
+        }
+        finally {
+            try {
+                request(port, new String(Files.readAllBytes(secretFile.toPath()), StandardCharsets.UTF_8) + "\tSTOP");
+            }
+            catch (IOException ex) {
+                server.destroy();
+            }
+            server.waitFor();
+        }
+    }
+
+    /** Runs the given command and returns its wall time in milliseconds. */
+    private static double timeProcess(File log, String... command) throws Exception
+    {
+        long start = System.nanoTime();
+        Process p = new ProcessBuilder(command).redirectErrorStream(true)
+                                               .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                                               .start();
+        p.waitFor();
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /** Sends a request line to the server and reads the reply up to the final line. */
+    private static void request(int port, String line) throws IOException
+    {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            out.print(line + "\n");
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (String reply = in.readLine(); reply != null && !reply.startsWith("DONE "); reply = in.readLine());
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Waits until the server accepts connections and has written its secret to the given file,
+     * and returns the secret.
+     */
+    private static String waitForServer(int port, File secretFile) throws Exception
+    {
+        for (int attempt = 0; attempt < 200; attempt++)
+        {
+            try {
+                new Socket(InetAddress.getLoopbackAddress(), port).close();
+                String secret = new String(Files.readAllBytes(secretFile.toPath()), StandardCharsets.UTF_8);
+                if (!secret.isEmpty())
+                {
+                    return secret;
+                }
+                Thread.sleep(50);
+            }
+            catch (IOException ex) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IOException("Compile server did not start on port " + port);
+    }
+
+    private static void report(String mode, List<Double> samples)
+    {
+        double[] sorted = new double[samples.size()];
+        double sum = 0;
+        for (int i = 0; i < sorted.length; i++)
+        {
+            sorted[i] = samples.get(i);
+            sum += sorted[i];
+        }
+        Arrays.sort(sorted);
+        System.out.println(String.format("%-16s %10.2f %10.2f %10.2f", mode, sum / sorted.length,
+                                         sorted[sorted.length / 2], sorted[0]));
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * File: SubtypeBenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import syntaxtree.Goal;
+import Visitors.*;
+
+import java.util.Arrays;
+
+/**
+ * Measures how the time spent in semantic analysis scales with the number of classes,
+ * on programs that perform many subtype checks (assignments, method arguments
+ * & return values of subclass types), for two hierarchy shapes:
+ * <ul>
+ * <li>{@code deep}: a single inheritance chain,</li>
+ * <li>{@code wide}: a root class directly extended by all the other classes.</li>
+ * </ul>
+ * Each class overrides the same method, so the analysis should be linear in the program size
+ * for both shapes: the reported time per class should stay (roughly) constant.
+ * The median time of the semantic analysis passes is reported.
+ *
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}:
+ * {@code java Benchmarks.SubtypeBenchmark [<numClasses>]*}
+ */
+public class SubtypeBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 31;
+    /** The number of times each class performs each kind of subtype check. */
+    private static final int CHECKS_PER_CLASS = 8;
+
+    public static void main(String[] args) throws Exception
+    {
+        int[] sizes = { 100, 200, 400, 800, 1600 };
+        if (args.length > 0)
+        {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        // Warm up the JIT compiler on both shapes first, so that the first measured sizes are not penalized
+        for (boolean deep: new boolean[] { false, true })
+        {
+            Goal root = Frontend.parse(generate(400, deep));
+            for (int i = 0; i < 5 * WARMUP_ITERATIONS; i++)
+            {
+                analyze(root);
+            }
+        }
+
+        System.out.println(String.format("%-6s %-8s %10s %14s %16s", "shape", "classes", "lines", "analysis(ms)", "time/class(us)"));
+        for (boolean deep: new boolean[] { false, true })
+        {
+            for (int size: sizes)
+            {
+                String source = generate(size, deep);
+                Goal root = Frontend.parse(source);
+
+                for (int i = 0; i < WARMUP_ITERATIONS; i++)
+                {
+                    analyze(root);
+                }
+                long[] times = new long[ITERATIONS];
+                for (int i = 0; i < ITERATIONS; i++)
+                {
+                    times[i] = analyze(root);
+                }
+                Arrays.sort(times);
+                double ms = times[ITERATIONS / 2] / 1e6;
+                int lines = source.split("\n").length;
+                System.out.println(String.format("%-6s %-8d %10d %14.2f %16.2f",
+                                                 deep ? "deep" : "wide", size, lines, ms, ms * 1000 / size));
+            }
+        }
+    }
+
+    /**
+     * Runs the semantic analysis passes on the given program and returns the elapsed time (in ns).
+     * Class names are collected first (and are not measured), since the class information
+     * is filled in by the rest of the passes.
+     */
+    private static long analyze(Goal root) throws Exception
+    {
+        ClassNameCollector classNameCollector = new ClassNameCollector();
+        root.accept(classNameCollector, null);
+        long start = System.nanoTime();
+        root.accept(new DeclarationCollector(classNameCollector.classInfos), null);
+        root.accept(new FunctionBodyAnalyzer(classNameCollector.classInfos), null);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns a program with {@code numClasses} classes: {@code K0} and its subclasses.
+     * Each subclass {@code Ki} overrides {@code K0.t}, where it assigns {@code Ki} objects
+     * to {@code K0} variables, passes them as {@code K0} arguments and returns them as {@code K0}.
+     */
+    static String generate(int numClasses, boolean deep)
+    {
+        StringBuilder out = new StringBuilder();
+        out.append("class Main {\n");
+        out.append("    public static void main(String[] args) {\n");
+        out.append("        K0 k;\n");
+        out.append("        k = new K").append(numClasses - 1).append("();\n");
+        out.append("        System.out.println(k.id(k.t(k)));\n");
+        out.append("    }\n");
+        out.append("}\n\n");
+
+        out.append("class K0 {\n");
+        out.append("    int v;\n");
+        out.append("    public int id(K0 o) { return v; }\n");
+        out.append("    public K0 t(K0 p) { return p; }\n");
+        out.append("}\n\n");
+
+        for (int c = 1; c < numClasses; c++)
+        {
+            out.append("class K").append(c).append(" extends K").append(deep ? c - 1 : 0).append(" {\n");
+            out.append("    public K0 t(K0 p) {\n");
+            out.append("        K0 r;\n");
+            out.append("        K").append(c).append(" s;\n");
+            out.append("        s = new K").append(c).append("();\n");
+            for (int i = 0; i < CHECKS_PER_CLASS; i++)
+            {
+                // Assignment & argument checks
+                out.append("        r = s;\n");
+                out.append("        v = r.id(s);\n");
+            }
+            // Return value check
+            out.append("        return s;\n");
+            out.append("    }\n");
+            out.append("}\n\n");
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * File: SymbolTableBenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import syntaxtree.Goal;
+import Visitors.*;
+
+import java.util.Arrays;
+
+/**
+ * Measures the time spent in method body analysis ({@code FunctionBodyAnalyzer}, where every
+ * identifier is resolved through the Symbol Table) on identifier-heavy methods inside deep
+ * inheritance chains. Each method has many parameters & local variables, and its statements
+ * use locals, parameters and fields inherited from classes up the chain.
+ * The median time per resolved identifier is reported, which should not depend on the depth.
+ *
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}:
+ * {@code java Benchmarks.SymbolTableBenchmark [<depth>]*}
+ */
+public class SymbolTableBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 31;
+    /** The number of parameters & the number of local variables of each method. */
+    private static final int PARAMS = 8;
+    private static final int LOCALS = 24;
+    /** The number of statements of each method. */
+    private static final int STATEMENTS = 64;
+    /** The number of identifier uses in each statement ({@code a = b + c;}). */
+    private static final int USES_PER_STATEMENT = 3;
+
+    public static void main(String[] args) throws Exception
+    {
+        int[] depths = { 50, 100, 200, 500 };
+        if (args.length > 0)
+        {
+            depths = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                depths[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        // Warm up the JIT compiler first, so that the first measured depths are not penalized
+        Goal warmup = Frontend.parse(generate(100));
+        for (int i = 0; i < 10 * WARMUP_ITERATIONS; i++)
+        {
+            analyze(warmup);
+        }
+
+        System.out.println(String.format("%-8s %10s %14s %18s", "depth", "lines", "analysis(ms)", "time/ident(ns)"));
+        for (int depth: depths)
+        {
+            String source = generate(depth);
+            Goal root = Frontend.parse(source);
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            {
+                analyze(root);
+            }
+            long[] times = new long[ITERATIONS];
+            for (int i = 0; i < ITERATIONS; i++)
+            {
+                times[i] = analyze(root);
+            }
+            Arrays.sort(times);
+            long ns = times[ITERATIONS / 2];
+            long identifiers = (long) depth * STATEMENTS * USES_PER_STATEMENT;
+            int lines = source.split("\n").length;
+            System.out.println(String.format("%-8d %10d %14.2f %18.2f", depth, lines, ns / 1e6, (double) ns / identifiers));
+        }
+    }
+
+    /**
+     * Runs the method body analysis on the given program and returns the elapsed time (in ns).
+     * The previous passes are not measured.
+     */
+    private static long analyze(Goal root) throws Exception
+    {
+        ClassNameCollector classNameCollector = new ClassNameCollector();
+        root.accept(classNameCollector, null);
+        root.accept(new DeclarationCollector(classNameCollector.classInfos), null);
+        long start = System.nanoTime();
+        root.accept(new FunctionBodyAnalyzer(classNameCollector.classInfos), null);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns a program with a chain of {@code depth} classes, {@code S0} to {@code S<depth-1>}.
+     * Each class {@code Si} declares a field {@code gi} and a method {@code mi}, whose statements
+     * are additions of parameters, local variables and inherited fields.
+     */
+    static String generate(int depth)
+    {
+        StringBuilder out = new StringBuilder();
+        out.append("class Main {\n");
+        out.append("    public static void main(String[] args) {\n");
+        out.append("        System.out.println(1);\n");
+        out.append("    }\n");
+        out.append("}\n\n");
+
+        for (int c = 0; c < depth; c++)
+        {
+            out.append("class S").append(c);
+            if (c > 0)
+            {
+                out.append(" extends S").append(c - 1);
+            }
+            out.append(" {\n");
+            out.append("    int g").append(c).append(";\n");
+            out.append("    public int m").append(c).append("(");
+            for (int p = 0; p < PARAMS; p++)
+            {
+                out.append(p > 0 ? ", " : "").append("int p").append(p);
+            }
+            out.append(") {\n");
+            for (int l = 0; l < LOCALS; l++)
+            {
+                out.append("        int l").append(l).append(";\n");
+            }
+            for (int s = 0; s < STATEMENTS; s++)
+            {
+                out.append("        ").append(variable(c, s, 0)).append(" = ")
+                   .append(variable(c, s, 1)).append(" + ").append(variable(c, s, 2)).append(";\n");
+            }
+            out.append("        return l0;\n");
+            out.append("    }\n");
+            out.append("}\n\n");
+        }
+        return out.toString();
+    }
+
+    /**
+     * Returns the variable used at the given position of statement {@code s} of class {@code c}:
+     * a local variable, a parameter, or a field of this class or of an ancestor.
+     */
+    private static String variable(int c, int s, int position)
+    {
+        switch ((s + position) % 4)
+        {
+            case 0:
+                return "l" + ((s * 7 + position) % LOCALS);
+            case 1:
+                return "p" + ((s * 3 + position) % PARAMS);
+            case 2:
+                return "g" + c;
+            default:
+                // An ancestor field, evenly spread up the chain
+                return "g" + (c * ((s + position) % 8) / 8);
+        }
+    }
+}
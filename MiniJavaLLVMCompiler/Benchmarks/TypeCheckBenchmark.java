@@ -0,0 +1,70 @@
+/**
+ * File: TypeCheckBenchmark.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Benchmarks;
+
+import syntaxtree.Goal;
+import Visitors.*;
+
+/**
+ * Measures the time spent in type checking (declaration collection & method body analysis)
+ * on large generated programs. The programs are parsed once, and only the two
+ * type checking passes are measured.
+ *
+ * To be run from the {@code MiniJavaLLVMCompiler} directory, after {@code make bench}:
+ * {@code java Benchmarks.TypeCheckBenchmark [<numClasses>]*}
+ */
+public class TypeCheckBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) throws Exception
+    {
+        int[] sizes = { 100, 400, 1600 };
+        if (args.length > 0)
+        {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println(String.format("%-8s %10s %14s", "classes", "lines", "time(ms/op)"));
+        for (int size: sizes)
+        {
+            String source = new ProgramGenerator(42, size, 10, 20).generate();
+            Goal root = Frontend.parse(source);
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            {
+                typeCheck(root);
+            }
+            long totalNs = 0;
+            for (int i = 0; i < ITERATIONS; i++)
+            {
+                totalNs += typeCheck(root);
+            }
+            int lines = source.split("\n").length;
+            System.out.println(String.format("%-8d %10d %14.2f", size, lines, totalNs / 1e6 / ITERATIONS));
+        }
+    }
+
+    /**
+     * Type checks the given program and returns the elapsed time (in ns).
+     * Class names are collected first (and are not measured), since
+     * the class information is filled in by the type checking passes.
+     */
+    private static long typeCheck(Goal root) throws Exception
+    {
+        ClassNameCollector classNameCollector = new ClassNameCollector();
+        root.accept(classNameCollector, null);
+        long start = System.nanoTime();
+        root.accept(new DeclarationCollector(classNameCollector.classInfos), null);
+        root.accept(new FunctionBodyAnalyzer(classNameCollector.classInfos), null);
+        return System.nanoTime() - start;
+    }
+}
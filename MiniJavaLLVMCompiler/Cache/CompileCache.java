@@ -0,0 +1,364 @@
+/**
+ * File: CompileCache.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An on-disk cache of compilation results, which allows unchanged files to be
+ * "compiled" without parsing them at all.
+ *
+ * <p>Each entry is keyed by the SHA-256 hash of the compiler version, the compiler options
+ * and the source bytes, so a file is found in the cache regardless of its path.
+ * An entry consists of two files in the cache directory:
+ * <ul>
+ * <li>{@code <key>.diag}: the diagnostics produced by the compilation,</li>
+ * <li>{@code <key>.out}: the produced output (LLVM IR or bitcode, depending on the options),
+ * if the compilation succeeded.</li>
+ * </ul>
+ * The diagnostics are stored as {@code "O <text>"} (meant for {@code System.out}) or
+ * {@code "E <text>"} (meant for {@code System.err}) strings, and must not depend on the
+ * file paths, since the same entry is used for any file with the same contents.
+ *
+ * <p>The total size of the entries is bounded: when it is exceeded, the least recently used
+ * entries are evicted. The last modification time of each {@code .diag} file is used as the
+ * last access time of the entry, so the LRU order is preserved between runs.
+ * The methods of this class can be called by multiple threads.
+ */
+public class CompileCache {
+
+    /** The default maximum size of the cache (in bytes). */
+    public static final long DEFAULT_MAX_SIZE = 64L << 20;
+
+    private static final String DIAGNOSTICS_SUFFIX = ".diag";
+    private static final String OUTPUT_SUFFIX = ".out";
+    /** The suffix of the output files of older versions, which are removed (along with their entries). */
+    private static final String OLD_OUTPUT_SUFFIX = ".ll";
+
+    /** A cached compilation result. */
+    public static class Entry {
+        /** The cached diagnostics, in the order they were produced. */
+        public final List<String> diagnostics;
+        /** Set to {@code true} if the compilation had produced an LLVM IR file. */
+        public final boolean hasOutput;
+
+        Entry(List<String> diagnostics, boolean hasOutput)
+        {
+            this.diagnostics = diagnostics;
+            this.hasOutput = hasOutput;
+        }
+    }
+
+    private final Path directory;
+    private final long maxSize;
+    private final String compilerVersion;
+    /** The size of each entry, in LRU order (least recently used first). */
+    private final LinkedHashMap<String, Long> entries;
+    /** The total size of all entries. */
+    private long size;
+
+    private int hits;
+    private int misses;
+    private int stores;
+    private int evictions;
+
+    /**
+     * Opens (or creates) the cache in the given directory, which will hold
+     * up to {@code maxSize} bytes of entries.
+     * Entries produced by another compiler version are never hit.
+     */
+    public CompileCache(String directory, long maxSize, String compilerVersion) throws IOException
+    {
+        this.directory = Paths.get(directory);
+        this.maxSize = maxSize;
+        this.compilerVersion = compilerVersion;
+        this.entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        this.size = 0;
+        Files.createDirectories(this.directory);
+        loadEntries();
+    }
+
+    /**
+     * Finds the existing entries, and orders them by their last access time.
+     */
+    private void loadEntries()
+    {
+        File[] files = this.directory.toFile().listFiles();
+        if (files == null)
+        {
+            return;
+        }
+        List<File> diagnostics = new ArrayList<File>();
+        Set<String> oldKeys = new HashSet<String>();
+        for (File file: files)
+        {
+            String name = file.getName();
+            if (name.endsWith(OLD_OUTPUT_SUFFIX))
+            {
+                oldKeys.add(name.substring(0, name.length() - OLD_OUTPUT_SUFFIX.length()));
+                file.delete();
+            }
+        }
+        for (File file: files)
+        {
+            String name = file.getName();
+            if (name.endsWith(DIAGNOSTICS_SUFFIX))
+            {
+                if (oldKeys.contains(name.substring(0, name.length() - DIAGNOSTICS_SUFFIX.length())))
+                {
+                    file.delete();
+                }
+                else
+                {
+                    diagnostics.add(file);
+                }
+            }
+        }
+        final Map<File, Long> accessTimes = new HashMap<File, Long>();
+        for (File file: diagnostics)
+        {
+            accessTimes.put(file, file.lastModified());
+        }
+        diagnostics.sort(new Comparator<File>() {
+            public int compare(File a, File b) {
+                return Long.compare(accessTimes.get(a), accessTimes.get(b));
+            }
+        });
+        for (File file: diagnostics)
+        {
+            String name = file.getName();
+            String key = name.substring(0, name.length() - DIAGNOSTICS_SUFFIX.length());
+            long entrySize = file.length() + outputFile(key).toFile().length();
+            this.entries.put(key, entrySize);
+            this.size += entrySize;
+        }
+    }
+
+    /**
+     * Returns the cache key of the given source, compiled with the given options.
+     * The options must describe everything (other than the source) the output depends on.
+     */
+    public String getKey(byte[] source, String options)
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+        digest.update(this.compilerVersion.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(options.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(source);
+
+        StringBuilder key = new StringBuilder();
+        for (byte b: digest.digest())
+        {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16));
+            key.append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Looks up the entry with the given key. If it is found, its output (if any)
+     * is copied to the given output file, and the entry is returned.
+     *
+     * @return The found entry, or {@code null} on a miss.
+     */
+    public Entry lookup(String key, String outputFileName)
+    {
+        synchronized (this)
+        {
+            if (!this.entries.containsKey(key))
+            {
+                this.misses++;
+                return null;
+            }
+        }
+        Entry entry;
+        try {
+            entry = readDiagnostics(Files.readAllBytes(diagnosticsFile(key)));
+            if (entry.hasOutput)
+            {
+                Files.copy(outputFile(key), Paths.get(outputFileName), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException ex) {
+            // Removed by another process, or unreadable: treat it as a miss
+            synchronized (this)
+            {
+                removeEntry(key);
+                this.misses++;
+            }
+            return null;
+        }
+        // Mark the entry as the most recently used one
+        diagnosticsFile(key).toFile().setLastModified(System.currentTimeMillis());
+        synchronized (this)
+        {
+            this.entries.get(key);
+            this.hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores a compilation result with the given key: the given diagnostics,
+     * and the contents of the given output file (or no output, if it is {@code null}).
+     * Least recently used entries are evicted if needed.
+     */
+    public void store(String key, List<String> diagnostics, String outputFileName) throws IOException
+    {
+        byte[] diagnosticBytes = writeDiagnostics(diagnostics, outputFileName != null);
+        long entrySize = diagnosticBytes.length;
+        if (outputFileName != null)
+        {
+            entrySize += Files.size(Paths.get(outputFileName));
+        }
+        if (entrySize > this.maxSize)
+        {
+            return;
+        }
+
+        // The files are written under temporary names first, so that other processes
+        // never see partial entries. The diagnostics file (written last) marks the entry as complete.
+        if (outputFileName != null)
+        {
+            Path temp = Files.createTempFile(this.directory, key, ".tmp");
+            try {
+                Files.copy(Paths.get(outputFileName), temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, outputFile(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        Path temp = Files.createTempFile(this.directory, key, ".tmp");
+        try {
+            Files.write(temp, diagnosticBytes);
+            Files.move(temp, diagnosticsFile(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+
+        List<String> evicted = new ArrayList<String>();
+        synchronized (this)
+        {
+            removeEntry(key);
+            this.entries.put(key, entrySize);
+            this.size += entrySize;
+            this.stores++;
+            Iterator<Map.Entry<String, Long>> iterator = this.entries.entrySet().iterator();
+            while (this.size > this.maxSize && iterator.hasNext())
+            {
+                Map.Entry<String, Long> eldest = iterator.next();
+                if (eldest.getKey().equals(key))
+                {
+                    continue;
+                }
+                this.size -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                iterator.remove();
+                this.evictions++;
+            }
+        }
+        for (String evictedKey: evicted)
+        {
+            Files.deleteIfExists(diagnosticsFile(evictedKey));
+            Files.deleteIfExists(outputFile(evictedKey));
+        }
+    }
+
+    /** Removes the given entry from the index (if present). */
+    private void removeEntry(String key)
+    {
+        Long entrySize = this.entries.remove(key);
+        if (entrySize != null)
+        {
+            this.size -= entrySize;
+        }
+    }
+
+    private Path diagnosticsFile(String key)
+    {
+        return this.directory.resolve(key + DIAGNOSTICS_SUFFIX);
+    }
+
+    private Path outputFile(String key)
+    {
+        return this.directory.resolve(key + OUTPUT_SUFFIX);
+    }
+
+    private static byte[] writeDiagnostics(List<String> diagnostics, boolean hasOutput) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBoolean(hasOutput);
+        out.writeInt(diagnostics.size());
+        for (String diagnostic: diagnostics)
+        {
+            byte[] text = diagnostic.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Entry readDiagnostics(byte[] bytes) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        boolean hasOutput = in.readBoolean();
+        int count = in.readInt();
+        String[] diagnostics = new String[count];
+        for (int i = 0; i < count; i++)
+        {
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            diagnostics[i] = new String(text, StandardCharsets.UTF_8);
+        }
+        return new Entry(Arrays.asList(diagnostics), hasOutput);
+    }
+
+    /**
+     * Prints the hit/miss statistics of the cache.
+     */
+    public synchronized void printStatistics(PrintStream out)
+    {
+        int lookups = this.hits + this.misses;
+        out.printf("Cache: %d hit(s), %d miss(es) (%.1f%% hit rate), %d store(s), %d eviction(s), %.1f of %.1f MB used%n",
+                   this.hits, this.misses, lookups == 0 ? 0.0 : 100.0 * this.hits / lookups,
+                   this.stores, this.evictions, this.size / 1048576.0, this.maxSize / 1048576.0);
+    }
+}
@@ -5,12 +5,19 @@
 
 package ClassInformation;
 
-import java.io.FileWriter;
-import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-
-import SymbolTable.ScopeSymbols;
+import java.util.Set;
 
 /**
  * Contains information related to a specific Class.
@@ -19,30 +26,47 @@ public class ClassInfo {
     
     /** The Class name. */
     public final String name;
+    /** The class type of this Class. */
+    public final TypeInfo type;
     /** The super Class of the Class. */
     public final ClassInfo superClass;
+    /** The Classes that directly extend the Class. */
+    private List<ClassInfo> subClasses;
+    /** The pre-order & post-order numbers of the Class in a depth-first traversal
+     * of the class hierarchy, set by {@link #numberHierarchy(Collection)}. */
+    private int preOrder;
+    private int postOrder;
     /** The Class fields. */
     private Map<String, FieldInfo> fields;
     /** The Class methods. */
     private Map<String, MethodInfo> methods;
-    /** The fields known to the methods of the Class (to be used by the Symbol Table) */
-    public ScopeSymbols scopeVars;
+    /** All the fields known to the Class (including the inherited ones), set by {@link #finalizeMembers()}. */
+    private Map<String, FieldInfo> allFields;
+    /** All the methods known to the Class (including the inherited ones), set by {@link #finalizeMembers()}. */
+    private Map<String, MethodInfo> allMethods;
     /** Offset counters. */
     int fieldOffset;
     int methodOffset;    
     /** The class Virtual Table. */
     private VirtualTable vtable;
+    /** The names of the vtable methods that are overridden in some subclass,
+     * set by {@link #findOverriddenMethods(Collection)}. */
+    private Set<String> overriddenMethods;
 
     /**
      * Creates a ClassInfo with the specified Class name.
      */
     public ClassInfo(String className) {
         this.name = className;
+        this.type = new TypeInfo(className, this);
         this.superClass = null;
+        this.subClasses = new ArrayList<ClassInfo>();
         this.fields = new LinkedHashMap<String, FieldInfo>();
         this.methods = new LinkedHashMap<String, MethodInfo>();
-        this.scopeVars = null;
+        this.allFields = null;
+        this.allMethods = null;
         this.vtable = new VirtualTable();
+        this.overriddenMethods = null;
     }
 
     /**
@@ -52,11 +76,16 @@ public class ClassInfo {
     public ClassInfo(String className, ClassInfo superClassInfo)
     {
         this.name = className;
+        this.type = new TypeInfo(className, this);
         this.superClass = superClassInfo;
+        this.subClasses = new ArrayList<ClassInfo>();
+        superClassInfo.subClasses.add(this);
         this.fields = new LinkedHashMap<String, FieldInfo>();
         this.methods = new LinkedHashMap<String, MethodInfo>();
-        this.scopeVars = null;
+        this.allFields = null;
+        this.allMethods = null;
         this.vtable = new VirtualTable();
+        this.overriddenMethods = null;
     }
 
     /**
@@ -69,62 +98,66 @@ public class ClassInfo {
     }
 
     /**
-     * Returns the Class method with the specified name.
+     * Returns the Class method with the specified name (declared in this Class or inherited).
      * If this Class does not have such method, returns {@code null}.
      */
     public FunctionInfo getMethod(String methodName)
     {
-        // Check if the Class has a method with the given name
-        MethodInfo methodInfo = methods.get(methodName);
-        
-        if (methodInfo == null)
-        // If not, check if the superclass does.
-        {
-            if (this.superClass != null)
-            {
-                return this.superClass.getMethod(methodName);
-            }
-            return null;
-        }
-
-        return methodInfo.method;
+        MethodInfo methodInfo = this.allMethods.get(methodName);
+        return methodInfo == null ? null : methodInfo.method;
     }
 
     /**
-     * Returns the Class method with the specified name.
+     * Returns the Class method with the specified name (declared in this Class or inherited).
      * If this Class does not have such method, returns {@code null}.
      */
     public MethodInfo getMethod(String methodName, boolean needOffset)
     {
-        // Check if the Class has a method with the given name
-        MethodInfo methodInfo = methods.get(methodName);
-        
-        if (methodInfo == null)
-        // If not, check if the superclass does.
+        return this.allMethods.get(methodName);
+    }
+
+    public MethodInfo getVtableMethod(String name)
+    {
+        return this.vtable.getMethod(name);
+    }
+
+    /**
+     * Returns the vtable method with the specified name, if it is the one that is called on every object
+     * of this Class or of its subclasses (i.e. no subclass overrides it), or {@code null} otherwise.
+     * The overridden methods must have been found by {@link #findOverriddenMethods(Collection)}.
+     */
+    public MethodInfo getUniqueVtableMethod(String name)
+    {
+        if (this.overriddenMethods == null || this.overriddenMethods.contains(name))
         {
-            if (this.superClass != null)
-            {
-                return this.superClass.getMethod(methodName, true);
-            }
             return null;
         }
+        return this.vtable.getMethod(name);
+    }
 
-        return methodInfo;
+    /**
+     * Returns the methods declared in this Class (including the overriding ones), in declaration order.
+     */
+    public Collection<MethodInfo> getDeclaredMethods()
+    {
+        return this.methods.values();
     }
 
-    public MethodInfo getVtableMethod(String name)
+    /**
+     * Returns the methods of the class Virtual Table, in vtable order.
+     */
+    public Collection<MethodInfo> getVtableMethods()
     {
-        return this.vtable.getMethod(name);
+        return this.vtable.getMethods();
     }
 
+    /**
+     * Returns the Class field with the specified name (declared in this Class or inherited).
+     * If this Class does not have such field, returns {@code null}.
+     */
     public FieldInfo getFieldRec(String fieldName)
     {
-        FieldInfo result = fields.get(fieldName);
-        if (result == null && this.superClass != null)
-        {
-            return this.superClass.getFieldRec(fieldName);
-        }
-        return result;
+        return this.allFields.get(fieldName);
     }
 
     /**
@@ -157,16 +190,16 @@ public class ClassInfo {
     /**
      * Adds a new Class field with the given name and type.
      */
-    public void addField(String fieldName, String fieldType)
+    public void addField(String fieldName, TypeInfo fieldType)
     {
         // Store the field
         fields.put( fieldName, new FieldInfo(new VariableInfo(fieldName, fieldType), this.fieldOffset) );
         // set the field offset properly
-        if (fieldType.equals("int"))
+        if (fieldType == TypeInfo.INT)
         {
             this.fieldOffset += 4;
         }
-        else if (fieldType.equals("boolean"))
+        else if (fieldType == TypeInfo.BOOLEAN)
         {
             this.fieldOffset += 1;
         }
@@ -179,7 +212,7 @@ public class ClassInfo {
     /**
      * Adds a new Class method with the given name, return type and argument types.
      */
-    public void addMethod(String methodName, String type, String[] argTypes)
+    public void addMethod(String methodName, TypeInfo type, TypeInfo[] argTypes)
     {
         methods.put( methodName, new MethodInfo(new FunctionInfo(methodName, type, argTypes), this.name, methodOffset) );
         this.methodOffset += 8;
@@ -189,41 +222,158 @@ public class ClassInfo {
      * Adds a new Class method with the given name, return type and argument types,
      * which overrides a superclass method. The offset is set to -1 in order to be ignored.
      */
-    public void addOverridenMethod(String methodName, String type, String[] argTypes)
+    public void addOverridenMethod(String methodName, TypeInfo type, TypeInfo[] argTypes)
     {
         methods.put( methodName, new MethodInfo(new FunctionInfo(methodName, type, argTypes), this.name, -1) );
     }
 
     /**
-     * Returns {@code true} if the Class has a superclass
-     *  with the given name, {@code false} otherwise.
+     * Returns {@code true} if the given Class is a superclass
+     * of this Class, {@code false} otherwise.
+     * The Class hierarchy must have been numbered by {@link #numberHierarchy(Collection)}.
+     */
+    public boolean hasSuperClass(ClassInfo superInfo)
+    {
+        // The subclasses of a Class are exactly the Classes visited after it
+        // and finished before it, in the depth-first traversal of the hierarchy.
+        return superInfo.preOrder < this.preOrder && this.postOrder < superInfo.postOrder;
+    }
+
+    /**
+     * Numbers the given Classes (which must include all the Classes of the hierarchy)
+     * in pre-order and post-order, in a depth-first traversal of the class hierarchy,
+     * so that {@link #hasSuperClass(ClassInfo)} only needs to compare the numbers.
+     * This must be called after the superclass of each Class is known.
      */
-    public boolean hasSuperClass(String superName)
+    public static void numberHierarchy(Collection<ClassInfo> classes)
     {
-        if (this.superClass == null)
+        int counter = 0;
+        // The traversal is iterative, since inheritance chains can be arbitrarily deep
+        Deque<ClassInfo> path = new ArrayDeque<ClassInfo>();
+        Deque<Iterator<ClassInfo>> pending = new ArrayDeque<Iterator<ClassInfo>>();
+        for (ClassInfo root: classes)
         {
-            return false;
+            if (root.superClass != null)
+            {
+                continue;
+            }
+            root.preOrder = counter++;
+            path.push(root);
+            pending.push(root.subClasses.iterator());
+            while (!path.isEmpty())
+            {
+                if (pending.peek().hasNext())
+                {
+                    ClassInfo subClass = pending.peek().next();
+                    subClass.preOrder = counter++;
+                    path.push(subClass);
+                    pending.push(subClass.subClasses.iterator());
+                }
+                else
+                {
+                    path.pop().postOrder = counter++;
+                    pending.pop();
+                }
+            }
         }
-        else
+    }
+
+    /**
+     * Finds the vtable methods of each of the given Classes (which must include all the Classes
+     * of the hierarchy) that are overridden in some subclass, for {@link #getUniqueVtableMethod(String)}.
+     * This must be called after the Virtual Tables have been created, and the hierarchy has been
+     * numbered by {@link #numberHierarchy(Collection)}.
+     */
+    public static void findOverriddenMethods(Collection<ClassInfo> classes)
+    {
+        // The subclasses of a Class are visited after it in pre-order,
+        // so they are processed before it in reverse pre-order
+        List<ClassInfo> ordered = new ArrayList<ClassInfo>(classes);
+        Collections.sort(ordered, new Comparator<ClassInfo>() {
+            @Override
+            public int compare(ClassInfo first, ClassInfo second)
+            {
+                return Integer.compare(second.preOrder, first.preOrder);
+            }
+        });
+        for (ClassInfo classInfo: ordered)
         {
-            if (this.superClass.name.equals(superName))
+            Set<String> overridden = Collections.emptySet();
+            for (ClassInfo subClass: classInfo.subClasses)
             {
-                return true;
+                // The methods the subclass declares or its subclasses override, which this Class also has
+                overridden = classInfo.addVtableMethods(overridden, subClass.methods.keySet());
+                overridden = classInfo.addVtableMethods(overridden, subClass.overriddenMethods);
             }
-            return this.superClass.hasSuperClass(superName);
+            classInfo.overriddenMethods = overridden;
         }
     }
 
     /**
-     * Adds the Class fields to the Scope structure to be provided to the Symbol Table.
+     * Adds the given method names that are in the Virtual Table to the given set (which is only
+     * allocated once a name is added), and returns it.
      */
-    public void setScope()
+    private Set<String> addVtableMethods(Set<String> set, Collection<String> names)
     {
-        this.scopeVars = new ScopeSymbols();
-        for (Map.Entry<String, FieldInfo> entry: this.fields.entrySet())
+        for (String name: names)
         {
-            scopeVars.addVariable(entry.getValue().field);
+            if (this.vtable.getMethod(name) != null)
+            {
+                if (set.isEmpty())
+                {
+                    set = new HashSet<String>();
+                }
+                set.add(name);
+            }
         }
+        return set;
+    }
+
+    /**
+     * Builds the flattened field & method tables of the Class, where inherited members
+     * are resolved once, so that member lookups do not need to walk the superclass chain.
+     * This must be called after all the Class members have been added, and after the
+     * superclass has been finalized.
+     */
+    public void finalizeMembers()
+    {
+        this.allFields = flatten(this.superClass == null ? null : this.superClass.allFields, this.fields);
+        this.allMethods = flatten(this.superClass == null ? null : this.superClass.allMethods, this.methods);
+    }
+
+    /**
+     * Makes the member tables of the Class unmodifiable, so that it can be safely read by
+     * multiple threads (e.g. by concurrent method body analysis). No fields or methods can be
+     * added after this; this must be called after {@link #finalizeMembers()}.
+     */
+    public void freeze()
+    {
+        this.subClasses = Collections.unmodifiableList(this.subClasses);
+        this.fields = Collections.unmodifiableMap(this.fields);
+        this.methods = Collections.unmodifiableMap(this.methods);
+        this.allFields = Collections.unmodifiableMap(this.allFields);
+        this.allMethods = Collections.unmodifiableMap(this.allMethods);
+    }
+
+    /**
+     * Returns a table with the inherited members and the declared ones, which hide
+     * the inherited members with the same name.
+     * The flattened tables are never modified, so if the Class declares no members,
+     * the superclass table is shared.
+     */
+    private static <T> Map<String, T> flatten(Map<String, T> inherited, Map<String, T> declared)
+    {
+        if (inherited == null)
+        {
+            return new HashMap<String, T>(declared);
+        }
+        if (declared.isEmpty())
+        {
+            return inherited;
+        }
+        Map<String, T> members = new HashMap<String, T>(inherited);
+        members.putAll(declared);
+        return members;
     }
 
     /**
@@ -262,33 +412,17 @@ public class ClassInfo {
         }
     }
 
-    /**
-     * Stores the superclass (if there is one) methods and the class methods
-     * into the given Virtual Table.
-     * This is called by a subclass {@link #createVirtualTable()} call.
-     */
-    public void createVirtualTable(VirtualTable table)
-    {
-        if (this.superClass != null)
-        {
-            this.superClass.createVirtualTable(table);
-        }
-        for (Map.Entry<String, MethodInfo> entry: this.methods.entrySet())
-        {
-            table.insert(entry.getValue());
-        }
-    }
-
     /**
      * Creates the VirtualTable for this class.
-     * The superclass(es) methods are stored first recursively, and this class
+     * The superclass(es) methods are stored first (by copying the superclass
+     * Virtual Table, which must have already been created), and this class
      * methods are stored in the end.
      */
     public void createVirtualTable()
     {
         if (this.superClass != null)
         {
-            this.superClass.createVirtualTable(this.vtable);
+            this.vtable = new VirtualTable(this.superClass.vtable);
         }
         for (Map.Entry<String, MethodInfo> entry: this.methods.entrySet())
         {
@@ -316,18 +450,6 @@ public class ClassInfo {
         return this.fieldOffset;
     }
 
-    /**
-     * Used for printing the class vtable at the beginning of the IR file, as a global table.
-     * 
-     * @param writer The {@code FileWriter} to write the vtable to.
-     */
-    public void emitVtable(FileWriter writer) throws IOException
-    {
-        writer.write("@." + name + "_vtable = global [" + vtable.getNumEntries() + " x i8*] [");
-        vtable.emit(writer);
-        writer.write("]\n");
-    }
-
     /**
      * Returns the number of methods in the class vtable.
      */
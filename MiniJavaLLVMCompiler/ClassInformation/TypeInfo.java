@@ -0,0 +1,84 @@
+/**
+ * File: TypeInfo.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package ClassInformation;
+
+import java.util.Map;
+
+/**
+ * Represents a MiniJava type.
+ *
+ * There is exactly one TypeInfo object for each type: the primitive types are the
+ * static instances below, and each class type is owned by its {@code ClassInfo}
+ * ({@link ClassInfo#type}). Therefore, types can be compared using {@code ==}.
+ */
+public class TypeInfo {
+
+    public static final TypeInfo INT = new TypeInfo("int", null);
+    public static final TypeInfo BOOLEAN = new TypeInfo("boolean", null);
+    public static final TypeInfo INT_ARRAY = new TypeInfo("int[]", null);
+    /** The type of the {@code main} argument. It cannot be used in any expression. */
+    public static final TypeInfo STRING_ARRAY = new TypeInfo("String[]", null);
+
+    /** The MiniJava type name. */
+    public final String name;
+    /** The Class of a class type, or {@code null} for primitive types. */
+    public final ClassInfo classInfo;
+
+    TypeInfo(String typeName, ClassInfo typeClass)
+    {
+        this.name = typeName;
+        this.classInfo = typeClass;
+    }
+
+    /**
+     * Returns {@code true} if this is a Primitive MiniJava Type, {@code false} if it is a class type.
+     */
+    public boolean isPrimitive()
+    {
+        return this.classInfo == null;
+    }
+
+    /**
+     * Returns {@code true} if a value of this type can be assigned to a variable of the given type,
+     * which means that the types are the same, or that the given type is a superclass of this type.
+     */
+    public boolean isAssignableTo(TypeInfo target)
+    {
+        if (this == target)
+        {
+            return true;
+        }
+        return this.classInfo != null && target.classInfo != null && this.classInfo.hasSuperClass(target.classInfo);
+    }
+
+    /**
+     * Returns the type with the given name: one of the Primitive MiniJava Types, or the type
+     * of the Class with that name. If there is no such type, {@code null} is returned.
+     */
+    public static TypeInfo resolve(String typeName, Map<String, ClassInfo> classInfos)
+    {
+        if (typeName.equals("int"))
+        {
+            return INT;
+        }
+        else if (typeName.equals("boolean"))
+        {
+            return BOOLEAN;
+        }
+        else if (typeName.equals("int[]"))
+        {
+            return INT_ARRAY;
+        }
+        ClassInfo classInfo = classInfos.get(typeName);
+        return classInfo == null ? null : classInfo.type;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.name;
+    }
+}
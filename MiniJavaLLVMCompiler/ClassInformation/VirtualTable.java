@@ -5,11 +5,9 @@
 
 package ClassInformation;
 
-import java.util.Map;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Represents the Virtual Table of a Class.
@@ -24,6 +22,14 @@ public class VirtualTable {
         entries = new LinkedHashMap<String, MethodInfo>();
     }
 
+    /**
+     * Creates a Virtual Table that contains the Methods of the given one, in the same order.
+     */
+    public VirtualTable(VirtualTable table)
+    {
+        entries = new LinkedHashMap<String, MethodInfo>(table.entries);
+    }
+
     /**
      * Inserts the given Method in the Virtual Table.
      * If a method with the same name already exists, it is replaced.
@@ -52,35 +58,11 @@ public class VirtualTable {
     }
 
     /**
-     * Used for printing the vtable at the beginning of the IR file, as a global table.
-     * Only the contents will be printed here. The vtable name and size 
-     * have already been printed by {@link ClassInfo#emitVtable}.
-     * 
-     * @param writer The {@code FileWriter} to write the vtable contents to.
+     * Returns the Methods stored in the Virtual Table, in offset order.
      */
-    public void emit(FileWriter writer) throws IOException
+    public Collection<MethodInfo> getMethods()
     {
-        Iterator<MethodInfo> itr = this.entries.values().iterator();
-        // Iterate over the methods
-        if (itr.hasNext())
-        {
-            // Display the first method
-            MethodInfo method = itr.next();
-            writer.write("i8* bitcast (");
-            // Display signature (return type & parameter types)
-            method.method.emit(writer);
-            writer.write(" " + method.fullname + " to i8*)");
-            // Do same for the rest
-            while(itr.hasNext())
-            {
-                // Seperate by ','
-                writer.write(", ");
-                method = itr.next();
-                writer.write("i8* bitcast (");
-                method.method.emit(writer);
-                writer.write(" " + method.fullname + " to i8*)");
-            }
-        }
+        return this.entries.values();
     }
 
     /**
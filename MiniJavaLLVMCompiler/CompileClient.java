@@ -0,0 +1,112 @@
+/**
+ * File: CompileClient.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Thin client for {@link CompileServer}. It sends a single request to the server
+ * and prints the returned messages, without loading any of the compiler classes.
+ *
+ * <p>Usage:
+ * <ul>
+ * <li>{@code java CompileClient [-p <port>] <inputFile> [<outputFile>]}</li>
+ * <li>{@code java CompileClient [-p <port>] --stop}</li>
+ * </ul>
+ * The secret of the server is read from its file ({@link CompileServer#getSecretFile}), so only
+ * the user that started the server can use it.
+ * The exit status is 0 if the file was compiled successfully, 1 if compilation failed,
+ * and 2 if the server could not be reached (or was too busy to accept the request).
+ */
+public class CompileClient {
+    public static void main(String[] args)
+    {
+        int port = CompileServer.DEFAULT_PORT;
+        int i = 0;
+        if (args.length >= 2 && args[0].equals("-p"))
+        {
+            port = Integer.parseInt(args[1]);
+            i = 2;
+        }
+        if (i == args.length)
+        {
+            System.err.println("Usage: java CompileClient [-p <port>] <inputFile> [<outputFile>]");
+            System.err.println("       java CompileClient [-p <port>] --stop");
+            System.exit(2);
+        }
+
+        String request;
+        if (args[i].equals("--stop"))
+        {
+            request = "STOP";
+        }
+        else
+        {
+            // The server does not share our working directory, so send absolute paths
+            String input = new File(args[i]).getAbsolutePath();
+            String output = (i + 1 < args.length) ? new File(args[i + 1]).getAbsolutePath() : "";
+            request = "COMPILE\t" + input + "\t" + output;
+        }
+
+        try {
+            File secretFile = CompileServer.getSecretFile(port);
+            String secret;
+            try {
+                secret = new String(Files.readAllBytes(secretFile.toPath()), StandardCharsets.UTF_8).trim();
+            }
+            catch (IOException ex) {
+                throw new IOException("cannot read its secret from '" + secretFile + "' (is it running?)");
+            }
+            System.exit(send(port, secret + "\t" + request));
+        }
+        catch (IOException ex) {
+            System.err.println("Could not reach compile server on port " + port + ": " + ex.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Sends the given request line to the server on the given port and prints the reply messages.
+     * Returns the status reported by the server.
+     */
+    static int send(int port, String request) throws IOException
+    {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            out.print(request + "\n");
+            out.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (String line = in.readLine(); line != null; line = in.readLine())
+            {
+                if (line.startsWith("DONE "))
+                {
+                    return Integer.parseInt(line.substring(5).trim());
+                }
+                if (line.startsWith("E "))
+                {
+                    System.err.println(line.substring(2));
+                }
+                else
+                {
+                    System.out.println(line.substring(2));
+                }
+            }
+            throw new IOException("Connection closed before the request was completed");
+        }
+        finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * File: CompileServer.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived compilation server, which keeps the compiler classes loaded (and JIT-compiled)
+ * between compilations, so that the JVM startup cost is paid only once.
+ *
+ * <p>The server listens on a loopback TCP port and handles each connection on a pool of
+ * worker threads, so concurrent requests are compiled concurrently. Up to {@link #QUEUED_REQUESTS_PER_WORKER}
+ * requests per worker wait for a free worker; any more are rejected with {@code DONE 2}.
+ *
+ * <p>Since any local user can connect to the port, each request must start with a secret:
+ * the server generates a new one when it starts, and writes it to a file that only its owner
+ * can read (see {@link #getSecretFile}), which is deleted when the server stops. Requests without
+ * the secret are rejected, so only the owner of the server can make it read or write files.
+ * Each connection carries a single request line, {@code <secret>\t<request>}, where the request is:
+ * <ul>
+ * <li>{@code COMPILE\t<inputFile>\t<outputFile>}: compiles the given file. If the output file
+ * is empty, the {@code .ll} file is placed next to the input file.
+ * Paths should be absolute, since they are resolved by the server.</li>
+ * <li>{@code STOP}: shuts the server down.</li>
+ * </ul>
+ * A compile request is answered with one line per message line, prefixed by {@code "O "}
+ * (meant for {@code System.out}) or {@code "E "} (meant for {@code System.err}),
+ * followed by a final {@code DONE 0} (success) or {@code DONE 1} (failure) line.
+ * {@link CompileClient} is the thin client that speaks this protocol.
+ */
+public class CompileServer {
+
+    public static final int DEFAULT_PORT = 5959;
+    /** The number of requests per worker that can wait for a free worker. */
+    public static final int QUEUED_REQUESTS_PER_WORKER = 4;
+    /** How long a worker waits for the request line of a connection, in milliseconds. */
+    private static final int REQUEST_TIMEOUT = 10000;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final Path secretFile;
+    private final String secret;
+
+    /**
+     * Creates a server that listens on the given loopback port and compiles
+     * up to {@code numWorkers} files at the same time.
+     */
+    public CompileServer(int port, int numWorkers) throws IOException
+    {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.workers = new ThreadPoolExecutor(numWorkers, numWorkers, 0, TimeUnit.MILLISECONDS,
+                                              new ArrayBlockingQueue<Runnable>(numWorkers * QUEUED_REQUESTS_PER_WORKER));
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder secret = new StringBuilder();
+        for (byte b: bytes)
+        {
+            secret.append(String.format("%02x", b));
+        }
+        this.secret = secret.toString();
+        // A new file, readable & writable only by the owner (a leftover file or link is not reused)
+        this.secretFile = getSecretFile(port).toPath();
+        Files.deleteIfExists(this.secretFile);
+        Files.createFile(this.secretFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        Files.write(this.secretFile, this.secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the file that holds the secret of the server on the given port:
+     * {@code .minijava-server-<port>} in the home directory of the user.
+     */
+    public static File getSecretFile(int port)
+    {
+        return new File(System.getProperty("user.home"), ".minijava-server-" + port);
+    }
+
+    /**
+     * Accepts and serves requests, until a {@code STOP} request is received.
+     */
+    public void run() throws IOException
+    {
+        System.err.println("Compile server listening on " + serverSocket.getLocalSocketAddress());
+        try {
+            while (true)
+            {
+                final Socket client;
+                try {
+                    client = serverSocket.accept();
+                }
+                catch (SocketException ex) {
+                    // The server socket was closed by a STOP request
+                    break;
+                }
+                try {
+                    workers.execute(new Runnable() {
+                        public void run() {
+                            serve(client);
+                        }
+                    });
+                }
+                catch (RejectedExecutionException ex) {
+                    reject(client);
+                }
+            }
+        }
+        finally {
+            workers.shutdown();
+            Files.deleteIfExists(secretFile);
+        }
+    }
+
+    /**
+     * Answers the given connection without reading its request, since too many requests are waiting.
+     */
+    private void reject(Socket client)
+    {
+        try {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+            out.print("E Compile server busy: too many pending requests\n");
+            out.print("DONE 2\n");
+            out.flush();
+        }
+        catch (IOException ex) {
+            System.err.println("Compile server: " + ex.getMessage());
+        }
+        finally {
+            try {
+                client.close();
+            }
+            catch (IOException ex) {
+                System.err.println("Compile server: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Handles the single request of the given connection.
+     */
+    private void serve(Socket client)
+    {
+        try {
+            client.setSoTimeout(REQUEST_TIMEOUT);
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+            String request = in.readLine();
+            int separator = (request == null) ? -1 : request.indexOf('\t');
+            if (separator == -1 || !isSecret(request.substring(0, separator)))
+            {
+                // Nothing about the request is echoed back
+                out.print("E Request rejected: invalid secret\n");
+                out.print("DONE 1\n");
+            }
+            else
+            {
+                handle(request.substring(separator + 1), out);
+            }
+            out.flush();
+        }
+        catch (IOException ex) {
+            System.err.println("Compile server: " + ex.getMessage());
+        }
+        finally {
+            try {
+                client.close();
+            }
+            catch (IOException ex) {
+                System.err.println("Compile server: " + ex.getMessage());
+            }
+        }
+    }
+
+    /** Returns {@code true} if the given string is the secret of the server (compared in constant time). */
+    private boolean isSecret(String candidate)
+    {
+        return MessageDigest.isEqual(candidate.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Handles the given request (without the secret), writing the reply to the given stream.
+     */
+    private void handle(String request, PrintWriter out) throws IOException
+    {
+        if (request.startsWith("COMPILE\t"))
+        {
+            String[] paths = request.split("\t", -1);
+            FileCompiler compiler;
+            if (paths.length < 3 || paths[2].isEmpty())
+            {
+                compiler = new FileCompiler(paths[1]);
+            }
+            else
+            {
+                compiler = new FileCompiler(paths[1], paths[2]);
+            }
+            compiler.compile();
+            for (FileCompiler.Message message: compiler.getMessages())
+            {
+                String prefix = message.isError ? "E " : "O ";
+                for (String line: message.text.split("\n", -1))
+                {
+                    out.print(prefix + line + "\n");
+                }
+            }
+            out.print("DONE " + (compiler.succeeded() ? 0 : 1) + "\n");
+        }
+        else if ("STOP".equals(request))
+        {
+            out.print("DONE 0\n");
+            serverSocket.close();
+        }
+        else
+        {
+            out.print("E Invalid request: '" + request + "'\n");
+            out.print("DONE 1\n");
+        }
+    }
+}
@@ -0,0 +1,659 @@
+/**
+ * File: FileCompiler.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import Cache.CompileCache;
+import IROutput.*;
+import Statistics.CompileStatistics;
+import Visitors.IRGenerator;
+
+/**
+ * Compiles a single MiniJava file to the equivalent LLVM IR file.
+ * The IR can also be written to the standard output ({@link #STDOUT}), or piped straight
+ * into clang to produce an executable (see {@link #enableClang}).
+ *
+ * The file is compiled through the {@link MiniJavaCompiler} API, which uses its own Parser and
+ * Visitor instances for each compilation, so different files can be compiled concurrently
+ * by different FileCompiler objects.
+ * The produced messages are not printed directly; they are stored in the order they
+ * were produced, and are printed by {@link #printMessages} when the caller decides to.
+ */
+public class FileCompiler implements Callable<FileCompiler> {
+
+    /** A message produced while compiling the file, along with the stream it is meant for. */
+    public static class Message {
+        /** {@code true} if the message is meant for {@code System.err}. */
+        public final boolean isError;
+        public final String text;
+
+        Message(boolean isError, String text)
+        {
+            this.isError = isError;
+            this.text = text;
+        }
+    }
+
+    /** The compiler version (see {@link #getVersion}), {@code null} until it is first needed. */
+    private static String version = null;
+
+    /** The output file name that stands for the standard output. */
+    public static final String STDOUT = "-";
+    /** The buffer capacity of the sinks that write to pipes (the standard output or clang), which is kept
+     * small so that the consumer receives the IR in frequent chunks, while it is still being generated. */
+    private static final int PIPE_CAPACITY = 64 << 10;
+
+    /** The MiniJava file to be compiled. */
+    public final String inputFile;
+    /** The LLVM IR file to be produced ({@link #STDOUT} for the standard output),
+     * or the executable file, if clang is used. */
+    public final String outputFile;
+    /** The messages produced so far, in order. */
+    private List<Message> messages;
+    /** Set to {@code true} if the output {@code .ll} file has been produced. */
+    private boolean succeeded;
+    /** The reason the compilation failed ({@code null} if it has not failed). */
+    private MiniJavaCompiler.Diagnostic failure;
+    /** Used to reuse previous results for the same source ({@code null} if caching is disabled). */
+    private CompileCache cache;
+    /** The measurements of each phase ({@code null} if statistics are disabled). */
+    private CompileStatistics statistics;
+    /** Used to generate & print the functions concurrently ({@code null} to do it sequentially). */
+    private ForkJoinPool irPool;
+    /** Used to analyze the method bodies concurrently ({@code null} to do it sequentially). */
+    private ForkJoinPool analysisPool;
+    /** Set to {@code true} if the IR is piped into clang, to produce an executable. */
+    private boolean clang;
+    /** Set to {@code true} if LLVM bitcode is produced instead of IR text. */
+    private boolean bitcode;
+    /** The maximum size (in instructions) of the inlined functions. */
+    private int inlineBudget;
+
+    /**
+     * Creates a FileCompiler for the given file. The output {@code .ll} file
+     * will be placed next to it.
+     */
+    public FileCompiler(String filepath)
+    {
+        this(filepath, getOutputPath(filepath, ".ll"));
+    }
+
+    /**
+     * Creates a FileCompiler for the given file, which will produce the given output file.
+     */
+    public FileCompiler(String filepath, String outputFilepath)
+    {
+        this.inputFile = filepath;
+        this.outputFile = outputFilepath;
+        this.messages = new ArrayList<Message>();
+        this.succeeded = false;
+        this.failure = null;
+        this.cache = null;
+        this.statistics = null;
+        this.irPool = null;
+        this.analysisPool = null;
+        this.clang = false;
+        this.bitcode = false;
+        this.inlineBudget = IRGenerator.DEFAULT_INLINE_BUDGET;
+    }
+
+    /**
+     * Returns the compiler version, which is part of the cache keys: the SHA-256 hash of the class files
+     * of the compiler (all the {@code .class} files under the classpath directory of this class, or its jar).
+     * So the results cached by a compiler are never reused once it has been changed and rebuilt,
+     * without any version number to be bumped by hand. It is only computed the first time it is needed.
+     */
+    public static synchronized String getVersion() throws IOException
+    {
+        if (version != null)
+        {
+            return version;
+        }
+        CodeSource codeSource = FileCompiler.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null)
+        {
+            throw new IOException("Cannot locate the compiler classes");
+        }
+        final Path location;
+        try {
+            location = Paths.get(codeSource.getLocation().toURI());
+        }
+        catch (URISyntaxException ex) {
+            throw new IOException("Cannot locate the compiler classes: " + ex.getMessage());
+        }
+        // The class files, in a fixed order
+        final List<Path> files = new ArrayList<Path>();
+        if (Files.isDirectory(location))
+        {
+            Files.walkFileTree(location, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+                {
+                    if (attributes.isRegularFile() && file.getFileName().toString().endsWith(".class"))
+                    {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            Collections.sort(files);
+        }
+        else
+        {
+            files.add(location);
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+        for (Path file: files)
+        {
+            // The names are hashed too, so that moving code between classes changes the hash
+            digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(file));
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte b: digest.digest())
+        {
+            hash.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hash.append(Character.forDigit(b & 0xF, 16));
+        }
+        version = hash.toString();
+        return version;
+    }
+
+    /**
+     * Returns the path of the output file with the given extension (e.g. {@code .ll}) placed next to
+     * the given file: the path of the file without its {@code .java} suffix (if any), followed by the extension.
+     */
+    public static String getOutputPath(String filepath, String extension)
+    {
+        if (filepath.endsWith(".java"))
+        {
+            filepath = filepath.substring(0, filepath.length() - ".java".length());
+        }
+        return filepath + extension;
+    }
+
+    /**
+     * Makes the compiler look up the file in the given cache before compiling it,
+     * and store the result in the cache after compiling it.
+     */
+    public void setCache(CompileCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Makes the compiler generate (and print) the IR of the functions concurrently, on the given pool.
+     * The produced IR is the same as the one produced sequentially.
+     */
+    public void setIRPool(ForkJoinPool pool)
+    {
+        this.irPool = pool;
+    }
+
+    /**
+     * Makes the compiler analyze the method bodies concurrently, on the given pool.
+     * The reported error (if any) is the same as the one reported by the sequential analysis.
+     */
+    public void setAnalysisPool(ForkJoinPool pool)
+    {
+        this.analysisPool = pool;
+    }
+
+    /**
+     * Makes the compiler pipe the IR into {@code clang}, which produces the executable {@code outputFile},
+     * instead of writing an IR file. Clang is only started if the file is valid, and the IR is streamed to it
+     * while it is being generated, so clang can start parsing the first functions before the last ones
+     * have been generated (if the inline budget is {@code 0}, see {@link #setInlineBudget}).
+     * The messages of clang itself are printed directly to {@code System.err}.
+     */
+    public void enableClang()
+    {
+        this.clang = true;
+    }
+
+    /**
+     * Makes the compiler produce binary LLVM bitcode instead of IR text (in {@code outputFile},
+     * or in the standard output, or piped into clang). Bitcode is smaller, and faster for clang to read,
+     * but it is only written once the whole module has been generated.
+     */
+    public void enableBitcode()
+    {
+        this.bitcode = true;
+    }
+
+    /**
+     * Makes the compiler inline the calls of the functions with at most {@code budget} instructions
+     * ({@link IRGenerator#DEFAULT_INLINE_BUDGET} by default), or no calls at all if it is {@code 0}.
+     */
+    public void setInlineBudget(int budget)
+    {
+        this.inlineBudget = budget;
+    }
+
+    /**
+     * Makes the compiler measure each phase (and record counts such as the number of Parse Tree nodes),
+     * which slightly slows down the compilation.
+     */
+    public void enableStatistics()
+    {
+        this.statistics = new CompileStatistics(this.inputFile);
+    }
+
+    /**
+     * Returns the measurements of the compilation, or {@code null} if statistics are disabled.
+     */
+    public CompileStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * Returns {@code true} if the output {@code .ll} file has been produced.
+     */
+    public boolean succeeded()
+    {
+        return this.succeeded;
+    }
+
+    /**
+     * Returns the reason the compilation failed: the first reported problem (with the same message),
+     * or {@code null} if the compilation has not failed. The line of a problem reproduced from the cache is not known.
+     */
+    public MiniJavaCompiler.Diagnostic getFailure()
+    {
+        return this.failure;
+    }
+
+    /**
+     * Compiles the file (to be used by an {@code ExecutorService}).
+     */
+    @Override
+    public FileCompiler call()
+    {
+        compile();
+        return this;
+    }
+
+    /**
+     * Performs Semantic Analysis on the file.
+     * If no errors are detected, generates the corresponding LLVM IR file.
+     *
+     * @return {@code true} if the LLVM IR file was produced, {@code false} otherwise.
+     */
+    public boolean compile()
+    {
+        FileInputStream fis = null;
+        String cacheKey = null;
+        // The messages produced after the header do not depend on the file paths,
+        // so they are stored in the cache, along with the produced IR.
+        // Results of failed compilations are only stored for parse/semantic errors.
+        int firstDiagnostic = 0;
+        boolean cacheable = false;
+        out("");
+        try {
+            // Open file
+            startPhase("read");
+            fis = new FileInputStream(this.inputFile);
+            out("File: " + this.inputFile);
+            out("-----------------------------------");
+            if (!STDOUT.equals(this.outputFile) && isInputFile(this.outputFile))
+            {
+                // Writing the output would destroy the source
+                String message = "The output file '" + this.outputFile + "' is the input file";
+                err(message);
+                fail(MiniJavaCompiler.Diagnostic.Kind.INTERNAL_ERROR, message);
+                return false;
+            }
+            byte[] source = readAll(fis);
+            firstDiagnostic = this.messages.size();
+
+            if (this.cache != null)
+            {
+                startPhase("cache");
+                cacheKey = this.cache.getKey(source, getCacheOptions());
+                CompileCache.Entry entry = this.cache.lookup(cacheKey, this.outputFile);
+                endPhase();
+                if (entry != null)
+                {
+                    // Cache hit: reproduce the stored result
+                    for (String diagnostic: entry.diagnostics)
+                    {
+                        this.messages.add(new Message(diagnostic.startsWith("E "), diagnostic.substring(2)));
+                    }
+                    if (!entry.hasOutput && !entry.diagnostics.isEmpty())
+                    {
+                        // Only parse & semantic errors are cached: parse errors are printed to System.out,
+                        // and semantic errors to System.err
+                        String last = entry.diagnostics.get(entry.diagnostics.size() - 1);
+                        fail(last.startsWith("O ") ? MiniJavaCompiler.Diagnostic.Kind.PARSE_ERROR
+                                                   : MiniJavaCompiler.Diagnostic.Kind.SEMANTIC_ERROR, last.substring(2));
+                    }
+                    if (entry.hasOutput)
+                    {
+                        out(getOutputKind() + " file: '" + this.outputFile + "' has been produced.");
+                        this.succeeded = true;
+                    }
+                    return this.succeeded;
+                }
+            }
+
+            // Parse the file and analyze it
+            MiniJavaCompiler compiler = new MiniJavaCompiler();
+            compiler.setIRPool(this.irPool);
+            compiler.setAnalysisPool(this.analysisPool);
+            // The IR is streamed to pipes, so that their readers do not have to wait for all of it
+            compiler.setStreaming(this.clang || STDOUT.equals(this.outputFile));
+            compiler.setBitcode(this.bitcode);
+            compiler.setInlineBudget(this.inlineBudget);
+            MiniJavaCompiler.Result result = new MiniJavaCompiler.Result(this.statistics);
+            MiniJavaCompiler.Program program = compiler.analyze(new MiniJavaParser(new ByteArrayInputStream(source)), result);
+            List<MiniJavaCompiler.Diagnostic> diagnostics = result.getDiagnostics();
+            if (diagnostics.isEmpty() || diagnostics.get(0).kind != MiniJavaCompiler.Diagnostic.Kind.PARSE_ERROR)
+            {
+                err("Program parsed successfully.");
+            }
+
+            // Generate the IR and write it to the output
+            Process clangProcess = null;
+            if (program != null)
+            {
+                ChannelIRSink output;
+                if (this.clang)
+                {
+                    clangProcess = startClang();
+                    output = new ChannelIRSink(Channels.newChannel(clangProcess.getOutputStream()), PIPE_CAPACITY);
+                }
+                else if (STDOUT.equals(this.outputFile))
+                {
+                    output = new ChannelIRSink(new FileOutputStream(FileDescriptor.out).getChannel(), PIPE_CAPACITY);
+                }
+                else
+                {
+                    output = new ChannelIRSink(this.outputFile);
+                }
+                try {
+                    compiler.generate(program, output, result);
+                }
+                finally {
+                    // The standard output is only flushed, so that it can still be used afterwards
+                    if (STDOUT.equals(this.outputFile) && !this.clang)
+                    {
+                        output.flush();
+                    }
+                    else
+                    {
+                        output.close();
+                    }
+                }
+                if (result.succeeded())
+                {
+                    count("irBytesWritten", output.getBytesWritten());
+                }
+            }
+            for (MiniJavaCompiler.Diagnostic diagnostic: result.getDiagnostics())
+            {
+                if (this.failure == null)
+                {
+                    this.failure = diagnostic;
+                }
+                switch (diagnostic.kind)
+                {
+                    case PARSE_ERROR:
+                        out(diagnostic.message);
+                        cacheable = true;
+                        break;
+                    case SEMANTIC_ERROR:
+                        err(diagnostic.message);
+                        cacheable = true;
+                        break;
+                    default:
+                        // Any other failure (e.g. I/O error while writing the output file)
+                        err(diagnostic.message);
+                        break;
+                }
+            }
+            if (clangProcess != null)
+            {
+                // Wait until clang has compiled the IR (or failed to)
+                startPhase("clang");
+                int status = clangProcess.waitFor();
+                endPhase();
+                if (status != 0)
+                {
+                    err("clang failed with exit status " + status + ".");
+                    fail(MiniJavaCompiler.Diagnostic.Kind.INTERNAL_ERROR, "clang failed with exit status " + status + ".");
+                    return false;
+                }
+            }
+            if (result.succeeded())
+            {
+                // Done.
+                this.succeeded = true;
+                if (cacheKey != null)
+                {
+                    storeInCache(cacheKey, firstDiagnostic);
+                }
+                if (this.clang)
+                {
+                    out("Executable file: '" + this.outputFile + "' has been produced.");
+                }
+                else if (STDOUT.equals(this.outputFile))
+                {
+                    out(getOutputKind() + " has been written to the standard output.");
+                }
+                else
+                {
+                    out(getOutputKind() + " file: '" + this.outputFile + "' has been produced.");
+                }
+            }
+        }
+        catch(FileNotFoundException ex){
+            // Invalid file path given
+            err(ex.getMessage());
+            fail(MiniJavaCompiler.Diagnostic.Kind.INTERNAL_ERROR, ex.getMessage());
+        }
+        catch(Exception ex){
+            // Any other failure (e.g. I/O error while writing the output file)
+            err(ex.toString());
+            fail(MiniJavaCompiler.Diagnostic.Kind.INTERNAL_ERROR, ex.toString());
+        }
+        finally {
+            // End the phase that failed (if any)
+            endPhase();
+            try {
+                if(fis != null) fis.close();
+            }
+            catch(IOException ex) {
+                err(ex.getMessage());
+            }
+        }
+        if (cacheable && cacheKey != null)
+        {
+            storeInCache(cacheKey, firstDiagnostic);
+        }
+        return this.succeeded;
+    }
+
+    /**
+     * Starts {@code clang}, to compile the IR (or bitcode) written to its standard input to the executable {@code outputFile}.
+     */
+    private Process startClang() throws IOException
+    {
+        // The IR has no target triple, which clang would otherwise warn about
+        // ("-x ir" also accepts bitcode)
+        return new ProcessBuilder("clang", "-Wno-override-module", "-x", "ir", "-", "-o", this.outputFile)
+                   .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                   .redirectError(ProcessBuilder.Redirect.INHERIT)
+                   .start();
+    }
+
+    /** Returns {@code true} if the given path refers to the input file (e.g. it is a link to it). */
+    private boolean isInputFile(String path) throws IOException
+    {
+        Path file = Paths.get(path);
+        return Files.exists(file) && Files.isSameFile(file, Paths.get(this.inputFile));
+    }
+
+    /** Records the given failure, unless an earlier one has been recorded. */
+    private void fail(MiniJavaCompiler.Diagnostic.Kind kind, String message)
+    {
+        if (this.failure == null)
+        {
+            this.failure = new MiniJavaCompiler.Diagnostic(kind, -1, message);
+        }
+    }
+
+    /** Starts measuring the given phase (ending the previous one), if statistics are enabled. */
+    private void startPhase(String name)
+    {
+        if (this.statistics != null)
+        {
+            this.statistics.startPhase(name);
+        }
+    }
+
+    /** Ends the running phase (if any), if statistics are enabled. */
+    private void endPhase()
+    {
+        if (this.statistics != null)
+        {
+            this.statistics.endPhase();
+        }
+    }
+
+    /** Records the given count, if statistics are enabled. */
+    private void count(String name, long value)
+    {
+        if (this.statistics != null)
+        {
+            this.statistics.setCount(name, value);
+        }
+    }
+
+    /**
+     * Returns a description of the options the produced IR depends on
+     * (other than the source), to be included in the cache key.
+     */
+    private String getCacheOptions()
+    {
+        String options = this.bitcode ? "bitcode" : "";
+        if (this.inlineBudget != IRGenerator.DEFAULT_INLINE_BUDGET)
+        {
+            options += " inline-budget=" + this.inlineBudget;
+        }
+        return options;
+    }
+
+    /** Returns the name of the produced output, as printed in the messages. */
+    private String getOutputKind()
+    {
+        return this.bitcode ? "LLVM bitcode" : "LLVM IR";
+    }
+
+    /**
+     * Stores the result of the compilation in the cache: the messages produced
+     * from {@code firstDiagnostic} on, and the output file if it was produced.
+     * A failure to do so is reported, but does not affect the compilation result.
+     */
+    private void storeInCache(String cacheKey, int firstDiagnostic)
+    {
+        List<String> diagnostics = new ArrayList<String>();
+        for (Message message: this.messages.subList(firstDiagnostic, this.messages.size()))
+        {
+            diagnostics.add((message.isError ? "E " : "O ") + message.text);
+        }
+        try {
+            this.cache.store(cacheKey, diagnostics, this.succeeded ? this.outputFile : null);
+        }
+        catch (IOException ex) {
+            err("Could not store the result in the cache: " + ex);
+        }
+    }
+
+    /**
+     * Reads all the remaining bytes of the given stream.
+     */
+    private static byte[] readAll(FileInputStream in) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int count = in.read(buffer); count != -1; count = in.read(buffer))
+        {
+            bytes.write(buffer, 0, count);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the stored messages, in the order they were produced.
+     */
+    public List<Message> getMessages()
+    {
+        return this.messages;
+    }
+
+    /**
+     * Prints all the stored messages to the given streams, in the order they were produced.
+     */
+    public void printMessages(PrintStream out, PrintStream err)
+    {
+        for (Message message: this.messages)
+        {
+            if (message.isError)
+            {
+                err.println(message.text);
+            }
+            else
+            {
+                out.println(message.text);
+            }
+        }
+    }
+
+    /** Stores a message meant for {@code System.out}. */
+    private void out(String text)
+    {
+        this.messages.add(new Message(false, text));
+    }
+
+    /** Stores a message meant for {@code System.err}. */
+    private void err(String text)
+    {
+        this.messages.add(new Message(true, text));
+    }
+}
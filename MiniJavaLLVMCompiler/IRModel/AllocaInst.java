@@ -0,0 +1,21 @@
+/**
+ * File: AllocaInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code %x = alloca <type>}: allocates stack space for a local variable.
+ */
+public class AllocaInst extends Instruction {
+
+    /** The type of the allocated variable. */
+    public final IRType allocatedType;
+
+    public AllocaInst(IRType allocatedType, String name)
+    {
+        super(Opcode.ALLOCA, allocatedType.getPointerTo(), name);
+        this.allocatedType = allocatedType;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * File: Argument.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * A formal parameter of a Function.
+ */
+public class Argument extends Value {
+
+    private final Function parent;
+    /** The position of the parameter in the parameter list. */
+    public final int index;
+
+    Argument(IRType type, String name, Function parent, int index)
+    {
+        super(type, name);
+        this.parent = parent;
+        this.index = index;
+    }
+
+    public Function getParent()
+    {
+        return this.parent;
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * File: BasicBlock.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A basic block: a labeled sequence of instructions which ends with a terminator
+ * ({@code br}, {@code ret} or {@code unreachable}). Branches refer to their target blocks as operands,
+ * so the predecessors of a block can be found in its use list.
+ */
+public class BasicBlock extends Value {
+
+    private Function parent;
+    private final List<Instruction> instructions;
+
+    /**
+     * Creates a block with the given label, which is not part of any function yet.
+     */
+    public BasicBlock(String name)
+    {
+        super(IRType.LABEL, name);
+        this.parent = null;
+        this.instructions = new ArrayList<Instruction>();
+    }
+
+    public Function getParent()
+    {
+        return this.parent;
+    }
+
+    void setParent(Function function)
+    {
+        this.parent = function;
+    }
+
+    public List<Instruction> getInstructions()
+    {
+        return Collections.unmodifiableList(this.instructions);
+    }
+
+    /** Appends the given instruction at the end of the block. */
+    public void append(Instruction inst)
+    {
+        inst.setParent(this);
+        this.instructions.add(inst);
+    }
+
+    /** Inserts the given instruction right before the {@code position} instruction of this block. */
+    public void insertBefore(Instruction inst, Instruction position)
+    {
+        inst.setParent(this);
+        this.instructions.add(this.instructions.indexOf(position), inst);
+    }
+
+    /** Removes the given instruction from the block (its operands are not modified). */
+    void remove(Instruction inst)
+    {
+        this.instructions.remove(inst);
+        inst.setParent(null);
+    }
+
+    /**
+     * Erases the instructions of the block that are in the given set (like {@link Instruction#eraseFromParent}),
+     * in a single pass over the block. The erased instructions should not have any users outside of the set.
+     */
+    public void eraseAll(Set<? extends Instruction> erased)
+    {
+        int kept = 0;
+        for (int i = 0; i < this.instructions.size(); i++)
+        {
+            Instruction inst = this.instructions.get(i);
+            if (erased.contains(inst))
+            {
+                inst.setParent(null);
+                inst.dropOperands();
+            }
+            else
+            {
+                this.instructions.set(kept++, inst);
+            }
+        }
+        this.instructions.subList(kept, this.instructions.size()).clear();
+    }
+
+    /**
+     * Moves all the instructions of this block to the end of the given block (in order),
+     * leaving this block empty. Their operands are not modified.
+     */
+    public void moveInstructionsTo(BasicBlock dest)
+    {
+        for (Instruction inst: this.instructions)
+        {
+            dest.append(inst);
+        }
+        this.instructions.clear();
+    }
+
+    /**
+     * Moves the instructions of this block that follow the {@code position} instruction to the end
+     * of the given block (in order). Their operands are not modified.
+     */
+    public void moveInstructionsAfter(Instruction position, BasicBlock dest)
+    {
+        List<Instruction> moved = this.instructions.subList(this.instructions.indexOf(position) + 1, this.instructions.size());
+        for (Instruction inst: moved)
+        {
+            dest.append(inst);
+        }
+        moved.clear();
+    }
+
+    /**
+     * Returns the terminator instruction of the block,
+     * or {@code null} if the block does not end with one yet.
+     */
+    public Instruction getTerminator()
+    {
+        if (this.instructions.isEmpty())
+        {
+            return null;
+        }
+        Instruction last = this.instructions.get(this.instructions.size() - 1);
+        return last.isTerminator() ? last : null;
+    }
+
+    /**
+     * Returns the blocks that the terminator of this block may branch to.
+     */
+    public List<BasicBlock> getSuccessors()
+    {
+        List<BasicBlock> successors = new ArrayList<BasicBlock>(2);
+        Instruction terminator = getTerminator();
+        if (terminator instanceof BranchInst)
+        {
+            BranchInst branch = (BranchInst) terminator;
+            for (int i = 0; i < branch.getNumSuccessors(); i++)
+            {
+                BasicBlock successor = branch.getSuccessor(i);
+                if (!successors.contains(successor))
+                {
+                    successors.add(successor);
+                }
+            }
+        }
+        return successors;
+    }
+
+    /**
+     * Returns the blocks that branch to this block.
+     */
+    public List<BasicBlock> getPredecessors()
+    {
+        List<BasicBlock> predecessors = new ArrayList<BasicBlock>(2);
+        for (User user: getUsers())
+        {
+            if (user instanceof BranchInst)
+            {
+                BasicBlock predecessor = ((BranchInst) user).getParent();
+                if (predecessor != null && !predecessors.contains(predecessor))
+                {
+                    predecessors.add(predecessor);
+                }
+            }
+        }
+        return predecessors;
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * File: BinaryInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code %x = add|sub|mul <type> <lhs>, <rhs>}
+ */
+public class BinaryInst extends Instruction {
+
+    public BinaryInst(Opcode opcode, Value lhs, Value rhs)
+    {
+        super(opcode, lhs.type, null);
+        if (opcode != Opcode.ADD && opcode != Opcode.SUB && opcode != Opcode.MUL)
+        {
+            throw new IllegalArgumentException("Not a binary operator: " + opcode.keyword);
+        }
+        addOperand(lhs);
+        addOperand(rhs);
+    }
+
+    public Value getLHS()
+    {
+        return getOperand(0);
+    }
+
+    public Value getRHS()
+    {
+        return getOperand(1);
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * File: BranchInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code br label %<dest>} or {@code br i1 <cond>, label %<ifTrue>, label %<ifFalse>}
+ */
+public class BranchInst extends Instruction {
+
+    /** Creates an unconditional branch. */
+    public BranchInst(BasicBlock dest)
+    {
+        super(Opcode.BR, IRType.VOID, null);
+        addOperand(dest);
+    }
+
+    /** Creates a conditional branch. */
+    public BranchInst(Value condition, BasicBlock ifTrue, BasicBlock ifFalse)
+    {
+        super(Opcode.BR, IRType.VOID, null);
+        addOperand(condition);
+        addOperand(ifTrue);
+        addOperand(ifFalse);
+    }
+
+    public boolean isConditional()
+    {
+        return getNumOperands() == 3;
+    }
+
+    public Value getCondition()
+    {
+        return isConditional() ? getOperand(0) : null;
+    }
+
+    public int getNumSuccessors()
+    {
+        return isConditional() ? 2 : 1;
+    }
+
+    /**
+     * Returns the i-th target block (for conditional branches, 0 is the {@code true} target).
+     */
+    public BasicBlock getSuccessor(int i)
+    {
+        return (BasicBlock) getOperand(isConditional() ? i + 1 : i);
+    }
+}
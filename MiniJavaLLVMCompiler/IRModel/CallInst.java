@@ -0,0 +1,51 @@
+/**
+ * File: CallInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code %x = call <returnType> <callee>(<type> <arg>, ...)}.
+ * The callee is either a Function (direct call), or a function pointer (indirect call).
+ */
+public class CallInst extends Instruction {
+
+    /** The type of the called function. */
+    public final IRType functionType;
+
+    public CallInst(Value callee, Value... args)
+    {
+        super(Opcode.CALL, callee.type.element.getReturnType(), null);
+        this.functionType = callee.type.element;
+        addOperand(callee);
+        for (Value arg: args)
+        {
+            addOperand(arg);
+        }
+    }
+
+    public Value getCallee()
+    {
+        return getOperand(0);
+    }
+
+    /**
+     * Returns the called Function of a direct call, or {@code null} for an indirect call.
+     */
+    public Function getCalledFunction()
+    {
+        Value callee = getCallee();
+        return (callee instanceof Function) ? (Function) callee : null;
+    }
+
+    public int getNumArgs()
+    {
+        return getNumOperands() - 1;
+    }
+
+    public Value getArg(int i)
+    {
+        return getOperand(i + 1);
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * File: CastInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code %x = bitcast <type> <value> to <destType>}
+ */
+public class CastInst extends Instruction {
+
+    public CastInst(Value value, IRType destType)
+    {
+        super(Opcode.BITCAST, destType, null);
+        addOperand(value);
+    }
+
+    public Value getValue()
+    {
+        return getOperand(0);
+    }
+}
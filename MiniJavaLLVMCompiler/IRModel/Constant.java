@@ -0,0 +1,26 @@
+/**
+ * File: Constant.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * Base class of constant values.
+ *
+ * Constants are immutable and may be shared by any number of functions
+ * (even ones built concurrently), so they do not keep a use list.
+ */
+public abstract class Constant extends User {
+
+    protected Constant(IRType type)
+    {
+        super(type, null);
+    }
+
+    @Override
+    void addUser(User user) {}
+
+    @Override
+    void removeUser(User user) {}
+}
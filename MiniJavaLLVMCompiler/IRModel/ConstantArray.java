@@ -0,0 +1,26 @@
+/**
+ * File: ConstantArray.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+import java.util.List;
+
+/**
+ * A constant array, e.g. the initializer of a virtual table.
+ */
+public class ConstantArray extends Constant {
+
+    /**
+     * Creates a constant array with the given element type and elements.
+     */
+    public ConstantArray(IRType elementType, List<? extends Value> elements)
+    {
+        super(IRType.arrayOf(elements.size(), elementType));
+        for (Value element: elements)
+        {
+            addOperand(element);
+        }
+    }
+}
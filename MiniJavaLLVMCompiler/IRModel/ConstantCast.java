@@ -0,0 +1,27 @@
+/**
+ * File: ConstantCast.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * A constant {@code bitcast} expression, e.g. {@code bitcast (i32 (i8*)* @A.get to i8*)}.
+ */
+public class ConstantCast extends Constant {
+
+    /**
+     * Creates a constant that casts the given global (or constant) value to the given type.
+     */
+    public ConstantCast(Value value, IRType destType)
+    {
+        super(destType);
+        addOperand(value);
+    }
+
+    /** Returns the value being cast. */
+    public Value getValue()
+    {
+        return getOperand(0);
+    }
+}
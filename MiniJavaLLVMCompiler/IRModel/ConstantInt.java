@@ -0,0 +1,63 @@
+/**
+ * File: ConstantInt.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * An integer constant.
+ */
+public class ConstantInt extends Constant {
+
+    public static final ConstantInt TRUE = new ConstantInt(IRType.I1, 1);
+    public static final ConstantInt FALSE = new ConstantInt(IRType.I1, 0);
+
+    /** Shared instances of the most common {@code i32} constants. */
+    private static final ConstantInt[] smallInts = new ConstantInt[1024];
+
+    static {
+        for (int i = 0; i < smallInts.length; i++)
+        {
+            smallInts[i] = new ConstantInt(IRType.I32, i);
+        }
+    }
+
+    public final long value;
+
+    private ConstantInt(IRType type, long value)
+    {
+        super(type);
+        this.value = value;
+    }
+
+    /** Returns an {@code i32} constant with the given value. */
+    public static ConstantInt getInt32(int value)
+    {
+        if (value >= 0 && value < smallInts.length)
+        {
+            return smallInts[value];
+        }
+        return new ConstantInt(IRType.I32, value);
+    }
+
+    /** Returns an {@code i1} constant with the given value. */
+    public static ConstantInt getBool(boolean value)
+    {
+        return value ? TRUE : FALSE;
+    }
+
+    /** Returns a constant of the given integer type with the given value. */
+    public static ConstantInt get(IRType type, long value)
+    {
+        if (type == IRType.I1)
+        {
+            return getBool((value & 1) != 0);
+        }
+        if (type == IRType.I32)
+        {
+            return getInt32((int) value);
+        }
+        return new ConstantInt(type, value);
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * File: ConstantNull.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The null pointer constant of a pointer type, {@code null}.
+ * There is one instance for each type (see {@link #get}).
+ */
+public class ConstantNull extends Constant {
+
+    /** The instance of each pointer type, created on the first request. */
+    private static final Map<IRType, ConstantNull> instances = new HashMap<IRType, ConstantNull>();
+
+    private ConstantNull(IRType type)
+    {
+        super(type);
+    }
+
+    /** Returns the null constant of the given pointer type. */
+    public static ConstantNull get(IRType type)
+    {
+        if (!type.isPointer())
+        {
+            throw new IllegalArgumentException("Not a pointer type: " + type);
+        }
+        synchronized (instances)
+        {
+            ConstantNull constant = instances.get(type);
+            if (constant == null)
+            {
+                constant = new ConstantNull(type);
+                instances.put(type, constant);
+            }
+            return constant;
+        }
+    }
+}
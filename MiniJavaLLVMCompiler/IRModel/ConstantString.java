@@ -0,0 +1,30 @@
+/**
+ * File: ConstantString.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * A constant array of {@code i8}, e.g. the format string {@code c"%d\0A\00"} of {@code printf}.
+ * Each character of the string is one element, so it should only contain characters that fit in a byte (up to 255).
+ */
+public class ConstantString extends Constant {
+
+    /** The elements of the array (including the terminating {@code \0}, if any). */
+    public final String value;
+
+    public ConstantString(String value)
+    {
+        super(IRType.arrayOf(value.length(), IRType.I8));
+        this.value = value;
+    }
+
+    /**
+     * Returns {@code true} if the only {@code \0} element of the array is the last one.
+     */
+    public boolean isCString()
+    {
+        return this.value.indexOf('\0') == this.value.length() - 1;
+    }
+}
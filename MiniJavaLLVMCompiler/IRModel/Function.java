@@ -0,0 +1,117 @@
+/**
+ * File: Function.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A function of the module. A Function without basic blocks is a declaration.
+ */
+public class Function extends GlobalValue {
+
+    /** The function type (the type of the Function value itself is a pointer to that). */
+    public final IRType functionType;
+    private final List<Argument> args;
+    private final List<BasicBlock> blocks;
+    /** Set to {@code true} if the function is defined by the runtime library, so it must not be declared. */
+    private boolean isRuntime;
+
+    /**
+     * Creates a function with the given name & type. The arguments are named after
+     * the given names (a {@code null} array or element leaves them unnamed).
+     */
+    public Function(String name, IRType functionType, String[] argNames)
+    {
+        super(functionType.getPointerTo(), name);
+        this.functionType = functionType;
+        this.args = new ArrayList<Argument>(functionType.getNumParams());
+        for (int i = 0; i < functionType.getNumParams(); i++)
+        {
+            String argName = (argNames == null) ? null : argNames[i];
+            this.args.add(new Argument(functionType.getParamType(i), argName, this, i));
+        }
+        this.blocks = new ArrayList<BasicBlock>();
+        this.isRuntime = false;
+    }
+
+    public IRType getReturnType()
+    {
+        return this.functionType.getReturnType();
+    }
+
+    public List<Argument> getArguments()
+    {
+        return Collections.unmodifiableList(this.args);
+    }
+
+    public Argument getArgument(int i)
+    {
+        return this.args.get(i);
+    }
+
+    /**
+     * Returns the basic blocks of the function, in layout order. The first one is the entry block.
+     */
+    public List<BasicBlock> getBlocks()
+    {
+        return Collections.unmodifiableList(this.blocks);
+    }
+
+    public BasicBlock getEntryBlock()
+    {
+        return this.blocks.get(0);
+    }
+
+    /**
+     * Appends the given (detached) block at the end of the function.
+     */
+    public void addBlock(BasicBlock block)
+    {
+        block.setParent(this);
+        this.blocks.add(block);
+    }
+
+    /**
+     * Inserts the given (detached) block right after the {@code position} block of the function.
+     */
+    public void addBlockAfter(BasicBlock block, BasicBlock position)
+    {
+        block.setParent(this);
+        this.blocks.add(this.blocks.indexOf(position) + 1, block);
+    }
+
+    /**
+     * Removes the given block from the function. Its instructions are not modified.
+     */
+    public void removeBlock(BasicBlock block)
+    {
+        this.blocks.remove(block);
+        block.setParent(null);
+    }
+
+    /**
+     * Returns {@code true} if the function has no body.
+     */
+    public boolean isDeclaration()
+    {
+        return this.blocks.isEmpty();
+    }
+
+    public boolean isRuntime()
+    {
+        return this.isRuntime;
+    }
+
+    /**
+     * Marks the function as defined by the runtime library.
+     */
+    public void setRuntime(boolean isRuntime)
+    {
+        this.isRuntime = isRuntime;
+    }
+}
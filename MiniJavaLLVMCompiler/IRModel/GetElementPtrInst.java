@@ -0,0 +1,55 @@
+/**
+ * File: GetElementPtrInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code %x = getelementptr <type>, <type>* <pointer>, i32 <index>(, i32 <index>)*}:
+ * computes the address of an element.
+ */
+public class GetElementPtrInst extends Instruction {
+
+    /** The type the pointer operand points to. */
+    public final IRType sourceType;
+
+    public GetElementPtrInst(Value pointer, Value... indices)
+    {
+        super(Opcode.GETELEMENTPTR, resultType(pointer.type, indices.length), null);
+        this.sourceType = pointer.type.element;
+        addOperand(pointer);
+        for (Value index: indices)
+        {
+            addOperand(index);
+        }
+    }
+
+    /**
+     * The first index steps over the pointer, and each following index steps into an array.
+     */
+    private static IRType resultType(IRType pointerType, int numIndices)
+    {
+        IRType type = pointerType.element;
+        for (int i = 1; i < numIndices; i++)
+        {
+            type = type.element;
+        }
+        return type.getPointerTo();
+    }
+
+    public Value getPointer()
+    {
+        return getOperand(0);
+    }
+
+    public int getNumIndices()
+    {
+        return getNumOperands() - 1;
+    }
+
+    public Value getIndex(int i)
+    {
+        return getOperand(i + 1);
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * File: GlobalValue.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * Base class of the values declared at module level (functions & global variables),
+ * which are referred to as {@code @<name>}. The value of a GlobalValue is its address.
+ *
+ * Since global values may be used by functions that are built concurrently,
+ * their use lists are synchronized.
+ */
+public abstract class GlobalValue extends User {
+
+    protected GlobalValue(IRType type, String name)
+    {
+        super(type, name);
+    }
+
+    @Override
+    synchronized void addUser(User user)
+    {
+        super.addUser(user);
+    }
+
+    @Override
+    synchronized void removeUser(User user)
+    {
+        super.removeUser(user);
+    }
+}
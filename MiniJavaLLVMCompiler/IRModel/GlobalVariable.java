@@ -0,0 +1,30 @@
+/**
+ * File: GlobalVariable.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * A global variable with an initializer, e.g. a class virtual table.
+ */
+public class GlobalVariable extends GlobalValue {
+
+    /** The type of the stored value (the type of the variable itself is a pointer to that). */
+    public final IRType valueType;
+    /** Set to {@code true} if the variable is declared as {@code constant} instead of {@code global}. */
+    public final boolean isConstant;
+
+    public GlobalVariable(String name, Constant initializer, boolean isConstant)
+    {
+        super(initializer.type.getPointerTo(), name);
+        this.valueType = initializer.type;
+        this.isConstant = isConstant;
+        addOperand(initializer);
+    }
+
+    public Constant getInitializer()
+    {
+        return (Constant) getOperand(0);
+    }
+}
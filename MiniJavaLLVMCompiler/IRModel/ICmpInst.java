@@ -0,0 +1,44 @@
+/**
+ * File: ICmpInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code %x = icmp <predicate> <type> <lhs>, <rhs>}
+ */
+public class ICmpInst extends Instruction {
+
+    public enum Predicate {
+        EQ("eq"), NE("ne"), SLT("slt"), SLE("sle"), SGT("sgt"), SGE("sge"),
+        ULT("ult"), ULE("ule"), UGT("ugt"), UGE("uge");
+
+        public final String keyword;
+
+        Predicate(String keyword)
+        {
+            this.keyword = keyword;
+        }
+    }
+
+    public final Predicate predicate;
+
+    public ICmpInst(Predicate predicate, Value lhs, Value rhs)
+    {
+        super(Opcode.ICMP, IRType.I1, null);
+        this.predicate = predicate;
+        addOperand(lhs);
+        addOperand(rhs);
+    }
+
+    public Value getLHS()
+    {
+        return getOperand(0);
+    }
+
+    public Value getRHS()
+    {
+        return getOperand(1);
+    }
+}
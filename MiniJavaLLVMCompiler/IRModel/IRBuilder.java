@@ -0,0 +1,112 @@
+/**
+ * File: IRBuilder.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * Creates instructions and appends them at the end of the current insertion block.
+ * Each {@code create} method returns the created instruction.
+ */
+public class IRBuilder {
+
+    private BasicBlock block;
+
+    public IRBuilder()
+    {
+        this.block = null;
+    }
+
+    /** Makes the following instructions be appended to the given block. */
+    public void setInsertPoint(BasicBlock insertBlock)
+    {
+        this.block = insertBlock;
+    }
+
+    public BasicBlock getInsertBlock()
+    {
+        return this.block;
+    }
+
+    private <T extends Instruction> T insert(T inst)
+    {
+        this.block.append(inst);
+        return inst;
+    }
+
+    public AllocaInst createAlloca(IRType type, String name)
+    {
+        return insert(new AllocaInst(type, name));
+    }
+
+    public LoadInst createLoad(Value pointer)
+    {
+        return insert(new LoadInst(pointer));
+    }
+
+    public StoreInst createStore(Value value, Value pointer)
+    {
+        return insert(new StoreInst(value, pointer));
+    }
+
+    public GetElementPtrInst createGEP(Value pointer, Value... indices)
+    {
+        return insert(new GetElementPtrInst(pointer, indices));
+    }
+
+    public CastInst createBitCast(Value value, IRType destType)
+    {
+        return insert(new CastInst(value, destType));
+    }
+
+    public BinaryInst createAdd(Value lhs, Value rhs)
+    {
+        return insert(new BinaryInst(Instruction.Opcode.ADD, lhs, rhs));
+    }
+
+    public BinaryInst createSub(Value lhs, Value rhs)
+    {
+        return insert(new BinaryInst(Instruction.Opcode.SUB, lhs, rhs));
+    }
+
+    public BinaryInst createMul(Value lhs, Value rhs)
+    {
+        return insert(new BinaryInst(Instruction.Opcode.MUL, lhs, rhs));
+    }
+
+    public ICmpInst createICmp(ICmpInst.Predicate predicate, Value lhs, Value rhs)
+    {
+        return insert(new ICmpInst(predicate, lhs, rhs));
+    }
+
+    public CallInst createCall(Value callee, Value... args)
+    {
+        return insert(new CallInst(callee, args));
+    }
+
+    public PhiInst createPhi(IRType type)
+    {
+        return insert(new PhiInst(type));
+    }
+
+    public BranchInst createBr(BasicBlock dest)
+    {
+        return insert(new BranchInst(dest));
+    }
+
+    public BranchInst createCondBr(Value condition, BasicBlock ifTrue, BasicBlock ifFalse)
+    {
+        return insert(new BranchInst(condition, ifTrue, ifFalse));
+    }
+
+    public ReturnInst createRet(Value value)
+    {
+        return insert(new ReturnInst(value));
+    }
+
+    public UnreachableInst createUnreachable()
+    {
+        return insert(new UnreachableInst());
+    }
+}
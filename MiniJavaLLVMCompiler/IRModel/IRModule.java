@@ -0,0 +1,105 @@
+/**
+ * File: IRModule.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The in-memory representation of an LLVM IR file: global variables and functions
+ * (in the order they are to be printed), plus the runtime library.
+ */
+public class IRModule {
+
+    private final List<GlobalVariable> globals;
+    private final List<Function> functions;
+    /** All global values, mapped by their names. */
+    private final Map<String, GlobalValue> symbols;
+    /** Defines the runtime functions (e.g. {@code print_int}), {@code null} if not set. */
+    private RuntimeLibrary runtime;
+
+    public IRModule()
+    {
+        this.globals = new ArrayList<GlobalVariable>();
+        this.functions = new ArrayList<Function>();
+        this.symbols = new HashMap<String, GlobalValue>();
+        this.runtime = null;
+    }
+
+    public List<GlobalVariable> getGlobals()
+    {
+        return Collections.unmodifiableList(this.globals);
+    }
+
+    public List<Function> getFunctions()
+    {
+        return Collections.unmodifiableList(this.functions);
+    }
+
+    /**
+     * Adds the given global variable to the module, and returns it.
+     */
+    public GlobalVariable addGlobal(GlobalVariable global)
+    {
+        addSymbol(global);
+        this.globals.add(global);
+        return global;
+    }
+
+    /**
+     * Adds the given function to the module, and returns it.
+     */
+    public Function addFunction(Function function)
+    {
+        addSymbol(function);
+        this.functions.add(function);
+        return function;
+    }
+
+    private void addSymbol(GlobalValue value)
+    {
+        if (this.symbols.put(value.getName(), value) != null)
+        {
+            throw new IllegalArgumentException("Redefinition of '@" + value.getName() + "'");
+        }
+    }
+
+    /**
+     * Returns the function with the given name, or {@code null} if there is no such function.
+     */
+    public Function getFunction(String name)
+    {
+        GlobalValue value = this.symbols.get(name);
+        return (value instanceof Function) ? (Function) value : null;
+    }
+
+    /**
+     * Returns the global variable with the given name, or {@code null} if there is no such variable.
+     */
+    public GlobalVariable getGlobal(String name)
+    {
+        GlobalValue value = this.symbols.get(name);
+        return (value instanceof GlobalVariable) ? (GlobalVariable) value : null;
+    }
+
+    public RuntimeLibrary getRuntime()
+    {
+        return this.runtime;
+    }
+
+    /**
+     * Sets the runtime library. The functions it defines that are called by the module should be
+     * added to the module as runtime functions ({@link Function#setRuntime}), so that only
+     * the parts of the library they need are printed with it.
+     */
+    public void setRuntime(RuntimeLibrary runtime)
+    {
+        this.runtime = runtime;
+    }
+}
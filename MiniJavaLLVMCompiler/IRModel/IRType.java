@@ -0,0 +1,161 @@
+/**
+ * File: IRType.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents an LLVM IR type.
+ *
+ * Types are interned: there is exactly one IRType object for each type,
+ * so types can be compared using {@code ==}.
+ */
+public final class IRType {
+
+    public enum Kind { VOID, LABEL, INTEGER, POINTER, ARRAY, FUNCTION }
+
+    /** All the types created so far, mapped by their IR text. */
+    private static final Map<String, IRType> types = new HashMap<String, IRType>();
+
+    public static final IRType VOID = intern(new IRType(Kind.VOID, "void", 0, null, 0, null, false));
+    public static final IRType LABEL = intern(new IRType(Kind.LABEL, "label", 0, null, 0, null, false));
+    public static final IRType I1 = integer(1);
+    public static final IRType I8 = integer(8);
+    public static final IRType I32 = integer(32);
+    public static final IRType I8_PTR = I8.getPointerTo();
+    public static final IRType I32_PTR = I32.getPointerTo();
+
+    public final Kind kind;
+    /** The number of bits of an integer type. */
+    public final int bits;
+    /** The pointee type of a pointer type, the element type of an array type,
+     * or the return type of a function type. */
+    public final IRType element;
+    /** The number of elements of an array type. */
+    public final int length;
+    /** The parameter types of a function type. */
+    private final IRType[] params;
+    /** Set to {@code true} for variadic function types. */
+    public final boolean isVarArg;
+    /** The IR text of the type. */
+    private final String text;
+    /** The type of a pointer to this type (created on the first request). */
+    private volatile IRType pointer;
+
+    private IRType(Kind kind, String text, int bits, IRType element, int length, IRType[] params, boolean isVarArg)
+    {
+        this.kind = kind;
+        this.text = text;
+        this.bits = bits;
+        this.element = element;
+        this.length = length;
+        this.params = params;
+        this.isVarArg = isVarArg;
+    }
+
+    /**
+     * Returns the already created type with the same text as the given one,
+     * or stores and returns the given type, if there is no such type.
+     */
+    private static IRType intern(IRType type)
+    {
+        synchronized (types)
+        {
+            IRType present = types.get(type.text);
+            if (present != null)
+            {
+                return present;
+            }
+            types.put(type.text, type);
+            return type;
+        }
+    }
+
+    /** Returns the integer type with the given number of bits. */
+    public static IRType integer(int bits)
+    {
+        return intern(new IRType(Kind.INTEGER, "i" + bits, bits, null, 0, null, false));
+    }
+
+    /** Returns the type of a pointer to the given type. */
+    public static IRType pointerTo(IRType pointee)
+    {
+        return pointee.getPointerTo();
+    }
+
+    /** Returns the type of an array of {@code length} elements of the given type. */
+    public static IRType arrayOf(int length, IRType element)
+    {
+        return intern(new IRType(Kind.ARRAY, "[" + length + " x " + element.text + "]", 0, element, length, null, false));
+    }
+
+    /** Returns the type of a function with the given return & parameter types. */
+    public static IRType function(IRType returnType, IRType[] params, boolean isVarArg)
+    {
+        StringBuilder text = new StringBuilder(returnType.text).append(" (");
+        for (int i = 0; i < params.length; i++)
+        {
+            if (i > 0)
+            {
+                text.append(", ");
+            }
+            text.append(params[i].text);
+        }
+        if (isVarArg)
+        {
+            text.append(params.length > 0 ? ", ..." : "...");
+        }
+        text.append(")");
+        return intern(new IRType(Kind.FUNCTION, text.toString(), 0, returnType, 0, params.clone(), isVarArg));
+    }
+
+    /** Returns the type of a pointer to this type. */
+    public IRType getPointerTo()
+    {
+        IRType pointerType = this.pointer;
+        if (pointerType == null)
+        {
+            pointerType = intern(new IRType(Kind.POINTER, this.text + "*", 0, this, 0, null, false));
+            this.pointer = pointerType;
+        }
+        return pointerType;
+    }
+
+    public boolean isInteger()
+    {
+        return this.kind == Kind.INTEGER;
+    }
+
+    public boolean isPointer()
+    {
+        return this.kind == Kind.POINTER;
+    }
+
+    /** Returns the return type of a function type. */
+    public IRType getReturnType()
+    {
+        return this.element;
+    }
+
+    /** Returns the number of parameters of a function type. */
+    public int getNumParams()
+    {
+        return this.params.length;
+    }
+
+    /** Returns the type of the i-th parameter of a function type. */
+    public IRType getParamType(int i)
+    {
+        return this.params[i];
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.text;
+    }
+}
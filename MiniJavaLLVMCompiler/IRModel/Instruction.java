@@ -0,0 +1,74 @@
+/**
+ * File: Instruction.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * Base class of all instructions. An instruction is a Value (its result),
+ * and belongs to a BasicBlock.
+ */
+public abstract class Instruction extends User {
+
+    public enum Opcode {
+        ALLOCA("alloca"), LOAD("load"), STORE("store"), GETELEMENTPTR("getelementptr"),
+        BITCAST("bitcast"), ADD("add"), SUB("sub"), MUL("mul"), ICMP("icmp"),
+        CALL("call"), PHI("phi"), BR("br"), RET("ret"), UNREACHABLE("unreachable");
+
+        /** The IR keyword of the instruction. */
+        public final String keyword;
+
+        Opcode(String keyword)
+        {
+            this.keyword = keyword;
+        }
+    }
+
+    public final Opcode opcode;
+    private BasicBlock parent;
+
+    protected Instruction(Opcode opcode, IRType type, String name)
+    {
+        super(type, name);
+        this.opcode = opcode;
+        this.parent = null;
+    }
+
+    public BasicBlock getParent()
+    {
+        return this.parent;
+    }
+
+    void setParent(BasicBlock block)
+    {
+        this.parent = block;
+    }
+
+    /** Returns the function that contains the instruction. */
+    public Function getFunction()
+    {
+        return (this.parent == null) ? null : this.parent.getParent();
+    }
+
+    /**
+     * Returns {@code true} if the instruction ends a basic block.
+     */
+    public boolean isTerminator()
+    {
+        return this.opcode == Opcode.BR || this.opcode == Opcode.RET || this.opcode == Opcode.UNREACHABLE;
+    }
+
+    /**
+     * Removes the instruction from its block and drops its operands.
+     * The instruction should not have any users.
+     */
+    public void eraseFromParent()
+    {
+        if (this.parent != null)
+        {
+            this.parent.remove(this);
+        }
+        dropOperands();
+    }
+}
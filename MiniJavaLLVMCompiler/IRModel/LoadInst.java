@@ -0,0 +1,23 @@
+/**
+ * File: LoadInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code %x = load <type>, <type>* <pointer>}
+ */
+public class LoadInst extends Instruction {
+
+    public LoadInst(Value pointer)
+    {
+        super(Opcode.LOAD, pointer.type.element, null);
+        addOperand(pointer);
+    }
+
+    public Value getPointer()
+    {
+        return getOperand(0);
+    }
+}
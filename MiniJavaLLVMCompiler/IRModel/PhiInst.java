@@ -0,0 +1,53 @@
+/**
+ * File: PhiInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code %x = phi <type> [<value>, %<block>], ...}.
+ * The operands are (incoming value, incoming block) pairs.
+ */
+public class PhiInst extends Instruction {
+
+    public PhiInst(IRType type)
+    {
+        super(Opcode.PHI, type, null);
+    }
+
+    /** Adds the value that the phi takes when control comes from the given block. */
+    public void addIncoming(Value value, BasicBlock block)
+    {
+        addOperand(value);
+        addOperand(block);
+    }
+
+    public int getNumIncoming()
+    {
+        return getNumOperands() / 2;
+    }
+
+    public Value getIncomingValue(int i)
+    {
+        return getOperand(2 * i);
+    }
+
+    public BasicBlock getIncomingBlock(int i)
+    {
+        return (BasicBlock) getOperand(2 * i + 1);
+    }
+
+    /** Makes the i-th incoming value come from the given block instead. */
+    public void setIncomingBlock(int i, BasicBlock block)
+    {
+        setOperand(2 * i + 1, block);
+    }
+
+    /** Removes the i-th (value, block) pair. */
+    public void removeIncoming(int i)
+    {
+        removeOperand(2 * i + 1);
+        removeOperand(2 * i);
+    }
+}
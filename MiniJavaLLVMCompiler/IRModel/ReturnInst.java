@@ -0,0 +1,30 @@
+/**
+ * File: ReturnInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code ret <type> <value>} or {@code ret void}
+ */
+public class ReturnInst extends Instruction {
+
+    /**
+     * Creates a return of the given value ({@code null} for {@code ret void}).
+     */
+    public ReturnInst(Value value)
+    {
+        super(Opcode.RET, IRType.VOID, null);
+        if (value != null)
+        {
+            addOperand(value);
+        }
+    }
+
+    /** Returns the returned value, or {@code null} for {@code ret void}. */
+    public Value getReturnValue()
+    {
+        return (getNumOperands() == 0) ? null : getOperand(0);
+    }
+}
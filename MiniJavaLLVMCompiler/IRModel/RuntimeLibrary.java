@@ -0,0 +1,133 @@
+/**
+ * File: RuntimeLibrary.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The runtime library (e.g. {@code print_int}): an IRModule with the declarations, global variables
+ * and function definitions that the generated modules need.
+ *
+ * Only the parts needed by a module are output with it: the runtime functions it calls,
+ * along with everything they refer to (e.g. {@code print_int} needs {@code @printf} & {@code @_cint}).
+ * A RuntimeLibrary is immutable, so it can be built once and shared by all modules.
+ */
+public class RuntimeLibrary {
+
+    /** The library as IR, which must not be modified. */
+    private final IRModule module;
+    /** The global values of the library that each one of them refers to. */
+    private final Map<GlobalValue, Set<GlobalValue>> references;
+
+    /**
+     * Creates a library with the contents of the given module, which must not be modified afterwards.
+     */
+    public RuntimeLibrary(IRModule module)
+    {
+        this.module = module;
+        this.references = new HashMap<GlobalValue, Set<GlobalValue>>();
+        for (GlobalVariable global: module.getGlobals())
+        {
+            Set<GlobalValue> referenced = new HashSet<GlobalValue>();
+            addReferences(global.getInitializer(), referenced);
+            this.references.put(global, referenced);
+        }
+        for (Function function: module.getFunctions())
+        {
+            Set<GlobalValue> referenced = new HashSet<GlobalValue>();
+            for (BasicBlock block: function.getBlocks())
+            {
+                for (Instruction inst: block.getInstructions())
+                {
+                    for (Value operand: inst.getOperands())
+                    {
+                        addReferences(operand, referenced);
+                    }
+                }
+            }
+            this.references.put(function, referenced);
+        }
+    }
+
+    /** Adds the given value to the given set if it is a global value, or the global values it is made of if it is a constant. */
+    private static void addReferences(Value value, Set<GlobalValue> referenced)
+    {
+        if (value instanceof GlobalValue)
+        {
+            referenced.add((GlobalValue) value);
+        }
+        else if (value instanceof Constant)
+        {
+            for (Value operand: ((Constant) value).getOperands())
+            {
+                addReferences(operand, referenced);
+            }
+        }
+    }
+
+    /**
+     * Returns the global values of the library needed to define the ones with the given names
+     * (and everything they refer to), in the order they are to be output: the function declarations,
+     * then the global variables, then the function definitions (each in the order of the library).
+     */
+    public List<GlobalValue> getNeeded(Collection<String> used)
+    {
+        Set<GlobalValue> needed = new HashSet<GlobalValue>();
+        List<GlobalValue> pending = new ArrayList<GlobalValue>();
+        for (String name: used)
+        {
+            GlobalValue value = this.module.getFunction(name);
+            pending.add((value != null) ? value : this.module.getGlobal(name));
+        }
+        while (!pending.isEmpty())
+        {
+            GlobalValue value = pending.remove(pending.size() - 1);
+            if (value != null && needed.add(value))
+            {
+                pending.addAll(this.references.get(value));
+            }
+        }
+        Set<GlobalValue> ordered = new LinkedHashSet<GlobalValue>();
+        for (Function function: this.module.getFunctions())
+        {
+            if (function.isDeclaration() && needed.contains(function))
+            {
+                ordered.add(function);
+            }
+        }
+        for (GlobalVariable global: this.module.getGlobals())
+        {
+            if (needed.contains(global))
+            {
+                ordered.add(global);
+            }
+        }
+        for (Function function: this.module.getFunctions())
+        {
+            if (needed.contains(function))
+            {
+                ordered.add(function);
+            }
+        }
+        return new ArrayList<GlobalValue>(ordered);
+    }
+
+    /**
+     * Returns the library as an IRModule (which must not be modified).
+     */
+    public IRModule getModule()
+    {
+        return this.module;
+    }
+
+}
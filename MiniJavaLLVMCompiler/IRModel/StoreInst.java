@@ -0,0 +1,29 @@
+/**
+ * File: StoreInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code store <type> <value>, <type>* <pointer>}
+ */
+public class StoreInst extends Instruction {
+
+    public StoreInst(Value value, Value pointer)
+    {
+        super(Opcode.STORE, IRType.VOID, null);
+        addOperand(value);
+        addOperand(pointer);
+    }
+
+    public Value getValue()
+    {
+        return getOperand(0);
+    }
+
+    public Value getPointer()
+    {
+        return getOperand(1);
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * File: UnreachableInst.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+/**
+ * {@code unreachable}: ends a block whose end is never reached (e.g. after a call to {@code throw_oob},
+ * which exits the program).
+ */
+public class UnreachableInst extends Instruction {
+
+    public UnreachableInst()
+    {
+        super(Opcode.UNREACHABLE, IRType.VOID, null);
+    }
+}
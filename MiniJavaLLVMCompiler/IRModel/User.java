@@ -0,0 +1,105 @@
+/**
+ * File: User.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Value that refers to other Values (its operands).
+ * The use lists of the operands are kept up to date by the methods of this class.
+ */
+public abstract class User extends Value {
+
+    private static final Value[] NO_OPERANDS = new Value[0];
+
+    private Value[] operands;
+    private int numOperands;
+
+    protected User(IRType type, String name)
+    {
+        super(type, name);
+        this.operands = NO_OPERANDS;
+        this.numOperands = 0;
+    }
+
+    public int getNumOperands()
+    {
+        return this.numOperands;
+    }
+
+    public Value getOperand(int i)
+    {
+        if (i >= this.numOperands)
+        {
+            throw new IndexOutOfBoundsException("Operand " + i + " of " + this.numOperands);
+        }
+        return this.operands[i];
+    }
+
+    public List<Value> getOperands()
+    {
+        return Collections.unmodifiableList(Arrays.asList(this.operands).subList(0, this.numOperands));
+    }
+
+    /**
+     * Makes the i-th operand refer to the given value.
+     */
+    public void setOperand(int i, Value value)
+    {
+        getOperand(i).removeUser(this);
+        this.operands[i] = value;
+        value.addUser(this);
+    }
+
+    /** Appends an operand that refers to the given value. */
+    protected void addOperand(Value value)
+    {
+        if (this.numOperands == this.operands.length)
+        {
+            this.operands = Arrays.copyOf(this.operands, Math.max(2, 2 * this.numOperands));
+        }
+        this.operands[this.numOperands++] = value;
+        value.addUser(this);
+    }
+
+    /** Removes the i-th operand. The following operands are shifted. */
+    protected void removeOperand(int i)
+    {
+        Value removed = getOperand(i);
+        System.arraycopy(this.operands, i + 1, this.operands, i, this.numOperands - i - 1);
+        this.operands[--this.numOperands] = null;
+        removed.removeUser(this);
+    }
+
+    /**
+     * Makes all the operands that refer to {@code from} refer to {@code to} instead.
+     */
+    public void replaceUsesOfWith(Value from, Value to)
+    {
+        for (int i = 0; i < this.numOperands; i++)
+        {
+            if (this.operands[i] == from)
+            {
+                setOperand(i, to);
+            }
+        }
+    }
+
+    /**
+     * Removes all the operands (and therefore this User from their use lists).
+     */
+    public void dropOperands()
+    {
+        for (int i = 0; i < this.numOperands; i++)
+        {
+            this.operands[i].removeUser(this);
+            this.operands[i] = null;
+        }
+        this.numOperands = 0;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * File: Value.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRModel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Base class of everything that can be used as an instruction operand:
+ * instructions, arguments, basic blocks, functions, globals and constants.
+ *
+ * Each Value keeps a list of its users (the use list), which contains a User
+ * once for each of its operands that refers to this Value.
+ */
+public abstract class Value {
+
+    /** The IR type of the value. */
+    public final IRType type;
+    /** The name of the value, or {@code null} if it should be numbered by the printer. */
+    private String name;
+    /** The Users that refer to this value (allocated on the first use). */
+    private User[] users;
+    private int numUsers;
+
+    protected Value(IRType type, String name)
+    {
+        this.type = type;
+        this.name = name;
+        this.users = null;
+        this.numUsers = 0;
+    }
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Returns a snapshot of the users of the value
+     * (a User appears once for each operand that refers to the value).
+     */
+    public List<User> getUsers()
+    {
+        if (this.numUsers == 0)
+        {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(Arrays.copyOf(this.users, this.numUsers));
+    }
+
+    public int getNumUsers()
+    {
+        return this.numUsers;
+    }
+
+    public User getUser(int i)
+    {
+        return this.users[i];
+    }
+
+    /**
+     * Returns {@code true} if the value is used by any User.
+     */
+    public boolean hasUsers()
+    {
+        return this.numUsers != 0;
+    }
+
+    /** Called when an operand of the given User is set to this value. */
+    void addUser(User user)
+    {
+        if (this.users == null)
+        {
+            this.users = new User[2];
+        }
+        else if (this.numUsers == this.users.length)
+        {
+            this.users = Arrays.copyOf(this.users, 2 * this.numUsers);
+        }
+        this.users[this.numUsers++] = user;
+    }
+
+    /** Called when an operand of the given User no longer refers to this value. */
+    void removeUser(User user)
+    {
+        for (int i = this.numUsers - 1; i >= 0; i--)
+        {
+            if (this.users[i] == user)
+            {
+                System.arraycopy(this.users, i + 1, this.users, i, this.numUsers - i - 1);
+                this.users[--this.numUsers] = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Makes all the users of this value refer to the given value instead.
+     */
+    public void replaceAllUsesWith(Value replacement)
+    {
+        while (this.numUsers != 0)
+        {
+            this.users[this.numUsers - 1].replaceUsesOfWith(this, replacement);
+        }
+    }
+}
@@ -0,0 +1,920 @@
+/**
+ * File: BitcodeWriter.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IROutput;
+
+import IRModel.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Serializes an IRModule to binary LLVM bitcode (a {@code .bc} file), which clang reads
+ * much faster than the equivalent IR text, and which is also much smaller.
+ *
+ * The module is written in the format that every LLVM version (since 3.x) can read:
+ * with typed pointers, relative value IDs in the function bodies, and the global names in
+ * a module-level value symbol table. Local values are not named, since their names do not affect
+ * the semantics of the program.
+ *
+ * <p>The runtime library is included as IR ({@link RuntimeLibrary#getModule()}), and
+ * (like in the IR text) only the runtime functions that are called are included,
+ * along with the declarations & globals they refer to.
+ */
+public class BitcodeWriter {
+
+    /* Block IDs */
+    private static final int MODULE_BLOCK = 8;
+    private static final int CONSTANTS_BLOCK = 11;
+    private static final int FUNCTION_BLOCK = 12;
+    private static final int IDENTIFICATION_BLOCK = 13;
+    private static final int VALUE_SYMTAB_BLOCK = 14;
+    private static final int TYPE_BLOCK = 17;
+
+    /* Record codes */
+    private static final int IDENTIFICATION_STRING = 1;
+    private static final int IDENTIFICATION_EPOCH = 2;
+    private static final int MODULE_VERSION = 1;
+    private static final int MODULE_GLOBALVAR = 7;
+    private static final int MODULE_FUNCTION = 8;
+    private static final int TYPE_NUMENTRY = 1;
+    private static final int TYPE_VOID = 2;
+    private static final int TYPE_LABEL = 5;
+    private static final int TYPE_INTEGER = 7;
+    private static final int TYPE_POINTER = 8;
+    private static final int TYPE_ARRAY = 11;
+    private static final int TYPE_FUNCTION = 21;
+    private static final int CST_SETTYPE = 1;
+    private static final int CST_NULL = 2;
+    private static final int CST_INTEGER = 4;
+    private static final int CST_AGGREGATE = 7;
+    private static final int CST_STRING = 8;
+    private static final int CST_CSTRING = 9;
+    private static final int CST_CE_CAST = 11;
+    private static final int VST_ENTRY = 1;
+    private static final int FUNC_DECLAREBLOCKS = 1;
+    private static final int FUNC_BINOP = 2;
+    private static final int FUNC_CAST = 3;
+    private static final int FUNC_RET = 10;
+    private static final int FUNC_BR = 11;
+    private static final int FUNC_UNREACHABLE = 15;
+    private static final int FUNC_PHI = 16;
+    private static final int FUNC_ALLOCA = 19;
+    private static final int FUNC_LOAD = 20;
+    private static final int FUNC_CMP2 = 28;
+    private static final int FUNC_CALL = 34;
+    private static final int FUNC_GEP = 43;
+    private static final int FUNC_STORE = 44;
+
+    /** The module version with relative value IDs (and names in the value symbol table). */
+    private static final int VERSION_RELATIVE_IDS = 1;
+    /** The opcode of {@code bitcast} in cast records. */
+    private static final int CAST_BITCAST = 11;
+    /** The flag of {@code alloca} records for an explicit allocated type. */
+    private static final int ALLOCA_EXPLICIT_TYPE = 1 << 6;
+    /** The flag of {@code call} records for an explicit function type. */
+    private static final int CALL_EXPLICIT_TYPE = 1 << 15;
+
+    private final IRSink out;
+    /** The types of the module, in the order of their IDs (each one after the types it refers to). */
+    private List<IRType> types;
+    private Map<IRType, Integer> typeIds;
+    /** The global variables & functions to be written, in the order of their IDs. */
+    private List<GlobalVariable> globals;
+    private List<Function> functions;
+    /** The constants used by the initializers of the global variables, in the order of their IDs. */
+    private List<Constant> moduleConstants;
+    /**
+     * The IDs of the global values & module constants (integer constants are found by {@link #key}).
+     * The runtime functions of the module share the IDs of the library functions that define them.
+     */
+    private Map<Object, Integer> moduleIds;
+
+    public BitcodeWriter(IRSink output)
+    {
+        this.out = output;
+    }
+
+    /**
+     * Writes the whole module.
+     */
+    public void write(IRModule module) throws IOException
+    {
+        write(module, null);
+    }
+
+    /**
+     * Writes the whole module, encoding the function bodies concurrently on the given pool
+     * ({@code null} to encode them sequentially). Each body is encoded to its own stream, and the streams
+     * are appended in the order of the functions, so the output is the same as the one of {@link #write(IRModule)}.
+     */
+    public void write(IRModule module, ForkJoinPool pool) throws IOException
+    {
+        enumerateGlobals(module);
+        enumerateTypes();
+
+        BitstreamWriter stream = new BitstreamWriter();
+        // The magic number: 'BC' 0xC0DE
+        stream.emit('B', 8);
+        stream.emit('C', 8);
+        stream.emit(0x0, 4);
+        stream.emit(0xC, 4);
+        stream.emit(0xE, 4);
+        stream.emit(0xD, 4);
+
+        stream.enterBlock(IDENTIFICATION_BLOCK, 5);
+        stream.startRecord();
+        stream.add("MiniJavaLLVMCompiler");
+        stream.endRecord(IDENTIFICATION_STRING);
+        stream.emitRecord(IDENTIFICATION_EPOCH, 0);
+        stream.exitBlock();
+
+        stream.enterBlock(MODULE_BLOCK, 3);
+        stream.emitRecord(MODULE_VERSION, VERSION_RELATIVE_IDS);
+        writeTypes(stream);
+        for (GlobalVariable global: globals)
+        {
+            // [value type, explicit type | constant, initializer ID + 1, linkage, alignment, section]
+            stream.emitRecord(MODULE_GLOBALVAR, typeIds.get(global.valueType), 2 | (global.isConstant ? 1 : 0),
+                              moduleIds.get(key(global.getInitializer())) + 1, 0, 0, 0);
+        }
+        for (Function function: functions)
+        {
+            // [function type, calling convention, is declaration, linkage, attributes, alignment, section, visibility]
+            stream.emitRecord(MODULE_FUNCTION, typeIds.get(function.functionType), 0,
+                              function.isDeclaration() ? 1 : 0, 0, 0, 0, 0, 0);
+        }
+        if (!moduleConstants.isEmpty())
+        {
+            writeConstants(stream, moduleConstants, null);
+        }
+        writeSymbolTable(stream);
+
+        // The bodies, in the order of the function records
+        List<Function> definitions = new ArrayList<Function>();
+        for (Function function: functions)
+        {
+            if (!function.isDeclaration())
+            {
+                definitions.add(function);
+            }
+        }
+        if (pool == null)
+        {
+            for (Function function: definitions)
+            {
+                stream.append(writeFunction(function));
+            }
+        }
+        else
+        {
+            List<Future<BitstreamWriter>> written = new ArrayList<Future<BitstreamWriter>>();
+            for (final Function function: definitions)
+            {
+                written.add(pool.submit(new Callable<BitstreamWriter>() {
+                    public BitstreamWriter call() {
+                        return writeFunction(function);
+                    }
+                }));
+            }
+            for (int i = 0; i < written.size(); i++)
+            {
+                try {
+                    stream.append(written.get(i).get());
+                }
+                catch (InterruptedException ex) {
+                    throw new InterruptedIOException();
+                }
+                catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof RuntimeException)
+                    {
+                        throw (RuntimeException) ex.getCause();
+                    }
+                    throw new IllegalStateException(ex.getCause());
+                }
+                // Drop the stream as soon as it has been appended
+                written.set(i, null);
+            }
+        }
+        stream.exitBlock();
+
+        out.write(stream.getBytes(), 0, stream.getLength());
+    }
+
+    /**
+     * Finds the global values to be written: the global variables and functions of the module,
+     * the runtime functions it calls (as defined by the runtime library, if any), and the global values
+     * the library functions refer to. Then numbers them, followed by the constants of the global initializers.
+     */
+    private void enumerateGlobals(IRModule module)
+    {
+        IRModule runtime = (module.getRuntime() == null) ? null : module.getRuntime().getModule();
+        Map<GlobalValue, GlobalValue> definitions = new HashMap<GlobalValue, GlobalValue>();
+        Set<GlobalValue> written = new LinkedHashSet<GlobalValue>();
+        written.addAll(module.getGlobals());
+        for (Function function: module.getFunctions())
+        {
+            Function definition = function;
+            if (function.isRuntime())
+            {
+                // Only written if called, like in the IR text
+                if (!function.hasUsers())
+                {
+                    continue;
+                }
+                if (runtime != null && runtime.getFunction(function.getName()) != null)
+                {
+                    definition = runtime.getFunction(function.getName());
+                    definitions.put(function, definition);
+                }
+            }
+            written.add(definition);
+        }
+
+        // Add whatever the library functions refer to (e.g. the declarations they call); the values of the module
+        // only refer to values of the module, which have all been added (or substituted)
+        Deque<GlobalValue> pending = new ArrayDeque<GlobalValue>(definitions.values());
+        while (!pending.isEmpty())
+        {
+            GlobalValue value = pending.removeFirst();
+            List<Value> referenced = new ArrayList<Value>();
+            if (value instanceof GlobalVariable)
+            {
+                referenced.add(((GlobalVariable) value).getInitializer());
+            }
+            else
+            {
+                for (BasicBlock block: ((Function) value).getBlocks())
+                {
+                    for (Instruction inst: block.getInstructions())
+                    {
+                        for (int i = 0; i < inst.getNumOperands(); i++)
+                        {
+                            referenced.add(inst.getOperand(i));
+                        }
+                    }
+                }
+            }
+            while (!referenced.isEmpty())
+            {
+                Value operand = referenced.remove(referenced.size() - 1);
+                if (operand instanceof GlobalValue)
+                {
+                    GlobalValue global = definitions.containsKey(operand) ? definitions.get(operand) : (GlobalValue) operand;
+                    if (written.add(global))
+                    {
+                        pending.addLast(global);
+                    }
+                }
+                else if (operand instanceof Constant)
+                {
+                    for (int i = 0; i < ((Constant) operand).getNumOperands(); i++)
+                    {
+                        referenced.add(((Constant) operand).getOperand(i));
+                    }
+                }
+            }
+        }
+
+        // Global variables first, then functions, then the constants of the initializers
+        globals = new ArrayList<GlobalVariable>();
+        functions = new ArrayList<Function>();
+        for (GlobalValue value: written)
+        {
+            if (value instanceof GlobalVariable)
+            {
+                globals.add((GlobalVariable) value);
+            }
+            else
+            {
+                functions.add((Function) value);
+            }
+        }
+        moduleIds = new HashMap<Object, Integer>();
+        for (GlobalVariable global: globals)
+        {
+            moduleIds.put(global, moduleIds.size());
+        }
+        for (Function function: functions)
+        {
+            moduleIds.put(function, moduleIds.size());
+        }
+        for (Map.Entry<GlobalValue, GlobalValue> entry: definitions.entrySet())
+        {
+            moduleIds.put(entry.getKey(), moduleIds.get(entry.getValue()));
+        }
+        moduleConstants = new ArrayList<Constant>();
+        for (GlobalVariable global: globals)
+        {
+            enumerateConstant(global.getInitializer(), moduleConstants, moduleIds, globals.size() + functions.size());
+        }
+    }
+
+    /**
+     * Numbers the given constant (unless it already has an ID), after the constants it refers to,
+     * and adds it to the given list. The IDs are assigned after {@code firstId} (the first ID of the list).
+     */
+    private static void enumerateConstant(Value value, List<Constant> constants, Map<Object, Integer> ids, int firstId)
+    {
+        if (!(value instanceof Constant) || ids.containsKey(key(value)))
+        {
+            return;
+        }
+        Constant constant = (Constant) value;
+        for (int i = 0; i < constant.getNumOperands(); i++)
+        {
+            enumerateConstant(constant.getOperand(i), constants, ids, firstId);
+        }
+        ids.put(key(constant), firstId + constants.size());
+        constants.add(constant);
+    }
+
+    /**
+     * Returns the key under which the given value is numbered: equal integer constants
+     * share the same ID, even if they are different objects.
+     */
+    private static Object key(Value value)
+    {
+        if (value instanceof ConstantInt)
+        {
+            return new IntKey(value.type, ((ConstantInt) value).value);
+        }
+        return value;
+    }
+
+    /** The key of an integer constant. */
+    private static final class IntKey {
+        private final IRType type;
+        private final long value;
+
+        IntKey(IRType type, long value)
+        {
+            this.type = type;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return (other instanceof IntKey) && ((IntKey) other).type == this.type && ((IntKey) other).value == this.value;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * this.type.hashCode() + Long.hashCode(this.value);
+        }
+    }
+
+    /**
+     * Numbers all the types referred to by the records to be written.
+     */
+    private void enumerateTypes()
+    {
+        types = new ArrayList<IRType>();
+        typeIds = new HashMap<IRType, Integer>();
+        for (GlobalVariable global: globals)
+        {
+            enumerateType(global.valueType);
+        }
+        for (Function function: functions)
+        {
+            enumerateType(function.functionType);
+        }
+        for (Constant constant: moduleConstants)
+        {
+            enumerateConstantTypes(constant);
+        }
+        for (Function function: functions)
+        {
+            for (BasicBlock block: function.getBlocks())
+            {
+                for (Instruction inst: block.getInstructions())
+                {
+                    enumerateType(inst.type);
+                    for (int i = 0; i < inst.getNumOperands(); i++)
+                    {
+                        // The types of the other instructions & the arguments have already been numbered
+                        Value operand = inst.getOperand(i);
+                        if (!(operand instanceof Instruction) && !(operand instanceof Argument))
+                        {
+                            enumerateConstantTypes(operand);
+                        }
+                    }
+                    if (inst instanceof AllocaInst)
+                    {
+                        enumerateType(((AllocaInst) inst).allocatedType);
+                        enumerateType(IRType.I32);
+                    }
+                    else if (inst instanceof GetElementPtrInst)
+                    {
+                        enumerateType(((GetElementPtrInst) inst).sourceType);
+                    }
+                    else if (inst instanceof CallInst)
+                    {
+                        enumerateType(((CallInst) inst).functionType);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Numbers the type of the given value (unless it is a block), and the types of its constant operands. */
+    private void enumerateConstantTypes(Value value)
+    {
+        if (value.type != IRType.LABEL)
+        {
+            enumerateType(value.type);
+        }
+        if (value instanceof Constant)
+        {
+            for (int i = 0; i < ((Constant) value).getNumOperands(); i++)
+            {
+                enumerateConstantTypes(((Constant) value).getOperand(i));
+            }
+        }
+    }
+
+    /** Numbers the given type (unless it already has an ID), after the types it refers to. */
+    private void enumerateType(IRType type)
+    {
+        if (typeIds.containsKey(type))
+        {
+            return;
+        }
+        if (type.kind == IRType.Kind.FUNCTION)
+        {
+            enumerateType(type.getReturnType());
+            for (int i = 0; i < type.getNumParams(); i++)
+            {
+                enumerateType(type.getParamType(i));
+            }
+        }
+        else if (type.element != null)
+        {
+            enumerateType(type.element);
+        }
+        typeIds.put(type, types.size());
+        types.add(type);
+    }
+
+    private void writeTypes(BitstreamWriter stream)
+    {
+        stream.enterBlock(TYPE_BLOCK, 4);
+        stream.emitRecord(TYPE_NUMENTRY, types.size());
+        for (IRType type: types)
+        {
+            switch (type.kind)
+            {
+                case VOID:
+                    stream.emitRecord(TYPE_VOID);
+                    break;
+                case LABEL:
+                    stream.emitRecord(TYPE_LABEL);
+                    break;
+                case INTEGER:
+                    stream.emitRecord(TYPE_INTEGER, type.bits);
+                    break;
+                case POINTER:
+                    // [pointee type, address space]
+                    stream.emitRecord(TYPE_POINTER, typeIds.get(type.element), 0);
+                    break;
+                case ARRAY:
+                    stream.emitRecord(TYPE_ARRAY, type.length, typeIds.get(type.element));
+                    break;
+                case FUNCTION:
+                    // [is variadic, return type, parameter types...]
+                    stream.startRecord();
+                    stream.add(type.isVarArg ? 1 : 0);
+                    stream.add(typeIds.get(type.getReturnType()));
+                    for (int i = 0; i < type.getNumParams(); i++)
+                    {
+                        stream.add(typeIds.get(type.getParamType(i)));
+                    }
+                    stream.endRecord(TYPE_FUNCTION);
+                    break;
+            }
+        }
+        stream.exitBlock();
+    }
+
+    /**
+     * Writes a constants block with the given constants, which refer to each other (and to global values)
+     * by their absolute IDs, found in the given function-level IDs (if any) or in the module IDs.
+     */
+    private void writeConstants(BitstreamWriter stream, List<Constant> constants, Map<Object, Integer> localIds)
+    {
+        stream.enterBlock(CONSTANTS_BLOCK, 4);
+        IRType currentType = null;
+        for (Constant constant: constants)
+        {
+            if (constant.type != currentType)
+            {
+                stream.emitRecord(CST_SETTYPE, typeIds.get(constant.type));
+                currentType = constant.type;
+            }
+            if (constant instanceof ConstantInt)
+            {
+                long value = ((ConstantInt) constant).value;
+                if (value == 0)
+                {
+                    stream.emitRecord(CST_NULL);
+                }
+                else
+                {
+                    stream.emitRecord(CST_INTEGER, signed(value));
+                }
+            }
+            else if (constant instanceof ConstantNull)
+            {
+                stream.emitRecord(CST_NULL);
+            }
+            else if (constant instanceof ConstantCast)
+            {
+                Value operand = ((ConstantCast) constant).getValue();
+                stream.emitRecord(CST_CE_CAST, CAST_BITCAST, typeIds.get(operand.type), absoluteId(operand, localIds));
+            }
+            else if (constant instanceof ConstantArray)
+            {
+                if (constant.getNumOperands() == 0)
+                {
+                    // An empty array is a null value (and aggregate records cannot be empty)
+                    stream.emitRecord(CST_NULL);
+                    continue;
+                }
+                stream.startRecord();
+                for (int i = 0; i < constant.getNumOperands(); i++)
+                {
+                    stream.add(absoluteId(constant.getOperand(i), localIds));
+                }
+                stream.endRecord(CST_AGGREGATE);
+            }
+            else if (constant instanceof ConstantString)
+            {
+                ConstantString string = (ConstantString) constant;
+                if (string.value.replace("\0", "").isEmpty())
+                {
+                    stream.emitRecord(CST_NULL);
+                }
+                else if (string.isCString())
+                {
+                    // The terminating '\0' is implied
+                    stream.startRecord();
+                    stream.add(string.value.substring(0, string.value.length() - 1));
+                    stream.endRecord(CST_CSTRING);
+                }
+                else
+                {
+                    stream.startRecord();
+                    stream.add(string.value);
+                    stream.endRecord(CST_STRING);
+                }
+            }
+            else
+            {
+                throw new IllegalArgumentException("Unsupported constant of type " + constant.type);
+            }
+        }
+        stream.exitBlock();
+    }
+
+    /** Writes the names of the global values. */
+    private void writeSymbolTable(BitstreamWriter stream)
+    {
+        stream.enterBlock(VALUE_SYMTAB_BLOCK, 4);
+        List<GlobalValue> named = new ArrayList<GlobalValue>(globals);
+        named.addAll(functions);
+        for (GlobalValue value: named)
+        {
+            // [value ID, name characters...]
+            stream.startRecord();
+            stream.add(moduleIds.get(value));
+            stream.add(value.getName());
+            stream.endRecord(VST_ENTRY);
+        }
+        stream.exitBlock();
+    }
+
+    /**
+     * Returns the absolute ID of the given value: a function-level value (found in the given IDs, if any),
+     * or a global value/module constant.
+     */
+    private int absoluteId(Value value, Map<Object, Integer> localIds)
+    {
+        // Most references are to values of the function
+        Object key = key(value);
+        Integer id = (localIds == null) ? null : localIds.get(key);
+        if (id == null)
+        {
+            id = moduleIds.get(key);
+        }
+        if (id == null)
+        {
+            throw new IllegalStateException("Reference to a value outside of the written function");
+        }
+        return id;
+    }
+
+    /**
+     * Writes the block of the given function definition to a separate stream, which can be appended
+     * to the module block. Only reads the state of the writer, so different functions can be written concurrently.
+     */
+    private BitstreamWriter writeFunction(Function function)
+    {
+        // The values of the function are numbered after the module values:
+        // first the arguments, then the constants, then the instruction results
+        int numInstructions = 0;
+        for (BasicBlock block: function.getBlocks())
+        {
+            numInstructions += block.getInstructions().size();
+        }
+        Map<Object, Integer> localIds = new HashMap<Object, Integer>(2 * (numInstructions + function.getArguments().size()));
+        int nextId = globals.size() + functions.size() + moduleConstants.size();
+        for (Argument arg: function.getArguments())
+        {
+            localIds.put(arg, nextId++);
+        }
+        Map<BasicBlock, Integer> blockIds = new HashMap<BasicBlock, Integer>();
+        List<Constant> constants = new ArrayList<Constant>();
+        for (BasicBlock block: function.getBlocks())
+        {
+            blockIds.put(block, blockIds.size());
+            for (Instruction inst: block.getInstructions())
+            {
+                if (inst instanceof AllocaInst)
+                {
+                    // The (implied) number of allocated elements
+                    enumerateLocalConstant(ConstantInt.getInt32(1), constants, localIds, nextId);
+                }
+                for (int i = 0; i < inst.getNumOperands(); i++)
+                {
+                    enumerateLocalConstant(inst.getOperand(i), constants, localIds, nextId);
+                }
+            }
+        }
+        // Integer constants do not refer to other constants, so they can be moved first,
+        // which groups them by type
+        List<Constant> sorted = new ArrayList<Constant>(constants.size());
+        for (IRType type: new IRType[] { IRType.I32, IRType.I1, null })
+        {
+            for (Constant constant: constants)
+            {
+                boolean isInt = constant instanceof ConstantInt;
+                if ((type == null) ? !(isInt && (constant.type == IRType.I32 || constant.type == IRType.I1))
+                                   : (isInt && constant.type == type))
+                {
+                    localIds.put(key(constant), nextId + sorted.size());
+                    sorted.add(constant);
+                }
+            }
+        }
+        nextId += sorted.size();
+        int firstInstructionId = nextId;
+        for (BasicBlock block: function.getBlocks())
+        {
+            for (Instruction inst: block.getInstructions())
+            {
+                if (inst.type != IRType.VOID)
+                {
+                    localIds.put(inst, nextId++);
+                }
+            }
+        }
+
+        BitstreamWriter stream = new BitstreamWriter(3);
+        stream.enterBlock(FUNCTION_BLOCK, 4);
+        stream.emitRecord(FUNC_DECLAREBLOCKS, function.getBlocks().size());
+        if (!sorted.isEmpty())
+        {
+            writeConstants(stream, sorted, localIds);
+        }
+        InstructionWriter writer = new InstructionWriter(stream, localIds, blockIds, firstInstructionId);
+        for (BasicBlock block: function.getBlocks())
+        {
+            for (Instruction inst: block.getInstructions())
+            {
+                writer.write(inst);
+            }
+        }
+        stream.exitBlock();
+        return stream;
+    }
+
+    /**
+     * Adds the given value to the constants of a function, unless it is not a constant,
+     * or it already has an ID (e.g. it is a module constant).
+     */
+    private void enumerateLocalConstant(Value value, List<Constant> constants, Map<Object, Integer> localIds, int firstId)
+    {
+        if (!(value instanceof Constant) || moduleIds.containsKey(key(value)))
+        {
+            return;
+        }
+        enumerateConstant(value, constants, localIds, firstId);
+    }
+
+    /** Writes the instruction records of a function, keeping track of the ID of the next instruction result. */
+    private class InstructionWriter {
+        private final BitstreamWriter stream;
+        private final Map<Object, Integer> localIds;
+        private final Map<BasicBlock, Integer> blockIds;
+        /** The ID that the next instruction result will get, which the operand IDs are relative to. */
+        private int instructionId;
+
+        InstructionWriter(BitstreamWriter stream, Map<Object, Integer> localIds, Map<BasicBlock, Integer> blockIds, int firstId)
+        {
+            this.stream = stream;
+            this.localIds = localIds;
+            this.blockIds = blockIds;
+            this.instructionId = firstId;
+        }
+
+        void write(Instruction inst)
+        {
+            stream.startRecord();
+            int code;
+            switch (inst.opcode)
+            {
+                case ALLOCA:
+                    // [allocated type, size type, size (absolute ID), alignment & flags]
+                    stream.add(typeIds.get(((AllocaInst) inst).allocatedType));
+                    stream.add(typeIds.get(IRType.I32));
+                    stream.add(absoluteId(ConstantInt.getInt32(1), localIds));
+                    stream.add(ALLOCA_EXPLICIT_TYPE);
+                    code = FUNC_ALLOCA;
+                    break;
+                case LOAD:
+                    // [pointer, loaded type, alignment, volatile]
+                    addValueAndType(inst.getOperand(0));
+                    stream.add(typeIds.get(inst.type));
+                    stream.add(0);
+                    stream.add(0);
+                    code = FUNC_LOAD;
+                    break;
+                case STORE:
+                    // [pointer, value, alignment, volatile]
+                    addValueAndType(((StoreInst) inst).getPointer());
+                    addValueAndType(((StoreInst) inst).getValue());
+                    stream.add(0);
+                    stream.add(0);
+                    code = FUNC_STORE;
+                    break;
+                case GETELEMENTPTR:
+                    // [flags (not inbounds), source type, pointer, indices...]
+                    stream.add(0);
+                    stream.add(typeIds.get(((GetElementPtrInst) inst).sourceType));
+                    for (int i = 0; i < inst.getNumOperands(); i++)
+                    {
+                        addValueAndType(inst.getOperand(i));
+                    }
+                    code = FUNC_GEP;
+                    break;
+                case BITCAST:
+                    // [value, destination type, cast opcode]
+                    addValueAndType(inst.getOperand(0));
+                    stream.add(typeIds.get(inst.type));
+                    stream.add(CAST_BITCAST);
+                    code = FUNC_CAST;
+                    break;
+                case ADD:
+                case SUB:
+                case MUL:
+                    // [lhs, rhs, binary opcode]
+                    addValueAndType(inst.getOperand(0));
+                    addValue(inst.getOperand(1));
+                    stream.add(inst.opcode == Instruction.Opcode.ADD ? 0 : (inst.opcode == Instruction.Opcode.SUB ? 1 : 2));
+                    code = FUNC_BINOP;
+                    break;
+                case ICMP:
+                    // [lhs, rhs, predicate]
+                    addValueAndType(inst.getOperand(0));
+                    addValue(inst.getOperand(1));
+                    stream.add(predicateCode(((ICmpInst) inst).predicate));
+                    code = FUNC_CMP2;
+                    break;
+                case CALL:
+                    // [attributes, calling convention & flags, function type, callee, arguments...]
+                    CallInst call = (CallInst) inst;
+                    stream.add(0);
+                    stream.add(CALL_EXPLICIT_TYPE);
+                    stream.add(typeIds.get(call.functionType));
+                    addValueAndType(call.getCallee());
+                    for (int i = 0; i < call.getNumArgs(); i++)
+                    {
+                        // The types of the variadic arguments are not known from the function type
+                        if (i < call.functionType.getNumParams())
+                        {
+                            addValue(call.getArg(i));
+                        }
+                        else
+                        {
+                            addValueAndType(call.getArg(i));
+                        }
+                    }
+                    code = FUNC_CALL;
+                    break;
+                case PHI:
+                    // [type, (value (signed relative ID), block)...]
+                    PhiInst phi = (PhiInst) inst;
+                    stream.add(typeIds.get(phi.type));
+                    for (int i = 0; i < phi.getNumIncoming(); i++)
+                    {
+                        stream.add(signed(instructionId - (long) localIdOf(phi.getIncomingValue(i))));
+                        stream.add(blockIds.get(phi.getIncomingBlock(i)));
+                    }
+                    code = FUNC_PHI;
+                    break;
+                case BR:
+                    // [true destination, false destination, condition] or [destination]
+                    BranchInst branch = (BranchInst) inst;
+                    stream.add(blockIds.get(branch.getSuccessor(0)));
+                    if (branch.isConditional())
+                    {
+                        stream.add(blockIds.get(branch.getSuccessor(1)));
+                        addValue(branch.getCondition());
+                    }
+                    code = FUNC_BR;
+                    break;
+                case RET:
+                    // [value] or []
+                    if (inst.getNumOperands() > 0)
+                    {
+                        addValueAndType(inst.getOperand(0));
+                    }
+                    code = FUNC_RET;
+                    break;
+                case UNREACHABLE:
+                    // []
+                    code = FUNC_UNREACHABLE;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported instruction: " + inst.opcode.keyword);
+            }
+            stream.endRecord(code);
+            if (inst.type != IRType.VOID)
+            {
+                instructionId++;
+            }
+        }
+
+        private int localIdOf(Value value)
+        {
+            return absoluteId(value, localIds);
+        }
+
+        /** Adds the ID of the given value, relative to the current instruction (so forward references wrap around). */
+        private void addValue(Value value)
+        {
+            stream.add((instructionId - localIdOf(value)) & 0xFFFFFFFFL);
+        }
+
+        /** Adds the relative ID of the given value, followed by its type if it is a forward reference. */
+        private void addValueAndType(Value value)
+        {
+            int id = localIdOf(value);
+            stream.add((instructionId - id) & 0xFFFFFFFFL);
+            if (id >= instructionId)
+            {
+                stream.add(typeIds.get(value.type));
+            }
+        }
+    }
+
+    /** Returns the code of the given comparison predicate. */
+    private static int predicateCode(ICmpInst.Predicate predicate)
+    {
+        switch (predicate)
+        {
+            case EQ: return 32;
+            case NE: return 33;
+            case UGT: return 34;
+            case UGE: return 35;
+            case ULT: return 36;
+            case ULE: return 37;
+            case SGT: return 38;
+            case SGE: return 39;
+            case SLT: return 40;
+            default: return 41;   // SLE
+        }
+    }
+
+    /** Encodes a signed value: its magnitude shifted left, with the sign in the lowest bit. */
+    private static long signed(long value)
+    {
+        return (value >= 0) ? (value << 1) : ((-value << 1) | 1);
+    }
+}
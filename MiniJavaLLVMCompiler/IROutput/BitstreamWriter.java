@@ -0,0 +1,231 @@
+/**
+ * File: BitstreamWriter.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IROutput;
+
+import java.util.Arrays;
+
+/**
+ * Writes the LLVM bitstream container format: a sequence of fixed-width & variable-width (VBR) fields,
+ * packed into little-endian 32-bit words (least significant bit first), which form nested blocks of records.
+ *
+ * Only unabbreviated records are written, so each record is stored as its code, its number of operands,
+ * and its operands, as 6-bit VBR fields. The stream is kept in memory, since the length of each block
+ * is written (back-patched) at its beginning, once the block has been ended.
+ */
+class BitstreamWriter {
+
+    /** The abbreviation IDs that are defined by the format itself. */
+    private static final int END_BLOCK = 0;
+    private static final int ENTER_SUBBLOCK = 1;
+    private static final int UNABBREV_RECORD = 3;
+
+    /** The written bytes (always a whole number of words). */
+    private byte[] bytes;
+    private int length;
+    /** The bits of the current (partial) word, and their number. */
+    private long currentWord;
+    private int currentBits;
+    /** The width of the abbreviation IDs in the current block. */
+    private int codeWidth;
+    /** For each open block (innermost last): the offset of its length word & the code width of its parent. */
+    private int[] blockStack;
+    private int depth;
+    /** The operands of the record being built. */
+    private long[] operands;
+    private int numOperands;
+
+    /**
+     * Creates an empty stream, at the top level of a bitstream.
+     */
+    BitstreamWriter()
+    {
+        this(2);
+    }
+
+    /**
+     * Creates an empty stream that continues inside a block whose abbreviation IDs are
+     * {@code codeWidth} bits wide (e.g. to write a nested block separately, and {@link #append} it later).
+     */
+    BitstreamWriter(int codeWidth)
+    {
+        this.bytes = new byte[1024];
+        this.length = 0;
+        this.currentWord = 0;
+        this.currentBits = 0;
+        this.codeWidth = codeWidth;
+        this.blockStack = new int[16];
+        this.depth = 0;
+        this.operands = new long[16];
+        this.numOperands = 0;
+    }
+
+    /** Writes the lowest {@code width} (at most 32) bits of the given value. */
+    void emit(long value, int width)
+    {
+        currentWord |= (value & ((1L << width) - 1)) << currentBits;
+        currentBits += width;
+        if (currentBits >= 32)
+        {
+            writeWord((int) currentWord);
+            currentWord >>>= 32;
+            currentBits -= 32;
+        }
+    }
+
+    /**
+     * Writes the given (unsigned) value as a variable-width field: in chunks of {@code width - 1} bits,
+     * each one followed by a bit that is set if more chunks follow.
+     */
+    void emitVBR(long value, int width)
+    {
+        long threshold = 1L << (width - 1);
+        while (Long.compareUnsigned(value, threshold) >= 0)
+        {
+            emit((value & (threshold - 1)) | threshold, width);
+            value >>>= width - 1;
+        }
+        emit(value, width);
+    }
+
+    /** Pads the current word with zero bits, so the next field starts at a word boundary. */
+    private void alignToWord()
+    {
+        if (currentBits > 0)
+        {
+            writeWord((int) currentWord);
+            currentWord = 0;
+            currentBits = 0;
+        }
+    }
+
+    private void writeWord(int word)
+    {
+        if (length + 4 > bytes.length)
+        {
+            bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+        }
+        bytes[length++] = (byte) word;
+        bytes[length++] = (byte) (word >>> 8);
+        bytes[length++] = (byte) (word >>> 16);
+        bytes[length++] = (byte) (word >>> 24);
+    }
+
+    /**
+     * Starts a block with the given ID, whose abbreviation IDs are {@code codeWidth} bits wide.
+     */
+    void enterBlock(int blockId, int newCodeWidth)
+    {
+        emit(ENTER_SUBBLOCK, codeWidth);
+        emitVBR(blockId, 8);
+        emitVBR(newCodeWidth, 4);
+        alignToWord();
+        if (2 * depth + 2 > blockStack.length)
+        {
+            blockStack = Arrays.copyOf(blockStack, 2 * blockStack.length);
+        }
+        blockStack[2 * depth] = length;
+        blockStack[2 * depth + 1] = codeWidth;
+        depth++;
+        // The length of the block (in words) is written when it is ended
+        writeWord(0);
+        codeWidth = newCodeWidth;
+    }
+
+    /**
+     * Ends the innermost open block.
+     */
+    void exitBlock()
+    {
+        emit(END_BLOCK, codeWidth);
+        alignToWord();
+        depth--;
+        int lengthOffset = blockStack[2 * depth];
+        int words = (length - lengthOffset) / 4 - 1;
+        bytes[lengthOffset] = (byte) words;
+        bytes[lengthOffset + 1] = (byte) (words >>> 8);
+        bytes[lengthOffset + 2] = (byte) (words >>> 16);
+        bytes[lengthOffset + 3] = (byte) (words >>> 24);
+        codeWidth = blockStack[2 * depth + 1];
+    }
+
+    /** Starts building a record; its operands are added by {@link #add} and it is written by {@link #endRecord}. */
+    void startRecord()
+    {
+        numOperands = 0;
+    }
+
+    /** Adds an operand to the record being built. */
+    void add(long operand)
+    {
+        if (numOperands == operands.length)
+        {
+            operands = Arrays.copyOf(operands, 2 * operands.length);
+        }
+        operands[numOperands++] = operand;
+    }
+
+    /** Adds the characters of the given string as operands of the record being built. */
+    void add(String string)
+    {
+        for (int i = 0; i < string.length(); i++)
+        {
+            add(string.charAt(i));
+        }
+    }
+
+    /** Writes the record being built, with the given code. */
+    void endRecord(int code)
+    {
+        emit(UNABBREV_RECORD, codeWidth);
+        emitVBR(code, 6);
+        emitVBR(numOperands, 6);
+        for (int i = 0; i < numOperands; i++)
+        {
+            emitVBR(operands[i], 6);
+        }
+    }
+
+    /** Writes a record with the given code & operands. */
+    void emitRecord(int code, long... recordOperands)
+    {
+        startRecord();
+        for (long operand: recordOperands)
+        {
+            add(operand);
+        }
+        endRecord(code);
+    }
+
+    /**
+     * Appends the contents of the given stream, which must be at a word boundary
+     * (e.g. right after the end of a block), at the current position, which must also be at a word boundary.
+     */
+    void append(BitstreamWriter other)
+    {
+        if (currentBits != 0 || other.currentBits != 0)
+        {
+            throw new IllegalStateException("Bitstreams can only be appended at word boundaries");
+        }
+        if (length + other.length > bytes.length)
+        {
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + other.length));
+        }
+        System.arraycopy(other.bytes, 0, bytes, length, other.length);
+        length += other.length;
+    }
+
+    /** Returns the array that holds the written bytes (which may be longer than them). */
+    byte[] getBytes()
+    {
+        return bytes;
+    }
+
+    /** Returns the number of bytes written so far (the partial word, if any, is not included). */
+    int getLength()
+    {
+        return length;
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * File: ChannelIRSink.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IROutput;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An IRSink that encodes the written text (as UTF-8) into a large {@code ByteBuffer},
+ * which is written to the underlying channel only when it fills up, or when
+ * {@link #flush()}/{@link #close()} are called.
+ *
+ * The bytes are stored directly in the array that backs the buffer, which is much cheaper
+ * than going through {@code ByteBuffer.put} (or a {@code Writer}) for every character.
+ */
+public class ChannelIRSink implements IRSink {
+
+    /** The default buffer capacity (in bytes). */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    /** The array that backs the buffer. */
+    private final byte[] bytes;
+    /** The number of bytes currently stored in the buffer. */
+    private int position;
+    /** The number of bytes written to the channel so far. */
+    private long bytesWritten;
+
+    /**
+     * Creates a sink that writes to the specified file.
+     * The file is created if it does not exist, or truncated if it does.
+     */
+    public ChannelIRSink(String outputFileName) throws IOException
+    {
+        this(FileChannel.open(Paths.get(outputFileName), StandardOpenOption.CREATE,
+                              StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+             DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a sink that writes to the given channel, using a buffer of the given capacity.
+     * The channel will be closed when the sink is closed.
+     */
+    public ChannelIRSink(WritableByteChannel outputChannel, int capacity)
+    {
+        this.channel = outputChannel;
+        this.buffer = ByteBuffer.allocate(Math.max(capacity, 16));
+        this.bytes = buffer.array();
+        this.position = 0;
+        this.bytesWritten = 0;
+    }
+
+    @Override
+    public void write(String text) throws IOException
+    {
+        int length = text.length();
+        int i = 0;
+        while (i < length)
+        {
+            // Fast path: IR text is (almost always) plain ASCII
+            int end = Math.min(length, i + (bytes.length - position));
+            for (; i < end; i++)
+            {
+                char c = text.charAt(i);
+                if (c >= 0x80)
+                {
+                    break;
+                }
+                bytes[position++] = (byte) c;
+            }
+            if (i < length)
+            {
+                char c = text.charAt(i);
+                if (c < 0x80)
+                {
+                    // The buffer is full
+                    drain();
+                }
+                else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1)))
+                {
+                    putCodePoint(Character.toCodePoint(c, text.charAt(i + 1)));
+                    i += 2;
+                }
+                else
+                {
+                    putCodePoint(c);
+                    i++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void write(char c) throws IOException
+    {
+        if (c < 0x80 && position < bytes.length)
+        {
+            bytes[position++] = (byte) c;
+        }
+        else
+        {
+            putCodePoint(c);
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException
+    {
+        while (length > 0)
+        {
+            if (position == bytes.length)
+            {
+                drain();
+            }
+            int count = Math.min(length, bytes.length - position);
+            System.arraycopy(data, offset, bytes, position, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Stores the UTF-8 encoding of the given code point in the buffer,
+     * after draining the buffer if needed. A lone surrogate is stored as {@code '?'}.
+     */
+    private void putCodePoint(int codePoint) throws IOException
+    {
+        if (bytes.length - position < 4)
+        {
+            drain();
+        }
+        if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)
+        {
+            // A lone surrogate cannot be encoded in UTF-8, so it is replaced (like String.getBytes does)
+            bytes[position++] = '?';
+        }
+        else if (codePoint < 0x80)
+        {
+            bytes[position++] = (byte) codePoint;
+        }
+        else if (codePoint < 0x800)
+        {
+            bytes[position++] = (byte) (0xC0 | (codePoint >> 6));
+            bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        }
+        else if (codePoint < 0x10000)
+        {
+            bytes[position++] = (byte) (0xE0 | (codePoint >> 12));
+            bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        }
+        else
+        {
+            bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+            bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        }
+    }
+
+    /**
+     * Writes all buffered bytes to the channel and empties the buffer.
+     */
+    private void drain() throws IOException
+    {
+        buffer.limit(position);
+        buffer.position(0);
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        bytesWritten += position;
+        position = 0;
+    }
+
+    /**
+     * Returns the number of bytes written to the channel so far (excluding any still buffered bytes).
+     */
+    public long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (channel.isOpen())
+        {
+            try {
+                drain();
+            }
+            finally {
+                channel.close();
+            }
+        }
+    }
+}
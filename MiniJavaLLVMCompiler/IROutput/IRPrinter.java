@@ -0,0 +1,522 @@
+/**
+ * File: IRPrinter.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IROutput;
+
+import IRModel.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Serializes an IRModule to LLVM IR text, in a single pass over the module.
+ *
+ * Named values keep their names (made unique inside each function if needed),
+ * and unnamed values are numbered as {@code %_0, %_1, ...} in each function.
+ * Global variables are printed first, then the functions, then the runtime library.
+ *
+ * <p>The module can also be printed incrementally, while its function bodies are being generated
+ * (see {@link #start}), so that the consumer of the output can start working on the first functions
+ * before the last ones have been generated.
+ */
+public class IRPrinter {
+
+    private final IRSink out;
+    /** The local names of the values of the function being printed. */
+    private Map<Value, String> localNames;
+    /** The local names already given in the function being printed. */
+    private Set<String> usedNames;
+    private int nextSlot;
+    /** The number of registers (arguments & instruction results) and labels (blocks) named so far. */
+    private long numRegisters;
+    private long numLabels;
+    /** The module being printed incrementally, and its generated functions that have not been printed yet. */
+    private IRModule module;
+    private Set<Function> generated;
+    /** The index of the next function of the module to be printed incrementally. */
+    private int nextFunction;
+
+    public IRPrinter(IRSink output)
+    {
+        this.out = output;
+        this.localNames = new HashMap<Value, String>();
+        this.usedNames = new HashSet<String>();
+    }
+
+    /**
+     * Prints the whole module.
+     */
+    public void print(IRModule module) throws IOException
+    {
+        printGlobals(module);
+        for (Function function: module.getFunctions())
+        {
+            printFunction(function);
+        }
+        printRuntime(module);
+    }
+
+    /**
+     * Prints the whole module, printing the functions concurrently on the given pool.
+     * Each function is printed to its own buffer (by its own IRPrinter), and the buffers are
+     * written in the order of the functions, so the output is the same as the one of {@link #print(IRModule)}.
+     */
+    public void print(IRModule module, ForkJoinPool pool) throws IOException
+    {
+        printGlobals(module);
+        List<Future<IRPrinter>> printed = new ArrayList<Future<IRPrinter>>();
+        for (final Function function: module.getFunctions())
+        {
+            printed.add(pool.submit(new Callable<IRPrinter>() {
+                public IRPrinter call() throws IOException {
+                    IRPrinter printer = new IRPrinter(new StringIRSink());
+                    printer.printFunction(function);
+                    return printer;
+                }
+            }));
+        }
+        for (int i = 0; i < printed.size(); i++)
+        {
+            IRPrinter printer;
+            try {
+                printer = printed.get(i).get();
+            }
+            catch (InterruptedException ex) {
+                throw new InterruptedIOException();
+            }
+            catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException)
+                {
+                    throw (IOException) ex.getCause();
+                }
+                throw new IllegalStateException(ex.getCause());
+            }
+            // Drop the buffer as soon as it has been written
+            printed.set(i, null);
+            out.write(((StringIRSink) printer.out).getText());
+            numRegisters += printer.numRegisters;
+            numLabels += printer.numLabels;
+        }
+        printRuntime(module);
+    }
+
+    /**
+     * Starts printing the given module incrementally, while its function bodies are being generated:
+     * prints the global variables, which must have been generated already. Each function is then printed
+     * by {@link #functionGenerated} as soon as it and all the functions before it have been generated,
+     * and {@link #finish} prints the rest of the module. The output is the same as the one of
+     * {@link #print(IRModule)}.
+     */
+    public void start(IRModule module) throws IOException
+    {
+        this.module = module;
+        this.generated = new HashSet<Function>();
+        this.nextFunction = 0;
+        printGlobals(module);
+    }
+
+    /**
+     * Records that the body of the given function (of the module being printed incrementally)
+     * has been generated, and prints the functions that can be printed in order.
+     */
+    public void functionGenerated(Function function) throws IOException
+    {
+        this.generated.add(function);
+        List<Function> functions = this.module.getFunctions();
+        while (this.nextFunction < functions.size())
+        {
+            Function next = functions.get(this.nextFunction);
+            // Runtime functions are only declared in the module, so they are never generated
+            if (!next.isRuntime() && !this.generated.remove(next))
+            {
+                break;
+            }
+            printFunction(next);
+            this.nextFunction++;
+        }
+    }
+
+    /**
+     * Prints the rest of the module being printed incrementally (the functions not printed yet
+     * and the runtime library), once all of its function bodies have been generated.
+     */
+    public void finish() throws IOException
+    {
+        List<Function> functions = this.module.getFunctions();
+        for (; this.nextFunction < functions.size(); this.nextFunction++)
+        {
+            printFunction(functions.get(this.nextFunction));
+        }
+        printRuntime(this.module);
+        this.module = null;
+        this.generated = null;
+    }
+
+    /**
+     * Prints the global variables of the module.
+     */
+    public void printGlobals(IRModule module) throws IOException
+    {
+        for (GlobalVariable global: module.getGlobals())
+        {
+            printGlobal(global);
+        }
+    }
+
+    private void printGlobal(GlobalVariable global) throws IOException
+    {
+        out.write("@");
+        out.write(global.getName());
+        out.write(global.isConstant ? " = constant " : " = global ");
+        writeTyped(global.getInitializer());
+        out.write('\n');
+    }
+
+    /**
+     * Prints the parts of the runtime library of the module (if any) that are needed by the
+     * runtime functions that are actually called, e.g. nothing about {@code throw_oob}
+     * is printed if there are no array accesses.
+     */
+    public void printRuntime(IRModule module) throws IOException
+    {
+        out.write('\n');
+        if (module.getRuntime() == null)
+        {
+            return;
+        }
+        List<String> used = new ArrayList<String>();
+        for (Function function: module.getFunctions())
+        {
+            if (function.isRuntime() && function.hasUsers())
+            {
+                used.add(function.getName());
+            }
+        }
+        // The runtime library is not counted in the registers & labels of the module
+        long registers = numRegisters;
+        long labels = numLabels;
+        boolean declarations = false;
+        for (GlobalValue value: module.getRuntime().getNeeded(used))
+        {
+            if (value instanceof GlobalVariable)
+            {
+                // A blank line between the declarations and the global variables
+                out.write(declarations ? "\n" : "");
+                declarations = false;
+                printGlobal((GlobalVariable) value);
+            }
+            else
+            {
+                declarations = ((Function) value).isDeclaration();
+                printFunction((Function) value);
+            }
+        }
+        numRegisters = registers;
+        numLabels = labels;
+    }
+
+    /**
+     * Prints the given function: a {@code declare} line for declarations
+     * (unless the function is defined by the runtime library), or the whole definition.
+     */
+    public void printFunction(Function function) throws IOException
+    {
+        if (function.isDeclaration())
+        {
+            if (!function.isRuntime())
+            {
+                out.write("declare " + function.functionType.getReturnType() + " @" + function.getName() + "(");
+                for (int i = 0; i < function.functionType.getNumParams(); i++)
+                {
+                    out.write(i > 0 ? ", " : "");
+                    out.write(function.functionType.getParamType(i).toString());
+                }
+                if (function.functionType.isVarArg)
+                {
+                    out.write(function.functionType.getNumParams() > 0 ? ", ..." : "...");
+                }
+                out.write(")\n");
+            }
+            return;
+        }
+
+        nameLocals(function);
+        out.write("\ndefine " + function.getReturnType() + " @" + function.getName() + "(");
+        List<Argument> args = function.getArguments();
+        for (int i = 0; i < args.size(); i++)
+        {
+            out.write(i > 0 ? ", " : "");
+            writeTyped(args.get(i));
+        }
+        out.write(") {\n");
+
+        boolean entry = true;
+        for (BasicBlock block: function.getBlocks())
+        {
+            // The entry block cannot be branched to, so it only needs a label if a phi refers to it
+            if (!entry || block.hasUsers())
+            {
+                out.write(entry ? "" : "\n");
+                out.write(localNames.get(block));
+                out.write(":\n");
+            }
+            entry = false;
+            for (Instruction inst: block.getInstructions())
+            {
+                out.write('\t');
+                writeInstruction(inst);
+                out.write('\n');
+            }
+        }
+        out.write("}\n");
+    }
+
+    /**
+     * Gives a unique local name to each argument, block and instruction result of the function.
+     */
+    private void nameLocals(Function function)
+    {
+        // Fresh tables for each function, since clearing tables that were
+        // grown by a large function would cost as much for every smaller one.
+        localNames = new HashMap<Value, String>();
+        usedNames = new HashSet<String>();
+        nextSlot = 0;
+        for (Argument arg: function.getArguments())
+        {
+            nameLocal(arg);
+            numRegisters++;
+        }
+        for (BasicBlock block: function.getBlocks())
+        {
+            nameLocal(block);
+            numLabels++;
+            for (Instruction inst: block.getInstructions())
+            {
+                if (inst.type != IRType.VOID)
+                {
+                    nameLocal(inst);
+                    numRegisters++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of registers (function arguments & instruction results) printed so far.
+     */
+    public long getNumRegisters()
+    {
+        return numRegisters;
+    }
+
+    /**
+     * Returns the number of labels (basic blocks) printed so far.
+     */
+    public long getNumLabels()
+    {
+        return numLabels;
+    }
+
+    private void nameLocal(Value value)
+    {
+        String name = value.getName();
+        if (name == null)
+        {
+            name = "_" + nextSlot++;
+        }
+        if (!usedNames.add(name))
+        {
+            // Another value has the same name, so add a suffix
+            int suffix = 1;
+            while (!usedNames.add(name + "." + suffix))
+            {
+                suffix++;
+            }
+            name = name + "." + suffix;
+        }
+        localNames.put(value, name);
+    }
+
+    private void writeInstruction(Instruction inst) throws IOException
+    {
+        if (inst.type != IRType.VOID)
+        {
+            out.write('%');
+            out.write(localNames.get(inst));
+            out.write(" = ");
+        }
+        out.write(inst.opcode.keyword);
+        if (inst.opcode == Instruction.Opcode.UNREACHABLE)
+        {
+            // No operands
+            return;
+        }
+        out.write(' ');
+        switch (inst.opcode)
+        {
+            case ALLOCA:
+                out.write(((AllocaInst) inst).allocatedType.toString());
+                break;
+            case LOAD:
+                out.write(inst.type.toString());
+                out.write(", ");
+                writeTyped(inst.getOperand(0));
+                break;
+            case GETELEMENTPTR:
+                out.write(((GetElementPtrInst) inst).sourceType.toString());
+                out.write(", ");
+                writeOperands(inst, 0);
+                break;
+            case BITCAST:
+                writeTyped(inst.getOperand(0));
+                out.write(" to ");
+                out.write(inst.type.toString());
+                break;
+            case ADD:
+            case SUB:
+            case MUL:
+                writeTyped(inst.getOperand(0));
+                out.write(", ");
+                writeRef(inst.getOperand(1));
+                break;
+            case ICMP:
+                out.write(((ICmpInst) inst).predicate.keyword);
+                out.write(' ');
+                writeTyped(inst.getOperand(0));
+                out.write(", ");
+                writeRef(inst.getOperand(1));
+                break;
+            case CALL:
+                CallInst call = (CallInst) inst;
+                // Variadic callees need the whole function type
+                out.write(call.functionType.isVarArg ? call.functionType.toString() : call.type.toString());
+                out.write(' ');
+                writeRef(call.getCallee());
+                out.write('(');
+                writeOperands(call, 1);
+                out.write(')');
+                break;
+            case PHI:
+                PhiInst phi = (PhiInst) inst;
+                out.write(phi.type.toString());
+                for (int i = 0; i < phi.getNumIncoming(); i++)
+                {
+                    out.write(i > 0 ? ", [" : " [");
+                    writeRef(phi.getIncomingValue(i));
+                    out.write(", ");
+                    writeRef(phi.getIncomingBlock(i));
+                    out.write(']');
+                }
+                break;
+            case RET:
+                if (inst.getNumOperands() == 0)
+                {
+                    out.write("void");
+                    break;
+                }
+                writeOperands(inst, 0);
+                break;
+            default:
+                // store, br
+                writeOperands(inst, 0);
+                break;
+        }
+    }
+
+    /** Writes the operands of the given user, starting from the given one, separated by commas. */
+    private void writeOperands(User user, int first) throws IOException
+    {
+        for (int i = first; i < user.getNumOperands(); i++)
+        {
+            out.write(i > first ? ", " : "");
+            writeTyped(user.getOperand(i));
+        }
+    }
+
+    /** Writes {@code <type> <value>}. */
+    private void writeTyped(Value value) throws IOException
+    {
+        out.write(value.type.toString());
+        out.write(' ');
+        writeRef(value);
+    }
+
+    /** Writes the given value as an operand (without its type). */
+    private void writeRef(Value value) throws IOException
+    {
+        if (value instanceof ConstantInt)
+        {
+            out.write(Long.toString(((ConstantInt) value).value));
+        }
+        else if (value instanceof GlobalValue)
+        {
+            out.write('@');
+            out.write(value.getName());
+        }
+        else if (value instanceof ConstantNull)
+        {
+            out.write("null");
+        }
+        else if (value instanceof ConstantCast)
+        {
+            out.write("bitcast (");
+            writeTyped(((ConstantCast) value).getValue());
+            out.write(" to ");
+            out.write(value.type.toString());
+            out.write(')');
+        }
+        else if (value instanceof ConstantArray)
+        {
+            out.write('[');
+            writeOperands((ConstantArray) value, 0);
+            out.write(']');
+        }
+        else if (value instanceof ConstantString)
+        {
+            writeString(((ConstantString) value).value);
+        }
+        else
+        {
+            String name = localNames.get(value);
+            if (name == null)
+            {
+                throw new IllegalStateException("Reference to a value outside of the printed function");
+            }
+            out.write('%');
+            out.write(name);
+        }
+    }
+
+    /** Writes the given string as {@code c"..."}, escaping the characters that are not printable. */
+    private void writeString(String string) throws IOException
+    {
+        out.write("c\"");
+        for (int i = 0; i < string.length(); i++)
+        {
+            char c = string.charAt(i);
+            if (c >= ' ' && c <= '~' && c != '"' && c != '\\')
+            {
+                out.write(c);
+            }
+            else
+            {
+                out.write('\\');
+                out.write(Character.toUpperCase(Character.forDigit((c >> 4) & 0xF, 16)));
+                out.write(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+        out.write('"');
+    }
+}
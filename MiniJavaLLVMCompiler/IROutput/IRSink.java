@@ -0,0 +1,45 @@
+/**
+ * File: IRSink.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IROutput;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * The destination of the generated LLVM IR text.
+ * The {@link IRPrinter} writes the generated IR module to the output through an IRSink
+ * (as does the {@link BitcodeWriter}, which writes it as bitcode instead).
+ */
+public interface IRSink extends Closeable, Flushable {
+
+    /**
+     * Writes the given text to the output.
+     */
+    void write(String text) throws IOException;
+
+    /**
+     * Writes the given character to the output.
+     */
+    void write(char c) throws IOException;
+
+    /**
+     * Writes the given bytes to the output as they are (e.g. LLVM bitcode, instead of IR text).
+     */
+    void write(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Makes sure all the text written so far has reached the output.
+     */
+    @Override
+    void flush() throws IOException;
+
+    /**
+     * Flushes and closes the output. No more text can be written after this.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,47 @@
+/**
+ * File: NullIRSink.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IROutput;
+
+/**
+ * An IRSink that discards the written text, only counting its characters.
+ * Useful for measuring IR generation without any output cost.
+ */
+public class NullIRSink implements IRSink {
+
+    private long charsWritten = 0;
+
+    @Override
+    public void write(String text)
+    {
+        charsWritten += text.length();
+    }
+
+    @Override
+    public void write(char c)
+    {
+        charsWritten++;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length)
+    {
+        charsWritten += length;
+    }
+
+    /**
+     * Returns the number of characters (or bytes) written so far.
+     */
+    public long getCharsWritten()
+    {
+        return charsWritten;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+}
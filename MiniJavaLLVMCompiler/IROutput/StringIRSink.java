@@ -0,0 +1,50 @@
+/**
+ * File: StringIRSink.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IROutput;
+
+/**
+ * An IRSink that keeps the written text in memory (in a {@code StringBuilder}),
+ * e.g. to print parts of the output concurrently and write them in order later.
+ */
+public class StringIRSink implements IRSink {
+
+    private final StringBuilder text = new StringBuilder();
+
+    @Override
+    public void write(String text)
+    {
+        this.text.append(text);
+    }
+
+    @Override
+    public void write(char c)
+    {
+        this.text.append(c);
+    }
+
+    /**
+     * Not supported, since the sink only holds text.
+     */
+    @Override
+    public void write(byte[] data, int offset, int length)
+    {
+        throw new UnsupportedOperationException("A StringIRSink can only hold IR text");
+    }
+
+    /**
+     * Returns all the text written so far.
+     */
+    public String getText()
+    {
+        return this.text.toString();
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+}
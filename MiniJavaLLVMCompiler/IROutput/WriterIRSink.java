@@ -0,0 +1,56 @@
+/**
+ * File: WriterIRSink.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IROutput;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An IRSink that forwards the written text to a {@code java.io.Writer}.
+ * No buffering is done by the sink itself.
+ */
+public class WriterIRSink implements IRSink {
+
+    private final Writer writer;
+
+    public WriterIRSink(Writer outputWriter)
+    {
+        this.writer = outputWriter;
+    }
+
+    @Override
+    public void write(String text) throws IOException
+    {
+        writer.write(text);
+    }
+
+    @Override
+    public void write(char c) throws IOException
+    {
+        writer.write(c);
+    }
+
+    /**
+     * Not supported, since a {@code Writer} only writes text.
+     */
+    @Override
+    public void write(byte[] data, int offset, int length)
+    {
+        throw new UnsupportedOperationException("A WriterIRSink can only write IR text");
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        writer.close();
+    }
+}
@@ -0,0 +1,877 @@
+/**
+ * File: BoundsCheckElimination.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRPasses;
+
+import IRModel.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes the array bounds checks (the branches to {@code throw_oob} blocks) that always pass.
+ * Each array access is checked against negative indices ({@code icmp slt %index, 0}) and then against
+ * the length of the array ({@code icmp ule %length, %index}).
+ *
+ * <p>A check is removed if its index can be proven to be in range, from the conditions of the branches that
+ * dominate it (e.g. the condition of a loop, or an earlier check of the same index), the lengths of the arrays
+ * allocated in the function, and the induction variables of loops: a phi is non-negative if all of its incoming
+ * values are, where {@code %i + 1} is non-negative if {@code %i} is and something is known to be greater than it
+ * (so it does not overflow). So the checks of {@code a[i]} in {@code while (i < a.length) { ... i = i + 1; }} are
+ * removed, if {@code i} starts at a non-negative value. Arrays are identified by their SSA values, so this works for
+ * arrays in local variables & parameters (each read of a field is a separate load).
+ *
+ * <p>If a check against the length cannot be proven, but its index is known to be less than a value {@code %n}
+ * that does not change in the loop (e.g. {@code while (i < n)}), and the array does not change in the loop either,
+ * the loop is versioned: it is copied, the copy does not check the index against the length, and it is only
+ * entered if {@code %n <= a.length} (checked once, before the loop). Otherwise the original loop runs.
+ * This is only done for loops with a single entry & exit (as generated for {@code while} statements).
+ */
+public class BoundsCheckElimination {
+
+    /** The maximum depth of the (recursive) proofs, which keeps them cheap. */
+    private static final int MAX_DEPTH = 6;
+    /** The maximum number of loops versioned in a function, and the maximum size of a versioned loop. */
+    private static final int MAX_VERSIONED_LOOPS = 16;
+    private static final int MAX_VERSIONED_INSTRUCTIONS = 1000;
+
+    /** The known relation of two values: {@code lhs < rhs} or {@code lhs <= rhs}, as signed or unsigned integers. */
+    private enum Relation { LT, LE, ULT, ULE }
+
+    private static class Fact {
+        final Relation relation;
+        final Value lhs;
+        final Value rhs;
+
+        Fact(Relation relation, Value lhs, Value rhs)
+        {
+            this.relation = relation;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+    }
+
+    /**
+     * A bounds check: a conditional branch to a {@code throw_oob} block (its first successor),
+     * taken if the index is negative, or if it is not less than the length of the array (as unsigned integers).
+     */
+    private static class BoundsCheck {
+        final BranchInst branch;
+        final Value index;
+        /** The checked array, or {@code null} if the index is only checked against negative values. */
+        final Value array;
+
+        BoundsCheck(BranchInst branch, Value index, Value array)
+        {
+            this.branch = branch;
+            this.index = index;
+            this.array = array;
+        }
+    }
+
+    /** A natural loop with a single entry (from its preheader to its header) and a single exit (from its header). */
+    private static class Loop {
+        final BasicBlock header;
+        final BasicBlock preheader;
+        final BasicBlock exit;
+        /** The blocks of the loop, in layout order (the header is first). */
+        final List<BasicBlock> blocks;
+        final Set<BasicBlock> blockSet;
+
+        Loop(BasicBlock header, BasicBlock preheader, BasicBlock exit, List<BasicBlock> blocks, Set<BasicBlock> blockSet)
+        {
+            this.header = header;
+            this.preheader = preheader;
+            this.exit = exit;
+            this.blocks = blocks;
+            this.blockSet = blockSet;
+        }
+
+        /** Returns {@code true} if the given value is defined outside of the loop. */
+        boolean isInvariant(Value value)
+        {
+            return !(value instanceof Instruction) || !this.blockSet.contains(((Instruction) value).getParent());
+        }
+    }
+
+    private final Function function;
+    private DominatorTree domTree;
+    /** The facts known in each block (computed on the first request, for the current dominator tree). */
+    private final Map<BasicBlock, List<Fact>> facts;
+    /** The checks (against the length) that have already been considered for loop versioning. */
+    private final Set<BranchInst> versioningTried;
+    private int numRemoved;
+    private int numHoisted;
+    private int numVersionedLoops;
+
+    public BoundsCheckElimination(Function function)
+    {
+        this.function = function;
+        this.domTree = null;
+        this.facts = new HashMap<BasicBlock, List<Fact>>();
+        this.versioningTried = new HashSet<BranchInst>();
+        this.numRemoved = 0;
+        this.numHoisted = 0;
+        this.numVersionedLoops = 0;
+    }
+
+    /** Returns the number of checks that were removed, since they always pass. */
+    public int getNumRemoved()
+    {
+        return this.numRemoved;
+    }
+
+    /** Returns the number of checks that were removed from the versioned copies of loops. */
+    public int getNumHoisted()
+    {
+        return this.numHoisted;
+    }
+
+    /** Returns the number of versioned loops. */
+    public int getNumVersionedLoops()
+    {
+        return this.numVersionedLoops;
+    }
+
+    /**
+     * Runs the pass on the function (which must have a body, in SSA form).
+     * Returns {@code true} if the function was modified.
+     */
+    public boolean run()
+    {
+        boolean changed = false;
+        while (true)
+        {
+            update();
+            List<BoundsCheck> unproven = new ArrayList<BoundsCheck>();
+            List<BoundsCheck> proven = new ArrayList<BoundsCheck>();
+            for (BoundsCheck check: findChecks())
+            {
+                (isProven(check) ? proven : unproven).add(check);
+            }
+            // All the checks are proven before any is removed, since the facts of a check hold
+            // whether it is removed or not (it is only removed if it always passes)
+            for (BoundsCheck check: proven)
+            {
+                remove(check);
+            }
+            this.numRemoved += proven.size();
+            changed |= !proven.isEmpty();
+            if (this.numVersionedLoops == MAX_VERSIONED_LOOPS)
+            {
+                break;
+            }
+            update();
+            if (!versionLoop(unproven))
+            {
+                break;
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    /** Rebuilds the dominator tree (and forgets the facts), after the control flow has changed. */
+    private void update()
+    {
+        this.domTree = new DominatorTree(this.function);
+        this.facts.clear();
+    }
+
+    /** Returns {@code true} if the given block only calls {@code throw_oob} (which exits the program). */
+    private static boolean isThrowBlock(BasicBlock block)
+    {
+        List<Instruction> instructions = block.getInstructions();
+        if (instructions.size() != 2 || !(instructions.get(1) instanceof UnreachableInst)
+            || !(instructions.get(0) instanceof CallInst))
+        {
+            return false;
+        }
+        Function callee = ((CallInst) instructions.get(0)).getCalledFunction();
+        return callee != null && callee.getName().equals("throw_oob");
+    }
+
+    /**
+     * Returns {@code true} if the given value may be the start of an array (an {@code i32*} which is not
+     * the address of an element, a field or a local variable).
+     */
+    private static boolean isArray(Value value)
+    {
+        if (value.type != IRType.I32_PTR || value instanceof GetElementPtrInst || value instanceof AllocaInst)
+        {
+            return false;
+        }
+        return !(value instanceof CastInst && ((CastInst) value).getValue() instanceof GetElementPtrInst);
+    }
+
+    /** Returns the array whose length is loaded by the given value, or {@code null} if it is not such a load. */
+    private static Value getLengthArray(Value value)
+    {
+        if (value instanceof LoadInst && isArray(((LoadInst) value).getPointer()))
+        {
+            return ((LoadInst) value).getPointer();
+        }
+        return null;
+    }
+
+    /** Returns the size the given array was allocated with, if it was allocated in this function (or {@code null}). */
+    private static Value getAllocatedSize(Value array)
+    {
+        if (!(array instanceof CastInst && ((CastInst) array).getValue() instanceof CallInst))
+        {
+            return null;
+        }
+        Function callee = ((CallInst) ((CastInst) array).getValue()).getCalledFunction();
+        if (callee == null || !callee.getName().equals("calloc"))
+        {
+            return null;
+        }
+        // The size is stored in the beginning of the array, right after the allocation
+        for (int i = 0; i < array.getNumUsers(); i++)
+        {
+            User user = array.getUser(i);
+            if (user instanceof StoreInst && ((StoreInst) user).getPointer() == array)
+            {
+                return ((StoreInst) user).getValue();
+            }
+        }
+        return null;
+    }
+
+    /** Returns {@code true} if the given value is the length of the given array. */
+    private static boolean isLengthOf(Value value, Value array)
+    {
+        return getLengthArray(value) == array || (value != null && value == getAllocatedSize(array));
+    }
+
+    /** Returns {@code true} if the given value is the length of the given array, minus a non-negative constant. */
+    private static boolean isAtMostLengthOf(Value value, Value array)
+    {
+        if (isLengthOf(value, array))
+        {
+            return true;
+        }
+        if (value instanceof BinaryInst && ((BinaryInst) value).opcode == Instruction.Opcode.SUB)
+        {
+            BinaryInst sub = (BinaryInst) value;
+            return getConstant(sub.getRHS()) >= 0 && isLengthOf(sub.getLHS(), array);
+        }
+        return false;
+    }
+
+    /** Returns the value of the given {@code i32} constant, or {@link Long#MIN_VALUE} if it is not one. */
+    private static long getConstant(Value value)
+    {
+        if (value instanceof ConstantInt && value.type == IRType.I32)
+        {
+            return (int) ((ConstantInt) value).value;
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /** Finds the bounds checks of the reachable blocks of the function. */
+    private List<BoundsCheck> findChecks()
+    {
+        List<BoundsCheck> checks = new ArrayList<BoundsCheck>();
+        for (BasicBlock block: this.domTree.getBlocks())
+        {
+            Instruction terminator = block.getTerminator();
+            if (!(terminator instanceof BranchInst) || !((BranchInst) terminator).isConditional())
+            {
+                continue;
+            }
+            BranchInst branch = (BranchInst) terminator;
+            if (!(branch.getCondition() instanceof ICmpInst) || !isThrowBlock(branch.getSuccessor(0))
+                || branch.getSuccessor(1) == branch.getSuccessor(0))
+            {
+                continue;
+            }
+            ICmpInst condition = (ICmpInst) branch.getCondition();
+            if (condition.predicate == ICmpInst.Predicate.SLT && getConstant(condition.getRHS()) == 0)
+            {
+                checks.add(new BoundsCheck(branch, condition.getLHS(), null));
+            }
+            else if (condition.predicate == ICmpInst.Predicate.ULE && getLengthArray(condition.getLHS()) != null)
+            {
+                checks.add(new BoundsCheck(branch, condition.getRHS(), getLengthArray(condition.getLHS())));
+            }
+        }
+        return checks;
+    }
+
+    /** Returns {@code true} if the given check always passes. */
+    private boolean isProven(BoundsCheck check)
+    {
+        BasicBlock block = check.branch.getParent();
+        if (check.array == null)
+        {
+            return isNonNegative(check.index, block, 0, new HashSet<PhiInst>());
+        }
+        return isInBounds(check.index, check.array, block);
+    }
+
+    /**
+     * Replaces the given check with a branch to the block it continues to, and removes its condition
+     * (and the {@code throw_oob} block, if no other check uses it).
+     */
+    private void remove(BoundsCheck check)
+    {
+        BranchInst branch = check.branch;
+        BasicBlock block = branch.getParent();
+        BasicBlock throwBlock = branch.getSuccessor(0);
+        Instruction condition = (Instruction) branch.getCondition();
+        block.insertBefore(new BranchInst(branch.getSuccessor(1)), branch);
+        branch.eraseFromParent();
+        if (!condition.hasUsers())
+        {
+            Value length = ((ICmpInst) condition).getLHS();
+            condition.eraseFromParent();
+            if (check.array != null && !length.hasUsers())
+            {
+                ((Instruction) length).eraseFromParent();
+            }
+        }
+        if (!throwBlock.hasUsers())
+        {
+            for (Instruction inst: throwBlock.getInstructions())
+            {
+                inst.dropOperands();
+            }
+            this.function.removeBlock(throwBlock);
+        }
+    }
+
+    /**
+     * Returns the facts known in the given block: the conditions of the branches to the blocks that dominate it
+     * (from their only predecessor), or their negations.
+     */
+    private List<Fact> getFacts(BasicBlock block)
+    {
+        List<Fact> known = this.facts.get(block);
+        if (known != null)
+        {
+            return known;
+        }
+        known = new ArrayList<Fact>();
+        for (BasicBlock dominator = block; dominator != null; dominator = this.domTree.getIdom(dominator))
+        {
+            List<BasicBlock> preds = dominator.getPredecessors();
+            if (preds.size() != 1)
+            {
+                continue;
+            }
+            Instruction terminator = preds.get(0).getTerminator();
+            if (!(terminator instanceof BranchInst) || !((BranchInst) terminator).isConditional())
+            {
+                continue;
+            }
+            BranchInst branch = (BranchInst) terminator;
+            if (branch.getSuccessor(0) != branch.getSuccessor(1) && branch.getCondition() instanceof ICmpInst)
+            {
+                addFacts(known, (ICmpInst) branch.getCondition(), dominator == branch.getSuccessor(0));
+            }
+        }
+        this.facts.put(block, known);
+        return known;
+    }
+
+    /** Adds the relation of the operands of the given comparison, given its result, to the given facts. */
+    private static void addFacts(List<Fact> known, ICmpInst condition, boolean result)
+    {
+        Value lhs = condition.getLHS();
+        Value rhs = condition.getRHS();
+        switch (condition.predicate)
+        {
+            case SLT:
+                known.add(result ? new Fact(Relation.LT, lhs, rhs) : new Fact(Relation.LE, rhs, lhs));
+                break;
+            case SLE:
+                known.add(result ? new Fact(Relation.LE, lhs, rhs) : new Fact(Relation.LT, rhs, lhs));
+                break;
+            case SGT:
+                known.add(result ? new Fact(Relation.LT, rhs, lhs) : new Fact(Relation.LE, lhs, rhs));
+                break;
+            case SGE:
+                known.add(result ? new Fact(Relation.LE, rhs, lhs) : new Fact(Relation.LT, lhs, rhs));
+                break;
+            case ULT:
+                known.add(result ? new Fact(Relation.ULT, lhs, rhs) : new Fact(Relation.ULE, rhs, lhs));
+                break;
+            case ULE:
+                known.add(result ? new Fact(Relation.ULE, lhs, rhs) : new Fact(Relation.ULT, rhs, lhs));
+                break;
+            case UGT:
+                known.add(result ? new Fact(Relation.ULT, rhs, lhs) : new Fact(Relation.ULE, lhs, rhs));
+                break;
+            case UGE:
+                known.add(result ? new Fact(Relation.ULE, rhs, lhs) : new Fact(Relation.ULT, lhs, rhs));
+                break;
+            case EQ:
+            case NE:
+                // !(a < b) is generated as (false == (a < b))
+                boolean equal = (condition.predicate == ICmpInst.Predicate.EQ) == result;
+                if (lhs instanceof ConstantInt && rhs instanceof ICmpInst && lhs.type == IRType.I1)
+                {
+                    addFacts(known, (ICmpInst) rhs, (((ConstantInt) lhs).value != 0) == equal);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the given value is known to be non-negative in the given block.
+     * The given phis are assumed to be non-negative (since this is being proven for them).
+     */
+    private boolean isNonNegative(Value value, BasicBlock block, int depth, Set<PhiInst> assumed)
+    {
+        if (depth > MAX_DEPTH)
+        {
+            return false;
+        }
+        if (value instanceof ConstantInt)
+        {
+            return getConstant(value) >= 0;
+        }
+        if (getLengthArray(value) != null)
+        {
+            // Arrays cannot be allocated with a negative size
+            return true;
+        }
+        if (value instanceof PhiInst)
+        {
+            PhiInst phi = (PhiInst) value;
+            if (!assumed.add(phi))
+            {
+                return true;
+            }
+            boolean proven = true;
+            for (int i = 0; i < phi.getNumIncoming() && proven; i++)
+            {
+                proven = isNonNegative(phi.getIncomingValue(i), phi.getIncomingBlock(i), depth + 1, assumed);
+            }
+            assumed.remove(phi);
+            if (proven)
+            {
+                return true;
+            }
+        }
+        if (value instanceof BinaryInst && ((BinaryInst) value).opcode == Instruction.Opcode.ADD)
+        {
+            // x + 1 does not overflow if something is greater than x
+            BinaryInst add = (BinaryInst) value;
+            Value operand = (getConstant(add.getRHS()) == 1) ? add.getLHS()
+                            : (getConstant(add.getLHS()) == 1) ? add.getRHS() : null;
+            if (operand != null && isNonNegative(operand, add.getParent(), depth + 1, assumed)
+                && hasUpperBound(operand, add.getParent(), depth + 1, assumed))
+            {
+                return true;
+            }
+        }
+        for (Fact fact: getFacts(block))
+        {
+            if (fact.rhs == value && (fact.relation == Relation.LT || fact.relation == Relation.LE)
+                && (isNonNegative(fact.lhs, block, depth + 1, assumed)
+                    || (fact.relation == Relation.LT && getConstant(fact.lhs) == -1)))
+            {
+                return true;
+            }
+            if (fact.lhs == value && (fact.relation == Relation.ULT || fact.relation == Relation.ULE)
+                && isNonNegative(fact.rhs, block, depth + 1, assumed))
+            {
+                // Unsigned-less than a non-negative value
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if the given (non-negative) value is known to be less than the maximum integer
+     * in the given block.
+     */
+    private boolean hasUpperBound(Value value, BasicBlock block, int depth, Set<PhiInst> assumed)
+    {
+        for (Fact fact: getFacts(block))
+        {
+            if (fact.lhs == value && (fact.relation == Relation.LT
+                                      || (fact.relation == Relation.ULT
+                                          && isNonNegative(fact.rhs, block, depth + 1, assumed))))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns {@code true} if the given index is known to be within the bounds of the given array in the given block. */
+    private boolean isInBounds(Value index, Value array, BasicBlock block)
+    {
+        long constant = getConstant(index);
+        long size = getConstant(getAllocatedSize(array) == null ? index : getAllocatedSize(array));
+        if (constant >= 0 && getAllocatedSize(array) != null && constant < size)
+        {
+            return true;
+        }
+        Set<PhiInst> assumed = new HashSet<PhiInst>();
+        for (Fact fact: getFacts(block))
+        {
+            if (fact.lhs != index)
+            {
+                continue;
+            }
+            switch (fact.relation)
+            {
+                case ULT:
+                    // Checked against the same length before
+                    if (isLengthOf(fact.rhs, array)
+                        || (isAtMostLengthOf(fact.rhs, array) && isNonNegative(fact.rhs, block, 0, assumed)))
+                    {
+                        return true;
+                    }
+                    break;
+                case LT:
+                    if (isAtMostLengthOf(fact.rhs, array) && isNonNegative(index, block, 0, assumed))
+                    {
+                        return true;
+                    }
+                    break;
+                case LE:
+                    // index <= length - c, for c >= 1
+                    if (fact.rhs instanceof BinaryInst && ((BinaryInst) fact.rhs).opcode == Instruction.Opcode.SUB
+                        && getConstant(((BinaryInst) fact.rhs).getRHS()) >= 1
+                        && isLengthOf(((BinaryInst) fact.rhs).getLHS(), array)
+                        && isNonNegative(index, block, 0, assumed))
+                    {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds a loop that contains one of the given (unproven) checks against the length, and whose checks
+     * against the length can be removed by versioning the loop, and versions it.
+     * Returns {@code true} if a loop was versioned.
+     */
+    private boolean versionLoop(List<BoundsCheck> checks)
+    {
+        for (BoundsCheck check: checks)
+        {
+            if (check.array == null || !this.versioningTried.add(check.branch))
+            {
+                continue;
+            }
+            Loop loop = findLoop(check.branch.getParent());
+            if (loop == null)
+            {
+                continue;
+            }
+            // The checks of the loop that can be removed, and the bound (n) that must not exceed
+            // the length of the array (a) of each one, as (n, a) pairs
+            List<BoundsCheck> hoisted = new ArrayList<BoundsCheck>();
+            Set<List<Value>> guards = new LinkedHashSet<List<Value>>();
+            for (BoundsCheck other: checks)
+            {
+                if (other.array == null || !loop.blockSet.contains(other.branch.getParent()))
+                {
+                    continue;
+                }
+                this.versioningTried.add(other.branch);
+                Value bound = findInvariantBound(other, loop);
+                if (bound != null)
+                {
+                    hoisted.add(other);
+                    List<Value> guard = new ArrayList<Value>(2);
+                    guard.add(bound);
+                    guard.add(other.array);
+                    guards.add(guard);
+                }
+            }
+            if (!hoisted.isEmpty() && canVersion(loop))
+            {
+                version(loop, guards, hoisted);
+                this.numHoisted += hoisted.size();
+                this.numVersionedLoops++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a value that does not change in the given loop, and that the index of the given check
+     * is known to be less than (if the array does not change in the loop either), or {@code null}.
+     */
+    private Value findInvariantBound(BoundsCheck check, Loop loop)
+    {
+        BasicBlock block = check.branch.getParent();
+        if (!loop.isInvariant(check.array) || check.array instanceof ConstantNull
+            || !isNonNegative(check.index, block, 0, new HashSet<PhiInst>()))
+        {
+            return null;
+        }
+        for (Fact fact: getFacts(block))
+        {
+            if (fact.lhs == check.index && fact.relation == Relation.LT && loop.isInvariant(fact.rhs))
+            {
+                return fact.rhs;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the innermost loop that contains the given block, if it has a single entry (from a preheader that
+     * only branches to its header), a single back edge, and a single exit (from its header), apart from
+     * the {@code throw_oob} blocks. Returns {@code null} otherwise.
+     */
+    private Loop findLoop(BasicBlock block)
+    {
+        Loop innermost = null;
+        for (BasicBlock header = block; header != null; header = this.domTree.getIdom(header))
+        {
+            List<BasicBlock> latches = new ArrayList<BasicBlock>();
+            List<BasicBlock> entries = new ArrayList<BasicBlock>();
+            for (BasicBlock pred: header.getPredecessors())
+            {
+                (this.domTree.dominates(header, pred) ? latches : entries).add(pred);
+            }
+            if (latches.isEmpty())
+            {
+                continue;
+            }
+            // The blocks that reach a back edge without going through the header
+            Set<BasicBlock> blockSet = new HashSet<BasicBlock>();
+            blockSet.add(header);
+            List<BasicBlock> worklist = new ArrayList<BasicBlock>(latches);
+            while (!worklist.isEmpty())
+            {
+                BasicBlock current = worklist.remove(worklist.size() - 1);
+                if (blockSet.add(current))
+                {
+                    worklist.addAll(current.getPredecessors());
+                }
+            }
+            if (!blockSet.contains(block))
+            {
+                continue;
+            }
+            if (latches.size() != 1 || entries.size() != 1)
+            {
+                return null;
+            }
+            innermost = buildLoop(header, entries.get(0), blockSet);
+            break;
+        }
+        return innermost;
+    }
+
+    /** Returns the loop with the given blocks, if it has the shape of a {@code while} loop, or {@code null}. */
+    private Loop buildLoop(BasicBlock header, BasicBlock preheader, Set<BasicBlock> blockSet)
+    {
+        Instruction entry = preheader.getTerminator();
+        Instruction test = header.getTerminator();
+        if (!(entry instanceof BranchInst) || ((BranchInst) entry).isConditional()
+            || !(test instanceof BranchInst) || !((BranchInst) test).isConditional())
+        {
+            return null;
+        }
+        BranchInst branch = (BranchInst) test;
+        BasicBlock exit = blockSet.contains(branch.getSuccessor(0)) ? branch.getSuccessor(1) : branch.getSuccessor(0);
+        if (blockSet.contains(exit) || exit.getPredecessors().size() != 1)
+        {
+            return null;
+        }
+        List<BasicBlock> blocks = new ArrayList<BasicBlock>();
+        int size = 0;
+        for (BasicBlock block: this.function.getBlocks())
+        {
+            if (!blockSet.contains(block))
+            {
+                continue;
+            }
+            blocks.add(block);
+            size += block.getInstructions().size();
+            for (BasicBlock successor: block.getSuccessors())
+            {
+                if (!blockSet.contains(successor) && !isThrowBlock(successor) && !(block == header && successor == exit))
+                {
+                    // Another exit
+                    return null;
+                }
+            }
+        }
+        if (size > MAX_VERSIONED_INSTRUCTIONS || blocks.get(0) != header)
+        {
+            return null;
+        }
+        return new Loop(header, preheader, exit, blocks, blockSet);
+    }
+
+    /**
+     * Returns {@code true} if the values of the given loop are only used outside of it after it exits
+     * (so they can be merged with the values of the copy by phis in the exit block).
+     */
+    private boolean canVersion(Loop loop)
+    {
+        if (loop.exit.getInstructions().get(0) instanceof PhiInst)
+        {
+            return false;
+        }
+        for (BasicBlock block: loop.blocks)
+        {
+            for (Instruction inst: block.getInstructions())
+            {
+                for (int i = 0; i < inst.getNumUsers(); i++)
+                {
+                    User user = inst.getUser(i);
+                    if (!(user instanceof Instruction) || loop.blockSet.contains(((Instruction) user).getParent()))
+                    {
+                        continue;
+                    }
+                    if (!this.domTree.dominates(loop.exit, ((Instruction) user).getParent()) && !(user instanceof PhiInst))
+                    {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the given loop, removing the given checks from the copy, and makes the preheader enter the copy
+     * if each of the given bounds is less than or equal to the length of its array, or the original loop otherwise.
+     */
+    private void version(Loop loop, Set<List<Value>> guards, List<BoundsCheck> hoisted)
+    {
+        CodeCloner cloner = new CodeCloner();
+        List<BasicBlock> copies = cloner.cloneBlocks(loop.blocks);
+        BasicBlock last = loop.blocks.get(loop.blocks.size() - 1);
+        for (BasicBlock copy: copies)
+        {
+            this.function.addBlockAfter(copy, last);
+            last = copy;
+        }
+        BasicBlock copiedHeader = cloner.get(loop.header);
+
+        // The guards: the preheader (and each block that checks a guard) enters the original loop
+        // if an array is null or shorter than the bound, or goes on to the next guard
+        List<BasicBlock> guardBlocks = new ArrayList<BasicBlock>();
+        IRBuilder builder = new IRBuilder();
+        BasicBlock current = loop.preheader;
+        current.getTerminator().eraseFromParent();
+        builder.setInsertPoint(current);
+        for (List<Value> guard: guards)
+        {
+            Value bound = guard.get(0);
+            Value array = guard.get(1);
+            if (getAllocatedSize(array) == null)
+            {
+                BasicBlock notNull = new BasicBlock("versionNotNull");
+                this.function.addBlockAfter(notNull, current);
+                Value isNull = builder.createICmp(ICmpInst.Predicate.EQ, array, ConstantNull.get(array.type));
+                builder.createCondBr(isNull, loop.header, notNull);
+                guardBlocks.add(current);
+                current = notNull;
+                builder.setInsertPoint(current);
+            }
+            BasicBlock next = new BasicBlock("versionCheck");
+            this.function.addBlockAfter(next, current);
+            Value length = builder.createLoad(array);
+            Value tooShort = builder.createICmp(ICmpInst.Predicate.SLT, length, bound);
+            builder.createCondBr(tooShort, loop.header, next);
+            guardBlocks.add(current);
+            current = next;
+            builder.setInsertPoint(current);
+        }
+        builder.createBr(copiedHeader);
+
+        // The header phis take their initial values from each guard block instead of the preheader
+        for (Instruction inst: loop.header.getInstructions())
+        {
+            if (!(inst instanceof PhiInst))
+            {
+                break;
+            }
+            PhiInst phi = (PhiInst) inst;
+            PhiInst copy = (PhiInst) cloner.get(phi);
+            for (int i = 0; i < phi.getNumIncoming(); i++)
+            {
+                if (phi.getIncomingBlock(i) == loop.preheader)
+                {
+                    Value initial = phi.getIncomingValue(i);
+                    phi.setIncomingBlock(i, guardBlocks.get(0));
+                    for (int g = 1; g < guardBlocks.size(); g++)
+                    {
+                        phi.addIncoming(initial, guardBlocks.get(g));
+                    }
+                    copy.setIncomingBlock(i, current);
+                    break;
+                }
+            }
+        }
+
+        // The values of the loop that are used after it are merged with their copies
+        for (BasicBlock block: loop.blocks)
+        {
+            for (Instruction inst: block.getInstructions())
+            {
+                List<User> outsideUsers = new ArrayList<User>();
+                for (User user: inst.getUsers())
+                {
+                    BasicBlock parent = ((Instruction) user).getParent();
+                    if (!loop.blockSet.contains(parent) && !copies.contains(parent) && !outsideUsers.contains(user))
+                    {
+                        outsideUsers.add(user);
+                    }
+                }
+                if (outsideUsers.isEmpty())
+                {
+                    continue;
+                }
+                PhiInst merged = new PhiInst(inst.type);
+                merged.setName(inst.getName());
+                merged.addIncoming(inst, loop.header);
+                merged.addIncoming(cloner.get(inst), copiedHeader);
+                loop.exit.insertBefore(merged, loop.exit.getInstructions().get(0));
+                for (User user: outsideUsers)
+                {
+                    user.replaceUsesOfWith(inst, merged);
+                }
+            }
+        }
+
+        // The copied checks always pass
+        for (BoundsCheck check: hoisted)
+        {
+            remove(new BoundsCheck((BranchInst) cloner.get(check.branch), check.index, check.array));
+        }
+        // The copies of the other checks are not versioned again
+        for (BasicBlock copy: copies)
+        {
+            Instruction terminator = copy.getTerminator();
+            if (terminator instanceof BranchInst)
+            {
+                for (BasicBlock block: loop.blocks)
+                {
+                    if (cloner.get(block) == copy && this.versioningTried.contains(block.getTerminator()))
+                    {
+                        this.versioningTried.add((BranchInst) terminator);
+                    }
+                }
+            }
+        }
+    }
+}
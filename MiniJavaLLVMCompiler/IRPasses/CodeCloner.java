@@ -0,0 +1,153 @@
+/**
+ * File: CodeCloner.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRPasses;
+
+import IRModel.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies basic blocks (e.g. the blocks of a loop, or the body of a function). The copies of the blocks
+ * refer to each other's copies, and keep referring to the values they use from outside the copied blocks,
+ * unless these are mapped to other values beforehand (see {@link #map(Value, Value)}).
+ * The copied blocks are not added to any function.
+ */
+public class CodeCloner {
+
+    /** The copy of each copied value (block or instruction), and the replacement of each mapped one. */
+    private final Map<Value, Value> valueMap;
+
+    public CodeCloner()
+    {
+        this.valueMap = new HashMap<Value, Value>();
+    }
+
+    /** Makes the copies refer to the given replacement wherever the originals refer to the given value. */
+    public void map(Value value, Value replacement)
+    {
+        this.valueMap.put(value, replacement);
+    }
+
+    /** Returns the copy (or replacement) of the given value, or the value itself if it has none. */
+    public Value get(Value value)
+    {
+        Value mapped = this.valueMap.get(value);
+        return (mapped == null) ? value : mapped;
+    }
+
+    /** Returns the copy of the given (copied) block. */
+    public BasicBlock get(BasicBlock block)
+    {
+        return (BasicBlock) this.valueMap.get(block);
+    }
+
+    /** Returns the copy of the given (copied) instruction. */
+    public Instruction get(Instruction inst)
+    {
+        return (Instruction) this.valueMap.get(inst);
+    }
+
+    /** Copies the given blocks (with the same names), and returns the copies in the same order. */
+    public List<BasicBlock> cloneBlocks(List<BasicBlock> blocks)
+    {
+        List<BasicBlock> copies = new ArrayList<BasicBlock>(blocks.size());
+        for (BasicBlock block: blocks)
+        {
+            BasicBlock copy = new BasicBlock(block.getName());
+            this.valueMap.put(block, copy);
+            copies.add(copy);
+        }
+        // The instructions are copied with the original operands first,
+        // since they may refer to instructions that are copied later (e.g. phis)
+        List<Instruction> copiedInsts = new ArrayList<Instruction>();
+        for (int i = 0; i < blocks.size(); i++)
+        {
+            for (Instruction inst: blocks.get(i).getInstructions())
+            {
+                Instruction copy = copyOf(inst);
+                copy.setName(inst.getName());
+                this.valueMap.put(inst, copy);
+                copies.get(i).append(copy);
+                copiedInsts.add(copy);
+            }
+        }
+        for (Instruction copy: copiedInsts)
+        {
+            for (int i = 0; i < copy.getNumOperands(); i++)
+            {
+                Value mapped = this.valueMap.get(copy.getOperand(i));
+                if (mapped != null)
+                {
+                    copy.setOperand(i, mapped);
+                }
+            }
+        }
+        return copies;
+    }
+
+    /** Returns a copy of the given instruction, with the same operands (and no name). */
+    public static Instruction copyOf(Instruction inst)
+    {
+        switch (inst.opcode)
+        {
+            case ALLOCA:
+                return new AllocaInst(((AllocaInst) inst).allocatedType, null);
+            case LOAD:
+                return new LoadInst(((LoadInst) inst).getPointer());
+            case STORE:
+                return new StoreInst(((StoreInst) inst).getValue(), ((StoreInst) inst).getPointer());
+            case GETELEMENTPTR:
+                GetElementPtrInst gep = (GetElementPtrInst) inst;
+                Value[] indices = new Value[gep.getNumIndices()];
+                for (int i = 0; i < indices.length; i++)
+                {
+                    indices[i] = gep.getIndex(i);
+                }
+                return new GetElementPtrInst(gep.getPointer(), indices);
+            case BITCAST:
+                return new CastInst(((CastInst) inst).getValue(), inst.type);
+            case ADD:
+            case SUB:
+            case MUL:
+                return new BinaryInst(inst.opcode, ((BinaryInst) inst).getLHS(), ((BinaryInst) inst).getRHS());
+            case ICMP:
+                ICmpInst icmp = (ICmpInst) inst;
+                return new ICmpInst(icmp.predicate, icmp.getLHS(), icmp.getRHS());
+            case CALL:
+                CallInst call = (CallInst) inst;
+                Value[] args = new Value[call.getNumArgs()];
+                for (int i = 0; i < args.length; i++)
+                {
+                    args[i] = call.getArg(i);
+                }
+                return new CallInst(call.getCallee(), args);
+            case PHI:
+                PhiInst phi = (PhiInst) inst;
+                PhiInst phiCopy = new PhiInst(phi.type);
+                for (int i = 0; i < phi.getNumIncoming(); i++)
+                {
+                    phiCopy.addIncoming(phi.getIncomingValue(i), phi.getIncomingBlock(i));
+                }
+                return phiCopy;
+            case BR:
+                BranchInst branch = (BranchInst) inst;
+                if (branch.isConditional())
+                {
+                    return new BranchInst(branch.getCondition(), branch.getSuccessor(0), branch.getSuccessor(1));
+                }
+                return new BranchInst(branch.getSuccessor(0));
+            case RET:
+                return new ReturnInst(((ReturnInst) inst).getReturnValue());
+            case UNREACHABLE:
+                return new UnreachableInst();
+            default:
+                throw new IllegalArgumentException("Cannot copy " + inst.opcode.keyword);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * File: ConstantFolder.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRPasses;
+
+import IRModel.*;
+
+/**
+ * Evaluates integer instructions whose operands are constants, with the semantics of the LLVM instructions:
+ * {@code add}, {@code sub} & {@code mul} wrap around (two's complement), and {@code icmp} compares
+ * the operands as signed or unsigned integers of their type, according to its predicate.
+ * Each method returns {@code null} if the result cannot be computed at compile time.
+ */
+public class ConstantFolder {
+
+    private ConstantFolder()
+    {
+    }
+
+    /** Returns the result of the given binary operator ({@code add}, {@code sub} or {@code mul}) on the given values. */
+    public static ConstantInt foldBinary(Instruction.Opcode opcode, Value lhs, Value rhs)
+    {
+        if (!(lhs instanceof ConstantInt && rhs instanceof ConstantInt))
+        {
+            return null;
+        }
+        long left = ((ConstantInt) lhs).value;
+        long right = ((ConstantInt) rhs).value;
+        long result;
+        switch (opcode)
+        {
+            case ADD:
+                result = left + right;
+                break;
+            case SUB:
+                result = left - right;
+                break;
+            case MUL:
+                result = left * right;
+                break;
+            default:
+                return null;
+        }
+        // Truncated to the width of the type
+        return ConstantInt.get(lhs.type, result);
+    }
+
+    /** Returns the result of comparing the given values with the given predicate. */
+    public static ConstantInt foldICmp(ICmpInst.Predicate predicate, Value lhs, Value rhs)
+    {
+        if (!(lhs instanceof ConstantInt && rhs instanceof ConstantInt) || lhs.type != rhs.type)
+        {
+            return null;
+        }
+        ConstantInt left = (ConstantInt) lhs;
+        ConstantInt right = (ConstantInt) rhs;
+        boolean result;
+        switch (predicate)
+        {
+            case EQ:
+                result = unsigned(left) == unsigned(right);
+                break;
+            case NE:
+                result = unsigned(left) != unsigned(right);
+                break;
+            case SLT:
+                result = signed(left) < signed(right);
+                break;
+            case SLE:
+                result = signed(left) <= signed(right);
+                break;
+            case SGT:
+                result = signed(left) > signed(right);
+                break;
+            case SGE:
+                result = signed(left) >= signed(right);
+                break;
+            case ULT:
+                result = unsigned(left) < unsigned(right);
+                break;
+            case ULE:
+                result = unsigned(left) <= unsigned(right);
+                break;
+            case UGT:
+                result = unsigned(left) > unsigned(right);
+                break;
+            case UGE:
+                result = unsigned(left) >= unsigned(right);
+                break;
+            default:
+                return null;
+        }
+        return ConstantInt.getBool(result);
+    }
+
+    /**
+     * Returns the result of the given instruction if all of its operands are the given constants
+     * (each operand of the instruction is replaced by the respective one), or {@code null} if the instruction
+     * cannot be folded (e.g. a call).
+     */
+    public static ConstantInt fold(Instruction inst, Value[] operands)
+    {
+        if (inst instanceof BinaryInst)
+        {
+            return foldBinary(inst.opcode, operands[0], operands[1]);
+        }
+        if (inst instanceof ICmpInst)
+        {
+            return foldICmp(((ICmpInst) inst).predicate, operands[0], operands[1]);
+        }
+        return null;
+    }
+
+    /** Returns {@code true} if the given values are the same constant. */
+    public static boolean isSameConstant(Value first, Value second)
+    {
+        if (first == second)
+        {
+            return true;
+        }
+        // Only the small i32 constants are shared
+        return first instanceof ConstantInt && second instanceof ConstantInt && first.type == second.type
+               && ((ConstantInt) first).value == ((ConstantInt) second).value;
+    }
+
+    /** Returns the value of the given constant as a signed integer of its type. */
+    private static long signed(ConstantInt constant)
+    {
+        if (constant.type == IRType.I1)
+        {
+            return -(constant.value & 1);
+        }
+        return (int) constant.value;
+    }
+
+    /** Returns the value of the given constant as an unsigned integer of its type. */
+    private static long unsigned(ConstantInt constant)
+    {
+        if (constant.type == IRType.I1)
+        {
+            return constant.value & 1;
+        }
+        return constant.value & 0xffffffffL;
+    }
+}
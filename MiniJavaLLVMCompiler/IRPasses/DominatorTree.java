@@ -0,0 +1,252 @@
+/**
+ * File: DominatorTree.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRPasses;
+
+import IRModel.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dominator tree of a function, computed with the iterative algorithm of Cooper, Harvey & Kennedy
+ * ("A Simple, Fast Dominance Algorithm"), along with the dominance frontier of each block.
+ *
+ * Only the blocks that are reachable from the entry block are part of the tree.
+ * The tree reflects the function at the time it was built, so it must be rebuilt
+ * whenever the control flow of the function changes.
+ */
+public class DominatorTree {
+
+    /** The reachable blocks, in reverse post-order (the entry block is first). */
+    private final List<BasicBlock> blocks;
+    /** The index of each reachable block in {@link #blocks}. */
+    private final Map<BasicBlock, Integer> indices;
+    /** The index of the immediate dominator of each block (the entry block is its own). */
+    private final int[] idoms;
+    /** The reachable predecessors of each block, by index. */
+    private final int[][] predecessors;
+    /** The children of each block in the tree, by index (created on the first request). */
+    private List<List<BasicBlock>> children;
+    /** The dominance frontier of each block, by index (computed on the first request). */
+    private List<List<BasicBlock>> frontiers;
+
+    public DominatorTree(Function function)
+    {
+        this.blocks = reversePostOrder(function.getEntryBlock());
+        int numBlocks = this.blocks.size();
+        this.indices = new HashMap<BasicBlock, Integer>(2 * numBlocks);
+        for (int i = 0; i < numBlocks; i++)
+        {
+            this.indices.put(this.blocks.get(i), i);
+        }
+        this.predecessors = new int[numBlocks][];
+        for (int i = 0; i < numBlocks; i++)
+        {
+            List<BasicBlock> preds = this.blocks.get(i).getPredecessors();
+            int[] reachable = new int[preds.size()];
+            int count = 0;
+            for (BasicBlock pred: preds)
+            {
+                Integer index = this.indices.get(pred);
+                if (index != null)
+                {
+                    reachable[count++] = index;
+                }
+            }
+            this.predecessors[i] = Arrays.copyOf(reachable, count);
+        }
+
+        // Each block is processed after its dominators (in reverse post-order),
+        // until no immediate dominator changes
+        this.idoms = new int[numBlocks];
+        Arrays.fill(this.idoms, -1);
+        this.idoms[0] = 0;
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            for (int i = 1; i < numBlocks; i++)
+            {
+                int idom = -1;
+                for (int pred: this.predecessors[i])
+                {
+                    if (this.idoms[pred] != -1)
+                    {
+                        idom = (idom == -1) ? pred : intersect(pred, idom);
+                    }
+                }
+                if (this.idoms[i] != idom)
+                {
+                    this.idoms[i] = idom;
+                    changed = true;
+                }
+            }
+        }
+        this.children = null;
+        this.frontiers = null;
+    }
+
+    /** Returns the blocks that are reachable from the given entry block, in reverse post-order. */
+    private static List<BasicBlock> reversePostOrder(BasicBlock entry)
+    {
+        List<BasicBlock> postOrder = new ArrayList<BasicBlock>();
+        Map<BasicBlock, Boolean> visited = new HashMap<BasicBlock, Boolean>();
+        // Iterative depth-first search: each block is on the stack along with its next successor to visit.
+        // The successors are visited in reverse, so that the first one of each block comes first in reverse post-order
+        List<BasicBlock> stack = new ArrayList<BasicBlock>();
+        List<List<BasicBlock>> successors = new ArrayList<List<BasicBlock>>();
+        List<Integer> nextSuccessor = new ArrayList<Integer>();
+        visited.put(entry, Boolean.TRUE);
+        stack.add(entry);
+        successors.add(reversedSuccessors(entry));
+        nextSuccessor.add(0);
+        while (!stack.isEmpty())
+        {
+            int top = stack.size() - 1;
+            int next = nextSuccessor.get(top);
+            if (next < successors.get(top).size())
+            {
+                nextSuccessor.set(top, next + 1);
+                BasicBlock successor = successors.get(top).get(next);
+                if (visited.put(successor, Boolean.TRUE) == null)
+                {
+                    stack.add(successor);
+                    successors.add(reversedSuccessors(successor));
+                    nextSuccessor.add(0);
+                }
+                continue;
+            }
+            postOrder.add(stack.remove(top));
+            successors.remove(top);
+            nextSuccessor.remove(top);
+        }
+        Collections.reverse(postOrder);
+        return postOrder;
+    }
+
+    /** Returns the successors of the given block, in reverse order. */
+    private static List<BasicBlock> reversedSuccessors(BasicBlock block)
+    {
+        List<BasicBlock> successors = block.getSuccessors();
+        Collections.reverse(successors);
+        return successors;
+    }
+
+    /** Returns the index of the nearest common dominator of the given blocks (by index). */
+    private int intersect(int first, int second)
+    {
+        // A dominator is before the blocks it dominates in reverse post-order
+        while (first != second)
+        {
+            while (first > second)
+            {
+                first = this.idoms[first];
+            }
+            while (second > first)
+            {
+                second = this.idoms[second];
+            }
+        }
+        return first;
+    }
+
+    /** Returns the reachable blocks of the function, in reverse post-order (the entry block is first). */
+    public List<BasicBlock> getBlocks()
+    {
+        return Collections.unmodifiableList(this.blocks);
+    }
+
+    /** Returns {@code true} if the given block is reachable from the entry block. */
+    public boolean isReachable(BasicBlock block)
+    {
+        return this.indices.containsKey(block);
+    }
+
+    /** Returns the immediate dominator of the given (reachable) block, or {@code null} for the entry block. */
+    public BasicBlock getIdom(BasicBlock block)
+    {
+        int index = this.indices.get(block);
+        return (index == 0) ? null : this.blocks.get(this.idoms[index]);
+    }
+
+    /** Returns {@code true} if the first block dominates the second one (every block dominates itself). */
+    public boolean dominates(BasicBlock dominator, BasicBlock block)
+    {
+        Integer dominatorIndex = this.indices.get(dominator);
+        Integer index = this.indices.get(block);
+        if (dominatorIndex == null || index == null)
+        {
+            return false;
+        }
+        int current = index;
+        // The dominators of a block are before it in reverse post-order
+        while (current > dominatorIndex)
+        {
+            current = this.idoms[current];
+        }
+        return current == dominatorIndex;
+    }
+
+    /** Returns the blocks immediately dominated by the given block, in reverse post-order. */
+    public List<BasicBlock> getChildren(BasicBlock block)
+    {
+        if (this.children == null)
+        {
+            this.children = new ArrayList<List<BasicBlock>>(this.blocks.size());
+            for (int i = 0; i < this.blocks.size(); i++)
+            {
+                this.children.add(new ArrayList<BasicBlock>(2));
+            }
+            for (int i = 1; i < this.blocks.size(); i++)
+            {
+                this.children.get(this.idoms[i]).add(this.blocks.get(i));
+            }
+        }
+        return Collections.unmodifiableList(this.children.get(this.indices.get(block)));
+    }
+
+    /**
+     * Returns the dominance frontier of the given block: the blocks that are not strictly dominated by it,
+     * but have a predecessor that is dominated by it.
+     */
+    public List<BasicBlock> getFrontier(BasicBlock block)
+    {
+        if (this.frontiers == null)
+        {
+            this.frontiers = new ArrayList<List<BasicBlock>>(this.blocks.size());
+            for (int i = 0; i < this.blocks.size(); i++)
+            {
+                this.frontiers.add(new ArrayList<BasicBlock>(2));
+            }
+            for (int i = 0; i < this.blocks.size(); i++)
+            {
+                if (this.predecessors[i].length < 2)
+                {
+                    continue;
+                }
+                // The block is in the frontier of each dominator of its predecessors,
+                // up to (and excluding) its own immediate dominator
+                BasicBlock join = this.blocks.get(i);
+                for (int pred: this.predecessors[i])
+                {
+                    for (int runner = pred; runner != this.idoms[i]; runner = this.idoms[runner])
+                    {
+                        List<BasicBlock> frontier = this.frontiers.get(runner);
+                        if (frontier.isEmpty() || frontier.get(frontier.size() - 1) != join)
+                        {
+                            frontier.add(join);
+                        }
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableList(this.frontiers.get(this.indices.get(block)));
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * File: Inliner.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRPasses;
+
+import IRModel.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces the direct calls of small functions with (copies of) their bodies, across a whole module.
+ * A function is inlined if it has at most {@code budget} instructions, and it is not part of a cycle of calls
+ * with its caller (so recursive calls are never inlined, and inlining always ends). The functions are processed
+ * callees-first (in the order of the strongly connected components of the call graph), so a function is inlined
+ * along with the calls that have been inlined into it, and its size is measured after that. A caller stops
+ * growing once it exceeds {@link #MAX_CALLER_SIZE} instructions.
+ *
+ * <p>Only direct calls are inlined (see {@link IRModel.CallInst#getCalledFunction()}), i.e. the calls of
+ * methods that no subclass overrides. The copied bodies keep all their instructions, including the array
+ * bounds checks, so the program behaves exactly the same. The functions should be in SSA form
+ * (functions with {@code alloca}s are not inlined, since their copies would allocate on every execution).
+ */
+public class Inliner {
+
+    /** The size (in instructions) after which nothing is inlined into a function. */
+    private static final int MAX_CALLER_SIZE = 4000;
+
+    private final IRModule module;
+    private final int budget;
+    /** The size of each function with a body (in instructions), updated as calls are inlined into it. */
+    private final Map<Function, Integer> sizes;
+    private int numInlined;
+
+    /** Creates an Inliner for the given module, which inlines the functions of up to {@code budget} instructions. */
+    public Inliner(IRModule module, int budget)
+    {
+        this.module = module;
+        this.budget = budget;
+        this.sizes = new HashMap<Function, Integer>();
+        this.numInlined = 0;
+    }
+
+    /** Returns the number of inlined calls. */
+    public int getNumInlined()
+    {
+        return this.numInlined;
+    }
+
+    /**
+     * Inlines the calls of the small functions of the module.
+     * Returns the functions that calls were inlined into, in module order.
+     */
+    public List<Function> run()
+    {
+        List<Function> functions = new ArrayList<Function>();
+        for (Function function: this.module.getFunctions())
+        {
+            if (!function.isDeclaration() && !function.isRuntime())
+            {
+                functions.add(function);
+                this.sizes.put(function, getSize(function));
+            }
+        }
+        Set<Function> modified = new LinkedHashSet<Function>();
+        for (List<Function> component: findComponents(functions))
+        {
+            for (Function caller: component)
+            {
+                for (CallInst call: getCalls(caller))
+                {
+                    Function callee = call.getCalledFunction();
+                    if (this.sizes.get(caller) <= MAX_CALLER_SIZE && !component.contains(callee) && isInlinable(callee))
+                    {
+                        inline(call, callee);
+                        this.sizes.put(caller, this.sizes.get(caller) + this.sizes.get(callee));
+                        this.numInlined++;
+                        modified.add(caller);
+                    }
+                }
+            }
+        }
+        List<Function> result = new ArrayList<Function>();
+        for (Function function: functions)
+        {
+            if (modified.contains(function))
+            {
+                result.add(function);
+            }
+        }
+        return result;
+    }
+
+    private static int getSize(Function function)
+    {
+        int size = 0;
+        for (BasicBlock block: function.getBlocks())
+        {
+            size += block.getInstructions().size();
+        }
+        return size;
+    }
+
+    /** Returns the direct calls of the given function to functions with a body (of this module). */
+    private List<CallInst> getCalls(Function function)
+    {
+        List<CallInst> calls = new ArrayList<CallInst>();
+        for (BasicBlock block: function.getBlocks())
+        {
+            for (Instruction inst: block.getInstructions())
+            {
+                if (inst instanceof CallInst && this.sizes.containsKey(((CallInst) inst).getCalledFunction()))
+                {
+                    calls.add((CallInst) inst);
+                }
+            }
+        }
+        return calls;
+    }
+
+    /**
+     * Returns {@code true} if the given function is small enough to be inlined, and its body can be copied
+     * into another function: it returns (rather than always throwing), does not allocate stack slots,
+     * and its entry block is not a branch target.
+     */
+    private boolean isInlinable(Function function)
+    {
+        if (this.sizes.get(function) > this.budget || !function.getEntryBlock().getPredecessors().isEmpty())
+        {
+            return false;
+        }
+        boolean returns = false;
+        for (BasicBlock block: function.getBlocks())
+        {
+            for (Instruction inst: block.getInstructions())
+            {
+                if (inst instanceof AllocaInst)
+                {
+                    return false;
+                }
+                returns |= inst instanceof ReturnInst;
+            }
+        }
+        return returns;
+    }
+
+    /**
+     * Returns the strongly connected components of the call graph of the given functions (Tarjan's algorithm),
+     * with the components of the callees before the components of their callers.
+     */
+    private List<List<Function>> findComponents(List<Function> functions)
+    {
+        List<List<Function>> components = new ArrayList<List<Function>>();
+        Map<Function, Integer> index = new HashMap<Function, Integer>();
+        Map<Function, Integer> lowLink = new HashMap<Function, Integer>();
+        Deque<Function> stack = new ArrayDeque<Function>();
+        Set<Function> onStack = new HashSet<Function>();
+        // The traversal is iterative, since call chains can be arbitrarily long:
+        // each frame is a function, and its calls that have not been followed yet
+        Deque<Function> path = new ArrayDeque<Function>();
+        Deque<List<CallInst>> pendingCalls = new ArrayDeque<List<CallInst>>();
+        for (Function root: functions)
+        {
+            if (index.containsKey(root))
+            {
+                continue;
+            }
+            enter(root, index, lowLink, stack, onStack, path, pendingCalls);
+            while (!path.isEmpty())
+            {
+                Function current = path.peek();
+                List<CallInst> calls = pendingCalls.peek();
+                if (!calls.isEmpty())
+                {
+                    Function callee = calls.remove(calls.size() - 1).getCalledFunction();
+                    if (!index.containsKey(callee))
+                    {
+                        enter(callee, index, lowLink, stack, onStack, path, pendingCalls);
+                    }
+                    else if (onStack.contains(callee))
+                    {
+                        lowLink.put(current, Math.min(lowLink.get(current), index.get(callee)));
+                    }
+                    continue;
+                }
+                path.pop();
+                pendingCalls.pop();
+                if (!path.isEmpty())
+                {
+                    lowLink.put(path.peek(), Math.min(lowLink.get(path.peek()), lowLink.get(current)));
+                }
+                if (lowLink.get(current).equals(index.get(current)))
+                {
+                    // The root of a component: its functions are on the stack above it
+                    List<Function> component = new ArrayList<Function>();
+                    Function member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (member != current);
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    private void enter(Function function, Map<Function, Integer> index, Map<Function, Integer> lowLink,
+                       Deque<Function> stack, Set<Function> onStack, Deque<Function> path,
+                       Deque<List<CallInst>> pendingCalls)
+    {
+        index.put(function, index.size());
+        lowLink.put(function, index.get(function));
+        stack.push(function);
+        onStack.add(function);
+        path.push(function);
+        pendingCalls.push(getCalls(function));
+    }
+
+    /**
+     * Replaces the given call with a copy of the body of the given function: the block of the call is split
+     * after it, and the copy of the body is placed between the two parts, with the arguments of the call
+     * in place of the parameters, and branches to the second part in place of the returns.
+     */
+    private static void inline(CallInst call, Function callee)
+    {
+        BasicBlock block = call.getParent();
+        Function caller = block.getParent();
+        BasicBlock rest = new BasicBlock(callee.getName() + ".end");
+        caller.addBlockAfter(rest, block);
+        block.moveInstructionsAfter(call, rest);
+        // The successors now get their phi values from the second part
+        for (BasicBlock successor: rest.getSuccessors())
+        {
+            for (Instruction inst: successor.getInstructions())
+            {
+                if (!(inst instanceof PhiInst))
+                {
+                    break;
+                }
+                PhiInst phi = (PhiInst) inst;
+                for (int i = 0; i < phi.getNumIncoming(); i++)
+                {
+                    if (phi.getIncomingBlock(i) == block)
+                    {
+                        phi.setIncomingBlock(i, rest);
+                    }
+                }
+            }
+        }
+
+        CodeCloner cloner = new CodeCloner();
+        for (int i = 0; i < call.getNumArgs(); i++)
+        {
+            cloner.map(callee.getArgument(i), call.getArg(i));
+        }
+        List<BasicBlock> copies = cloner.cloneBlocks(callee.getBlocks());
+        BasicBlock position = block;
+        for (BasicBlock copy: copies)
+        {
+            caller.addBlockAfter(copy, position);
+            position = copy;
+        }
+        // The copy of the entry block is named after the function
+        copies.get(0).setName(callee.getName());
+
+        // The returns branch to the second part, which takes the returned value from the block it came from
+        List<Value> returnValues = new ArrayList<Value>();
+        List<BasicBlock> returnBlocks = new ArrayList<BasicBlock>();
+        for (BasicBlock copy: copies)
+        {
+            Instruction terminator = copy.getTerminator();
+            if (terminator instanceof ReturnInst)
+            {
+                returnValues.add(((ReturnInst) terminator).getReturnValue());
+                returnBlocks.add(copy);
+                terminator.eraseFromParent();
+                copy.append(new BranchInst(rest));
+            }
+        }
+        if (call.hasUsers())
+        {
+            if (returnValues.size() == 1)
+            {
+                call.replaceAllUsesWith(returnValues.get(0));
+            }
+            else
+            {
+                PhiInst result = new PhiInst(call.type);
+                result.setName(call.getName());
+                for (int i = 0; i < returnValues.size(); i++)
+                {
+                    result.addIncoming(returnValues.get(i), returnBlocks.get(i));
+                }
+                rest.insertBefore(result, rest.getInstructions().get(0));
+                call.replaceAllUsesWith(result);
+            }
+        }
+        call.eraseFromParent();
+        block.append(new BranchInst(copies.get(0)));
+    }
+}
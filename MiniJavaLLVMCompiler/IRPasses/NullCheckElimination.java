@@ -0,0 +1,123 @@
+/**
+ * File: NullCheckElimination.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRPasses;
+
+import IRModel.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes the comparisons of objects with {@code null} whose result is already known, since an earlier check
+ * of the same object (the null checks of the direct method calls) dominates them: a comparison is known if
+ * its block is dominated by the successor that a check branches to when the object is not {@code null},
+ * and that successor can only be entered from the check. The comparison is replaced by its result,
+ * so {@link SCCP} should be run afterwards, to remove the branches that can no longer be taken.
+ * The function should be in SSA form, so that the object is the same value in all the checks.
+ */
+public class NullCheckElimination {
+
+    private NullCheckElimination()
+    {
+    }
+
+    /**
+     * Replaces the comparisons with {@code null} of the given function that are known by their results.
+     * Returns the number of replaced comparisons.
+     */
+    public static int run(Function function)
+    {
+        // The successor of each check where its object is not null, grouped by object
+        Map<Value, List<BasicBlock>> nonNullBlocks = new HashMap<Value, List<BasicBlock>>();
+        List<ICmpInst> comparisons = new ArrayList<ICmpInst>();
+        for (BasicBlock block: function.getBlocks())
+        {
+            for (Instruction inst: block.getInstructions())
+            {
+                if (getComparedObject(inst) != null)
+                {
+                    comparisons.add((ICmpInst) inst);
+                }
+            }
+            Instruction terminator = block.getTerminator();
+            if (!(terminator instanceof BranchInst) || !((BranchInst) terminator).isConditional())
+            {
+                continue;
+            }
+            BranchInst branch = (BranchInst) terminator;
+            Value object = getComparedObject(branch.getCondition());
+            if (object == null)
+            {
+                continue;
+            }
+            boolean isEqual = ((ICmpInst) branch.getCondition()).predicate == ICmpInst.Predicate.EQ;
+            BasicBlock nonNull = branch.getSuccessor(isEqual ? 1 : 0);
+            if (nonNull != block && nonNull != branch.getSuccessor(isEqual ? 0 : 1)
+                && nonNull.getPredecessors().size() == 1)
+            {
+                if (!nonNullBlocks.containsKey(object))
+                {
+                    nonNullBlocks.put(object, new ArrayList<BasicBlock>());
+                }
+                nonNullBlocks.get(object).add(nonNull);
+            }
+        }
+        if (nonNullBlocks.isEmpty())
+        {
+            return 0;
+        }
+
+        DominatorTree domTree = new DominatorTree(function);
+        int removed = 0;
+        for (ICmpInst comparison: comparisons)
+        {
+            List<BasicBlock> blocks = nonNullBlocks.get(getComparedObject(comparison));
+            if (blocks == null)
+            {
+                continue;
+            }
+            for (BasicBlock nonNull: blocks)
+            {
+                if (domTree.dominates(nonNull, comparison.getParent()))
+                {
+                    comparison.replaceAllUsesWith(ConstantInt.getBool(comparison.predicate == ICmpInst.Predicate.NE));
+                    comparison.eraseFromParent();
+                    removed++;
+                    break;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the object that the given value compares with {@code null} ({@code icmp eq} or {@code icmp ne}),
+     * or {@code null} if it is not such a comparison.
+     */
+    private static Value getComparedObject(Value value)
+    {
+        if (!(value instanceof ICmpInst))
+        {
+            return null;
+        }
+        ICmpInst comparison = (ICmpInst) value;
+        if (comparison.predicate != ICmpInst.Predicate.EQ && comparison.predicate != ICmpInst.Predicate.NE)
+        {
+            return null;
+        }
+        if (comparison.getRHS() instanceof ConstantNull)
+        {
+            return comparison.getLHS();
+        }
+        if (comparison.getLHS() instanceof ConstantNull)
+        {
+            return comparison.getRHS();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,358 @@
+/**
+ * File: PromoteMemToReg.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRPasses;
+
+import IRModel.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Promotes the local variables of a function from stack slots to SSA registers (like LLVM's {@code mem2reg}):
+ * each {@code alloca} of the entry block that is only loaded from & stored to is removed, along with
+ * its loads & stores, and the loaded values are replaced by the stored ones, with {@code phi} instructions
+ * where different stores reach the same block.
+ *
+ * <p>The phis are placed at the iterated dominance frontiers of the blocks that store to each variable
+ * (Cytron et al., "Efficiently Computing Static Single Assignment Form and the Control Dependence Graph"),
+ * and the loads & stores are then renamed by walking the dominator tree. Finally, the phis that turned out
+ * to be unused, or to always take the same value, are removed.
+ *
+ * <p>A variable that is read before being assigned (MiniJava does not check for that) reads zero
+ * ({@code 0}, {@code false} or {@code null}), so the IR does not depend on the contents of the stack.
+ */
+public class PromoteMemToReg {
+
+    /** The promoted variables of the function, and their indices. */
+    private final List<AllocaInst> allocas;
+    private final Map<AllocaInst, Integer> indices;
+    private final DominatorTree domTree;
+    /** The phis placed in each block, by variable index ({@code null} where there is none). */
+    private final Map<BasicBlock, PhiInst[]> phis;
+    /** The placed phis, in the order they were placed. */
+    private final Set<PhiInst> placedPhis;
+    /** The promoted loads & stores (and the allocas), which are erased in the end. */
+    private final Set<Instruction> erased;
+
+    private PromoteMemToReg(Function function, List<AllocaInst> allocas)
+    {
+        this.allocas = allocas;
+        this.indices = new HashMap<AllocaInst, Integer>(2 * allocas.size());
+        for (int i = 0; i < allocas.size(); i++)
+        {
+            this.indices.put(allocas.get(i), i);
+        }
+        this.domTree = new DominatorTree(function);
+        this.phis = new HashMap<BasicBlock, PhiInst[]>();
+        this.placedPhis = new LinkedHashSet<PhiInst>();
+        this.erased = new HashSet<Instruction>();
+    }
+
+    /**
+     * Promotes the variables of the given function (which must have a body) to registers.
+     * Returns the number of promoted variables.
+     */
+    public static int run(Function function)
+    {
+        List<AllocaInst> allocas = new ArrayList<AllocaInst>();
+        for (Instruction inst: function.getEntryBlock().getInstructions())
+        {
+            if (inst instanceof AllocaInst && isPromotable((AllocaInst) inst))
+            {
+                allocas.add((AllocaInst) inst);
+            }
+        }
+        if (allocas.isEmpty())
+        {
+            return 0;
+        }
+        PromoteMemToReg pass = new PromoteMemToReg(function, allocas);
+        pass.placePhis();
+        pass.rename(function);
+        for (BasicBlock block: function.getBlocks())
+        {
+            block.eraseAll(pass.erased);
+        }
+        pass.removeRedundantPhis();
+        return allocas.size();
+    }
+
+    /**
+     * Returns {@code true} if the given variable is only loaded from & stored to
+     * (so its address is not used anywhere else).
+     */
+    private static boolean isPromotable(AllocaInst alloca)
+    {
+        for (int i = 0; i < alloca.getNumUsers(); i++)
+        {
+            User user = alloca.getUser(i);
+            if (user instanceof LoadInst)
+            {
+                continue;
+            }
+            if (!(user instanceof StoreInst) || ((StoreInst) user).getValue() == alloca)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the value of a variable of the given type that has not been assigned yet. */
+    static Constant getZero(IRType type)
+    {
+        if (type.isPointer())
+        {
+            return ConstantNull.get(type);
+        }
+        return ConstantInt.get(type, 0);
+    }
+
+    /** Places a phi for each variable at the iterated dominance frontier of the blocks that store to it. */
+    private void placePhis()
+    {
+        for (int i = 0; i < this.allocas.size(); i++)
+        {
+            AllocaInst alloca = this.allocas.get(i);
+            Deque<BasicBlock> worklist = new ArrayDeque<BasicBlock>();
+            Set<BasicBlock> defining = new HashSet<BasicBlock>();
+            for (int u = 0; u < alloca.getNumUsers(); u++)
+            {
+                User user = alloca.getUser(u);
+                BasicBlock block = ((Instruction) user).getParent();
+                if (user instanceof StoreInst && this.domTree.isReachable(block) && defining.add(block))
+                {
+                    worklist.add(block);
+                }
+            }
+            while (!worklist.isEmpty())
+            {
+                for (BasicBlock join: this.domTree.getFrontier(worklist.removeFirst()))
+                {
+                    PhiInst[] blockPhis = this.phis.get(join);
+                    if (blockPhis == null)
+                    {
+                        blockPhis = new PhiInst[this.allocas.size()];
+                        this.phis.put(join, blockPhis);
+                    }
+                    if (blockPhis[i] != null)
+                    {
+                        continue;
+                    }
+                    PhiInst phi = new PhiInst(alloca.allocatedType);
+                    phi.setName(alloca.getName());
+                    join.insertBefore(phi, join.getInstructions().get(0));
+                    blockPhis[i] = phi;
+                    this.placedPhis.add(phi);
+                    // The phi is a new definition of the variable
+                    if (defining.add(join))
+                    {
+                        worklist.add(join);
+                    }
+                }
+            }
+        }
+    }
+
+    /** A block to be renamed, with the values of the variables at its beginning. */
+    private static class RenameItem {
+        final BasicBlock block;
+        final Value[] values;
+
+        RenameItem(BasicBlock block, Value[] values)
+        {
+            this.block = block;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Replaces each promoted load with the value of its variable at that point, and gives the placed phis
+     * their incoming values, walking the dominator tree (each block starts with the values at the end of
+     * its immediate dominator).
+     */
+    private void rename(Function function)
+    {
+        Value[] initial = new Value[this.allocas.size()];
+        for (int i = 0; i < initial.length; i++)
+        {
+            initial[i] = getZero(this.allocas.get(i).allocatedType);
+            this.erased.add(this.allocas.get(i));
+        }
+        Deque<RenameItem> stack = new ArrayDeque<RenameItem>();
+        stack.push(new RenameItem(function.getEntryBlock(), initial.clone()));
+        while (!stack.isEmpty())
+        {
+            RenameItem item = stack.pop();
+            renameBlock(item.block, item.values);
+            List<BasicBlock> children = this.domTree.getChildren(item.block);
+            // Pushed in reverse, so that the children are renamed in order
+            for (int i = children.size() - 1; i >= 0; i--)
+            {
+                Value[] values = (i == 0) ? item.values : item.values.clone();
+                stack.push(new RenameItem(children.get(i), values));
+            }
+        }
+
+        // Blocks that are never executed read zero
+        for (BasicBlock block: function.getBlocks())
+        {
+            if (!this.domTree.isReachable(block))
+            {
+                Value[] values = initial.clone();
+                renameBlock(block, values);
+            }
+        }
+    }
+
+    /**
+     * Renames the loads & stores of the given block, starting with the given values of the variables
+     * (which are updated), and adds the values at its end to the phis of its successors.
+     */
+    private void renameBlock(BasicBlock block, Value[] values)
+    {
+        PhiInst[] blockPhis = this.phis.get(block);
+        if (blockPhis != null)
+        {
+            for (int i = 0; i < blockPhis.length; i++)
+            {
+                if (blockPhis[i] != null)
+                {
+                    values[i] = blockPhis[i];
+                }
+            }
+        }
+        List<Instruction> instructions = block.getInstructions();
+        for (int i = 0; i < instructions.size(); i++)
+        {
+            Instruction inst = instructions.get(i);
+            if (inst instanceof LoadInst)
+            {
+                Integer index = this.indices.get(((LoadInst) inst).getPointer());
+                if (index != null)
+                {
+                    inst.replaceAllUsesWith(values[index]);
+                    this.erased.add(inst);
+                }
+            }
+            else if (inst instanceof StoreInst)
+            {
+                Integer index = this.indices.get(((StoreInst) inst).getPointer());
+                if (index != null)
+                {
+                    values[index] = ((StoreInst) inst).getValue();
+                    this.erased.add(inst);
+                }
+            }
+        }
+        for (BasicBlock successor: block.getSuccessors())
+        {
+            PhiInst[] successorPhis = this.phis.get(successor);
+            if (successorPhis == null)
+            {
+                continue;
+            }
+            for (int i = 0; i < successorPhis.length; i++)
+            {
+                if (successorPhis[i] != null)
+                {
+                    successorPhis[i].addIncoming(values[i], block);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the placed phis that always take the same value (other than themselves), replacing them with it,
+     * and then the ones that are only used by other removed phis (or not used at all).
+     */
+    private void removeRedundantPhis()
+    {
+        Set<PhiInst> removed = new HashSet<PhiInst>();
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            for (PhiInst phi: this.placedPhis)
+            {
+                if (removed.contains(phi))
+                {
+                    continue;
+                }
+                Value same = null;
+                for (int i = 0; i < phi.getNumIncoming(); i++)
+                {
+                    Value incoming = phi.getIncomingValue(i);
+                    if (incoming != phi && incoming != same)
+                    {
+                        same = (same == null) ? incoming : phi;
+                    }
+                }
+                if (same != phi && same != null)
+                {
+                    phi.replaceAllUsesWith(same);
+                    phi.eraseFromParent();
+                    removed.add(phi);
+                    changed = true;
+                }
+            }
+        }
+
+        // A phi is live if it is used by an instruction other than a placed phi,
+        // or by a live placed phi
+        Set<PhiInst> live = new HashSet<PhiInst>();
+        Deque<PhiInst> worklist = new ArrayDeque<PhiInst>();
+        for (PhiInst phi: this.placedPhis)
+        {
+            if (removed.contains(phi))
+            {
+                continue;
+            }
+            for (int i = 0; i < phi.getNumUsers(); i++)
+            {
+                User user = phi.getUser(i);
+                if (!(user instanceof PhiInst && this.placedPhis.contains(user)) && live.add(phi))
+                {
+                    worklist.add(phi);
+                }
+            }
+        }
+        while (!worklist.isEmpty())
+        {
+            PhiInst phi = worklist.removeFirst();
+            for (int i = 0; i < phi.getNumIncoming(); i++)
+            {
+                Value incoming = phi.getIncomingValue(i);
+                if (incoming instanceof PhiInst && !removed.contains(incoming) && this.placedPhis.contains(incoming)
+                    && live.add((PhiInst) incoming))
+                {
+                    worklist.add((PhiInst) incoming);
+                }
+            }
+        }
+        List<PhiInst> dead = new ArrayList<PhiInst>();
+        for (PhiInst phi: this.placedPhis)
+        {
+            if (!removed.contains(phi) && !live.contains(phi))
+            {
+                // Their operands are dropped first, since they may use each other
+                phi.dropOperands();
+                dead.add(phi);
+            }
+        }
+        for (PhiInst phi: dead)
+        {
+            phi.eraseFromParent();
+        }
+    }
+}
@@ -0,0 +1,495 @@
+/**
+ * File: SCCP.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRPasses;
+
+import IRModel.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sparse Conditional Constant Propagation (Wegman & Zadeck, "Constant Propagation with Conditional Branches"):
+ * finds the instructions of a function that always produce the same constant, and the blocks that can never
+ * be executed, assuming that every block is dead and every value undefined until shown otherwise.
+ * So a variable that is assigned a constant in each branch that can actually be taken is a constant as well,
+ * and the branches that depend on it are resolved.
+ *
+ * <p>The function should be in SSA form (see {@link PromoteMemToReg}), since values stored to memory
+ * are not tracked. Then the constant instructions are replaced by their values, the conditional branches
+ * that always go the same way become unconditional, and the dead blocks are removed.
+ */
+public class SCCP {
+
+    private final Function function;
+    /**
+     * The lattice value of each evaluated instruction: a constant, or the instruction itself if it may take
+     * different values (overdefined). An instruction that has not been evaluated yet (or whose operands are
+     * not known yet) is not in the map.
+     */
+    private final Map<Instruction, Value> values;
+    /** The blocks found to be executable, and the predecessors they may be entered from. */
+    private final Map<BasicBlock, Set<BasicBlock>> executablePreds;
+    /** The blocks that became executable and have not been evaluated yet. */
+    private final Deque<BasicBlock> blockWorklist;
+    /** The instructions whose lattice value changed, and whose users must be evaluated again. */
+    private final Deque<Instruction> instWorklist;
+    private int numFolded;
+    private int numRemovedBlocks;
+
+    public SCCP(Function function)
+    {
+        this.function = function;
+        this.values = new HashMap<Instruction, Value>();
+        this.executablePreds = new HashMap<BasicBlock, Set<BasicBlock>>();
+        this.blockWorklist = new ArrayDeque<BasicBlock>();
+        this.instWorklist = new ArrayDeque<Instruction>();
+        this.numFolded = 0;
+        this.numRemovedBlocks = 0;
+    }
+
+    /** Returns the number of instructions that were replaced by constants. */
+    public int getNumFolded()
+    {
+        return this.numFolded;
+    }
+
+    /** Returns the number of blocks that were removed, since they could never be executed. */
+    public int getNumRemovedBlocks()
+    {
+        return this.numRemovedBlocks;
+    }
+
+    /**
+     * Runs the pass on the function (which must have a body).
+     * Returns {@code true} if the function was modified.
+     */
+    public boolean run()
+    {
+        solve();
+        boolean changed = pruneBranches();
+        changed |= removeDeadBlocks();
+        changed |= replaceConstants();
+        changed |= simplifyPhis();
+        return changed;
+    }
+
+    /** Returns {@code true} if the given lattice value is a constant. */
+    private static boolean isConstant(Value value)
+    {
+        return value instanceof ConstantInt || value instanceof ConstantNull;
+    }
+
+    /**
+     * Returns the lattice value of the given operand: a constant, the operand itself (if it may take
+     * different values), or {@code null} if it is not known yet.
+     */
+    private Value getValue(Value operand)
+    {
+        if (operand instanceof Instruction)
+        {
+            return this.values.get(operand);
+        }
+        // Arguments, globals etc. are only known as themselves
+        return operand;
+    }
+
+    /** Lowers the lattice value of the given instruction to the given one (if it is not already lower). */
+    private void setValue(Instruction inst, Value value)
+    {
+        Value old = this.values.get(inst);
+        if (old == inst)
+        {
+            // Already overdefined
+            return;
+        }
+        if (old != null)
+        {
+            if (value != inst && ConstantFolder.isSameConstant(old, value))
+            {
+                return;
+            }
+            // The value can only go down: undefined, then constant, then overdefined
+            value = inst;
+        }
+        this.values.put(inst, value);
+        this.instWorklist.add(inst);
+    }
+
+    /**
+     * Marks the edge from the given block (or the start of the function, if it is {@code null}) to the other one
+     * as executable, and the destination block as well, if it was not.
+     */
+    private void markEdge(BasicBlock from, BasicBlock to)
+    {
+        Set<BasicBlock> preds = this.executablePreds.get(to);
+        if (preds == null)
+        {
+            preds = new HashSet<BasicBlock>(4);
+            this.executablePreds.put(to, preds);
+            this.blockWorklist.add(to);
+            if (from != null)
+            {
+                preds.add(from);
+            }
+            return;
+        }
+        if (from == null || !preds.add(from))
+        {
+            return;
+        }
+        // The phis of the (already executable) block have a new incoming value
+        for (Instruction inst: to.getInstructions())
+        {
+            if (!(inst instanceof PhiInst))
+            {
+                break;
+            }
+            visit(inst);
+        }
+    }
+
+    private boolean isExecutable(BasicBlock block)
+    {
+        return this.executablePreds.containsKey(block);
+    }
+
+    private boolean isEdgeExecutable(BasicBlock from, BasicBlock to)
+    {
+        Set<BasicBlock> preds = this.executablePreds.get(to);
+        return preds != null && preds.contains(from);
+    }
+
+    /** Finds the lattice value of each instruction & the executable blocks. */
+    private void solve()
+    {
+        markEdge(null, this.function.getEntryBlock());
+        do {
+            while (!this.blockWorklist.isEmpty() || !this.instWorklist.isEmpty())
+            {
+                while (!this.instWorklist.isEmpty())
+                {
+                    Instruction inst = this.instWorklist.removeFirst();
+                    for (int i = 0; i < inst.getNumUsers(); i++)
+                    {
+                        User user = inst.getUser(i);
+                        if (user instanceof Instruction)
+                        {
+                            visit((Instruction) user);
+                        }
+                    }
+                }
+                if (!this.blockWorklist.isEmpty())
+                {
+                    for (Instruction inst: this.blockWorklist.removeFirst().getInstructions())
+                    {
+                        visit(inst);
+                    }
+                }
+            }
+        } while (resolveUndefinedBranches());
+    }
+
+    /** Evaluates the given instruction, if its block is executable. */
+    private void visit(Instruction inst)
+    {
+        BasicBlock block = inst.getParent();
+        if (!isExecutable(block))
+        {
+            return;
+        }
+        if (inst instanceof PhiInst)
+        {
+            visitPhi((PhiInst) inst);
+        }
+        else if (inst instanceof BranchInst)
+        {
+            BranchInst branch = (BranchInst) inst;
+            if (!branch.isConditional())
+            {
+                markEdge(block, branch.getSuccessor(0));
+                return;
+            }
+            Value condition = getValue(branch.getCondition());
+            if (condition instanceof ConstantInt)
+            {
+                markEdge(block, branch.getSuccessor(((ConstantInt) condition).value != 0 ? 0 : 1));
+            }
+            else if (condition != null)
+            {
+                markEdge(block, branch.getSuccessor(0));
+                markEdge(block, branch.getSuccessor(1));
+            }
+        }
+        else if (inst instanceof BinaryInst || inst instanceof ICmpInst)
+        {
+            Value[] operands = new Value[inst.getNumOperands()];
+            boolean allConstant = true;
+            for (int i = 0; i < operands.length; i++)
+            {
+                operands[i] = getValue(inst.getOperand(i));
+                if (operands[i] == null)
+                {
+                    // Evaluated again once the operand is known
+                    return;
+                }
+                allConstant &= isConstant(operands[i]);
+            }
+            Value folded = allConstant ? ConstantFolder.fold(inst, operands) : foldNullComparison(inst, operands);
+            setValue(inst, (folded != null) ? folded : inst);
+        }
+        else if (!inst.isTerminator())
+        {
+            // Loads, calls etc.
+            setValue(inst, inst);
+        }
+    }
+
+    /**
+     * Returns the result of the given comparison of a new object or array (the result of a {@code calloc} call)
+     * with {@code null}, or {@code null} if it is not such a comparison. A new object or array is never
+     * {@code null}, since its vtable or length is stored into it as soon as it is allocated.
+     */
+    private static ConstantInt foldNullComparison(Instruction inst, Value[] operands)
+    {
+        if (!(inst instanceof ICmpInst))
+        {
+            return null;
+        }
+        ICmpInst.Predicate predicate = ((ICmpInst) inst).predicate;
+        if (predicate != ICmpInst.Predicate.EQ && predicate != ICmpInst.Predicate.NE)
+        {
+            return null;
+        }
+        for (int i = 0; i < 2; i++)
+        {
+            if (operands[i] instanceof ConstantNull && operands[1 - i] instanceof CallInst)
+            {
+                Function called = ((CallInst) operands[1 - i]).getCalledFunction();
+                if (called != null && called.isRuntime() && called.getName().equals("calloc"))
+                {
+                    return ConstantInt.getBool(predicate == ICmpInst.Predicate.NE);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Evaluates the given phi: it is a constant if it takes the same constant from every executable edge. */
+    private void visitPhi(PhiInst phi)
+    {
+        Value result = null;
+        for (int i = 0; i < phi.getNumIncoming(); i++)
+        {
+            if (!isEdgeExecutable(phi.getIncomingBlock(i), phi.getParent()))
+            {
+                continue;
+            }
+            Value incoming = getValue(phi.getIncomingValue(i));
+            if (incoming == null)
+            {
+                continue;
+            }
+            if (!isConstant(incoming) || (result != null && !ConstantFolder.isSameConstant(result, incoming)))
+            {
+                setValue(phi, phi);
+                return;
+            }
+            result = incoming;
+        }
+        if (result != null)
+        {
+            setValue(phi, result);
+        }
+    }
+
+    /**
+     * Makes the conditions of the executable conditional branches that are still undefined overdefined,
+     * so that no executable block branches to a dead one. Returns {@code true} if there was any
+     * (so the solver must go on).
+     */
+    private boolean resolveUndefinedBranches()
+    {
+        boolean resolved = false;
+        for (BasicBlock block: this.executablePreds.keySet())
+        {
+            Instruction terminator = block.getTerminator();
+            if (terminator instanceof BranchInst && ((BranchInst) terminator).isConditional()
+                && getValue(((BranchInst) terminator).getCondition()) == null)
+            {
+                Instruction condition = (Instruction) ((BranchInst) terminator).getCondition();
+                setValue(condition, condition);
+                resolved = true;
+            }
+        }
+        return resolved;
+    }
+
+    /** Removes the incoming values of the phis of the given block that come from the given predecessor. */
+    private static void removeIncoming(BasicBlock block, BasicBlock pred)
+    {
+        for (Instruction inst: block.getInstructions())
+        {
+            if (!(inst instanceof PhiInst))
+            {
+                break;
+            }
+            PhiInst phi = (PhiInst) inst;
+            for (int i = phi.getNumIncoming() - 1; i >= 0; i--)
+            {
+                if (phi.getIncomingBlock(i) == pred)
+                {
+                    phi.removeIncoming(i);
+                }
+            }
+        }
+    }
+
+    /** Replaces the executable conditional branches that always go the same way with unconditional ones. */
+    private boolean pruneBranches()
+    {
+        boolean changed = false;
+        for (BasicBlock block: this.function.getBlocks())
+        {
+            Instruction terminator = block.getTerminator();
+            if (!isExecutable(block) || !(terminator instanceof BranchInst) || !((BranchInst) terminator).isConditional())
+            {
+                continue;
+            }
+            BranchInst branch = (BranchInst) terminator;
+            BasicBlock ifTrue = branch.getSuccessor(0);
+            BasicBlock ifFalse = branch.getSuccessor(1);
+            boolean trueTaken = isEdgeExecutable(block, ifTrue);
+            boolean falseTaken = isEdgeExecutable(block, ifFalse);
+            if (trueTaken && falseTaken)
+            {
+                continue;
+            }
+            BasicBlock dest = trueTaken ? ifTrue : ifFalse;
+            BasicBlock skipped = trueTaken ? ifFalse : ifTrue;
+            if (skipped != dest && isExecutable(skipped))
+            {
+                removeIncoming(skipped, block);
+            }
+            block.insertBefore(new BranchInst(dest), branch);
+            branch.eraseFromParent();
+            changed = true;
+        }
+        return changed;
+    }
+
+    /** Removes the blocks that can never be executed. */
+    private boolean removeDeadBlocks()
+    {
+        List<BasicBlock> dead = new ArrayList<BasicBlock>();
+        for (BasicBlock block: this.function.getBlocks())
+        {
+            if (!isExecutable(block))
+            {
+                dead.add(block);
+            }
+        }
+        if (dead.isEmpty())
+        {
+            return false;
+        }
+        for (BasicBlock block: dead)
+        {
+            for (BasicBlock successor: block.getSuccessors())
+            {
+                if (isExecutable(successor))
+                {
+                    removeIncoming(successor, block);
+                }
+            }
+        }
+        // The operands are dropped first, since the dead instructions may use each other
+        for (BasicBlock block: dead)
+        {
+            for (Instruction inst: block.getInstructions())
+            {
+                inst.dropOperands();
+            }
+        }
+        for (BasicBlock block: dead)
+        {
+            this.function.removeBlock(block);
+        }
+        this.numRemovedBlocks += dead.size();
+        return true;
+    }
+
+    /** Replaces the instructions that always produce the same constant with it. */
+    private boolean replaceConstants()
+    {
+        Set<Instruction> folded = new HashSet<Instruction>();
+        for (Map.Entry<Instruction, Value> entry: this.values.entrySet())
+        {
+            Instruction inst = entry.getKey();
+            if (isConstant(entry.getValue()) && inst.getParent() != null && isExecutable(inst.getParent()))
+            {
+                inst.replaceAllUsesWith(entry.getValue());
+                folded.add(inst);
+            }
+        }
+        if (folded.isEmpty())
+        {
+            return false;
+        }
+        for (BasicBlock block: this.function.getBlocks())
+        {
+            block.eraseAll(folded);
+        }
+        this.numFolded += folded.size();
+        return true;
+    }
+
+    /**
+     * Replaces the phis that are left with a single incoming value (or the same value from every predecessor,
+     * other than themselves) with that value.
+     */
+    private boolean simplifyPhis()
+    {
+        boolean changed = false;
+        boolean simplified = true;
+        while (simplified)
+        {
+            simplified = false;
+            for (BasicBlock block: this.function.getBlocks())
+            {
+                List<Instruction> instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size() && instructions.get(i) instanceof PhiInst; i++)
+                {
+                    PhiInst phi = (PhiInst) instructions.get(i);
+                    Value same = null;
+                    for (int j = 0; j < phi.getNumIncoming(); j++)
+                    {
+                        Value incoming = phi.getIncomingValue(j);
+                        if (incoming != phi && !(same != null && ConstantFolder.isSameConstant(same, incoming)))
+                        {
+                            same = (same == null) ? incoming : phi;
+                        }
+                    }
+                    if (same != null && same != phi)
+                    {
+                        phi.replaceAllUsesWith(same);
+                        phi.eraseFromParent();
+                        simplified = true;
+                        changed = true;
+                        // The instruction list is a view of the block, so it shrinks along with it
+                        i--;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * File: SimplifyCFG.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package IRPasses;
+
+import IRModel.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the blocks that only pass control on, which are mostly left behind when branches are resolved
+ * at compile time (see {@link SCCP}):
+ * <ul>
+ * <li>a block whose only predecessor unconditionally branches to it is merged into the predecessor,</li>
+ * <li>a block that only contains an unconditional branch is bypassed (its predecessors branch to its successor),
+ * unless that would give a phi of the successor two different values for the same predecessor, and</li>
+ * <li>a conditional branch whose targets are the same block becomes unconditional.</li>
+ * </ul>
+ */
+public class SimplifyCFG {
+
+    private SimplifyCFG()
+    {
+    }
+
+    /**
+     * Simplifies the control flow of the given function (which must have a body, without unreachable blocks).
+     * Returns the number of removed blocks.
+     */
+    public static int run(Function function)
+    {
+        int removed = 0;
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            for (BasicBlock block: new ArrayList<BasicBlock>(function.getBlocks()))
+            {
+                if (block.getParent() == null)
+                {
+                    // Merged into another block in this iteration
+                    continue;
+                }
+                Instruction terminator = block.getTerminator();
+                BranchInst branch = (terminator instanceof BranchInst) ? (BranchInst) terminator : null;
+                if (branch != null && branch.isConditional() && branch.getSuccessor(0) == branch.getSuccessor(1))
+                {
+                    Value condition = branch.getCondition();
+                    block.insertBefore(new BranchInst(branch.getSuccessor(0)), branch);
+                    branch.eraseFromParent();
+                    eraseIfUnused(condition);
+                    changed = true;
+                    continue;
+                }
+                if (block == function.getEntryBlock())
+                {
+                    continue;
+                }
+                List<BasicBlock> preds = block.getPredecessors();
+                if (preds.size() == 1 && preds.get(0) != block && isUnconditionalBranch(preds.get(0).getTerminator()))
+                {
+                    mergeIntoPredecessor(block, preds.get(0));
+                    removed++;
+                    changed = true;
+                }
+                else if (branch != null && !preds.isEmpty() && block.getInstructions().size() == 1 && !branch.isConditional()
+                         && branch.getSuccessor(0) != block && bypass(block, preds, branch.getSuccessor(0)))
+                {
+                    removed++;
+                    changed = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private static boolean isUnconditionalBranch(Instruction inst)
+    {
+        return inst instanceof BranchInst && !((BranchInst) inst).isConditional();
+    }
+
+    /** Erases the given value, if it is an instruction without users or side effects. */
+    private static void eraseIfUnused(Value value)
+    {
+        if ((value instanceof BinaryInst || value instanceof ICmpInst || value instanceof PhiInst) && !value.hasUsers())
+        {
+            ((Instruction) value).eraseFromParent();
+        }
+    }
+
+    /**
+     * Moves the instructions of the given block to the end of its only predecessor (which unconditionally
+     * branches to it), and removes the block.
+     */
+    private static void mergeIntoPredecessor(BasicBlock block, BasicBlock pred)
+    {
+        // Its phis can only take the value from the predecessor
+        List<Instruction> instructions = block.getInstructions();
+        while (instructions.get(0) instanceof PhiInst)
+        {
+            PhiInst phi = (PhiInst) instructions.get(0);
+            phi.replaceAllUsesWith(phi.getIncomingValue(0));
+            phi.eraseFromParent();
+        }
+        pred.getTerminator().eraseFromParent();
+        block.moveInstructionsTo(pred);
+        // The phis of its successors now get their values from the predecessor
+        block.replaceAllUsesWith(pred);
+        block.getParent().removeBlock(block);
+    }
+
+    /**
+     * Makes the given predecessors of the given block (which only contains an unconditional branch) branch to
+     * its successor instead, and removes the block. Returns {@code false} (without modifying anything)
+     * if any of the predecessors already branches to the successor, and the successor has phis.
+     */
+    private static boolean bypass(BasicBlock block, List<BasicBlock> preds, BasicBlock successor)
+    {
+        List<PhiInst> phis = new ArrayList<PhiInst>();
+        for (Instruction inst: successor.getInstructions())
+        {
+            if (!(inst instanceof PhiInst))
+            {
+                break;
+            }
+            phis.add((PhiInst) inst);
+        }
+        if (!phis.isEmpty())
+        {
+            List<BasicBlock> successorPreds = successor.getPredecessors();
+            for (BasicBlock pred: preds)
+            {
+                if (successorPreds.contains(pred))
+                {
+                    return false;
+                }
+            }
+        }
+        // The value each phi took from the block, it now takes from each of its predecessors
+        for (PhiInst phi: phis)
+        {
+            for (int i = 0; i < phi.getNumIncoming(); i++)
+            {
+                if (phi.getIncomingBlock(i) == block)
+                {
+                    Value value = phi.getIncomingValue(i);
+                    phi.setIncomingBlock(i, preds.get(0));
+                    for (int p = 1; p < preds.size(); p++)
+                    {
+                        phi.addIncoming(value, preds.get(p));
+                    }
+                    break;
+                }
+            }
+        }
+        for (BasicBlock pred: preds)
+        {
+            pred.getTerminator().replaceUsesOfWith(block, successor);
+        }
+        block.getTerminator().eraseFromParent();
+        block.getParent().removeBlock(block);
+        return true;
+    }
+}
@@ -3,87 +3,562 @@
  * Pavlos Spanoudakis (sdi1800184)
  */
 
-import syntaxtree.*;
+import Cache.CompileCache;
+import Statistics.BatchReport;
+import Statistics.StatisticsReport;
+import Visitors.IRGenerator;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-
-import Visitors.*;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class Main {
+
+    /** The options that apply to the compilation of every file. */
+    private static class CompileOptions {
+        /** Used to reuse previous results ({@code null} if caching is disabled). */
+        CompileCache cache;
+        /** The statistics of each file are added to it ({@code null} if statistics are disabled). */
+        StatisticsReport report;
+        /** Used to generate the IR and/or to analyze the method bodies concurrently ({@code null} if not). */
+        ForkJoinPool irPool;
+        ForkJoinPool analysisPool;
+        /** The output file ({@code null} to place it next to each input file). */
+        String outputFile;
+        /** Set to {@code true} to produce executables through clang, instead of IR files. */
+        boolean clang;
+        /** Set to {@code true} to produce LLVM bitcode instead of IR text. */
+        boolean bitcode;
+        /** The maximum size (in instructions) of the inlined functions. */
+        int inlineBudget;
+        /** The stream of the messages meant for {@code System.out}
+         * (which is {@code System.err} when the IR is written to the standard output). */
+        PrintStream out;
+    }
+
     public static void main(String[] args) throws Exception {
-        if(args.length < 1) {
-            System.err.println("No file path arguments given.");
-            System.err.println("Usage: java Main <inputFile1> <restInputFiles>*");
-            System.exit(1);
-        }
-        
-        /**
-         * For each given file, perform Semantic Analysis.
-         * If no errors are detected, generate the corresponding LLVM IR file.
-         */
-        for (String filepath: args)
+        // Number of worker threads (0 means compile sequentially, without a worker pool)
+        int numWorkers = 0;
+        boolean serverMode = false;
+        int port = CompileServer.DEFAULT_PORT;
+        boolean portGiven = false;
+        String cacheDirectory = null;
+        long cacheSize = CompileCache.DEFAULT_MAX_SIZE;
+        boolean timePasses = false;
+        boolean stats = false;
+        String statsJsonFile = null;
+        boolean parallelIRGeneration = false;
+        boolean parallelAnalysis = false;
+        String outputFile = null;
+        boolean clang = false;
+        boolean bitcode = false;
+        int inlineBudget = IRGenerator.DEFAULT_INLINE_BUDGET;
+        boolean inlineBudgetGiven = false;
+        boolean watch = false;
+        String batchInputs = null;
+        String outputDirectory = null;
+        String batchReportFile = null;
+        List<String> filepaths = new ArrayList<String>();
+
+        for (int i = 0; i < args.length; i++)
         {
-            FileInputStream fis = null;
-            System.out.println();
-            try {
-                // Open file and create Parse Tree
-                fis = new FileInputStream(filepath);
-                System.out.println("File: " + filepath);
-                System.out.println("-----------------------------------");
-
-                MiniJavaParser parser = new MiniJavaParser(fis);    
-                Goal root = parser.Goal();    
-                System.err.println("Program parsed successfully.");
-    
-                /* ------------------- Semantic Analysis ------------------- */
-                
-                // Collect all class names
-                ClassNameCollector classNameCollector = new ClassNameCollector();
-                root.accept(classNameCollector, null);
-
-                // Collect all class fields and methods
-                DeclarationCollector declarationCollector = new DeclarationCollector(classNameCollector.classInfos);
-                root.accept(declarationCollector, null);
-
-                // Check method bodies
-                FunctionBodyAnalyzer functionAnalyzer = new FunctionBodyAnalyzer(classNameCollector.classInfos);
-                root.accept(functionAnalyzer, null);
-
-                /* ------------------- LLVM IR Generation ------------------ */
-                
-                // Create output .ll file
-                String outputFile = filepath.replace(".java", ".ll");
-                IRGenerator irgen = new IRGenerator(outputFile, classNameCollector.classInfos);
-                irgen.emitVtables();
-                irgen.emitUtils();
-                root.accept(irgen, null);
-                irgen.closeWriter();
-
-                // Done.
-                System.out.println("LLVM IR file: '" + outputFile + "' has been produced.");
-            }
-            catch(ParseException ex){
-                // Parsing failed
-                System.out.println(ex.getMessage());
-            }
-            catch(FileNotFoundException ex){
-                // Invalid file path given
-                System.err.println(ex.getMessage());
-            }
-            catch(SemanticError er){
-                // Semantic Error detected
-                System.err.println(er.getMessage());
-            }
-            finally {
+            if (args[i].equals("--server"))
+            {
+                serverMode = true;
+            }
+            else if (args[i].equals("-p"))
+            {
+                if (i + 1 == args.length)
+                {
+                    usageError("Option '-p' requires a port number.");
+                }
+                try {
+                    port = Integer.parseInt(args[++i]);
+                    portGiven = true;
+                }
+                catch (NumberFormatException ex) {
+                    usageError("Invalid port number: '" + args[i] + "'.");
+                }
+            }
+            else if (args[i].equals("-j"))
+            {
+                if (i + 1 == args.length)
+                {
+                    usageError("Option '-j' requires a number of worker threads.");
+                }
+                try {
+                    numWorkers = Integer.parseInt(args[++i]);
+                }
+                catch (NumberFormatException ex) {
+                    numWorkers = -1;
+                }
+                if (numWorkers < 1)
+                {
+                    usageError("Invalid number of worker threads: '" + args[i] + "'.");
+                }
+            }
+            else if (args[i].equals("--cache"))
+            {
+                if (i + 1 == args.length)
+                {
+                    usageError("Option '--cache' requires a cache directory.");
+                }
+                cacheDirectory = args[++i];
+            }
+            else if (args[i].equals("--cache-size"))
+            {
+                if (i + 1 == args.length)
+                {
+                    usageError("Option '--cache-size' requires a size in MB.");
+                }
+                try {
+                    cacheSize = Long.parseLong(args[++i]) << 20;
+                }
+                catch (NumberFormatException ex) {
+                    cacheSize = -1;
+                }
+                if (cacheSize < 1)
+                {
+                    usageError("Invalid cache size: '" + args[i] + "'.");
+                }
+            }
+            else if (args[i].equals("--parallel-irgen"))
+            {
+                parallelIRGeneration = true;
+            }
+            else if (args[i].equals("--parallel-analysis"))
+            {
+                parallelAnalysis = true;
+            }
+            else if (args[i].equals("-o"))
+            {
+                if (i + 1 == args.length)
+                {
+                    usageError("Option '-o' requires an output file ('-' for the standard output).");
+                }
+                outputFile = args[++i];
+            }
+            else if (args[i].equals("--clang"))
+            {
+                clang = true;
+            }
+            else if (args[i].equals("--emit-bc"))
+            {
+                bitcode = true;
+            }
+            else if (args[i].equals("--inline-budget"))
+            {
+                if (i + 1 == args.length)
+                {
+                    usageError("Option '--inline-budget' requires a number of instructions.");
+                }
                 try {
-                    if(fis != null) fis.close();
+                    inlineBudget = Integer.parseInt(args[++i]);
+                }
+                catch (NumberFormatException ex) {
+                    inlineBudget = -1;
+                }
+                if (inlineBudget < 0)
+                {
+                    usageError("Invalid inline budget: '" + args[i] + "'.");
+                }
+                inlineBudgetGiven = true;
+            }
+            else if (args[i].equals("--watch"))
+            {
+                watch = true;
+            }
+            else if (args[i].equals("--batch"))
+            {
+                if (i + 1 == args.length)
+                {
+                    usageError("Option '--batch' requires a directory or a manifest file.");
                 }
-                catch(IOException ex) {
-                    System.err.println(ex.getMessage());
+                batchInputs = args[++i];
+            }
+            else if (args[i].equals("--out-dir"))
+            {
+                if (i + 1 == args.length)
+                {
+                    usageError("Option '--out-dir' requires an output directory.");
+                }
+                outputDirectory = args[++i];
+            }
+            else if (args[i].equals("--report"))
+            {
+                if (i + 1 == args.length)
+                {
+                    usageError("Option '--report' requires a report file.");
+                }
+                batchReportFile = args[++i];
+            }
+            else if (args[i].equals("--time-passes"))
+            {
+                timePasses = true;
+            }
+            else if (args[i].equals("--stats"))
+            {
+                stats = true;
+            }
+            else if (args[i].equals("--stats-json"))
+            {
+                if (i + 1 == args.length)
+                {
+                    usageError("Option '--stats-json' requires a report file.");
                 }
+                statsJsonFile = args[++i];
+            }
+            else
+            {
+                filepaths.add(args[i]);
+            }
+        }
+
+        if (serverMode)
+        {
+            if (cacheDirectory != null)
+            {
+                usageError("Option '--cache' cannot be used in server mode.");
+            }
+            if (timePasses || stats || statsJsonFile != null)
+            {
+                usageError("Statistics options cannot be used in server mode.");
+            }
+            if (parallelIRGeneration || parallelAnalysis)
+            {
+                usageError("Options '--parallel-irgen' & '--parallel-analysis' cannot be used in server mode.");
+            }
+            if (outputFile != null || clang)
+            {
+                usageError("Options '-o' & '--clang' cannot be used in server mode.");
+            }
+            if (bitcode)
+            {
+                usageError("Option '--emit-bc' cannot be used in server mode.");
+            }
+            if (inlineBudgetGiven)
+            {
+                usageError("Option '--inline-budget' cannot be used in server mode.");
+            }
+            if (batchInputs != null || watch)
+            {
+                usageError("Options '--batch' & '--watch' cannot be used in server mode.");
+            }
+            // Serve compile requests until stopped
+            int numThreads = numWorkers > 0 ? numWorkers : Runtime.getRuntime().availableProcessors();
+            new CompileServer(port, numThreads).run();
+            return;
+        }
+
+        if (portGiven)
+        {
+            usageError("Option '-p' can only be used with '--server'.");
+        }
+        if (batchInputs == null && (outputDirectory != null || batchReportFile != null))
+        {
+            usageError("Options '--out-dir' & '--report' can only be used with '--batch'.");
+        }
+        if (batchInputs != null)
+        {
+            if (watch)
+            {
+                usageError("Option '--watch' cannot be used with '--batch'.");
+            }
+            if (!filepaths.isEmpty())
+            {
+                usageError("Option '--batch' cannot be used with file path arguments.");
+            }
+            if (outputFile != null || clang)
+            {
+                usageError("Options '-o' & '--clang' cannot be used with '--batch'.");
             }
+            if (timePasses || stats || statsJsonFile != null)
+            {
+                usageError("Statistics options cannot be used with '--batch' (see the batch report).");
+            }
+            compileBatch(batchInputs, outputDirectory, (batchReportFile != null) ? batchReportFile : "batch-report.json",
+                         numWorkers, cacheDirectory == null ? null : new CompileCache(cacheDirectory, cacheSize, FileCompiler.getVersion()),
+                         bitcode, inlineBudget, parallelIRGeneration, parallelAnalysis);
+            return;
+        }
+
+        if(filepaths.size() < 1) {
+            usageError("No file path arguments given.");
+        }
+
+        if (outputFile != null && filepaths.size() > 1)
+        {
+            usageError("Option '-o' can only be used with a single input file.");
+        }
+        if ((outputFile != null || clang) && cacheDirectory != null)
+        {
+            usageError("Options '-o' & '--clang' cannot be used with '--cache'.");
+        }
+        if (clang && FileCompiler.STDOUT.equals(outputFile))
+        {
+            usageError("Option '--clang' cannot write the executable to the standard output.");
         }
+
+        if (watch && numWorkers > 0)
+        {
+            usageError("Option '-j' cannot be used with '--watch'.");
+        }
+        if (watch && (timePasses || stats || statsJsonFile != null))
+        {
+            usageError("Statistics options cannot be used with '--watch'.");
+        }
+        if (watch && FileCompiler.STDOUT.equals(outputFile))
+        {
+            usageError("Option '--watch' cannot write to the standard output.");
+        }
+        if (watch && outputFile != null && new File(filepaths.get(0)).isDirectory())
+        {
+            usageError("Option '-o' cannot be used with a watched directory.");
+        }
+
+        // Inlining needs the whole module, so the IR could only be written once all of it has been generated:
+        // unless a budget is given, nothing is inlined when the IR is streamed (to clang or the standard output)
+        if (!inlineBudgetGiven && (clang || FileCompiler.STDOUT.equals(outputFile)))
+        {
+            inlineBudget = 0;
+        }
+
+        CompileOptions options = new CompileOptions();
+        options.outputFile = outputFile;
+        options.clang = clang;
+        options.bitcode = bitcode;
+        options.inlineBudget = inlineBudget;
+        // Only the IR is written to the standard output, if it is written there
+        options.out = FileCompiler.STDOUT.equals(outputFile) ? System.err : System.out;
+        if (cacheDirectory != null)
+        {
+            options.cache = new CompileCache(cacheDirectory, cacheSize, FileCompiler.getVersion());
+        }
+        if (timePasses || stats || statsJsonFile != null)
+        {
+            options.report = new StatisticsReport(timePasses, stats, statsJsonFile, options.out);
+        }
+        // The method bodies of each file are analyzed and/or generated on the common pool,
+        // which is shared by all the files
+        options.irPool = parallelIRGeneration ? ForkJoinPool.commonPool() : null;
+        options.analysisPool = parallelAnalysis ? ForkJoinPool.commonPool() : null;
+
+        if (watch)
+        {
+            // Runs until stopped
+            final CompileOptions watchOptions = options;
+            new WatchCompiler(new WatchCompiler.CompilerFactory() {
+                public FileCompiler create(String filepath) {
+                    return createCompiler(filepath, watchOptions);
+                }
+            }, options.out).watch(filepaths);
+        }
+        else if (numWorkers == 0)
+        {
+            compileSequentially(filepaths, options);
+        }
+        else
+        {
+            compileInParallel(filepaths, numWorkers, options);
+        }
+
+        if (options.report != null)
+        {
+            options.report.finish();
+        }
+
+        if (options.cache != null)
+        {
+            System.out.println();
+            options.cache.printStatistics(System.out);
+        }
+    }
+
+    /**
+     * For each given file, perform Semantic Analysis.
+     * If no errors are detected, generate the corresponding LLVM IR file (or executable),
+     * as set by the given options.
+     */
+    private static void compileSequentially(List<String> filepaths, CompileOptions options)
+    {
+        for (String filepath: filepaths)
+        {
+            FileCompiler compiler = createCompiler(filepath, options);
+            compiler.compile();
+            compiler.printMessages(options.out, System.err);
+            if (options.report != null)
+            {
+                options.report.add(compiler.getStatistics());
+            }
+        }
+    }
+
+    /**
+     * Creates the compiler of the given file, which uses the given options: the cache & pools (if any),
+     * the output file or clang, and measures its phases if a statistics report is given.
+     */
+    private static FileCompiler createCompiler(String filepath, CompileOptions options)
+    {
+        FileCompiler compiler;
+        if (options.outputFile != null)
+        {
+            compiler = new FileCompiler(filepath, options.outputFile);
+        }
+        else if (options.clang)
+        {
+            // The executable is placed next to the file
+            compiler = new FileCompiler(filepath, filepath.endsWith(".java")
+                                                  ? filepath.substring(0, filepath.length() - ".java".length())
+                                                  : filepath + ".out");
+        }
+        else if (options.bitcode)
+        {
+            // The bitcode file is placed next to the file
+            compiler = new FileCompiler(filepath, FileCompiler.getOutputPath(filepath, ".bc"));
+        }
+        else
+        {
+            compiler = new FileCompiler(filepath);
+        }
+        if (options.clang)
+        {
+            compiler.enableClang();
+        }
+        if (options.bitcode)
+        {
+            compiler.enableBitcode();
+        }
+        compiler.setInlineBudget(options.inlineBudget);
+        compiler.setCache(options.cache);
+        compiler.setIRPool(options.irPool);
+        compiler.setAnalysisPool(options.analysisPool);
+        if (options.report != null)
+        {
+            compiler.enableStatistics();
+        }
+        return compiler;
+    }
+
+    /**
+     * Compiles the given files concurrently, using a pool of {@code numWorkers} threads.
+     * The messages of each file are printed as soon as it has been compiled,
+     * in the order the files were given. A files/sec summary is printed in the end.
+     */
+    private static void compileInParallel(List<String> filepaths, int numWorkers, CompileOptions options) throws Exception
+    {
+        ExecutorService workers = Executors.newFixedThreadPool(numWorkers);
+        // Files submitted to the pool, whose messages have not been printed yet.
+        // At most `maxPending` files are submitted at a time, so that thousands
+        // of pending results are never stored at once.
+        Deque<Future<FileCompiler>> pending = new ArrayDeque<Future<FileCompiler>>();
+        int maxPending = numWorkers * 4;
+        int numFailed = 0;
+        long start = System.nanoTime();
+
+        try {
+            for (String filepath: filepaths)
+            {
+                if (pending.size() == maxPending)
+                {
+                    numFailed += printResult(pending.removeFirst(), options);
+                }
+                pending.addLast(workers.submit(createCompiler(filepath, options)));
+            }
+            while (!pending.isEmpty())
+            {
+                numFailed += printResult(pending.removeFirst(), options);
+            }
+        }
+        finally {
+            workers.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        options.out.println();
+        options.out.printf("Compiled %d file(s) (%d failed) in %.3f s using %d worker(s): %.1f files/sec%n",
+                          filepaths.size(), numFailed, seconds, numWorkers, filepaths.size() / seconds);
+    }
+
+    /**
+     * Compiles the files of the given directory tree (or manifest file) in a batch, which writes the result
+     * of each file to the given report file, instead of printing its messages. Only a summary is printed in the end.
+     */
+    private static void compileBatch(String inputs, String outputDirectory, String reportFile, int numWorkers,
+                                     CompileCache cache, boolean bitcode, int inlineBudget,
+                                     boolean parallelIRGeneration, boolean parallelAnalysis) throws Exception
+    {
+        if (!new File(inputs).exists())
+        {
+            System.err.println("No such directory or manifest file: '" + inputs + "'.");
+            System.exit(1);
+        }
+        BatchReport report = new BatchReport(reportFile, inputs);
+        BatchCompiler batch = new BatchCompiler(report, outputDirectory);
+        batch.setNumWorkers(numWorkers);
+        batch.setCache(cache);
+        batch.setIRPool(parallelIRGeneration ? ForkJoinPool.commonPool() : null);
+        batch.setAnalysisPool(parallelAnalysis ? ForkJoinPool.commonPool() : null);
+        if (bitcode)
+        {
+            batch.enableBitcode();
+        }
+        batch.setInlineBudget(inlineBudget);
+
+        long start = System.nanoTime();
+        try {
+            batch.compile(inputs);
+        }
+        finally {
+            report.finish(System.nanoTime() - start);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Compiled %d file(s) (%d failed) in %.3f s using %d worker(s): %.1f files/sec%n",
+                          report.getNumFiles(), report.getNumFailed(), seconds, Math.max(numWorkers, 1),
+                          report.getNumFiles() / seconds);
+        System.out.println("Batch report: '" + reportFile + "' has been produced.");
+        if (cache != null)
+        {
+            System.out.println();
+            cache.printStatistics(System.out);
+        }
+    }
+
+    /**
+     * Waits for the given file to be compiled and prints its messages
+     * (and adds its statistics to the report of the given options, if any).
+     * Returns 1 if the compilation failed, 0 otherwise.
+     */
+    private static int printResult(Future<FileCompiler> result, CompileOptions options) throws Exception
+    {
+        FileCompiler compiler = result.get();
+        compiler.printMessages(options.out, System.err);
+        if (options.report != null)
+        {
+            options.report.add(compiler.getStatistics());
+        }
+        return compiler.succeeded() ? 0 : 1;
+    }
+
+    private static void usageError(String message)
+    {
+        System.err.println(message);
+        System.err.println("Usage: java Main [-j <numThreads>] [--cache <directory> [--cache-size <MB>]]");
+        System.err.println("                 [--parallel-analysis] [--parallel-irgen] [--time-passes] [--stats] [--stats-json <reportFile>]");
+        System.err.println("                 [-o <outputFile>|-] [--clang] [--emit-bc] [--inline-budget <N>] <inputFile1> <restInputFiles>*");
+        System.err.println("       java Main --watch [--cache <directory>] [-o <outputFile>] [--clang] [--emit-bc] [--inline-budget <N>]");
+        System.err.println("                 <fileOrDirectory>+");
+        System.err.println("       java Main --batch <directory>|<manifestFile> [--out-dir <directory>] [--report <reportFile>]");
+        System.err.println("                 [-j <numThreads>] [--cache <directory> [--cache-size <MB>]] [--emit-bc] [--inline-budget <N>]");
+        System.err.println("                 [--parallel-analysis] [--parallel-irgen]");
+        System.err.println("       java Main --server [-p <port>] [-j <numThreads>]");
+        System.err.println("The inline budget is " + IRGenerator.DEFAULT_INLINE_BUDGET + " by default, or 0 with '-o -' & '--clang' (so that the IR is streamed).");
+        System.exit(1);
     }
 }
@@ -0,0 +1,434 @@
+/**
+ * File: MiniJavaCompiler.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+import syntaxtree.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import ClassInformation.ClassInfo;
+import IRModel.Function;
+import IROutput.*;
+import Statistics.CompileStatistics;
+import Statistics.NodeCounter;
+import Visitors.*;
+
+/**
+ * The in-memory compiler API: compiles a MiniJava source (given as a {@code Reader},
+ * a {@code CharSequence} or a {@code ByteBuffer}) and writes the LLVM IR to the given {@link IRSink}
+ * (e.g. a {@code StringIRSink}, a {@code WriterIRSink} or a {@code ChannelIRSink}).
+ * Nothing is written to the sink unless the source is valid, and the sink is not closed.
+ * By default, the IR is printed once the whole module has been generated; with {@link #setStreaming},
+ * each function is printed as soon as it has been generated instead.
+ * With {@link #setBitcode}, the module is written as LLVM bitcode instead of IR text.
+ *
+ * <p>The outcome of each compilation is returned as a {@link Result}, with structured
+ * {@link Diagnostic}s instead of printed messages. No files are read or written
+ * (the runtime library is loaded from the classpath), and nothing is printed.
+ *
+ * <p>Every compilation uses its own Parser, Visitors & IR module, and the compiler itself only
+ * holds its options, so the same compiler can be used by many threads at the same time
+ * (once its options have been set).
+ */
+public class MiniJavaCompiler {
+
+    /** A problem found in the compiled source (or a failure of the compiler itself). */
+    public static class Diagnostic {
+
+        public enum Kind {
+            /** The source is not syntactically valid. */
+            PARSE_ERROR,
+            /** The source is syntactically valid, but has a semantic error. */
+            SEMANTIC_ERROR,
+            /** The compilation failed for any other reason (e.g. an I/O error of the sink). */
+            INTERNAL_ERROR
+        }
+
+        public final Kind kind;
+        /** The source line of the problem, or {@code -1} if it is not known. */
+        public final int line;
+        /** The message, as printed by {@code Main}. */
+        public final String message;
+
+        Diagnostic(Kind kind, int line, String message)
+        {
+            this.kind = kind;
+            this.line = line;
+            this.message = message;
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.message;
+        }
+    }
+
+    /** The outcome of a compilation. */
+    public static class Result {
+        private final List<Diagnostic> diagnostics;
+        private final CompileStatistics statistics;
+        private boolean succeeded;
+
+        Result(CompileStatistics statistics)
+        {
+            this.diagnostics = new ArrayList<Diagnostic>();
+            this.statistics = statistics;
+            this.succeeded = false;
+        }
+
+        /** Returns {@code true} if the IR has been written to the sink. */
+        public boolean succeeded()
+        {
+            return this.succeeded;
+        }
+
+        /** Returns the problems found, in the order they were found (currently at most one). */
+        public List<Diagnostic> getDiagnostics()
+        {
+            return Collections.unmodifiableList(this.diagnostics);
+        }
+
+        /** Returns the measurements of the compilation, or {@code null} if statistics are disabled. */
+        public CompileStatistics getStatistics()
+        {
+            return this.statistics;
+        }
+
+        void addDiagnostic(Diagnostic.Kind kind, int line, String message)
+        {
+            this.diagnostics.add(new Diagnostic(kind, line, message));
+        }
+    }
+
+    /** A source that has been parsed & analyzed successfully, so it can be compiled to IR. */
+    static class Program {
+        final Goal root;
+        final Map<String, ClassInfo> classInfos;
+        /** The number of symbols resolved by the Semantic Analysis. */
+        final long symbolsResolved;
+
+        Program(Goal root, Map<String, ClassInfo> classInfos, long symbolsResolved)
+        {
+            this.root = root;
+            this.classInfos = classInfos;
+            this.symbolsResolved = symbolsResolved;
+        }
+    }
+
+    /** Used to generate & print the functions concurrently ({@code null} to do it sequentially). */
+    private ForkJoinPool irPool;
+    /** Used to analyze the method bodies concurrently ({@code null} to do it sequentially). */
+    private ForkJoinPool analysisPool;
+    /** Set to {@code true} if each compilation should be measured. */
+    private boolean statistics;
+    /** Set to {@code true} if each function should be printed as soon as it has been generated. */
+    private boolean streaming;
+    /** Set to {@code true} if LLVM bitcode should be written instead of IR text. */
+    private boolean bitcode;
+    /** The maximum size (in instructions) of the inlined functions. */
+    private int inlineBudget;
+
+    public MiniJavaCompiler()
+    {
+        this.irPool = null;
+        this.analysisPool = null;
+        this.statistics = false;
+        this.streaming = false;
+        this.bitcode = false;
+        this.inlineBudget = IRGenerator.DEFAULT_INLINE_BUDGET;
+    }
+
+    /**
+     * Makes the compiler generate (and print) the IR of the functions concurrently, on the given pool.
+     * The produced IR is the same as the one produced sequentially.
+     */
+    public void setIRPool(ForkJoinPool pool)
+    {
+        this.irPool = pool;
+    }
+
+    /**
+     * Makes the compiler analyze the method bodies concurrently, on the given pool.
+     * The reported error (if any) is the same as the one reported by the sequential analysis.
+     */
+    public void setAnalysisPool(ForkJoinPool pool)
+    {
+        this.analysisPool = pool;
+    }
+
+    /**
+     * Makes the compiler measure each phase of every compilation (see {@link Result#getStatistics()}),
+     * which slightly slows down the compilation.
+     */
+    public void enableStatistics()
+    {
+        this.statistics = true;
+    }
+
+    /**
+     * Makes the compiler print each function as soon as its body has been generated
+     * ({@code true}), instead of printing the whole module once it has been generated
+     * ({@code false}, the default). The output is the same, but its consumer (e.g. a process
+     * reading it through a pipe) can start working on the first functions earlier,
+     * and is only given the runtime library in the end. Inlining needs the whole module, so unless
+     * the inline budget is {@code 0} (see {@link #setInlineBudget}), nothing is printed before that.
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Makes the compiler write the module as binary LLVM bitcode ({@code true}), instead of IR text
+     * ({@code false}, the default). The bitcode is written to the sink as a whole, once the module
+     * has been generated, so it is never streamed (see {@link BitcodeWriter}).
+     */
+    public void setBitcode(boolean bitcode)
+    {
+        this.bitcode = bitcode;
+    }
+
+    /**
+     * Makes the compiler inline the calls of the functions with at most {@code budget} instructions,
+     * or no calls at all if it is {@code 0} (see {@link IRGenerator#setInlineBudget}).
+     */
+    public void setInlineBudget(int budget)
+    {
+        this.inlineBudget = budget;
+    }
+
+    /**
+     * Compiles the source read from the given reader (which is not closed).
+     */
+    public Result compile(Reader source, IRSink output)
+    {
+        return compile(new MiniJavaParser(source), output);
+    }
+
+    /**
+     * Compiles the given source.
+     */
+    public Result compile(CharSequence source, IRSink output)
+    {
+        return compile(new StringReader(source.toString()), output);
+    }
+
+    /**
+     * Compiles the source in the remaining bytes of the given buffer, which are decoded like
+     * the bytes of a source file. The position of the buffer is not changed.
+     */
+    public Result compile(ByteBuffer source, IRSink output)
+    {
+        return compile(new MiniJavaParser(new ByteBufferInputStream(source.duplicate())), output);
+    }
+
+    private Result compile(MiniJavaParser parser, IRSink output)
+    {
+        Result result = new Result(this.statistics ? new CompileStatistics("<source>") : null);
+        Program program = analyze(parser, result);
+        if (program != null)
+        {
+            generate(program, output, result);
+        }
+        return result;
+    }
+
+    /**
+     * Parses the source and performs Semantic Analysis. If any problem is found,
+     * it is added to the result and {@code null} is returned.
+     * The phases are measured if the result has statistics.
+     */
+    Program analyze(MiniJavaParser parser, Result result)
+    {
+        CompileStatistics statistics = result.statistics;
+        try {
+            // Create Parse Tree
+            startPhase(statistics, "parse");
+            Goal root = parser.Goal();
+            endPhase(statistics);
+            if (statistics != null)
+            {
+                statistics.setCount("astNodes", NodeCounter.count(root));
+            }
+
+            /* ------------------- Semantic Analysis ------------------- */
+
+            // Collect all class names
+            startPhase(statistics, "classNames");
+            ClassNameCollector classNameCollector = new ClassNameCollector();
+            root.accept(classNameCollector, null);
+
+            // Collect all class fields and methods
+            startPhase(statistics, "declarations");
+            DeclarationCollector declarationCollector = new DeclarationCollector(classNameCollector.classInfos);
+            root.accept(declarationCollector, null);
+
+            // Check method bodies
+            startPhase(statistics, "bodyAnalysis");
+            FunctionBodyAnalyzer functionAnalyzer = new FunctionBodyAnalyzer(classNameCollector.classInfos);
+            functionAnalyzer.setPool(this.analysisPool);
+            root.accept(functionAnalyzer, null);
+            endPhase(statistics);
+
+            return new Program(root, classNameCollector.classInfos, functionAnalyzer.getSymbolsResolved());
+        }
+        catch(ParseException ex){
+            // Parsing failed
+            int line = (ex.currentToken != null && ex.currentToken.next != null) ? ex.currentToken.next.beginLine : -1;
+            result.addDiagnostic(Diagnostic.Kind.PARSE_ERROR, line, ex.getMessage());
+        }
+        catch(TokenMgrError er){
+            // Invalid characters in the source
+            result.addDiagnostic(Diagnostic.Kind.PARSE_ERROR, -1, er.getMessage());
+        }
+        catch(SemanticError er){
+            // Semantic Error detected
+            result.addDiagnostic(Diagnostic.Kind.SEMANTIC_ERROR, er.getLine(), er.getMessage());
+        }
+        catch(Exception ex){
+            result.addDiagnostic(Diagnostic.Kind.INTERNAL_ERROR, -1, ex.toString());
+        }
+        finally {
+            // End the phase that failed (if any)
+            endPhase(result.statistics);
+        }
+        return null;
+    }
+
+    /**
+     * Generates the IR of the given program and prints it to the given sink (which is flushed, but not closed).
+     * A failure is added to the result; otherwise it is marked as succeeded.
+     * The generation & the printing are measured (as the {@code irgen} & {@code output} phases)
+     * if the result has statistics.
+     */
+    void generate(Program program, IRSink output, Result result)
+    {
+        CompileStatistics statistics = result.statistics;
+        try {
+            // Build the IR module
+            startPhase(statistics, "irgen");
+            IRGenerator irgen = new IRGenerator(program.classInfos);
+            irgen.setPool(this.irPool);
+            irgen.setInlineBudget(this.inlineBudget);
+            irgen.generateVtables();
+            irgen.loadRuntime();
+            final IRPrinter printer = new IRPrinter(output);
+            if (this.streaming && !this.bitcode)
+            {
+                printer.start(irgen.getModule());
+                irgen.setListener(new IRGenerator.FunctionListener() {
+                    public void functionGenerated(Function function) throws IOException {
+                        printer.functionGenerated(function);
+                    }
+                });
+            }
+            program.root.accept(irgen, null);
+
+            // Print it (or the rest of it, if it has been streamed)
+            startPhase(statistics, "output");
+            if (this.bitcode)
+            {
+                new BitcodeWriter(output).write(irgen.getModule(), this.irPool);
+            }
+            else if (this.streaming)
+            {
+                printer.finish();
+            }
+            else if (this.irPool != null)
+            {
+                printer.print(irgen.getModule(), this.irPool);
+            }
+            else
+            {
+                printer.print(irgen.getModule());
+            }
+            output.flush();
+            endPhase(statistics);
+            if (statistics != null)
+            {
+                statistics.setCount("symbolsResolved", program.symbolsResolved + irgen.getSymbolsResolved());
+                statistics.setCount("promotedAllocas", irgen.getNumPromotedAllocas());
+                statistics.setCount("foldedConstants", irgen.getNumFoldedConstants());
+                statistics.setCount("prunedBlocks", irgen.getNumPrunedBlocks());
+                statistics.setCount("removedBoundsChecks", irgen.getNumRemovedBoundsChecks());
+                statistics.setCount("hoistedBoundsChecks", irgen.getNumHoistedBoundsChecks());
+                statistics.setCount("methodCalls", irgen.getNumMethodCalls());
+                statistics.setCount("devirtualizedCalls", irgen.getNumDevirtualizedCalls());
+                statistics.setCount("inlinedCalls", irgen.getNumInlinedCalls());
+                if (!this.bitcode)
+                {
+                    statistics.setCount("registers", printer.getNumRegisters());
+                    statistics.setCount("labels", printer.getNumLabels());
+                }
+            }
+            result.succeeded = true;
+        }
+        catch (Exception ex) {
+            result.addDiagnostic(Diagnostic.Kind.INTERNAL_ERROR, -1, ex.toString());
+        }
+        finally {
+            endPhase(statistics);
+        }
+    }
+
+    /** Starts measuring the given phase (ending the previous one), if statistics are enabled. */
+    private static void startPhase(CompileStatistics statistics, String name)
+    {
+        if (statistics != null)
+        {
+            statistics.startPhase(name);
+        }
+    }
+
+    /** Ends the running phase (if any), if statistics are enabled. */
+    private static void endPhase(CompileStatistics statistics)
+    {
+        if (statistics != null)
+        {
+            statistics.endPhase();
+        }
+    }
+
+    /** An InputStream that reads the remaining bytes of a {@code ByteBuffer}. */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return this.buffer.hasRemaining() ? (this.buffer.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+        {
+            if (length == 0)
+            {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining())
+            {
+                return -1;
+            }
+            int count = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
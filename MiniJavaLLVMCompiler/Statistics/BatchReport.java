@@ -0,0 +1,106 @@
+/**
+ * File: BatchReport.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Statistics;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The machine-readable report of a batch compilation ({@code java Main --batch}): a JSON object
+ * with the result of each file (in the order the files were compiled) and a summary of all of them:
+ * <pre>
+ * {"inputs": "src",
+ *  "files": [
+ *   {"input": "src/A.java", "output": "out/A.ll", "status": "ok", "error": null, "wallNs": 12345000, "outputBytes": 1520},
+ *   {"input": "src/B.java", "output": null, "status": "semantic_error", "error": "Semantic Error: ...", "wallNs": 3210000, "outputBytes": 0}
+ *  ],
+ *  "summary": {"files": 2, "succeeded": 1, "failed": 1, "wallNs": 20004000, "outputBytes": 1520}}
+ * </pre>
+ * The status of a file is {@code ok}, {@code parse_error}, {@code semantic_error} or {@code internal_error}
+ * (e.g. an unreadable file). Each result is written as soon as it is added, and only the totals are kept,
+ * so the report of any number of files takes constant memory.
+ */
+public class BatchReport {
+
+    private final Writer writer;
+    private long numFiles;
+    private long numFailed;
+    private long totalOutputBytes;
+
+    /**
+     * Creates the report file, and writes the given description of the inputs
+     * (e.g. the compiled directory) to it.
+     */
+    public BatchReport(String fileName, String inputs) throws IOException
+    {
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8));
+        this.numFiles = 0;
+        this.numFailed = 0;
+        this.totalOutputBytes = 0;
+        this.writer.write("{\"inputs\": \"" + CompileStatistics.escapeJson(inputs) + "\",\n \"files\": [\n");
+    }
+
+    /**
+     * Writes the result of a file: its output file ({@code null} if it was not produced), its status & error message
+     * ({@code null} if it was compiled successfully), the (wall) time it took in ns, and the size of its output.
+     */
+    public void add(String input, String output, String status, String error, long wallNs, long outputBytes) throws IOException
+    {
+        StringBuilder json = new StringBuilder();
+        json.append(this.numFiles > 0 ? ",\n" : "")
+            .append("  {\"input\": \"").append(CompileStatistics.escapeJson(input))
+            .append("\", \"output\": ").append(quote(output))
+            .append(", \"status\": \"").append(status)
+            .append("\", \"error\": ").append(quote(error))
+            .append(", \"wallNs\": ").append(wallNs)
+            .append(", \"outputBytes\": ").append(outputBytes).append("}");
+        this.writer.write(json.toString());
+        this.numFiles++;
+        if (error != null)
+        {
+            this.numFailed++;
+        }
+        this.totalOutputBytes += outputBytes;
+    }
+
+    /** Returns the number of files added so far. */
+    public long getNumFiles()
+    {
+        return this.numFiles;
+    }
+
+    /** Returns the number of failed files added so far. */
+    public long getNumFailed()
+    {
+        return this.numFailed;
+    }
+
+    /**
+     * Writes the summary, with the given total (wall) time of the batch in ns, and closes the report file.
+     */
+    public void finish(long wallNs) throws IOException
+    {
+        try {
+            this.writer.write((this.numFiles > 0 ? "\n" : "") + " ],\n \"summary\": {\"files\": " + this.numFiles
+                              + ", \"succeeded\": " + (this.numFiles - this.numFailed) + ", \"failed\": " + this.numFailed
+                              + ", \"wallNs\": " + wallNs
+                              + ", \"outputBytes\": " + this.totalOutputBytes + "}}\n");
+        }
+        finally {
+            this.writer.close();
+        }
+    }
+
+    /** Returns the given text as a JSON string, or {@code null}. */
+    private static String quote(String text)
+    {
+        return (text == null) ? "null" : "\"" + CompileStatistics.escapeJson(text) + "\"";
+    }
+}
@@ -0,0 +1,274 @@
+/**
+ * File: CompileStatistics.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Statistics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The measurements of the compilation of a single file (or the totals of many files).
+ *
+ * <p>For each phase, the wall time, the CPU time and the bytes allocated by the compiling thread
+ * are recorded, along with the peak heap usage (the sum of the peak usages of the heap memory pools)
+ * while the phase was running. The peak heap usage is a property of the whole JVM, so it also includes
+ * the memory used by any other files compiled at the same time.
+ * Phases must be started & ended by the same thread, and cannot be nested.
+ *
+ * <p>Named counts (e.g. the number of Parse Tree nodes) can also be recorded, in any order.
+ */
+public class CompileStatistics {
+
+    /** The measurements of a single phase. */
+    public static class Phase {
+        public final String name;
+        public long wallNs;
+        public long cpuNs;
+        public long allocatedBytes;
+        public long peakHeapBytes;
+
+        Phase(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    /** Used to measure the bytes allocated by the current thread ({@code null} if not supported by the JVM). */
+    private static final com.sun.management.ThreadMXBean allocationBean;
+
+    static {
+        if (threadBean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported())
+        {
+            allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+            allocationBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        else
+        {
+            allocationBean = null;
+        }
+        if (threadBean.isCurrentThreadCpuTimeSupported())
+        {
+            threadBean.setThreadCpuTimeEnabled(true);
+        }
+    }
+
+    /** The compiled file (or a description of the files, for totals). */
+    public final String fileName;
+    private final List<Phase> phases;
+    private final Map<String, Long> counts;
+
+    /** The phase that is running, or {@code null}. */
+    private Phase current;
+    private long startWall;
+    private long startCpu;
+    private long startAllocated;
+
+    public CompileStatistics(String fileName)
+    {
+        this.fileName = fileName;
+        this.phases = new ArrayList<Phase>();
+        this.counts = new LinkedHashMap<String, Long>();
+        this.current = null;
+    }
+
+    /**
+     * Starts measuring the phase with the given name (ending the running phase, if any).
+     */
+    public void startPhase(String name)
+    {
+        endPhase();
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP)
+            {
+                pool.resetPeakUsage();
+            }
+        }
+        this.current = new Phase(name);
+        this.startAllocated = allocatedBytes();
+        this.startCpu = cpuTime();
+        this.startWall = System.nanoTime();
+    }
+
+    /**
+     * Ends the running phase and records its measurements. Does nothing if no phase is running
+     * (e.g. if it has already been ended).
+     */
+    public void endPhase()
+    {
+        if (this.current == null)
+        {
+            return;
+        }
+        long wall = System.nanoTime();
+        this.current.wallNs = wall - this.startWall;
+        this.current.cpuNs = cpuTime() - this.startCpu;
+        this.current.allocatedBytes = allocatedBytes() - this.startAllocated;
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP)
+            {
+                this.current.peakHeapBytes += pool.getPeakUsage().getUsed();
+            }
+        }
+        this.phases.add(this.current);
+        this.current = null;
+    }
+
+    /** Records the given count, replacing any previous value. */
+    public void setCount(String name, long value)
+    {
+        this.counts.put(name, value);
+    }
+
+    public List<Phase> getPhases()
+    {
+        return this.phases;
+    }
+
+    public Map<String, Long> getCounts()
+    {
+        return this.counts;
+    }
+
+    /**
+     * Adds the measurements of the given statistics to these ones, to be used for totals:
+     * the times, allocations & counts are summed per phase/count name, while the maximum peak heap usage is kept.
+     */
+    public void add(CompileStatistics other)
+    {
+        for (Phase phase: other.phases)
+        {
+            Phase total = null;
+            for (Phase existing: this.phases)
+            {
+                if (existing.name.equals(phase.name))
+                {
+                    total = existing;
+                }
+            }
+            if (total == null)
+            {
+                total = new Phase(phase.name);
+                this.phases.add(total);
+            }
+            total.wallNs += phase.wallNs;
+            total.cpuNs += phase.cpuNs;
+            total.allocatedBytes += phase.allocatedBytes;
+            total.peakHeapBytes = Math.max(total.peakHeapBytes, phase.peakHeapBytes);
+        }
+        for (Map.Entry<String, Long> count: other.counts.entrySet())
+        {
+            Long value = this.counts.get(count.getKey());
+            this.counts.put(count.getKey(), (value == null ? 0 : value) + count.getValue());
+        }
+    }
+
+    /**
+     * Prints a table with the measurements of each phase, and their totals.
+     */
+    public void printPhases(PrintStream out)
+    {
+        out.println("Phase timings for " + this.fileName + ":");
+        out.println(String.format("  %-14s %10s %10s %12s %14s", "phase", "wall(ms)", "cpu(ms)", "alloc(MB)", "peak heap(MB)"));
+        Phase total = new Phase("total");
+        for (Phase phase: this.phases)
+        {
+            printPhase(out, phase);
+            total.wallNs += phase.wallNs;
+            total.cpuNs += phase.cpuNs;
+            total.allocatedBytes += phase.allocatedBytes;
+            total.peakHeapBytes = Math.max(total.peakHeapBytes, phase.peakHeapBytes);
+        }
+        printPhase(out, total);
+    }
+
+    private static void printPhase(PrintStream out, Phase phase)
+    {
+        out.println(String.format("  %-14s %10.3f %10.3f %12.3f %14.1f", phase.name, phase.wallNs / 1e6, phase.cpuNs / 1e6,
+                                  phase.allocatedBytes / 1048576.0, phase.peakHeapBytes / 1048576.0));
+    }
+
+    /**
+     * Prints the recorded counts.
+     */
+    public void printCounts(PrintStream out)
+    {
+        out.println("Statistics for " + this.fileName + ":");
+        for (Map.Entry<String, Long> count: this.counts.entrySet())
+        {
+            out.println(String.format("  %-20s %12d", count.getKey(), count.getValue()));
+        }
+    }
+
+    /**
+     * Appends the measurements as a JSON object to the given builder.
+     */
+    public void appendJson(StringBuilder out)
+    {
+        out.append("{\"file\": \"").append(escapeJson(this.fileName)).append("\", \"phases\": [");
+        for (int i = 0; i < this.phases.size(); i++)
+        {
+            Phase phase = this.phases.get(i);
+            out.append(i > 0 ? ", " : "");
+            out.append("{\"name\": \"").append(escapeJson(phase.name))
+               .append("\", \"wallNs\": ").append(phase.wallNs)
+               .append(", \"cpuNs\": ").append(phase.cpuNs)
+               .append(", \"allocatedBytes\": ").append(phase.allocatedBytes)
+               .append(", \"peakHeapBytes\": ").append(phase.peakHeapBytes).append("}");
+        }
+        out.append("], \"counts\": {");
+        boolean first = true;
+        for (Map.Entry<String, Long> count: this.counts.entrySet())
+        {
+            out.append(first ? "" : ", ");
+            out.append("\"").append(escapeJson(count.getKey())).append("\": ").append(count.getValue());
+            first = false;
+        }
+        out.append("}}");
+    }
+
+    /** Escapes the given text, to be used inside a JSON string. */
+    static String escapeJson(String text)
+    {
+        StringBuilder escaped = new StringBuilder();
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                escaped.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                escaped.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static long cpuTime()
+    {
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long allocatedBytes()
+    {
+        return (allocationBean != null) ? allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * File: NodeCounter.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Statistics;
+
+import syntaxtree.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the nodes of a Parse Tree, i.e. the nodes visited by each pass that traverses the whole tree.
+ *
+ * The generated Visitors have one method per node type, so instead of a Visitor that overrides
+ * all of them, the children of each node are found through its (public) {@code Node} fields,
+ * which are looked up once per node type. This is only used for statistics, so its cost
+ * is not part of any measured phase.
+ */
+public class NodeCounter {
+
+    /** The {@code Node} fields of each node type found so far. */
+    private static final Map<Class<?>, Field[]> childFields = new HashMap<Class<?>, Field[]>();
+
+    /**
+     * Returns the number of nodes in the tree with the given root (including the root itself).
+     */
+    public static long count(Node root) throws IllegalAccessException
+    {
+        long count = 0;
+        Deque<Node> pending = new ArrayDeque<Node>();
+        pending.push(root);
+        while (!pending.isEmpty())
+        {
+            Node node = pending.pop();
+            count++;
+            if (node instanceof NodeListInterface)
+            {
+                for (Enumeration<Node> e = ((NodeListInterface) node).elements(); e.hasMoreElements(); )
+                {
+                    pending.push(e.nextElement());
+                }
+            }
+            else if (node instanceof NodeOptional)
+            {
+                if (((NodeOptional) node).present())
+                {
+                    pending.push(((NodeOptional) node).node);
+                }
+            }
+            else if (node instanceof NodeChoice)
+            {
+                pending.push(((NodeChoice) node).choice);
+            }
+            else if (!(node instanceof NodeToken))
+            {
+                for (Field field: getChildFields(node.getClass()))
+                {
+                    Node child = (Node) field.get(node);
+                    if (child != null)
+                    {
+                        pending.push(child);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Returns the (public, non-static) {@code Node} fields of the given node type. */
+    private static synchronized Field[] getChildFields(Class<?> type)
+    {
+        Field[] fields = childFields.get(type);
+        if (fields == null)
+        {
+            List<Field> found = new ArrayList<Field>();
+            for (Field field: type.getFields())
+            {
+                if (Node.class.isAssignableFrom(field.getType()) && !Modifier.isStatic(field.getModifiers()))
+                {
+                    found.add(field);
+                }
+            }
+            fields = found.toArray(new Field[found.size()]);
+            childFields.put(type, fields);
+        }
+        return fields;
+    }
+}
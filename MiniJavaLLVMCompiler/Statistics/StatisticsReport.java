@@ -0,0 +1,111 @@
+/**
+ * File: StatisticsReport.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Statistics;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports the statistics of the compiled files:
+ * <ul>
+ * <li>the phase timings table ({@code --time-passes}) and/or the counts ({@code --stats})
+ * of each file, as soon as it has been compiled,</li>
+ * <li>the totals of all the files, if more than one were compiled,</li>
+ * <li>a JSON report ({@code --stats-json <file>}) with the statistics of each file and their totals,
+ * so that the results of different (e.g. batch) runs can be aggregated.</li>
+ * </ul>
+ */
+public class StatisticsReport {
+
+    private final boolean timePasses;
+    private final boolean counts;
+    private final String jsonFileName;
+    private final PrintStream out;
+    private final List<CompileStatistics> files;
+    private final CompileStatistics total;
+
+    /**
+     * Creates a report that prints the phase timings (if {@code timePasses} is set) and/or the counts
+     * (if {@code counts} is set) to the given stream, and writes the JSON report to the given file
+     * (unless it is {@code null}).
+     */
+    public StatisticsReport(boolean timePasses, boolean counts, String jsonFileName, PrintStream out)
+    {
+        this.timePasses = timePasses;
+        this.counts = counts;
+        this.jsonFileName = jsonFileName;
+        this.out = out;
+        this.files = new ArrayList<CompileStatistics>();
+        this.total = new CompileStatistics("all files");
+    }
+
+    /**
+     * Reports the statistics of a compiled file.
+     */
+    public void add(CompileStatistics statistics)
+    {
+        this.files.add(statistics);
+        this.total.add(statistics);
+        print(statistics);
+    }
+
+    /**
+     * Reports the totals of all the files (if more than one), and writes the JSON report.
+     */
+    public void finish() throws IOException
+    {
+        if (this.files.size() > 1)
+        {
+            this.out.println();
+            print(this.total);
+        }
+        if (this.jsonFileName != null)
+        {
+            writeJson();
+        }
+    }
+
+    private void print(CompileStatistics statistics)
+    {
+        if (this.timePasses)
+        {
+            statistics.printPhases(this.out);
+        }
+        if (this.counts)
+        {
+            statistics.printCounts(this.out);
+        }
+    }
+
+    private void writeJson() throws IOException
+    {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"files\": [\n");
+        for (int i = 0; i < this.files.size(); i++)
+        {
+            json.append("    ");
+            this.files.get(i).appendJson(json);
+            json.append(i + 1 < this.files.size() ? ",\n" : "\n");
+        }
+        json.append("  ],\n  \"total\": ");
+        this.total.appendJson(json);
+        json.append("\n}\n");
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(this.jsonFileName), StandardCharsets.UTF_8);
+        try {
+            writer.write(json.toString());
+        }
+        finally {
+            writer.close();
+        }
+    }
+}
@@ -6,63 +6,202 @@
 package SymbolTable;
 
 import ClassInformation.ClassInfo;
+import ClassInformation.FieldInfo;
 import ClassInformation.VariableInfo;
 
-import java.util.NoSuchElementException;
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.Iterator;
+import java.util.Arrays;
 
+/**
+ * Maps variable names to the variables that are visible at each point of a method.
+ *
+ * <p>Instead of a Stack of per-scope maps, a single flat structure is used:
+ * <ul>
+ * <li>An open-addressing (linear probing) hash table maps each name to a slot, which holds
+ * the most recent binding of the name.</li>
+ * <li>The bindings are stored in a stack (in arrays indexed by binding number), in the order
+ * they were made. Each binding refers to the binding of the same name it shadows,
+ * so the bindings of each name form a chain.</li>
+ * <li>The first binding of each scope is recorded, so popping a scope only needs to restore
+ * the shadowed bindings of the names bound in it (essentially an undo log).</li>
+ * </ul>
+ * Therefore a lookup is a single hash table probe, and pushing/popping scopes & bindings is
+ * (amortized) O(1) per binding, regardless of the number of scopes.
+ * The fields of the current Class are found in its flattened field table, if a name is not bound
+ * in any scope.
+ */
 public class SymbolTable {
-    
-    /** A Stack of ScopeSymbols is used.
-     *  {@code java.util.Stack} is considered obsolete, so a {@code Deque} is prefered.
-     */
-    private Deque<ScopeSymbols> scopes;
+
+    private static final int INITIAL_CAPACITY = 64;
+    /** Marks a slot or a chain with no binding. */
+    private static final int NONE = -1;
+
+    /** The names of the hash table (never removed, so that probe sequences are not broken). */
+    private String[] names;
+    /** The most recent binding of the name in each slot, or {@code NONE}. */
+    private int[] heads;
+    /** The number of used slots. */
+    private int numNames;
+
+    /** The variable of each binding. */
+    private VariableInfo[] bindings;
+    /** The slot of each binding. */
+    private int[] bindingSlots;
+    /** The binding (of the same name) that each binding shadows, or {@code NONE}. */
+    private int[] shadowed;
+    /** The number of current bindings. */
+    private int numBindings;
+
+    /** The first binding of each scope. */
+    private int[] scopeStarts;
+    /** The number of scopes. */
+    private int numScopes;
+
+    /** The Class whose fields are known (below all the Scopes), or {@code null}. */
+    private ClassInfo classInfo;
+
+    /** The number of variable lookups performed so far. */
+    private long numLookups;
 
     public SymbolTable()
     {
-        scopes = new ArrayDeque<ScopeSymbols>();
+        names = new String[INITIAL_CAPACITY];
+        heads = new int[INITIAL_CAPACITY];
+        numNames = 0;
+        bindings = new VariableInfo[INITIAL_CAPACITY];
+        bindingSlots = new int[INITIAL_CAPACITY];
+        shadowed = new int[INITIAL_CAPACITY];
+        numBindings = 0;
+        scopeStarts = new int[16];
+        numScopes = 0;
+        classInfo = null;
+        numLookups = 0;
+    }
+
+    /**
+     * Returns the slot of the given name, or the empty slot where it should be inserted.
+     */
+    private int findSlot(String name)
+    {
+        int mask = names.length - 1;
+        int slot = mix(name.hashCode()) & mask;
+        while (names[slot] != null && !names[slot].equals(name))
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /** Spreads the hash code bits, since only the lowest ones select the slot. */
+    private static int mix(int hash)
+    {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Doubles the hash table capacity, moving all the names (and their bindings) to their new slots.
+     */
+    private void growTable()
+    {
+        String[] oldNames = names;
+        int[] oldHeads = heads;
+        names = new String[oldNames.length * 2];
+        heads = new int[oldNames.length * 2];
+        for (int i = 0; i < oldNames.length; i++)
+        {
+            if (oldNames[i] != null)
+            {
+                int slot = findSlot(oldNames[i]);
+                names[slot] = oldNames[i];
+                heads[slot] = oldHeads[i];
+                // Update the slot of all the bindings of the name
+                for (int b = oldHeads[i]; b != NONE; b = shadowed[b])
+                {
+                    bindingSlots[b] = slot;
+                }
+            }
+        }
     }
 
     /**
-     * Pushes a new ScopeSymbols structure to the Stack.
+     * Pushes a new (empty) Scope.
      */
     public void addScope()
     {
-        scopes.add(new ScopeSymbols());
+        if (numScopes == scopeStarts.length)
+        {
+            scopeStarts = Arrays.copyOf(scopeStarts, numScopes * 2);
+        }
+        scopeStarts[numScopes++] = numBindings;
+    }
+
+    /** Returns the first binding of the top Scope. */
+    private int currentScopeStart()
+    {
+        return numScopes == 0 ? 0 : scopeStarts[numScopes - 1];
     }
 
     /**
-     * Adds a new Variable/Class Field in the ScopeSymbols structure that is
-     * on top of the Stack.
+     * Adds a new Variable in the Scope that is on top of the Stack.
      * @return {@code true} if the variable was not already present, and therefore
      * was successfully added, or {@code false} if it was already present.
      */
     public boolean pushVariableEntry(VariableInfo var)
     {
-        if (scopes.peekLast().varIsPresent(var))
+        int slot = findSlot(var.name);
+        if (names[slot] == null)
         {
+            names[slot] = var.name;
+            heads[slot] = NONE;
+            numNames++;
+        }
+        else if (heads[slot] >= currentScopeStart())
+        {
+            // Already bound in the top Scope
             return false;
         }
-        scopes.peekLast().addVariable(var);
+
+        if (numBindings == bindings.length)
+        {
+            bindings = Arrays.copyOf(bindings, numBindings * 2);
+            bindingSlots = Arrays.copyOf(bindingSlots, numBindings * 2);
+            shadowed = Arrays.copyOf(shadowed, numBindings * 2);
+        }
+        bindings[numBindings] = var;
+        bindingSlots[numBindings] = slot;
+        shadowed[numBindings] = heads[slot];
+        heads[slot] = numBindings++;
+
+        // Keep the load factor below 1/2
+        if (2 * numNames > names.length)
+        {
+            growTable();
+        }
         return true;
     }
 
     /**
-     * Iterates over the Stack, starting from the top Scope, and returns the first occurence
-     * of a variable with the specified name. If such variable is not found, {@code null} is returned.
+     * Returns the variable with the specified name in the innermost Scope where it is bound.
+     * If it is not bound in any Scope, the fields of the current Class are checked.
+     * If such variable is not found, {@code null} is returned.
      */
     public VariableInfo getVariableEntry(String symbolName)
     {
-        Iterator<ScopeSymbols> itr = scopes.descendingIterator(); 
-        VariableInfo entry = null;
-
-        while (entry == null && itr.hasNext())
+        numLookups++;
+        int slot = findSlot(symbolName);
+        if (names[slot] != null && heads[slot] != NONE)
+        {
+            return bindings[heads[slot]];
+        }
+        if (classInfo != null)
         {
-            entry = itr.next().getVariable(symbolName);
+            FieldInfo field = classInfo.getFieldRec(symbolName);
+            if (field != null)
+            {
+                return field.field;
+            }
         }
-        return entry;
+        return null;
     }
 
     /**
@@ -71,38 +210,55 @@ public class SymbolTable {
      */
     public VariableInfo getCurrentScopeVariable(String symbolName)
     {
-        if (scopes.size() == 0)
+        numLookups++;
+        if (numScopes == 0)
         {
             return null;
         }
-        return scopes.peekLast().getVariable(symbolName);
+        int slot = findSlot(symbolName);
+        if (names[slot] != null && heads[slot] >= currentScopeStart())
+        {
+            return bindings[heads[slot]];
+        }
+        return null;
     }
 
     /**
-     * Pop the top Scope names from the Symbol Table.
+     * Pop the top Scope names from the Symbol Table,
+     * restoring the bindings they shadowed.
      */
     public void popScope()
     {
-        try {
-            scopes.removeLast();
-        } catch (NoSuchElementException e) {
+        if (numScopes == 0)
+        {
             return;
         }
+        int start = scopeStarts[--numScopes];
+        while (numBindings > start)
+        {
+            numBindings--;
+            heads[bindingSlots[numBindings]] = shadowed[numBindings];
+            bindings[numBindings] = null;
+        }
+    }
+
+    /**
+     * Returns the number of variable lookups ({@code getVariableEntry} & {@code getCurrentScopeVariable} calls)
+     * performed so far.
+     */
+    public long getNumLookups()
+    {
+        return numLookups;
     }
 
     /**
-     * Adds all the fields known to the specified Class in the Symbol Table.
+     * Makes all the fields known to the specified Class (including the inherited ones)
+     * visible in the Symbol Table, below all the Scopes.
+     * The flattened field table of the Class is used, so no Scope is pushed for them.
      */
     public void addClassNames(ClassInfo classInfo)
     {
-        if (classInfo.superClass != null)
-        // If the class has a superclass, add the superclass fields first
-        {
-            // Fields will be added for all the superclasses
-            addClassNames(classInfo.superClass);
-        }
-        // Add the Class fields in the end
-        scopes.add(classInfo.scopeVars);
+        this.classInfo = classInfo;
     }
 
     /**
@@ -110,13 +266,6 @@ public class SymbolTable {
      */
     public void popClassNames(ClassInfo classInfo)
     {
-        // Remove the Class fields first
-        scopes.removeLast();
-        if (classInfo.superClass != null)
-        // If the class has a superclass, remove the superclass fields as well
-        {
-            // Fields will be removed for all the superclasses
-            popClassNames(classInfo.superClass);
-        }
+        this.classInfo = null;
     }
 }
@@ -22,6 +22,20 @@ public class ClassNameCollector extends GJDepthFirst<String, Void> {
         classInfos = new LinkedHashMap<String, ClassInfo>();
     }
 
+    /**
+     * f0 -> MainClass()
+     * f1 -> ( TypeDeclaration() )*
+     * f2 -> <EOF>
+     */
+    @Override
+    public String visit(Goal n, Void argu) throws Exception {
+        n.f0.accept(this, null);
+        n.f1.accept(this, null);
+        // The whole class hierarchy is known now
+        ClassInfo.numberHierarchy(this.classInfos.values());
+        return null;
+    }
+
     @Override
     public String visit(MainClass n, Void argu) throws Exception {
         // Treating MainClass as a regular class to avoid redeclaration
@@ -8,18 +8,19 @@ package Visitors;
 import syntaxtree.*;
 import visitor.*;
 import ClassInformation.*;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Collects and stores all Class Fields and Methods. 
  * 
- * Each {@code visit} method returns a String that indicates the type 
+ * Each {@code visit} method returns a TypeInfo that indicates the type 
  * of the respective statement, or {@code null} if this is not needed.
  * The second argument is a {@code ClassInfo} to be provided to MethodDeclaration
  * and VarDecaration (field declaration) {@code visit} methods, to allow
  * for instant access to current class fields/methods up to that point.
  */
-public class DeclarationCollector extends GJDepthFirst<String, ClassInfo>{
+public class DeclarationCollector extends GJDepthFirst<TypeInfo, ClassInfo>{
     // Classes will be stored here
     Map<String, ClassInfo> classInfos;
     public DeclarationCollector(Map<String, ClassInfo> classInfoMap) {
@@ -28,10 +29,10 @@ public class DeclarationCollector extends GJDepthFirst<String, ClassInfo>{
     }
 
     @Override
-    public String visit(MainClass n, ClassInfo argu) throws Exception {
+    public TypeInfo visit(MainClass n, ClassInfo argu) throws Exception {
         // Nothing to be done here (yet)
-        ClassInfo classInfo = this.classInfos.get(n.f1.accept(this, null));
-        classInfo.setScope();
+        ClassInfo classInfo = this.classInfos.get(n.f1.f0.toString());
+        classInfo.finalizeMembers();
         return null;
     }
 
@@ -43,8 +44,8 @@ public class DeclarationCollector extends GJDepthFirst<String, ClassInfo>{
      * f4 -> ( MethodDeclaration() )*
      * f5 -> "}"
      */
-    public String visit(ClassDeclaration n, ClassInfo argu) throws Exception {
-        ClassInfo classInfo = this.classInfos.get(n.f1.accept(this, null));
+    public TypeInfo visit(ClassDeclaration n, ClassInfo argu) throws Exception {
+        ClassInfo classInfo = this.classInfos.get(n.f1.f0.toString());
         // Offset counters will both be set to 0
         classInfo.setOffsets();
 
@@ -60,14 +61,16 @@ public class DeclarationCollector extends GJDepthFirst<String, ClassInfo>{
             node.accept(this, classInfo);
         }
 
-        classInfo.setScope();
+        // Resolve the inherited members (the superclass has already been finalized,
+        // since it is declared before this class)
+        classInfo.finalizeMembers();
         return null;
     }
 
     @Override
-    public String visit(VarDeclaration n, ClassInfo classInfo) throws Exception {
-        String type = n.f0.accept(this, null);
-        String name = n.f1.accept(this, null);
+    public TypeInfo visit(VarDeclaration n, ClassInfo classInfo) throws Exception {
+        TypeInfo type = n.f0.accept(this, null);
+        String name = n.f1.f0.toString();
 
         // Prevent duplicate field names
         if (classInfo.getField(name) != null)
@@ -77,13 +80,13 @@ public class DeclarationCollector extends GJDepthFirst<String, ClassInfo>{
         else
         {
             // Checking if field type is valid
-            if (VariableInfo.isPrimitiveType(type) || (classInfos.get(type) != null))
+            if (type != null)
             {
                 classInfo.addField(name, type);
             }
             else
             {
-                throw new SemanticError("Field '" + name + "' in class '" + classInfo.name + "' has invalid type '" + type + "'");
+                throw new SemanticError("Field '" + name + "' in class '" + classInfo.name + "' has invalid type '" + typeName(n.f0) + "'");
             }
         }
 
@@ -101,8 +104,8 @@ public class DeclarationCollector extends GJDepthFirst<String, ClassInfo>{
      * f7 -> "}"
      */
     @Override
-    public String visit(ClassExtendsDeclaration n, ClassInfo argu) throws Exception {
-        ClassInfo classInfo = this.classInfos.get(n.f1.accept(this, null));
+    public TypeInfo visit(ClassExtendsDeclaration n, ClassInfo argu) throws Exception {
+        ClassInfo classInfo = this.classInfos.get(n.f1.f0.toString());
         // Set the offset counters using superclass counters
         classInfo.setOffsets();
 
@@ -118,7 +121,9 @@ public class DeclarationCollector extends GJDepthFirst<String, ClassInfo>{
             node.accept(this, classInfo);
         }
 
-        classInfo.setScope();
+        // Resolve the inherited members (the superclass has already been finalized,
+        // since it is declared before this class)
+        classInfo.finalizeMembers();
         return null;
     }
 
@@ -138,16 +143,16 @@ public class DeclarationCollector extends GJDepthFirst<String, ClassInfo>{
      * f12 -> "}"
      */
     @Override
-    public String visit(MethodDeclaration n, ClassInfo classInfo) throws Exception {
+    public TypeInfo visit(MethodDeclaration n, ClassInfo classInfo) throws Exception {
         
-        String type = n.f1.accept(this, null);
+        TypeInfo type = n.f1.accept(this, null);
 
         // Checking if the return type is valid
-        if ( !VariableInfo.isPrimitiveType(type) && this.classInfos.get(type) == null)
+        if (type == null)
         {
-            throw new SemanticError("Method return type '" + type + "' is undefined");
+            throw new SemanticError("Method return type '" + typeName(n.f1) + "' is undefined");
         }
-        String name = n.f2.accept(this, null);        
+        String name = n.f2.f0.toString();
         // Prevent method overloading/duplicate declaration
         if (classInfo.hasDeclaredMethod(name))
         {
@@ -161,9 +166,13 @@ public class DeclarationCollector extends GJDepthFirst<String, ClassInfo>{
         }
         */
 
-        // Getting a string with the argument type, seperated by commas
-        String argTypeStr = n.f4.present() ? n.f4.accept(this, null) : "";
-        String[] argTypes = FunctionInfo.getArgTypes(argTypeStr);
+        // Getting the argument types
+        List<FormalParameter> params = NodeLists.formalParameters(n.f4);
+        TypeInfo[] argTypes = new TypeInfo[params.size()];
+        for (int i = 0; i < argTypes.length; i++)
+        {
+            argTypes[i] = params.get(i).accept(this, null);
+        }
 
         FunctionInfo superMethod;
         // If a method with the same name is declared in a superclass, it must be overriden
@@ -184,69 +193,71 @@ public class DeclarationCollector extends GJDepthFirst<String, ClassInfo>{
     }
 
     /**
-     * f0 -> FormalParameter()
-     * f1 -> FormalParameterTail()
+     * f0 -> Type()
+     * f1 -> Identifier()
      */
     @Override
-    public String visit(FormalParameterList n, ClassInfo argu) throws Exception {
-        String ret = n.f0.accept(this, null);
-        
-        if (n.f1 != null) {
-            ret += n.f1.accept(this, null);
-        }
-        
-        return ret;
-    }
-
-    @Override
-    public String visit(FormalParameterTerm n, ClassInfo argu) throws Exception {
-        return n.f1.accept(this, argu);
-    }
+    public TypeInfo visit(FormalParameter n, ClassInfo classInfo) throws Exception{
+        TypeInfo type = n.f0.accept(this, null);
+        String name = n.f1.f0.toString();
 
-    @Override
-    public String visit(FormalParameterTail n, ClassInfo argu) throws Exception {
-        String ret = "";
-        for ( Node node: n.f0.nodes ) {
-            ret += "," + node.accept(this, null);
+        if (type == null)
+        {
+            throw new SemanticError("Method parameter '" + name + "' has invalid type '" + typeName(n.f0) + "'");
         }
 
-        return ret;
+        return type;
     }
 
     /**
-     * f0 -> Type()
-     * f1 -> Identifier()
+     * f0 -> ArrayType()
+     *       | BooleanType()
+     *       | IntegerType()
+     *       | Identifier()
+     *
+     * Returns the declared type, or {@code null} if it is not a known class.
      */
     @Override
-    public String visit(FormalParameter n, ClassInfo classInfo) throws Exception{
-        String type = n.f0.accept(this, null);
-        String name = n.f1.accept(this, null);
-
-        if ( !VariableInfo.isPrimitiveType(type) && (classInfos.get(type) == null))
+    public TypeInfo visit(Type n, ClassInfo argu) throws Exception {
+        if (n.f0.choice instanceof Identifier)
         {
-            throw new SemanticError("Method parameter '" + name + "' has invalid type '" + type + "'");
+            return TypeInfo.resolve(typeName(n), this.classInfos);
         }
-
-        return type;
+        return n.f0.accept(this, null);
     }
 
     @Override
-    public String visit(ArrayType n, ClassInfo argu) {
-        return "int[]";
+    public TypeInfo visit(ArrayType n, ClassInfo argu) {
+        return TypeInfo.INT_ARRAY;
     }
 
     @Override
-    public String visit(BooleanType n, ClassInfo argu) {
-        return "boolean";
+    public TypeInfo visit(BooleanType n, ClassInfo argu) {
+        return TypeInfo.BOOLEAN;
     }
 
     @Override
-    public String visit(IntegerType n, ClassInfo argu) {
-        return "int";
+    public TypeInfo visit(IntegerType n, ClassInfo argu) {
+        return TypeInfo.INT;
     }
 
-    @Override
-    public String visit(Identifier n, ClassInfo argu) {
-        return n.f0.toString();
+    /**
+     * Returns the type name used in the given Type node (to be used in error messages).
+     */
+    static String typeName(Type n)
+    {
+        if (n.f0.choice instanceof Identifier)
+        {
+            return ((Identifier) n.f0.choice).f0.toString();
+        }
+        else if (n.f0.choice instanceof ArrayType)
+        {
+            return TypeInfo.INT_ARRAY.name;
+        }
+        else if (n.f0.choice instanceof BooleanType)
+        {
+            return TypeInfo.BOOLEAN.name;
+        }
+        return TypeInfo.INT.name;
     }
 }
@@ -10,26 +10,154 @@ import visitor.*;
 import ClassInformation.*;
 import SymbolTable.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * Analyzes the method bodies.
  * 
- * Each {@code visit} method returns a String that indicates the
+ * Each {@code visit} method returns a TypeInfo that indicates the
  * type of the respective statement, or {@code null} if this is not needed.
+ *
+ * The bodies of {@code main} and of the methods can be analyzed concurrently on a
+ * {@code ForkJoinPool} (see {@link #setPool}): the class information is frozen first
+ * (it is only read after the declarations have been collected), and each body is analyzed
+ * by its own FunctionBodyAnalyzer, with its own Symbol Table. If several bodies have errors,
+ * the error of the first one in source order is reported, as in the sequential analysis.
  */
-public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
+public class FunctionBodyAnalyzer extends GJDepthFirst<TypeInfo, Boolean> {
     // The previously collected class names, fields & methods.
     Map<String, ClassInfo> classInfos;
     
     SymbolTable symbolTable;
     // This will be used in class methods, for instant access to current class fields/methods.
     ClassInfo currentClass;
+    // Used to analyze the bodies concurrently (null to analyze them sequentially).
+    ForkJoinPool pool;
+    // The bodies submitted to the pool, and their analyzers, in source order.
+    List<Future<TypeInfo>> pendingBodies;
+    List<FunctionBodyAnalyzer> bodyAnalyzers;
 
     public FunctionBodyAnalyzer(Map<String, ClassInfo> classInfoMap) {
         classInfos = classInfoMap;
         symbolTable = new SymbolTable();
         currentClass = null;
+        pool = null;
+        pendingBodies = new ArrayList<Future<TypeInfo>>();
+        bodyAnalyzers = new ArrayList<FunctionBodyAnalyzer>();
+    }
+
+    /**
+     * Creates an analyzer for a single body (of {@code main}, or of a method of the given class),
+     * which shares the class information of the given analyzer.
+     */
+    private FunctionBodyAnalyzer(FunctionBodyAnalyzer parent, ClassInfo classInfo) {
+        this(parent.classInfos);
+        currentClass = classInfo;
+        if (classInfo != null)
+        {
+            symbolTable.addClassNames(classInfo);
+        }
+    }
+
+    /**
+     * Makes the analyzer check the bodies concurrently on the given pool
+     * ({@code null} to check them sequentially, which is the default).
+     */
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the number of variable names resolved through the Symbol Table so far.
+     */
+    public long getSymbolsResolved()
+    {
+        long resolved = symbolTable.getNumLookups();
+        for (FunctionBodyAnalyzer analyzer: bodyAnalyzers)
+        {
+            resolved += analyzer.getSymbolsResolved();
+        }
+        return resolved;
+    }
+
+    /**
+     * Submits the analysis of the given body (of {@code main} or of a method of the current class)
+     * to the pool, to be performed by a new FunctionBodyAnalyzer.
+     */
+    private void submitBody(final Node body)
+    {
+        final FunctionBodyAnalyzer analyzer = new FunctionBodyAnalyzer(this, this.currentClass);
+        bodyAnalyzers.add(analyzer);
+        // A FutureTask reports the exception thrown by the body as is, while the tasks created by
+        // ForkJoinPool.submit(Callable) wrap checked exceptions (like the semantic errors)
+        FutureTask<TypeInfo> task = new FutureTask<TypeInfo>(new Callable<TypeInfo>() {
+            public TypeInfo call() throws Exception {
+                return body.accept(analyzer, null);
+            }
+        });
+        pendingBodies.add(task);
+        pool.execute(task);
+    }
+
+    /**
+     * Waits until all the submitted bodies have been analyzed. If any of them has an error,
+     * the error of the first one (in source order) is thrown, and the rest are cancelled.
+     */
+    private void awaitBodies() throws Exception
+    {
+        try {
+            for (Future<TypeInfo> body: pendingBodies)
+            {
+                try {
+                    body.get();
+                }
+                catch (ExecutionException ex) {
+                    throw (ex.getCause() instanceof Exception) ? (Exception) ex.getCause() : ex;
+                }
+            }
+        }
+        finally {
+            for (Future<TypeInfo> body: pendingBodies)
+            {
+                body.cancel(false);
+            }
+            pendingBodies.clear();
+        }
+    }
+
+    /**
+     * f0 -> MainClass()
+     * f1 -> ( TypeDeclaration() )*
+     * f2 -> <EOF>
+     */
+    @Override
+    public TypeInfo visit(Goal n, Boolean argu) throws Exception {
+        if (pool != null)
+        {
+            // The class information is only read from now on
+            for (ClassInfo classInfo: classInfos.values())
+            {
+                classInfo.freeze();
+            }
+            classInfos = Collections.unmodifiableMap(classInfos);
+        }
+        n.f0.accept(this, null);
+        n.f1.accept(this, null);
+        if (pool != null)
+        {
+            // The bodies have only been submitted so far
+            awaitBodies();
+        }
+        return null;
     }
 
     public void printOffsets()
@@ -49,22 +177,27 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
      * }
      */    
     @Override
-    public String visit(MainClass n, Boolean argu) throws Exception {
+    public TypeInfo visit(MainClass n, Boolean argu) throws Exception {
+        if (this.pool != null)
+        {
+            submitBody(n);
+            return null;
+        }
         this.symbolTable.addScope();
 
         // Adding main argument to the scope, to avoid redeclaration
-        this.symbolTable.pushVariableEntry(new VariableInfo(n.f11.accept(this, null), "String[]"));
-
-        String[] varStr;
+        this.symbolTable.pushVariableEntry(new VariableInfo(n.f11.f0.toString(), TypeInfo.STRING_ARRAY));
 
         // Iterate over the variable declarations and push the variables in the Symbol Table
         for (Node node: n.f14.nodes)
         {
-            // Get a "<type> <name>" string" for each declaration
-            varStr = node.accept(this, null).split("\\s* \\s*");
-            if ( !this.symbolTable.pushVariableEntry(new VariableInfo(varStr[1], varStr[0])) )
+            // Get the type and the name of each declaration
+            VarDeclaration decl = (VarDeclaration) node;
+            TypeInfo type = decl.accept(this, null);
+            String name = decl.f1.f0.toString();
+            if ( !this.symbolTable.pushVariableEntry(new VariableInfo(name, type)) )
             {
-                throw new SemanticError("Variable '" + varStr[1] + "' in function 'main' is declared more than once");
+                throw new SemanticError("Variable '" + name + "' in function 'main' is declared more than once");
             }
         }
         // Analyze all statements in main
@@ -78,21 +211,21 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
     }
 
     @Override
-    public String visit(VarDeclaration n, Boolean classInfo) throws Exception {
-        String type = n.f0.accept(this, null);
-        String name = n.f1.accept(this, null);
+    public TypeInfo visit(VarDeclaration n, Boolean classInfo) throws Exception {
+        TypeInfo type = n.f0.accept(this, null);
+        String name = n.f1.f0.toString();
 
         // Checking if field type is valid
-        if ( !VariableInfo.isPrimitiveType(type) && (this.classInfos.get(type) == null))
+        if (type == null)
         {
-            throw new SemanticError("Line " + n.f2.beginLine + ": Variable '" + name + "' has invalid type '" + type + "'");
+            throw new SemanticError("Line " + n.f2.beginLine + ": Variable '" + name + "' has invalid type '" + DeclarationCollector.typeName(n.f0) + "'");
         }
 
-        return type + " " + name;
+        return type;
     }
 
     @Override
-    public String visit(Block n, Boolean argu) throws Exception {
+    public TypeInfo visit(Block n, Boolean argu) throws Exception {
         
         for (Node node: n.f1.nodes)
         {
@@ -109,27 +242,17 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
      * f3 -> ";"
      */    
     @Override
-    public String visit(AssignmentStatement n, Boolean argu) throws Exception {
-        String varType = n.f0.accept(this, true);
-        String exprType = n.f2.accept(this, null);
+    public TypeInfo visit(AssignmentStatement n, Boolean argu) throws Exception {
+        TypeInfo varType = n.f0.accept(this, true);
+        TypeInfo exprType = n.f2.accept(this, null);
 
-        // If identifier and expression types are equal, the assignment is valid
-        if (varType.equals(exprType))
+        // If identifier and expression types are equal, the assignment is valid.
+        // If not, then identifier type can only by a superclass of expression type.
+        if (exprType.isAssignableTo(varType))
         {
             return varType;
         }
 
-        // If identifier and expression types are not equal, then
-        // identifier type can only by a superclass of expression type.
-        if ( !VariableInfo.isPrimitiveType(varType) )
-        {
-            ClassInfo exprClass = this.classInfos.get(exprType);
-            if ( exprClass != null && exprClass.hasSuperClass(varType))
-            {
-                return varType;
-            }
-        }        
-
         throw new SemanticError("Line " + n.f1.beginLine + ": Type mismatch: cannot convert from '" + exprType + "' to '" + varType + "'");        
     }
 
@@ -146,30 +269,31 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
      *       | BracketExpression()          //  returns one of the above
      */
     @Override
-    public String visit(PrimaryExpression n, Boolean argu) throws Exception {
+    public TypeInfo visit(PrimaryExpression n, Boolean argu) throws Exception {
         return n.f0.accept(this, true);
     }
 
     @Override
-    public String visit(ArrayAllocationExpression n, Boolean argu) throws Exception {
-        String indexExprType = n.f3.accept(this, null);
+    public TypeInfo visit(ArrayAllocationExpression n, Boolean argu) throws Exception {
+        TypeInfo indexExprType = n.f3.accept(this, null);
         // Index can only be of type int
-        if ( !indexExprType.equals("int") )
+        if (indexExprType != TypeInfo.INT)
         {
             throw new SemanticError("Line " + n.f0.beginLine + ": Cannot convert from '" + indexExprType + "' to 'int'");
         }
-        return "int[]";
+        return TypeInfo.INT_ARRAY;
     }
 
     @Override
-    public String visit(AllocationExpression n, Boolean argu) throws Exception {
-        String constructorName = n.f1.accept(this, null);
+    public TypeInfo visit(AllocationExpression n, Boolean argu) throws Exception {
+        String constructorName = n.f1.f0.toString();
+        ClassInfo classInfo = this.classInfos.get(constructorName);
         // Making sure this is a known Class constructor
-        if (this.classInfos.get(constructorName) == null)
+        if (classInfo == null)
         {
             throw new SemanticError("Line " + n.f0.beginLine + ": '" + constructorName + "' cannot be resolved to a type");
         }
-        return constructorName;
+        return classInfo.type;
     }
 
     /**
@@ -185,125 +309,125 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
      *       | PrimaryExpression()      // returns type
      */    
     @Override
-    public String visit(Expression n, Boolean argu) throws Exception {
+    public TypeInfo visit(Expression n, Boolean argu) throws Exception {
         return n.f0.accept(this, null);
     }
 
     @Override
-    public String visit(BracketExpression n, Boolean argu) throws Exception {
+    public TypeInfo visit(BracketExpression n, Boolean argu) throws Exception {
         return n.f1.accept(this, null);
     }
 
     @Override
-    public String visit(AndExpression n, Boolean argu) throws Exception {
-        String leftExprType = n.f0.accept(this, null);
-        String rightExprType = n.f2.accept(this, null);
+    public TypeInfo visit(AndExpression n, Boolean argu) throws Exception {
+        TypeInfo leftExprType = n.f0.accept(this, null);
+        TypeInfo rightExprType = n.f2.accept(this, null);
         String strLine = "Line " + n.f1.beginLine + ": ";
 
-        if ( !(leftExprType.equals("boolean") && rightExprType.equals("boolean")) )
+        if ( !(leftExprType == TypeInfo.BOOLEAN && rightExprType == TypeInfo.BOOLEAN) )
         {
             throw new SemanticError(strLine + "Operator '&&' is undefined for argument types '" + leftExprType + "', '" + rightExprType + "'");
         }
-        return "boolean";
+        return TypeInfo.BOOLEAN;
     }
 
     @Override
-    public String visit(CompareExpression n, Boolean argu) throws Exception {
-        String leftExprType = n.f0.accept(this, null);
-        String rightExprType = n.f2.accept(this, null);
+    public TypeInfo visit(CompareExpression n, Boolean argu) throws Exception {
+        TypeInfo leftExprType = n.f0.accept(this, null);
+        TypeInfo rightExprType = n.f2.accept(this, null);
         String strLine = "Line " + n.f1.beginLine + ": ";
 
-        if ( !(leftExprType.equals("int") && rightExprType.equals("int")) )
+        if ( !(leftExprType == TypeInfo.INT && rightExprType == TypeInfo.INT) )
         {
             throw new SemanticError(strLine + "Operator '<' is undefined for argument types '" + leftExprType + "', '" + rightExprType + "'");
         }
-        return "boolean";
+        return TypeInfo.BOOLEAN;
     }
 
     @Override
-    public String visit(PlusExpression n, Boolean argu) throws Exception {
-        String leftExprType = n.f0.accept(this, null);
-        String rightExprType = n.f2.accept(this, null);
+    public TypeInfo visit(PlusExpression n, Boolean argu) throws Exception {
+        TypeInfo leftExprType = n.f0.accept(this, null);
+        TypeInfo rightExprType = n.f2.accept(this, null);
         String strLine = "Line " + n.f1.beginLine + ": ";
 
-        if ( !(leftExprType.equals("int") && rightExprType.equals("int")) )
+        if ( !(leftExprType == TypeInfo.INT && rightExprType == TypeInfo.INT) )
         {
             throw new SemanticError(strLine + "Operator '+' is undefined for argument types '" + leftExprType + "', '" + rightExprType + "'");
         }
-        return "int";
+        return TypeInfo.INT;
     }
 
     @Override
-    public String visit(MinusExpression n, Boolean argu) throws Exception {
-        String leftExprType = n.f0.accept(this, null);
-        String rightExprType = n.f2.accept(this, null);
+    public TypeInfo visit(MinusExpression n, Boolean argu) throws Exception {
+        TypeInfo leftExprType = n.f0.accept(this, null);
+        TypeInfo rightExprType = n.f2.accept(this, null);
         String strLine = "Line " + n.f1.beginLine + ": ";
 
-        if ( !(leftExprType.equals("int") && rightExprType.equals("int")) )
+        if ( !(leftExprType == TypeInfo.INT && rightExprType == TypeInfo.INT) )
         {
             throw new SemanticError(strLine + "Operator '-' is undefined for argument types '" + leftExprType + "', '" + rightExprType + "'");
         }
-        return "int";
+        return TypeInfo.INT;
     }
 
     @Override
-    public String visit(TimesExpression n, Boolean argu) throws Exception {
-        String leftExprType = n.f0.accept(this, null);
-        String rightExprType = n.f2.accept(this, null);
+    public TypeInfo visit(TimesExpression n, Boolean argu) throws Exception {
+        TypeInfo leftExprType = n.f0.accept(this, null);
+        TypeInfo rightExprType = n.f2.accept(this, null);
         String strLine = "Line " + n.f1.beginLine + ": ";
 
-        if ( !(leftExprType.equals("int") && rightExprType.equals("int")) )
+        if ( !(leftExprType == TypeInfo.INT && rightExprType == TypeInfo.INT) )
         {
             throw new SemanticError(strLine + "Operator '*' is undefined for argument types '" + leftExprType + "', '" + rightExprType + "'");
         }
-        return "int";
+        return TypeInfo.INT;
     }
 
     @Override
-    public String visit(NotExpression n, Boolean argu) throws Exception {
-        String exprType = n.f1.accept(this, null);
+    public TypeInfo visit(NotExpression n, Boolean argu) throws Exception {
+        TypeInfo exprType = n.f1.accept(this, null);
         String strLine = "Line " + n.f0.beginLine + ": ";
-        if ( !exprType.equals("boolean") )
+        if (exprType != TypeInfo.BOOLEAN)
         {
             throw new SemanticError(strLine + "Operator '!' is undefined for argument of type '" + exprType + "'");
         }
-        return "boolean";
+        return TypeInfo.BOOLEAN;
     }
 
     /**
      * f0 -> PrimaryExpression(), [ f2 -> PrimaryExpression() ]
      */
     @Override
-    public String visit(ArrayLookup n, Boolean argu) throws Exception {
-        String exprType = n.f0.accept(this, null);
+    public TypeInfo visit(ArrayLookup n, Boolean argu) throws Exception {
+        TypeInfo exprType = n.f0.accept(this, null);
         String strLine = "Line " + n.f1.beginLine + ": ";
         // PrimaryExpression must be of type int[]
-        if (!exprType.equals("int[]"))
+        if (exprType != TypeInfo.INT_ARRAY)
         {
             throw new SemanticError(strLine + "The type of expression must be 'int[]' but resolved to '" + exprType + "'");
         }
         // Index must be of type int
-        String indexExprType = n.f2.accept(this, null);
-        if (!indexExprType.equals("int"))
+        TypeInfo indexExprType = n.f2.accept(this, null);
+        if (indexExprType != TypeInfo.INT)
         {
             throw new SemanticError(strLine + "Type mismatch: cannot convert from '" + indexExprType + "' to 'int'");
         }
-        return "int";
+        return TypeInfo.INT;
     }
 
     /**
      * f0 -> PrimaryExpression(), f1 -> ".", f2 -> "length"
      */
     @Override
-    public String visit(ArrayLength n, Boolean argu) throws Exception {
-        String exprType = n.f0.accept(this, null);
+    public TypeInfo visit(ArrayLength n, Boolean argu) throws Exception {
+        TypeInfo exprType = n.f0.accept(this, null);
         String strLine = "Line " + n.f1.beginLine + ": ";
         // PrimaryExpression must be of type int[]
-        if (!exprType.equals("int[]"))
+        if (exprType != TypeInfo.INT_ARRAY)
         {
             throw new SemanticError(strLine + "The type of expression must be 'int[]' but resolved to '" + exprType + "'");
         } 
-        return "int";
+        return TypeInfo.INT;
     }
 
     /**
@@ -317,43 +441,43 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
      * f6 -> ";"
      */
     @Override
-    public String visit(ArrayAssignmentStatement n, Boolean argu) throws Exception {
-        String idType = n.f0.accept(this, true);
+    public TypeInfo visit(ArrayAssignmentStatement n, Boolean argu) throws Exception {
+        TypeInfo idType = n.f0.accept(this, true);
         String lineStr = "Line " + n.f4.beginLine + ": ";
 
         // Making sure the variable is of type int[]
-        if ( !idType.equals("int[]") )
+        if (idType != TypeInfo.INT_ARRAY)
         {
             throw new SemanticError(lineStr + "The type of expression must be 'int[]' but resolved to '" + idType + "'");
         }
 
         // Making sure index is int
-        String indexExprType = n.f2.accept(this, null);
-        if ( !indexExprType.equals("int") )
+        TypeInfo indexExprType = n.f2.accept(this, null);
+        if (indexExprType != TypeInfo.INT)
         {
             throw new SemanticError(lineStr + "Type mismatch: cannot convert from '" + indexExprType + "' to 'int'");
         }
 
-        String exprType = n.f5.accept(this, null);
+        TypeInfo exprType = n.f5.accept(this, null);
         // Making sure only ints are assigned in an int[] assignment
-        if ( !exprType.equals("int") )
+        if (exprType != TypeInfo.INT)
         {
             throw new SemanticError(lineStr + "Type mismatch: cannot convert from '" + exprType + "' to 'int'");
         }
 
-        return "int";
+        return TypeInfo.INT;
     }    
 
     @Override
-    public String visit(Statement n, Boolean argu) throws Exception {
+    public TypeInfo visit(Statement n, Boolean argu) throws Exception {
         return n.f0.accept(this, null);
     }
 
     @Override
-    public String visit(IfStatement n, Boolean argu) throws Exception {
-        String exprType = n.f2.accept(this, null);
+    public TypeInfo visit(IfStatement n, Boolean argu) throws Exception {
+        TypeInfo exprType = n.f2.accept(this, null);
 
-        if ( !exprType.equals("boolean") )
+        if (exprType != TypeInfo.BOOLEAN)
         {
             throw new SemanticError("Line " + n.f0.beginLine + ": Type mismatch: cannot convert from '" + exprType + "' to 'boolean'");
         }
@@ -366,10 +490,10 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
     }
 
     @Override
-    public String visit(WhileStatement n, Boolean argu) throws Exception {
-        String exprType = n.f2.accept(this, null);
+    public TypeInfo visit(WhileStatement n, Boolean argu) throws Exception {
+        TypeInfo exprType = n.f2.accept(this, null);
 
-        if ( !exprType.equals("boolean") )
+        if (exprType != TypeInfo.BOOLEAN)
         {
             throw new SemanticError("Line " + n.f0.beginLine + ": Type mismatch: cannot convert from '" + exprType + "' to 'boolean'");
         }
@@ -380,10 +504,10 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
     }
 
     @Override
-    public String visit(PrintStatement n, Boolean argu) throws Exception {
-        String exprType = n.f2.accept(this, null);
+    public TypeInfo visit(PrintStatement n, Boolean argu) throws Exception {
+        TypeInfo exprType = n.f2.accept(this, null);
         // Only ints can be printed
-        if ( !exprType.equals("int"))
+        if (exprType != TypeInfo.INT)
         {
             throw new SemanticError("Line " + n.f0.beginLine + ": Incompatible type argument in 'println' function");
         }
@@ -394,9 +518,9 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
      * f0 -> PrimaryExpression(), f1 -> ".", f2 -> Identifier(), ( f4 -> ( ExpressionList() )? )
      */
     @Override
-    public String visit(MessageSend n, Boolean argu) throws Exception {
-        String varType = n.f0.accept(this, null);
-        ClassInfo classInfo = this.classInfos.get(varType);
+    public TypeInfo visit(MessageSend n, Boolean argu) throws Exception {
+        TypeInfo varType = n.f0.accept(this, null);
+        ClassInfo classInfo = varType.classInfo;
         String lineStr = "Line " + n.f1.beginLine + ": ";
 
         // Checking if we are actually in a Class method (not main)
@@ -405,7 +529,7 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
             throw new SemanticError(lineStr + "Cannot invoke method of type '" + varType + "'");
         }
         // Making sure the Class has a method with this name
-        String methodName = n.f2.accept(this, null);
+        String methodName = n.f2.f0.toString();
         FunctionInfo method = classInfo.getMethod(methodName);
         if (method == null)
         {
@@ -415,9 +539,14 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
         if (n.f4.present())
         // Args were given in method call
         {
-            // Getting a string "<type1>,<type2>,..."
-            String argTypesStr = n.f4.accept(this, null);
-            if ( !method.hasArgTypes(argTypesStr, this.classInfos) )
+            // Getting the argument types
+            List<Expression> args = NodeLists.expressions(n.f4);
+            TypeInfo[] argTypes = new TypeInfo[args.size()];
+            for (int i = 0; i < argTypes.length; i++)
+            {
+                argTypes[i] = args.get(i).accept(this, null);
+            }
+            if ( !method.hasArgTypes(argTypes) )
             // Argument type are incorrect
             {
                 throw new SemanticError(lineStr + "Incompatible arguments given in method '" + methodName + "' call");
@@ -436,28 +565,6 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
         return method.type;
     }
 
-    @Override
-    public String visit(ExpressionList n, Boolean argu) throws Exception {
-        return n.f0.accept(this, null) + n.f1.accept(this, null);
-    }
-
-    @Override
-    public String visit(ExpressionTail n, Boolean argu) throws Exception {
-        String retStr = "";
-
-        for (Node node: n.f0.nodes)
-        {
-            retStr = retStr + "," + node.accept(this, null);
-        }
-
-        return retStr;
-    }
-
-    @Override
-    public String visit(ExpressionTerm n, Boolean argu) throws Exception {
-        return n.f1.accept(this, null);
-    }
-
     /**
      * f0 -> "class"
      * f1 -> Identifier()
@@ -467,8 +574,8 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
      * f5 -> "}"
      */
     @Override
-    public String visit(ClassDeclaration n, Boolean argu) throws Exception {
-        String classname = n.f1.accept(this, null);
+    public TypeInfo visit(ClassDeclaration n, Boolean argu) throws Exception {
+        String classname = n.f1.f0.toString();
         ClassInfo classInfo = this.classInfos.get(classname);
         this.currentClass = classInfo;
         // Pushing all Class fields in the Symbol Table
@@ -498,8 +605,8 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
      * f7 -> "}"
      */
     @Override
-    public String visit(ClassExtendsDeclaration n, Boolean argu) throws Exception {
-        String classname = n.f1.accept(this, null);
+    public TypeInfo visit(ClassExtendsDeclaration n, Boolean argu) throws Exception {
+        String classname = n.f1.f0.toString();
         ClassInfo classInfo = this.classInfos.get(classname);
         this.currentClass = classInfo;
         // Pushing all Class (and superclass) fields in the Symbol Table
@@ -534,37 +641,34 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
      * f12 -> "}"
      */
     @Override
-    public String visit(MethodDeclaration n, Boolean argu) throws Exception {
-        FunctionInfo method = this.currentClass.getMethod(n.f2.accept(this, null));
+    public TypeInfo visit(MethodDeclaration n, Boolean argu) throws Exception {
+        if (this.pool != null)
+        {
+            submitBody(n);
+            return null;
+        }
+        FunctionInfo method = this.currentClass.getMethod(n.f2.f0.toString());
         this.symbolTable.addScope();
 
-        // Getting parameter String: "<type> <var>, <type2> <var2>, ..."
-        String temp = n.f4.present() ? n.f4.accept(this, null) : "";
-
-        if ( !temp.equals("") )
+        // Pushing each argument in the Symbol Table
+        for (FormalParameter param: NodeLists.formalParameters(n.f4))
         {
-            // Spliting into strings: "<type> <var>", "<type2> <var2>", ...
-            String[] argStr = temp.split("\\s*,\\s*");
-            for (int i = 0; i < argStr.length; i++)
+            String name = param.f1.f0.toString();
+            if ( !this.symbolTable.pushVariableEntry(new VariableInfo(name, param.f0.accept(this, null))) )
             {
-                // Spliting each string: "<type>", "<var>"
-                String[] currArgStr = argStr[i].split("\\s* \\s*");
-                // Pushing each argument in the Symbol Table
-                if ( !this.symbolTable.pushVariableEntry(new VariableInfo(currArgStr[1], currArgStr[0])) )
-                {
-                    throw new SemanticError("Duplicate argument '" + currArgStr[1] + "' in method '" + method.name + "'");
-                }
+                throw new SemanticError("Duplicate argument '" + name + "' in method '" + method.name + "'");
             }
         }
 
-        String[] varStr;
         for (Node node: n.f7.nodes)
         // Pushing all local variables in the Symbol Table
         {
-            varStr = node.accept(this, null).split("\\s* \\s*");
-            if ( !this.symbolTable.pushVariableEntry(new VariableInfo(varStr[1], varStr[0])) )
+            VarDeclaration decl = (VarDeclaration) node;
+            TypeInfo type = decl.accept(this, null);
+            String name = decl.f1.f0.toString();
+            if ( !this.symbolTable.pushVariableEntry(new VariableInfo(name, type)) )
             {
-                throw new SemanticError("Variable '" + varStr[1] + "' in method '" + method.name +"' is declared more than once");
+                throw new SemanticError("Variable '" + name + "' in method '" + method.name +"' is declared more than once");
             }
         }
 
@@ -575,18 +679,14 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
         }
 
         // Checking return expression type
-        String returnExprType = n.f10.accept(this, null);
-        // If the return expression type is not the same as the method type
-        if ( !returnExprType.equals(method.type))
+        TypeInfo returnExprType = n.f10.accept(this, null);
+        // The return expression type must be the same as the method type,
+        // or the method type can only be a superclass of the return expression type
+        if ( !returnExprType.isAssignableTo(method.type) )
         {
-            // Then the method type can only be a superclass of the return expression type
-            ClassInfo returnTypeClass = this.classInfos.get(returnExprType);
-            if (returnTypeClass == null || !returnTypeClass.hasSuperClass(method.type))
-            {
-                String message = "Type mismatch in method '" + method.name;
-                message = message + "' return value: cannot convert from '" + returnExprType + "' to '" + method.type + "'";
-                throw new SemanticError(message);
-            }
+            String message = "Type mismatch in method '" + method.name;
+            message = message + "' return value: cannot convert from '" + returnExprType + "' to '" + method.type + "'";
+            throw new SemanticError(message);
         }
 
         // Pop all local variables from the Symbol Table
@@ -594,77 +694,58 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
         return null;
     }
 
+    /**
+     * f0 -> ArrayType()
+     *       | BooleanType()
+     *       | IntegerType()
+     *       | Identifier()
+     *
+     * Returns the declared type, or {@code null} if it is not a known class.
+     */
     @Override
-    public String visit(FormalParameter n, Boolean argu) throws Exception {
-        return n.f0.accept(this, null) + " " + n.f1.accept(this, null);
-    }
-
-    @Override
-    public String visit(FormalParameterList n, Boolean argu) throws Exception {
-        String ret = n.f0.accept(this, null);
-        
-        if (n.f1 != null) {
-            ret += n.f1.accept(this, null);
-        }
-        
-        return ret;
-    }
-
-    @Override
-    public String visit(FormalParameterTail n, Boolean argu) throws Exception {
-        String params = "";
-        for ( Node node: n.f0.nodes) {
-            params += "," + node.accept(this, null);
+    public TypeInfo visit(Type n, Boolean argu) throws Exception {
+        if (n.f0.choice instanceof Identifier)
+        {
+            return TypeInfo.resolve(DeclarationCollector.typeName(n), this.classInfos);
         }
-        return params;
-    }
-
-    @Override
-    public String visit(FormalParameterTerm n, Boolean argu) throws Exception {
-        return n.f1.accept(this, null);
+        return n.f0.accept(this, null);
     }
 
     @Override
-    public String visit(ArrayType n, Boolean argu) {
-        return "int[]";
+    public TypeInfo visit(ArrayType n, Boolean argu) {
+        return TypeInfo.INT_ARRAY;
     }
 
     @Override
-    public String visit(BooleanType n, Boolean argu) {
-        return "boolean";
+    public TypeInfo visit(BooleanType n, Boolean argu) {
+        return TypeInfo.BOOLEAN;
     }
 
     @Override
-    public String visit(IntegerType n, Boolean argu) {
-        return "int";
+    public TypeInfo visit(IntegerType n, Boolean argu) {
+        return TypeInfo.INT;
     }
 
     /**
-     * This is a worth mentioning point: this method will be called in e.g. Variable Declarations,
-     * where the variable **name** will be needed, but also in Primary Expressions, were
-     * the variable **type** will be needed. So we take advantage of the optional argument here.
+     * This is only called for identifiers that are used as variables (in Primary Expressions
+     * and assignments), since identifiers used as names are read directly from the Parse Tree.
      * 
-     * @param needType If this is {@code null}, then the identifier *name* will be returned. If not,
-     * the *type* of the variable associated with this name will be returned, if stored in the Symbol Table,
+     * @return The type of the variable associated with this name, if stored in the Symbol Table,
      * or a Semantic Error exception will be thrown.
      */
     @Override
-    public String visit(Identifier n, Boolean needType) throws Exception {
+    public TypeInfo visit(Identifier n, Boolean argu) throws Exception {
         String name = n.f0.toString();
-        if (needType == null)
-        {
-            return name;
-        }
         VariableInfo var = this.symbolTable.getVariableEntry(name);
         if (var == null)
         {
             throw new SemanticError("Line " + n.f0.beginLine + ": Identifier '" + name + "' is undefined");
         }
-        return var.typeName;
+        return var.type;
     }
 
     @Override
-    public String visit(IntegerLiteral n, Boolean argu) throws Exception {
+    public TypeInfo visit(IntegerLiteral n, Boolean argu) throws Exception {
         String str = n.f0.toString();
         /** A last-minute addition to prevent invalid integer literals.
             No checking for Integer.MIN_VALUE needed since negative literals 
@@ -673,26 +754,26 @@ public class FunctionBodyAnalyzer extends GJDepthFirst<String, Boolean> {
         {
             throw new SemanticError("Line " + n.f0.beginLine + ": The literal " + str + " of type 'int' is out of range");
         }
-        return "int";
+        return TypeInfo.INT;
     }
 
     @Override
-    public String visit(TrueLiteral n, Boolean argu) throws Exception {
-        return "boolean";
+    public TypeInfo visit(TrueLiteral n, Boolean argu) throws Exception {
+        return TypeInfo.BOOLEAN;
     }
 
     @Override
-    public String visit(FalseLiteral n, Boolean argu) throws Exception {
-        return "boolean";
+    public TypeInfo visit(FalseLiteral n, Boolean argu) throws Exception {
+        return TypeInfo.BOOLEAN;
     }
 
     @Override
-    public String visit(ThisExpression n, Boolean argu) throws Exception {
+    public TypeInfo visit(ThisExpression n, Boolean argu) throws Exception {
         // Making sure we are actually inside a class method (not main)
         if (this.currentClass == null)
         {
             throw new SemanticError("Cannot refer to 'this' outside of a class method");
         }
-        return this.currentClass.name;
+        return this.currentClass.type;
     }
 }
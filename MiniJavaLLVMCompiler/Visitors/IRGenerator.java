@@ -8,27 +8,75 @@ package Visitors;
 import syntaxtree.*;
 import visitor.*;
 import ClassInformation.*;
+import IRModel.*;
+import IRPasses.*;
 import SymbolTable.*;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
- * Generates the output {@code .ll} file out of the given MiniJava file.
- * Each {@code visit} method returns a {@code String}, which is
- * the name of the register where the evaluated value is stored,
+ * Generates the in-memory IR {@link IRModule} of the given MiniJava file.
+ * The module can then be serialized by an {@code IRPrinter}.
+ * Each {@code visit} method returns the {@link Value} that holds the evaluated expression,
  * or {@code null} if this is not needed.
- * <p>The second argument is also a {@code String} to be provided
- * to Identifier {@code visit} method, indicating whether an Identifier name, or
- * a variable address, or a variable value (which will be loaded to a new register) is required.
+ * <p>The second argument is a {@code String} to be provided to Identifier {@code visit}
+ * method, indicating whether a variable address ({@code "lvalue"}), or a variable value
+ * ({@code "rvalue"}, which will be loaded to a new register) is required.
+ *
+ * <p>The bodies of {@code main} and of the methods can be generated concurrently on a
+ * {@code ForkJoinPool} (see {@link #setPool}): each one is generated by its own IRGenerator,
+ * which only shares the (read-only) class information and the module-level values
+ * (declared by {@link #generateVtables}) with the others. Register & label names are
+ * local to each function, and the functions are in declaration order in the module,
+ * so the printed IR is the same regardless of the order the bodies are generated in.
+ *
+ * <p>Once the body of a function has been generated, its local variables are promoted from stack slots
+ * ({@code alloca}s) to SSA registers (see {@link PromoteMemToReg}), unless this is disabled with
+ * {@link #setPromoteAllocas}, so the IR does not rely on an optimizing compiler to keep them in registers.
+ * Expressions whose operands are constants are evaluated while generating them, and {@link SCCP} then
+ * propagates the constants through the (promoted) variables and removes the branches that can never be taken
+ * (and {@link SimplifyCFG} the blocks left behind), unless this is disabled with {@link #setFoldConstants}.
+ * The array bounds checks that always pass are then removed, and loops are versioned to skip the rest of the checks
+ * against the array lengths where possible (see {@link BoundsCheckElimination}),
+ * unless this is disabled with {@link #setEliminateBoundsChecks}.
+ *
+ * <p>A method call whose target is known at compile time, since no subclass of the (static) class
+ * of the object overrides the method, calls the method function directly instead of through the vtable
+ * (Class Hierarchy Analysis, see {@link ClassInfo#getUniqueVtableMethod}),
+ * unless this is disabled with {@link #setDevirtualizeCalls}. The object is still checked against {@code null}
+ * first (see {@link NullCheckElimination}), so a call on a {@code null} object crashes as a virtual one would.
+ * Once all the bodies have been generated, the direct calls of small functions are replaced with copies
+ * of their bodies (see {@link Inliner}), and the functions they were inlined into are folded again
+ * (see {@link #setInlineBudget}). Then the functions are handed to the listener (if any).
+ *
+ * <p>A {@link FunctionListener} can be notified of each function as soon as its body has been
+ * generated (in source order), e.g. to print it while the rest of the bodies are being generated.
  */
-public class IRGenerator extends GJDepthFirst<String, String> {
+public class IRGenerator extends GJDepthFirst<Value, String> {
+
+    /** The default maximum size (in instructions) of the inlined functions. */
+    public static final int DEFAULT_INLINE_BUDGET = 40;
+
+    /** The runtime library, shared by all the modules ({@code null} until it is first loaded). */
+    private static RuntimeLibrary runtimeLibrary = null;
+
+    /** Notified whenever the body of a function has been generated. */
+    public interface FunctionListener {
+        /**
+         * Called (by the thread that called {@code accept}) for each generated function,
+         * in source order. An exception thrown by it aborts the generation.
+         */
+        void functionGenerated(Function function) throws IOException;
+    }
 
     /** The previously collected class names, fields & methods. */
     private Map<String, ClassInfo> classInfos;
@@ -37,30 +85,340 @@ public class IRGenerator extends GJDepthFirst<String, String> {
     /** The local variables of each method are stored here,
      * and are removed after the end of the method body. */
     private SymbolTable symbolTable;
-    /** Used to write to the output .ll file. */
-    private FileWriter IRWriter;
-    /** Used to generate new register names. */
-    private int regCounter = -1;
-    /** Used to generate new label names. */
+    /** The generated module. */
+    private IRModule module;
+    /** Used to append instructions to the current block. */
+    private IRBuilder builder;
+    /** The function whose body is currently generated. */
+    private Function currentFunction;
+    /** The `this` argument of the current method ({@code null} in {@code main}). */
+    private Value thisValue;
+    /** The stack address ({@code alloca}) of each local variable of the current function. */
+    private Map<VariableInfo, Value> variableAddresses;
+    /** Runtime functions. */
+    private Function calloc;
+    private Function printInt;
+    private Function throwOob;
+    /** Used to generate new label names (numbered separately in each function). */
     private int labelCounter = -1;
-    /** Maps local register names (of objects) to class types, in order to figure out the vtable offset
-     * when a method of the object in the register is called.
+    /** Maps local values (of objects) to class types, in order to figure out the vtable offset
+     * when a method of the object in the value is called.
      * This is cleared after the function body has been generated. */
-    private Map<String, ClassInfo> objectRegisters;
+    private Map<Value, ClassInfo> objectRegisters;
+    /** Used to generate the function bodies concurrently ({@code null} to generate them sequentially). */
+    private ForkJoinPool pool;
+    /** The function bodies submitted to the pool, and their generators, in source order. */
+    private List<Future<Value>> pendingBodies;
+    private List<IRGenerator> bodyGenerators;
+    /** Notified of each generated function ({@code null} if not needed). */
+    private FunctionListener listener;
+    /** The last function generated by this generator. */
+    private Function generatedFunction;
+    /** Set to {@code true} if the local variables should be promoted to registers. */
+    private boolean promoteAllocas;
+    /** The number of local variables promoted to registers so far. */
+    private long promotedAllocas;
+    /** Set to {@code true} if constant expressions should be evaluated at compile time. */
+    private boolean foldConstants;
+    /** The number of instructions replaced by constants (or not generated at all, since they were constant) so far. */
+    private long foldedConstants;
+    /** The number of blocks removed so far, since they could never be executed or only passed control on. */
+    private long prunedBlocks;
+    /** Set to {@code true} if the array bounds checks that always pass should be removed. */
+    private boolean eliminateBoundsChecks;
+    /** The number of bounds checks removed so far, and of the ones removed from versioned loops. */
+    private long removedBoundsChecks;
+    private long hoistedBoundsChecks;
+    /** Set to {@code true} if the calls of methods that are not overridden should be direct. */
+    private boolean devirtualizeCalls;
+    /** The number of method calls generated so far, and of the direct ones among them. */
+    private long methodCalls;
+    private long devirtualizedCalls;
+    /** The maximum size (in instructions) of the inlined functions (0 if nothing should be inlined). */
+    private int inlineBudget;
+    /** The number of calls replaced with the body of the called function. */
+    private long inlinedCalls;
 
-    public IRGenerator(String outputFileName, Map<String, ClassInfo>infos) throws IOException
+    /**
+     * Creates an IRGenerator for the given classes.
+     */
+    public IRGenerator(Map<String, ClassInfo>infos)
     {
         classInfos = infos;
         symbolTable = new SymbolTable();
-        IRWriter = new FileWriter(outputFileName, true);
-        objectRegisters = new HashMap<String, ClassInfo>();
+        module = new IRModule();
+        builder = new IRBuilder();
+        variableAddresses = new HashMap<VariableInfo, Value>();
+        objectRegisters = new HashMap<Value, ClassInfo>();
+
+        // `main` is the first function in the output
+        module.addFunction(new Function("main", IRType.function(IRType.I32, new IRType[0], false), null));
+        // Functions provided by the runtime library
+        calloc = addRuntimeFunction("calloc", IRType.I8_PTR, IRType.I32, IRType.I32);
+        printInt = addRuntimeFunction("print_int", IRType.VOID, IRType.I32);
+        throwOob = addRuntimeFunction("throw_oob", IRType.VOID);
+        pool = null;
+        pendingBodies = new ArrayList<Future<Value>>();
+        bodyGenerators = new ArrayList<IRGenerator>();
+        listener = null;
+        promoteAllocas = true;
+        promotedAllocas = 0;
+        foldConstants = true;
+        foldedConstants = 0;
+        prunedBlocks = 0;
+        eliminateBoundsChecks = true;
+        removedBoundsChecks = 0;
+        hoistedBoundsChecks = 0;
+        devirtualizeCalls = true;
+        methodCalls = 0;
+        devirtualizedCalls = 0;
+        inlineBudget = DEFAULT_INLINE_BUDGET;
+        inlinedCalls = 0;
+    }
+
+    /**
+     * Creates an IRGenerator for a function body (of {@code main}, or of a method of the given class),
+     * which adds to the module of the given generator.
+     */
+    private IRGenerator(IRGenerator parent, ClassInfo currentClass)
+    {
+        classInfos = parent.classInfos;
+        module = parent.module;
+        calloc = parent.calloc;
+        printInt = parent.printInt;
+        throwOob = parent.throwOob;
+        this.currentClass = currentClass;
+        symbolTable = new SymbolTable();
+        builder = new IRBuilder();
+        variableAddresses = new HashMap<VariableInfo, Value>();
+        objectRegisters = new HashMap<Value, ClassInfo>();
+        pool = null;
+        pendingBodies = new ArrayList<Future<Value>>();
+        bodyGenerators = new ArrayList<IRGenerator>();
+        // The parent notifies the listener (in source order)
+        listener = null;
+        promoteAllocas = parent.promoteAllocas;
+        promotedAllocas = 0;
+        foldConstants = parent.foldConstants;
+        foldedConstants = 0;
+        prunedBlocks = 0;
+        eliminateBoundsChecks = parent.eliminateBoundsChecks;
+        removedBoundsChecks = 0;
+        hoistedBoundsChecks = 0;
+        devirtualizeCalls = parent.devirtualizeCalls;
+        methodCalls = 0;
+        devirtualizedCalls = 0;
+        // The parent inlines the calls, once all the bodies have been generated
+        inlineBudget = parent.inlineBudget;
+        inlinedCalls = 0;
+    }
+
+    /**
+     * Makes the generator generate the function bodies concurrently on the given pool
+     * ({@code null} to generate them sequentially, which is the default).
+     */
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Makes the generator notify the given listener of each function, as soon as its body
+     * has been generated ({@code null} to not notify anyone, which is the default).
+     */
+    public void setListener(FunctionListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Makes the generator promote the local variables of each function to registers ({@code true}, the default),
+     * or keep them in stack slots ({@code false}).
+     */
+    public void setPromoteAllocas(boolean promoteAllocas)
+    {
+        this.promoteAllocas = promoteAllocas;
+    }
+
+    /**
+     * Makes the generator evaluate constant expressions & branches at compile time ({@code true}, the default),
+     * or generate every expression & branch as written ({@code false}).
+     */
+    public void setFoldConstants(boolean foldConstants)
+    {
+        this.foldConstants = foldConstants;
+    }
+
+    /**
+     * Makes the generator remove the array bounds checks that always pass, and version loops to skip the rest
+     * ({@code true}, the default), or keep every check ({@code false}). Only done when the local variables
+     * are promoted to registers.
+     */
+    public void setEliminateBoundsChecks(boolean eliminateBoundsChecks)
+    {
+        this.eliminateBoundsChecks = eliminateBoundsChecks;
+    }
+
+    /**
+     * Makes the generator call the methods that no subclass overrides directly ({@code true}, the default),
+     * or call every method through the vtable of the object ({@code false}).
+     */
+    public void setDevirtualizeCalls(boolean devirtualizeCalls)
+    {
+        this.devirtualizeCalls = devirtualizeCalls;
+    }
+
+    /**
+     * Makes the generator inline the direct calls of the functions with at most {@code budget} instructions
+     * ({@link #DEFAULT_INLINE_BUDGET} by default), or no calls at all if it is {@code 0}.
+     * While inlining is enabled, the listener is only notified of the functions once all of them
+     * have been generated (and inlined into).
+     */
+    public void setInlineBudget(int budget)
+    {
+        this.inlineBudget = budget;
+    }
+
+    private Function addRuntimeFunction(String name, IRType returnType, IRType... params)
+    {
+        Function function = module.addFunction(new Function(name, IRType.function(returnType, params, false), null));
+        function.setRuntime(true);
+        return function;
+    }
+
+    /**
+     * Returns the generated module.
+     */
+    public IRModule getModule()
+    {
+        return this.module;
+    }
+
+    /**
+     * Returns the number of variable names resolved through the Symbol Table so far.
+     */
+    public long getSymbolsResolved()
+    {
+        long resolved = this.symbolTable.getNumLookups();
+        for (IRGenerator generator: this.bodyGenerators)
+        {
+            resolved += generator.getSymbolsResolved();
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the number of local variables promoted to registers so far.
+     */
+    public long getNumPromotedAllocas()
+    {
+        long promoted = this.promotedAllocas;
+        for (IRGenerator generator: this.bodyGenerators)
+        {
+            promoted += generator.getNumPromotedAllocas();
+        }
+        return promoted;
+    }
+
+    /**
+     * Returns the number of instructions replaced by constants (or not generated at all, since they were constant)
+     * so far.
+     */
+    public long getNumFoldedConstants()
+    {
+        long folded = this.foldedConstants;
+        for (IRGenerator generator: this.bodyGenerators)
+        {
+            folded += generator.getNumFoldedConstants();
+        }
+        return folded;
+    }
+
+    /**
+     * Returns the number of blocks removed so far, since they could never be executed or only passed control on.
+     */
+    public long getNumPrunedBlocks()
+    {
+        long pruned = this.prunedBlocks;
+        for (IRGenerator generator: this.bodyGenerators)
+        {
+            pruned += generator.getNumPrunedBlocks();
+        }
+        return pruned;
     }
 
     /**
-     * Prints the virtual tables of all classes in the output {@code .ll} file.
+     * Returns the number of array bounds checks removed so far, since they always pass.
      */
-    public void emitVtables() throws IOException
+    public long getNumRemovedBoundsChecks()
     {
+        long removed = this.removedBoundsChecks;
+        for (IRGenerator generator: this.bodyGenerators)
+        {
+            removed += generator.getNumRemovedBoundsChecks();
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of array bounds checks removed so far from the versioned copies of loops
+     * (which are only entered if the checks would pass).
+     */
+    public long getNumHoistedBoundsChecks()
+    {
+        long hoisted = this.hoistedBoundsChecks;
+        for (IRGenerator generator: this.bodyGenerators)
+        {
+            hoisted += generator.getNumHoistedBoundsChecks();
+        }
+        return hoisted;
+    }
+
+    /**
+     * Returns the number of method calls generated so far.
+     */
+    public long getNumMethodCalls()
+    {
+        long calls = this.methodCalls;
+        for (IRGenerator generator: this.bodyGenerators)
+        {
+            calls += generator.getNumMethodCalls();
+        }
+        return calls;
+    }
+
+    /**
+     * Returns the number of method calls generated so far as direct calls, since the called method
+     * is not overridden by any subclass of the class of the object.
+     */
+    public long getNumDevirtualizedCalls()
+    {
+        long devirtualized = this.devirtualizedCalls;
+        for (IRGenerator generator: this.bodyGenerators)
+        {
+            devirtualized += generator.getNumDevirtualizedCalls();
+        }
+        return devirtualized;
+    }
+
+    /**
+     * Returns the number of calls replaced with the body of the called function.
+     */
+    public long getNumInlinedCalls()
+    {
+        return this.inlinedCalls;
+    }
+
+    /**
+     * Creates the virtual tables of all classes as global variables, and declares
+     * the functions of all methods. This must be done before the method bodies are generated.
+     */
+    public void generateVtables()
+    {
+        // The vtable entry (function pointer) of each method. Each method appears in the
+        // vtables of its class and all the subclasses that do not override it,
+        // which share the same (constant) entry.
+        Map<MethodInfo, Constant> vtableEntries = new HashMap<MethodInfo, Constant>();
         // Iterate over the classes
         for(Map.Entry<String, ClassInfo>entry: this.classInfos.entrySet())
         {
@@ -71,65 +429,291 @@ public class IRGenerator extends GJDepthFirst<String, String> {
             classInfo.offsetIncrement();
             // Create virtual table
             classInfo.createVirtualTable();
-            // Print it
-            classInfo.emitVtable(this.IRWriter);
+            // Declare the class methods
+            for (MethodInfo method: classInfo.getDeclaredMethods())
+            {
+                Function function = module.addFunction(new Function(method.fullname.substring(1), getFunctionType(method.method), null));
+                vtableEntries.put(method, new ConstantCast(function, IRType.I8_PTR));
+            }
+            // Create the vtable global, which points to the method functions.
+            // Superclass methods have already been declared.
+            List<Value> entries = new ArrayList<Value>(classInfo.getVtableNumEntries());
+            for (MethodInfo method: classInfo.getVtableMethods())
+            {
+                entries.add(vtableEntries.get(method));
+            }
+            module.addGlobal(new GlobalVariable(getVtableName(classInfo), new ConstantArray(IRType.I8_PTR, entries), false));
         }
-        emit("\n");
+        // Find the methods each call can resolve to
+        ClassInfo.findOverriddenMethods(this.classInfos.values());
     }
 
     /**
-     * Prints all the contents of {@code ./Visitors/utils.ll}
-     * in the output {@code .ll} file. This file should contain required functions
-     * such as {@code print_int} and {@code throw_oob}, as well as needed imports.
+     * Sets the runtime library of the module, which defines required functions such as {@code print_int}
+     * and {@code throw_oob}, as well as needed declarations. It is only built the first time it is needed,
+     * and is then shared by all the modules.
      */
-    public void emitUtils() throws FileNotFoundException, IOException
+    public void loadRuntime()
     {
-        FileReader utilsReader = new FileReader("./Visitors/utils.ll");
-        for (int c = utilsReader.read(); c != -1; c = utilsReader.read())
+        module.setRuntime(getRuntimeLibrary());
+    }
+
+    /** Returns the runtime library, building it first if this is the first time it is needed. */
+    private static synchronized RuntimeLibrary getRuntimeLibrary()
+    {
+        if (runtimeLibrary == null)
         {
-            IRWriter.write(c);
+            runtimeLibrary = new RuntimeLibrary(buildRuntimeModule());
         }
-        IRWriter.write('\n');
-        utilsReader.close();
+        return runtimeLibrary;
     }
 
     /**
-     * Prints the given string in the output {@code .ll} file (with a {@code "\t"} before
-     * and a newline after it).
+     * Builds the IR of the runtime library: the C library functions it calls, the strings it prints,
+     * and the definitions of {@code print_int} & {@code throw_oob}.
      */
-    public void emit(String text) throws IOException
+    private static IRModule buildRuntimeModule()
     {
-        IRWriter.write("\t" + text + "\n");
+        IRModule runtime = new IRModule();
+        runtime.addFunction(new Function("calloc", IRType.function(IRType.I8_PTR, new IRType[] { IRType.I32, IRType.I32 }, false), null));
+        Function printf = runtime.addFunction(new Function("printf", IRType.function(IRType.I32, new IRType[] { IRType.I8_PTR }, true), null));
+        Function exit = runtime.addFunction(new Function("exit", IRType.function(IRType.VOID, new IRType[] { IRType.I32 }, false), null));
+        GlobalVariable intFormat = runtime.addGlobal(new GlobalVariable("_cint", new ConstantString("%d\n\0"), true));
+        GlobalVariable oobMessage = runtime.addGlobal(new GlobalVariable("_cOOB", new ConstantString("Out of bounds\n\0"), true));
+        IRBuilder builder = new IRBuilder();
+
+        // void print_int(i32 %i): printf("%d\n", i)
+        Function printInt = runtime.addFunction(new Function("print_int", IRType.function(IRType.VOID, new IRType[] { IRType.I32 }, false),
+                                                             new String[] { "i" }));
+        BasicBlock entry = new BasicBlock("entry");
+        printInt.addBlock(entry);
+        builder.setInsertPoint(entry);
+        Value format = builder.createBitCast(intFormat, IRType.I8_PTR);
+        format.setName("_str");
+        builder.createCall(printf, format, printInt.getArgument(0));
+        builder.createRet(null);
+
+        // void throw_oob(): printf("Out of bounds\n"), exit(1)
+        Function throwOob = runtime.addFunction(new Function("throw_oob", IRType.function(IRType.VOID, new IRType[0], false), null));
+        entry = new BasicBlock("entry");
+        throwOob.addBlock(entry);
+        builder.setInsertPoint(entry);
+        Value message = builder.createBitCast(oobMessage, IRType.I8_PTR);
+        message.setName("_str");
+        builder.createCall(printf, message);
+        builder.createCall(exit, ConstantInt.getInt32(1));
+        builder.createRet(null);
+        return runtime;
+    }
+
+    /** Returns the IR type of the given MiniJava type. */
+    private static IRType getIRType(TypeInfo type)
+    {
+        if (type == TypeInfo.INT)
+        {
+            return IRType.I32;
+        }
+        else if (type == TypeInfo.BOOLEAN)
+        {
+            return IRType.I1;
+        }
+        else if (type == TypeInfo.INT_ARRAY)
+        {
+            return IRType.I32_PTR;
+        }
+        // Objects
+        return IRType.I8_PTR;
+    }
+
+    /** Returns the IR function type of the given method (`this` is always the first parameter). */
+    private static IRType getFunctionType(FunctionInfo method)
+    {
+        IRType[] params = new IRType[method.args.length + 1];
+        params[0] = IRType.I8_PTR;
+        for (int i = 0; i < method.args.length; i++)
+        {
+            params[i + 1] = getIRType(method.args[i]);
+        }
+        return IRType.function(getIRType(method.type), params, false);
+    }
+
+    private static String getVtableName(ClassInfo classInfo)
+    {
+        return "." + classInfo.name + "_vtable";
+    }
+
+    /** Returns {@code true} if the given value is a new object or array (the result of a {@code calloc} call). */
+    private boolean isAllocation(Value value)
+    {
+        return value instanceof CallInst && ((CallInst) value).getCalledFunction() == this.calloc;
+    }
+
+    /** Returns a new (detached) block, with a new label name which includes the given string. */
+    private BasicBlock getNewBlock(String type)
+    {
+        labelCounter++;
+        return new BasicBlock(type + labelCounter);
+    }
+
+    /** Appends the given block to the current function, and starts appending instructions to it. */
+    private void startBlock(BasicBlock block)
+    {
+        this.currentFunction.addBlock(block);
+        this.builder.setInsertPoint(block);
+    }
+
+    /** Starts generating the body of the given function. */
+    private void startFunction(Function function)
+    {
+        this.currentFunction = function;
+        this.labelCounter = -1;
+        startBlock(new BasicBlock("entry"));
     }
 
     /**
-     * Prints the given string in the output {@code .ll} file, as a label start.
+     * Submits the generation of the given function body (of {@code main} or of a method of the current class)
+     * to the pool, to be performed by a new IRGenerator.
      */
-    public void emitLabel(String text) throws IOException
+    private void submitBody(final Node body)
     {
-        IRWriter.write("\n" + text + ":" + "\n");
+        final IRGenerator generator = new IRGenerator(this, this.currentClass);
+        this.bodyGenerators.add(generator);
+        // A FutureTask reports the exception thrown by the body as is, while the tasks created by
+        // ForkJoinPool.submit(Callable) wrap checked exceptions (like the semantic errors)
+        FutureTask<Value> task = new FutureTask<Value>(new Callable<Value>() {
+            public Value call() throws Exception {
+                return body.accept(generator, null);
+            }
+        });
+        this.pendingBodies.add(task);
+        this.pool.execute(task);
     }
 
     /**
-     * Closes the writer to the output {@code .ll} file.
+     * Waits until all the submitted function bodies have been generated, notifying the listener
+     * (if any) of each one in source order. If any of them failed, the exception of the first one
+     * (in source order) is thrown, and the listener is not notified of it and the following ones.
      */
-    public void closeWriter() throws IOException
+    private void awaitBodies() throws Exception
     {
-        IRWriter.close();
+        Exception failure = null;
+        for (int i = 0; i < this.pendingBodies.size(); i++)
+        {
+            try {
+                this.pendingBodies.get(i).get();
+                if (failure == null && this.listener != null && this.inlineBudget == 0)
+                {
+                    this.listener.functionGenerated(this.bodyGenerators.get(i).generatedFunction);
+                }
+            }
+            catch (ExecutionException ex) {
+                if (failure == null)
+                {
+                    failure = (ex.getCause() instanceof Exception) ? (Exception) ex.getCause() : ex;
+                }
+            }
+        }
+        this.pendingBodies.clear();
+        if (failure != null)
+        {
+            throw failure;
+        }
     }
 
-    /** Returns a new register name. */
-    public String getNewRegister()
+    /**
+     * f0 -> MainClass()
+     * f1 -> ( TypeDeclaration() )*
+     * f2 -> <EOF>
+     */
+    @Override
+    public Value visit(Goal n, String argu) throws Exception {
+        n.f0.accept(this, null);
+        n.f1.accept(this, null);
+        if (this.pool != null)
+        {
+            // The bodies have only been submitted so far
+            awaitBodies();
+        }
+        if (this.inlineBudget > 0)
+        {
+            inlineCalls();
+        }
+        return null;
+    }
+
+    /**
+     * Inlines the calls of the small functions of the module, propagates the constants through the functions
+     * that calls were inlined into (if enabled), and notifies the listener (if any) of all the functions.
+     */
+    private void inlineCalls() throws IOException
     {
-        regCounter++;
-        return "%_" + regCounter;
+        Inliner inliner = new Inliner(this.module, this.inlineBudget);
+        for (Function function: inliner.run())
+        {
+            // The arguments may be constants, and the inlined calls may check the same objects
+            if (this.foldConstants)
+            {
+                this.foldedConstants += NullCheckElimination.run(function);
+                SCCP sccp = new SCCP(function);
+                sccp.run();
+                this.foldedConstants += sccp.getNumFolded();
+                this.prunedBlocks += sccp.getNumRemovedBlocks() + SimplifyCFG.run(function);
+            }
+        }
+        this.inlinedCalls += inliner.getNumInlined();
+        if (this.listener != null)
+        {
+            for (Function function: this.module.getFunctions())
+            {
+                if (!function.isDeclaration() && !function.isRuntime())
+                {
+                    this.listener.functionGenerated(function);
+                }
+            }
+        }
     }
 
-    /** Returns a new label name, which includes the given string. */
-    public String getNewLabel(String type)
+    /**
+     * Finishes the current function body, promoting its local variables to registers, propagating
+     * the constants and removing the bounds checks that always pass (if enabled), clearing the function
+     * local mappings, and notifies the listener (if any, unless calls are inlined later).
+     */
+    private void endFunction() throws IOException
     {
-        labelCounter++;
-        return type + labelCounter;
+        if (this.promoteAllocas)
+        {
+            this.promotedAllocas += PromoteMemToReg.run(this.currentFunction);
+        }
+        if (this.foldConstants)
+        {
+            // The null checks of the direct calls that are dominated by another check of the same object
+            this.foldedConstants += NullCheckElimination.run(this.currentFunction);
+            SCCP sccp = new SCCP(this.currentFunction);
+            sccp.run();
+            this.foldedConstants += sccp.getNumFolded();
+            this.prunedBlocks += sccp.getNumRemovedBlocks();
+        }
+        if (this.eliminateBoundsChecks && this.promoteAllocas)
+        {
+            // Before the loops are reshaped by SimplifyCFG
+            BoundsCheckElimination elimination = new BoundsCheckElimination(this.currentFunction);
+            elimination.run();
+            this.removedBoundsChecks += elimination.getNumRemoved();
+            this.hoistedBoundsChecks += elimination.getNumHoisted();
+        }
+        if (this.foldConstants)
+        {
+            this.prunedBlocks += SimplifyCFG.run(this.currentFunction);
+        }
+        this.objectRegisters.clear();
+        this.variableAddresses.clear();
+        this.generatedFunction = this.currentFunction;
+        this.currentFunction = null;
+        this.thisValue = null;
+        if (this.listener != null && this.inlineBudget == 0)
+        {
+            this.listener.functionGenerated(this.generatedFunction);
+        }
     }
 
     /**
@@ -139,11 +723,16 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f15 -> ( Statement() )*
      *     }
      * }
-     */    
+     */
     @Override
-    public String visit(MainClass n, String argu) throws Exception {
+    public Value visit(MainClass n, String argu) throws Exception {
+        if (this.pool != null)
+        {
+            submitBody(n);
+            return null;
+        }
         this.symbolTable.addScope();
-        IRWriter.write("define i32 @main() {\n");
+        startFunction(module.getFunction("main"));
         // VarDeclarations
         for (Node node: n.f14.nodes)
         {
@@ -155,9 +744,8 @@ public class IRGenerator extends GJDepthFirst<String, String> {
             node.accept(this, null);
         }
         // Return
-        emit("ret i32 0");
-        IRWriter.write("}\n");
-        this.objectRegisters.clear();
+        builder.createRet(ConstantInt.getInt32(0));
+        endFunction();
         this.symbolTable.popScope();
         return null;
     }
@@ -171,12 +759,11 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f5 -> "}"
      */
     @Override
-    public String visit(ClassDeclaration n, String argu) throws Exception {
-        this.currentClass = this.classInfos.get(n.f1.accept(this, null));
+    public Value visit(ClassDeclaration n, String argu) throws Exception {
+        this.currentClass = this.classInfos.get(n.f1.f0.toString());
         // Class fields are already stored, so just generate IR for the methods
         for (Node node: n.f4.nodes)
         {
-            IRWriter.write('\n');
             node.accept(this, null);
         }
         return null;
@@ -193,12 +780,11 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f7 -> "}"
      */
     @Override
-    public String visit(ClassExtendsDeclaration n, String argu) throws Exception {
-        this.currentClass = this.classInfos.get(n.f1.accept(this, null));
+    public Value visit(ClassExtendsDeclaration n, String argu) throws Exception {
+        this.currentClass = this.classInfos.get(n.f1.f0.toString());
         // Class fields (and superclass fields) are already stored, so just generate IR for the methods
         for (Node node: n.f6.nodes)
         {
-            IRWriter.write('\n');
             node.accept(this, null);
         }
         return null;
@@ -220,47 +806,34 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f12 -> "}"
      */
     @Override
-    public String visit(MethodDeclaration n, String argu) throws Exception {
+    public Value visit(MethodDeclaration n, String argu) throws Exception {
+        if (this.pool != null)
+        {
+            submitBody(n);
+            return null;
+        }
         this.symbolTable.addScope();
-        // Get method type and name
-        String type = VariableInfo.getIRType(n.f1.accept(this, null));
-        String name = n.f2.accept(this, null);
-        // Printing method signature
-        IRWriter.write("define " + type + " @" + this.currentClass.name + "." + name);
-        // Printing parameter list
+        // Get the method and its (already declared) function
+        String name = n.f2.f0.toString();
+        FunctionInfo method = this.currentClass.getMethod(name);
+        Function function = this.module.getFunction(this.currentClass.name + "." + name);
+        startFunction(function);
         // `this` is always first
-        IRWriter.write("(i8* %this");
-        // Printing the rest of the parameters
-        if (n.f4.present())
-        {
-            // Split parameters string into an array.
-            // Each element is a "<type> <name>" string.
-            String[] argStr = n.f4.accept(this, null).split("\\s*,\\s*");
-            // Store the created variables here
-            List<VariableInfo> args = new ArrayList<VariableInfo>();
-            for(String arg: argStr)
-            {
-                IRWriter.write(", ");
-                // Split the parameter string into <type>[0] and <name>[1] strings
-                String[] splitArg = arg.split("\\s* \\s*");
-                // Create new variable for this parameter, store it and print the parameter
-                args.add(new VariableInfo(splitArg[1], splitArg[0]));
-                IRWriter.write(VariableInfo.getIRType(splitArg[0]) + " %." + splitArg[1]);
-            }
-            // No more parameters
-            IRWriter.write(") {\n");
-            for(VariableInfo arg: args)
-            {
-                // Allocate stack space for each parameter and store its value
-                arg.register = "%" + arg.name;
-                emit(arg.register + " = alloca " + arg.IRType);
-                emit("store " + arg.IRType + " %." + arg.name + ", " + arg.IRType + "* " + arg.register);
-                this.symbolTable.pushVariableEntry(arg);
-            }
-        }
-        else
+        this.thisValue = function.getArgument(0);
+        this.thisValue.setName("this");
+
+        List<FormalParameter> params = NodeLists.formalParameters(n.f4);
+        for (int i = 0; i < params.size(); i++)
         {
-            IRWriter.write(") {\n");
+            String paramName = params.get(i).f1.f0.toString();
+            Argument arg = function.getArgument(i + 1);
+            arg.setName("." + paramName);
+            // Allocate stack space for each parameter and store its value
+            VariableInfo var = new VariableInfo(paramName, method.args[i]);
+            Value address = builder.createAlloca(arg.type, paramName);
+            builder.createStore(arg, address);
+            this.variableAddresses.put(var, address);
+            this.symbolTable.pushVariableEntry(var);
         }
         // Go over local variable declarations
         for (Node node: n.f7.nodes)
@@ -273,71 +846,20 @@ public class IRGenerator extends GJDepthFirst<String, String> {
             node.accept(this, null);
         }
         // Get return expression value
-        String retExpr = n.f10.accept(this, "rvalue");
-        emit("ret " + type + " " + retExpr);
-        IRWriter.write("}\n");
+        builder.createRet(n.f10.accept(this, "rvalue"));
         this.symbolTable.popScope();
-        // Clear local register-class mappings
-        this.objectRegisters.clear();
+        // Clear local mappings
+        endFunction();
         return null;
     }
 
-    /**
-     * f0 -> FormalParameter()
-     * f1 -> FormalParameterTail()
-     */
-    @Override
-    public String visit(FormalParameterList n, String argu) throws Exception {
-        String ret = n.f0.accept(this, null);
-        
-        if (n.f1 != null) {
-            ret += n.f1.accept(this, null);
-        }
-        
-        return ret;
-    }
-
-    /**
-     * Grammar production:
-     * f0 -> Type()
-     * f1 -> Identifier()
-     */
-    @Override
-    public String visit(FormalParameter n, String argu) throws Exception {
-        // Return "<type> + <name>"
-        return n.f0.accept(this, null) + " " + n.f1.accept(this, null);
-    }
-
-    /**
-     * f0 -> ( FormalParameterTerm() )*
-     */
-    @Override
-    public String visit(FormalParameterTail n, String argu) throws Exception {
-        String params = "";
-        // Return the parameter strings concatenated, and splitted by ','
-        for ( Node node: n.f0.nodes) {
-            params += "," + node.accept(this, null);
-        }
-        return params;
-    }
-
-    /**
-     * Grammar production:
-     * f0 -> ","
-     * f1 -> FormalParameter()
-     */
-    @Override
-    public String visit(FormalParameterTerm n, String argu) throws Exception {
-        return n.f1.accept(this, null);
-    }
-
     /**
      * f0 -> "("
      * f1 -> Expression()
      * f2 -> ")"
      */
     @Override
-    public String visit(BracketExpression n, String argu) throws Exception {
+    public Value visit(BracketExpression n, String argu) throws Exception {
         return n.f1.accept(this, argu);
     }
 
@@ -353,7 +875,7 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      *       | PrimaryExpression()
      */
     @Override
-    public String visit(Expression n, String argu) throws Exception {
+    public Value visit(Expression n, String argu) throws Exception {
         return n.f0.accept(this, argu);
     }
 
@@ -369,7 +891,7 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      *       | BracketExpression()
      */
     @Override
-    public String visit(PrimaryExpression n, String argu) throws Exception {
+    public Value visit(PrimaryExpression n, String argu) throws Exception {
         return n.f0.accept(this, argu);
     }
 
@@ -380,22 +902,17 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f3 -> ")"
      */
     @Override
-    public String visit(AllocationExpression n, String argu) throws Exception {
+    public Value visit(AllocationExpression n, String argu) throws Exception {
         // Get Object class
-        ClassInfo classInfo = this.classInfos.get(n.f1.accept(this, null));
-        int vtableSize = classInfo.getVtableNumEntries();
+        ClassInfo classInfo = this.classInfos.get(n.f1.f0.toString());
         // Get required memory for the object of this class
-        String allocated = getNewRegister();
-        emit(allocated + " = call i8* @calloc(i32 1, i32 " + classInfo.getObjectSize() + ")");
-        String casted = getNewRegister();
-        emit(casted + " = bitcast i8* " + allocated + " to i8***");
+        Value allocated = builder.createCall(calloc, ConstantInt.getInt32(1), ConstantInt.getInt32(classInfo.getObjectSize()));
+        Value casted = builder.createBitCast(allocated, IRType.I8_PTR.getPointerTo().getPointerTo());
         // Get address of the vtable of this class
-        String vtable = getNewRegister();
-        String line = vtable + " = getelementptr [" + vtableSize + " x i8*], [" + vtableSize + " x i8*]* ";
-        line = line + "@." + classInfo.name + "_vtable, i32 0, i32 0";
-        emit(line);
+        GlobalVariable vtableGlobal = this.module.getGlobal(getVtableName(classInfo));
+        Value vtable = builder.createGEP(vtableGlobal, ConstantInt.getInt32(0), ConstantInt.getInt32(0));
         // Store the address at the beginning of the object
-        emit("store i8** " + vtable + ", i8*** " + casted);
+        builder.createStore(vtable, casted);
         // Map the object register to this class
         this.objectRegisters.put(allocated, classInfo);
         // Return the object register
@@ -411,14 +928,13 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f5 -> ")"
      */
     @Override
-    public String visit(MessageSend n, String argu) throws Exception {
+    public Value visit(MessageSend n, String argu) throws Exception {
         // Get Object register
-        String object = n.f0.accept(this, "rvalue");
+        Value object = n.f0.accept(this, "rvalue");
         // Get Method name
-        String name = n.f2.accept(this, null);
-        String type;
+        String name = n.f2.f0.toString();
         ClassInfo objectClass;
-        if (object.equals("%this"))
+        if (object == this.thisValue)
         {
             // Use current class
             objectClass = this.currentClass;
@@ -426,90 +942,68 @@ public class IRGenerator extends GJDepthFirst<String, String> {
         else
         {
             // Get Class type for the object register from register-class map
-            // AllocationExpression, VarDeclaration and MessageSend (if an object is returned)
-            // may store <String(reg), String(class)> pairs there
+            // AllocationExpression, Identifier and MessageSend (if an object is returned)
+            // store <Value, ClassInfo> pairs there
             objectClass = this.objectRegisters.get(object);
         }
-        // Get Method from the class vtable. We just need the offset; the vtable were
-        // the object actually points to may not be this class' vtable (if the object is
-        // actually of a subclass type), but the method offset will still be the same.
-        MethodInfo method = objectClass.getVtableMethod(name);
-        type = VariableInfo.getIRType(method.method.type);
-
-        // Cast vtable pointer properly
-        String castObj = getNewRegister();
-        emit(castObj + " = bitcast i8* " + object + " to i8***");
-        // Get vtable start
-        String vtable = getNewRegister();
-        emit(vtable + " = load i8**, i8*** " + castObj);
-        // Get method from its position in the vtable
-        String methodPtr = getNewRegister();
-        emit(methodPtr + " = getelementptr i8*, i8** " + vtable + ", i32 " + method.offset / 8);
-        // Get method address
-        String methodRaw = getNewRegister();
-        emit(methodRaw + " = load i8*, i8** " + methodPtr);
-        String methodReg = getNewRegister();
-        // Create signature string for bitcast
-        String signature = method.method.getIRsignature();
-        // Get a "callable" register for this method
-        emit(methodReg + " = bitcast i8* " + methodRaw + " to " + signature + "*");
-
-        // Constructing method call
-        String retVal = getNewRegister();
-        String call = retVal + " = call " + type + " " + methodReg;
-
-        call = call + "(i8* " + object;
-        // Construct argument (registers) string
-        if (n.f4.present())
-        {
-            String[] argRegisters = n.f4.accept(this, null).split("\\s*,\\s*");
-            for (int i = 0; i < argRegisters.length; i++) {
-                call = call + ", " + VariableInfo.getIRType(method.method.args[i]) + " " + argRegisters[i];
+        this.methodCalls++;
+        // If no subclass overrides the method, the object can only have this method
+        // in its vtable, so it is called directly
+        MethodInfo method = this.devirtualizeCalls ? objectClass.getUniqueVtableMethod(name) : null;
+        Value methodReg;
+        if (method != null)
+        {
+            methodReg = this.module.getFunction(method.fullname.substring(1));
+            this.devirtualizedCalls++;
+            // A virtual call on a null object crashes on the vtable load, so the direct call must as well.
+            // `this` and new objects are never null
+            if (object != this.thisValue && !isAllocation(object))
+            {
+                BasicBlock nullObject = getNewBlock("nullObject");
+                BasicBlock directCall = getNewBlock("directCall");
+                Value isNull = builder.createICmp(ICmpInst.Predicate.EQ, object, ConstantNull.get(IRType.I8_PTR));
+                builder.createCondBr(isNull, nullObject, directCall);
+                startBlock(nullObject);
+                builder.createLoad(builder.createBitCast(object, IRType.I8_PTR.getPointerTo().getPointerTo()));
+                builder.createUnreachable();
+                startBlock(directCall);
             }
         }
-        call = call + ")";
-        // Call the method
-        emit(call);
-        if( !VariableInfo.isPrimitiveType(method.method.type) )
-        // If the method returns an object, map the return value register to the object class
+        else
         {
-            this.objectRegisters.put(retVal, this.classInfos.get(method.method.type));
-        }
-        return retVal;
-    }
+            // Get Method from the class vtable. We just need the offset; the vtable were
+            // the object actually points to may not be this class' vtable (if the object is
+            // actually of a subclass type), but the method offset will still be the same.
+            method = objectClass.getVtableMethod(name);
 
-    /**
-     * f0 -> Expression()
-     * f1 -> ExpressionTail()
-     */
-    @Override
-    public String visit(ExpressionList n, String argu) throws Exception {
-        // Return the expression registers seperated by ','
-        return n.f0.accept(this, "rvalue") + n.f1.accept(this, null);
-    }
+            // Cast vtable pointer properly
+            Value castObj = builder.createBitCast(object, IRType.I8_PTR.getPointerTo().getPointerTo());
+            // Get vtable start
+            Value vtable = builder.createLoad(castObj);
+            // Get method from its position in the vtable
+            Value methodPtr = builder.createGEP(vtable, ConstantInt.getInt32(method.offset / 8));
+            // Get method address
+            Value methodRaw = builder.createLoad(methodPtr);
+            // Get a "callable" register for this method
+            methodReg = builder.createBitCast(methodRaw, getFunctionType(method.method).getPointerTo());
+        }
 
-    /**
-     * f0 -> ( ExpressionTerm() )*
-     */
-    @Override
-    public String visit(ExpressionTail n, String argu) throws Exception {
-        // Return the expression registers seperated by ','
-        String retStr = "";
-        for (Node node: n.f0.nodes)
+        // Evaluate the arguments. `this` is always first
+        List<Expression> args = NodeLists.expressions(n.f4);
+        Value[] callArgs = new Value[args.size() + 1];
+        callArgs[0] = object;
+        for (int i = 0; i < args.size(); i++)
         {
-            retStr = retStr + "," + node.accept(this, null);
+            callArgs[i + 1] = args.get(i).accept(this, "rvalue");
         }
-        return retStr;
-    }
-
-    /**
-     * f0 -> ","
-     * f1 -> Expression()
-     */
-    @Override
-    public String visit(ExpressionTerm n, String argu) throws Exception {
-        // return the register where the expression evaluated value has been stored
-        return n.f1.accept(this, "rvalue");
+        // Call the method
+        Value retVal = builder.createCall(methodReg, callArgs);
+        if( !method.method.type.isPrimitive() )
+        // If the method returns an object, map the return value register to the object class
+        {
+            this.objectRegisters.put(retVal, method.method.type.classInfo);
+        }
+        return retVal;
     }
 
     /**
@@ -518,13 +1012,11 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f2 -> "length"
      */
     @Override
-    public String visit(ArrayLength n, String argu) throws Exception {
+    public Value visit(ArrayLength n, String argu) throws Exception {
         // Get the address of first element in the array
-        String arrayStart = n.f0.accept(this, "rvalue");
+        Value arrayStart = n.f0.accept(this, "rvalue");
         // Get value of int in the Array Start, the size
-        String arraySize = getNewRegister();
-        emit(arraySize + " = load i32, i32* " + arrayStart);
-        return arraySize;
+        return builder.createLoad(arrayStart);
     }
 
     /**
@@ -535,32 +1027,29 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f4 -> "]"
      */
     @Override
-    public String visit(ArrayAllocationExpression n, String argu) throws Exception {
+    public Value visit(ArrayAllocationExpression n, String argu) throws Exception {
         // Evaluate size
-        String size = n.f3.accept(this, "rvalue");
-        String isNegativeReg = getNewRegister();
+        Value size = n.f3.accept(this, "rvalue");
         // Check if it is < 0
-        emit(isNegativeReg + " = icmp slt i32 " + size + ", 0" );
-        String validArraySize = getNewLabel("validArraySize");
-        String invalidArraySize = getNewLabel("invalidArraySize");
+        Value isNegative = builder.createICmp(ICmpInst.Predicate.SLT, size, ConstantInt.getInt32(0));
+        BasicBlock validArraySize = getNewBlock("validArraySize");
+        BasicBlock invalidArraySize = getNewBlock("invalidArraySize");
         // If so, throw OOB, else continue
-        emit("br i1 " + isNegativeReg + ", label %" + invalidArraySize + ", label %" + validArraySize);
+        builder.createCondBr(isNegative, invalidArraySize, validArraySize);
         // Throw OOB
-        emitLabel(invalidArraySize);
-        emit("call void @throw_oob()");
-        emit("br label %" + validArraySize);
+        startBlock(invalidArraySize);
+        builder.createCall(throwOob);
+        // throw_oob exits the program
+        builder.createUnreachable();
         // Continue
-        emitLabel(validArraySize);
-        String fullSizeReg = getNewRegister();
+        startBlock(validArraySize);
         // + 1 size (size will be stored before the elements)
-        emit(fullSizeReg + " = add i32 " + size + ", 1");
+        Value fullSize = builder.createAdd(size, ConstantInt.getInt32(1));
         // Allocate memory
-        String callocReg = getNewRegister();
-        emit(callocReg + " = call i8* @calloc(i32 4, i32 " + fullSizeReg + ")");
+        Value allocated = builder.createCall(calloc, ConstantInt.getInt32(4), fullSize);
         // Store size (number of elements) in the beginning
-        String arrayStart = getNewRegister();
-        emit(arrayStart + " = bitcast i8* " + callocReg + " to i32*");
-        emit("store i32 " + size + ", i32* " + arrayStart);
+        Value arrayStart = builder.createBitCast(allocated, IRType.I32_PTR);
+        builder.createStore(size, arrayStart);
         return arrayStart;
     }
 
@@ -571,49 +1060,42 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f3 -> "]"
      */
     @Override
-    public String visit(ArrayLookup n, String argu) throws Exception {
+    public Value visit(ArrayLookup n, String argu) throws Exception {
         // Get and store index value
-        String index = n.f2.accept(this, "rvalue");
-        String invalidIndex = getNewLabel("arrayInvalidIndex");
-        String getArray = getNewLabel("getArray");
-        String indexNegative = getNewRegister();
+        Value index = n.f2.accept(this, "rvalue");
+        BasicBlock invalidIndex = getNewBlock("arrayInvalidIndex");
+        BasicBlock getArray = getNewBlock("getArray");
         // Check if index is negative
-        emit(indexNegative + " = icmp slt i32 " + index + ", 0");
+        Value indexNegative = builder.createICmp(ICmpInst.Predicate.SLT, index, ConstantInt.getInt32(0));
         // If so, goto invalidIndex label (throw OOB), else continue
-        emit("br i1 " + indexNegative + ", label %" + invalidIndex + ", label %" + getArray);
+        builder.createCondBr(indexNegative, invalidIndex, getArray);
 
-        emitLabel(getArray);
+        startBlock(getArray);
         // Get the address of the array
-        String arrayStart = n.f0.accept(this, "rvalue");
+        Value arrayStart = n.f0.accept(this, "rvalue");
         // Get value of int in the Array Start (the size)
-        String arraySize = getNewRegister();
-        emit(arraySize + " = load i32, i32* " + arrayStart);
-
-        String indexCheck = getNewRegister();        
+        Value arraySize = builder.createLoad(arrayStart);
         // Check if the array size is less or equal to index
-        emit(indexCheck + " = icmp ule i32 " + arraySize + ", " + index);
-        String validIndex = getNewLabel("arrayValidIndex");        
+        Value indexCheck = builder.createICmp(ICmpInst.Predicate.ULE, arraySize, index);
+        BasicBlock validIndex = getNewBlock("arrayValidIndex");
         // If so, goto invalidIndex label, else to validIndexLabel
-        emit("br i1 " + indexCheck + ", label %" + invalidIndex + ", label %" + validIndex);
-        
+        builder.createCondBr(indexCheck, invalidIndex, validIndex);
+
         // invalidIndex, throw OOB
-        emitLabel(invalidIndex);
-        emit("call void @throw_oob()");
-        emit("br label %" + validIndex);
+        startBlock(invalidIndex);
+        builder.createCall(throwOob);
+        // throw_oob exits the program, so the array address (loaded after the first check)
+        // is only used where it has been loaded
+        builder.createUnreachable();
 
-        // validIndex      
-        emitLabel(validIndex);
+        // validIndex
+        startBlock(validIndex);
         // The real index is + 1, since the array size is actually element 0
-        String realIndex = getNewRegister();
-        emit(realIndex + " = add i32 " + index + ", 1");
+        Value realIndex = builder.createAdd(index, ConstantInt.getInt32(1));
         // Get address of element with the given index
-        String elementAddress = getNewRegister();
-        emit(elementAddress + " = getelementptr i32, i32* " + arrayStart +", i32 " + realIndex);
-        // Load element value to a new register
-        String elementValue = getNewRegister();
-        emit(elementValue + " = load i32, i32* " + elementAddress);
-        // Return the new register with the element value
-        return elementValue;
+        Value elementAddress = builder.createGEP(arrayStart, realIndex);
+        // Load element value to a new register, and return it
+        return builder.createLoad(elementAddress);
     }
 
     /**
@@ -626,51 +1108,46 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f6 -> ";"
      */
     @Override
-    public String visit(ArrayAssignmentStatement n, String argu) throws Exception {
+    public Value visit(ArrayAssignmentStatement n, String argu) throws Exception {
         // Get and store index value
-        String index = n.f2.accept(this, "rvalue");
-        String invalidIndex = getNewLabel("arrayInvalidIndex");
-        String loadArray = getNewLabel("loadArray");
-        String indexNegative = getNewRegister();
+        Value index = n.f2.accept(this, "rvalue");
+        BasicBlock invalidIndex = getNewBlock("arrayInvalidIndex");
+        BasicBlock loadArray = getNewBlock("loadArray");
         // Check if index is negative
-        emit(indexNegative + " = icmp slt i32 " + index + ", 0");
+        Value indexNegative = builder.createICmp(ICmpInst.Predicate.SLT, index, ConstantInt.getInt32(0));
         // If so, goto invalidIndex label (throw OOB), else continue (load the array)
-        emit("br i1 " + indexNegative + ", label %" + invalidIndex + ", label %" + loadArray);
+        builder.createCondBr(indexNegative, invalidIndex, loadArray);
 
-        emitLabel(loadArray);
+        startBlock(loadArray);
         // Get the register that points to the array
-        String arrayAddress = n.f0.accept(this, "lvalue");
+        Value arrayAddress = n.f0.accept(this, "lvalue");
         // Get Array Start address
-        String arrayStart = getNewRegister();
-        emit(arrayStart + " = load i32*, i32** " + arrayAddress);
+        Value arrayStart = builder.createLoad(arrayAddress);
         // Get value of int in the Array Start (the size)
-        String arraySize = getNewRegister();
-        emit(arraySize + " = load i32, i32* " + arrayStart);
-
-        String indexCheck = getNewRegister();
+        Value arraySize = builder.createLoad(arrayStart);
         // Check if the array size is less or equal to index
-        emit(indexCheck + " = icmp ule i32 " + arraySize + ", " + index);
-        String validIndex = getNewLabel("arrayValidIndex");
+        Value indexCheck = builder.createICmp(ICmpInst.Predicate.ULE, arraySize, index);
+        BasicBlock validIndex = getNewBlock("arrayValidIndex");
         // If so, goto invalidIndex label, else to validIndexLabel
-        emit("br i1 " + indexCheck + ", label %" + invalidIndex + ", label %" + validIndex);
+        builder.createCondBr(indexCheck, invalidIndex, validIndex);
 
         // invalidIndex, throw OOB
-        emitLabel(invalidIndex);
-        emit("call void @throw_oob()");
-        emit("br label %" + validIndex);
+        startBlock(invalidIndex);
+        builder.createCall(throwOob);
+        // throw_oob exits the program, so the array address (loaded after the first check)
+        // is only used where it has been loaded
+        builder.createUnreachable();
 
         // validIndex
-        emitLabel(validIndex);
+        startBlock(validIndex);
         // The real index is + 1, since the array size is actually element 0
-        String realIndex = getNewRegister();
-        emit(realIndex + " = add i32 " + index + ", 1");
+        Value realIndex = builder.createAdd(index, ConstantInt.getInt32(1));
         // Get address of element with the given index
-        String elementAddress = getNewRegister();
-        emit(elementAddress + " = getelementptr i32, i32* " + arrayStart +", i32 " + realIndex);
+        Value elementAddress = builder.createGEP(arrayStart, realIndex);
         // Evaluate rvalue expression value
-        String rvalue = n.f5.accept(this, "rvalue");
+        Value rvalue = n.f5.accept(this, "rvalue");
         // Store value in the array element
-        emit("store i32 " + rvalue +", i32* " + elementAddress);
+        builder.createStore(rvalue, elementAddress);
         return null;
     }
 
@@ -681,118 +1158,90 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f3 -> ";"
      */
     @Override
-    public String visit(AssignmentStatement n, String argu) throws Exception {
+    public Value visit(AssignmentStatement n, String argu) throws Exception {
         // Get address of lvalue variable
-        String lvalue = n.f0.accept(this, "lvalue");
+        Value lvalue = n.f0.accept(this, "lvalue");
         // get value of rvalue expression
-        String rvalue = n.f2.accept(this, "rvalue");
-        // Get lvalue name as well
-        String name = n.f0.accept(this, null);
-        // Find variable in symbol table
-        VariableInfo var = this.symbolTable.getCurrentScopeVariable(name);
-        // Get IR type
-        String type;
-        if (var == null)
-        // Not a local variable, so it is a field
-        {
-            type = this.currentClass.getFieldRec(name).field.IRType;
-        }
-        else
-        // Local variable
-        {
-            type = var.IRType;
-        }
-        // Store rvalue to lvalue
-        emit("store " + type + " " + rvalue + ", " + type + "* " + lvalue);
+        Value rvalue = n.f2.accept(this, "rvalue");
+        // Store rvalue to lvalue (the IR type is the one the address points to)
+        builder.createStore(rvalue, lvalue);
         return null;
     }
 
+    /**
+     * Returns the address of the variable (or field of `this`) with this name,
+     * or its value loaded in a new register, depending on {@code whatValue}.
+     */
     @Override
-    public String visit(Identifier n, String whatValue) throws Exception {
+    public Value visit(Identifier n, String whatValue) throws Exception {
         // Get identifier name
         String name = n.f0.toString();
-        if (whatValue != null)
-        // A register is requested
+        // Get local variable with this name
+        VariableInfo var = this.symbolTable.getCurrentScopeVariable(name);
+        if (var != null)
+        // Found
         {
-            // Get local variable with this name
-            VariableInfo var = this.symbolTable.getCurrentScopeVariable(name);
-            if (var != null)
-            // Found
+            Value address = this.variableAddresses.get(var);
+            if (whatValue.equals("rvalue"))
+            // Variable value needs to be loaded and returned
             {
-                if (whatValue.equals("rvalue"))
-                // Variable value needs to be loaded and returned
+                // Load value
+                Value loadedVar = builder.createLoad(address);
+                if ( !var.type.isPrimitive() )
+                // Variable is an object
                 {
-                    // Load value
-                    String loadedVar = getNewRegister();
-                    emit(loadedVar + " = load " + var.IRType + ", " + var.IRType + "* " + var.register);
-                    if ( !VariableInfo.isPrimitiveType(var.typeName) )
-                    // Variable is an object
-                    {
-                        // So map the new register to the object class
-                        this.objectRegisters.put(loadedVar, classInfos.get(var.typeName));
-                    }
-                    return loadedVar;
+                    // So map the new register to the object class
+                    this.objectRegisters.put(loadedVar, var.type.classInfo);
                 }
-                // lvalue given, no need to load
-                return var.register;
+                return loadedVar;
             }
-            // No local variable with that name found, so the identifier represents a field of `this`
-            // Get the field
-            FieldInfo classField = this.currentClass.getFieldRec(name);
-            int offset = classField.offset;
-            // Get field address in object space
-            String fieldRegister = getNewRegister();
-            emit(fieldRegister + " = getelementptr i8, i8* %this, i32 " + offset);
-            String type = classField.field.IRType;
-            String castFieldReg = getNewRegister();
-            // Cast field to its IR type
-            emit(castFieldReg + " = bitcast i8* " + fieldRegister + " to " + type + "*");
+            // lvalue given, no need to load
+            return address;
+        }
+        // No local variable with that name found, so the identifier represents a field of `this`
+        // Get the field
+        FieldInfo classField = this.currentClass.getFieldRec(name);
+        // Get field address in object space
+        Value fieldAddress = builder.createGEP(this.thisValue, ConstantInt.getInt32(classField.offset));
+        // Cast field to its IR type
+        Value castField = builder.createBitCast(fieldAddress, getIRType(classField.field.type).getPointerTo());
 
-            if (whatValue.equals("rvalue"))
-            // The field value is needed
+        if (whatValue.equals("rvalue"))
+        // The field value is needed
+        {
+            // load field value in new register
+            Value loadedField = builder.createLoad(castField);
+            if (!classField.field.type.isPrimitive())
+            // Field is an object
             {
-                // load field value in new register
-                String loadedField = getNewRegister();
-                emit(loadedField + " = load " + type + ", " + type + "* " + castFieldReg);
-                if (!VariableInfo.isPrimitiveType(classField.field.typeName))
-                // Field is an object
-                {
-                    // So map the new register to the field class
-                    this.objectRegisters.put(loadedField, this.classInfos.get(classField.field.typeName));
-                }
-                return loadedField;
+                // So map the new register to the field class
+                this.objectRegisters.put(loadedField, classField.field.type.classInfo);
             }
-            // lvalue, no need to load field value
-            return castFieldReg;
+            return loadedField;
         }
-        // just return the name
-        return name;
+        // lvalue, no need to load field value
+        return castField;
     }
 
     /**
      * f0 -> Type()
      * f1 -> Identifier()
      * f2 -> ";"
-     * 
+     *
      * Note that this is called for local variable declaration only.
      */
     @Override
-    public String visit(VarDeclaration n, String argu) throws Exception {
+    public Value visit(VarDeclaration n, String argu) throws Exception {
         // Get type/name
-        String type = n.f0.accept(this, null);
-        String name = n.f1.accept(this, null);
-        String register = "%" + name;
-        String llvmType = VariableInfo.getIRType(type);
+        TypeInfo type = TypeInfo.resolve(DeclarationCollector.typeName(n.f0), this.classInfos);
+        String name = n.f1.f0.toString();
         // Allocate space in the stack
-        emit(register + " = alloca " + llvmType);
+        Value address = builder.createAlloca(getIRType(type), name);
         // Add the local variable in the symbol table
-        this.symbolTable.pushVariableEntry(new VariableInfo(name, type, register) );
-        if ( !VariableInfo.isPrimitiveType(type) )
-        // The local variable is an object, so map its register to the class
-        {
-            this.objectRegisters.put(register, this.classInfos.get(type));
-        }
-        return register;
+        VariableInfo var = new VariableInfo(name, type);
+        this.symbolTable.pushVariableEntry(var);
+        this.variableAddresses.put(var, address);
+        return address;
     }
 
     /**
@@ -801,31 +1250,38 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f2 -> PrimaryExpression()
      */
     @Override
-    public String visit(AndExpression n, String argu) throws Exception {
-        String resultReg = getNewRegister();
+    public Value visit(AndExpression n, String argu) throws Exception {
         // Evaluate expr1
-        String exp1 = n.f0.accept(this, "rvalue");
-        String exp2Label = getNewLabel("andExp2_");
-        String trueLabel = getNewLabel("andTrue");
-        String falseLabel = getNewLabel("andFalse");
-        String resultLabel = getNewLabel("andResult");
+        Value exp1 = n.f0.accept(this, "rvalue");
+        if (this.foldConstants && exp1 instanceof ConstantInt)
+        {
+            this.foldedConstants++;
+            // expr2 is only evaluated if expr1 is true, and is then the result
+            return (exp1 == ConstantInt.FALSE) ? exp1 : n.f2.accept(this, "rvalue");
+        }
+        BasicBlock exp2Label = getNewBlock("andExp2_");
+        BasicBlock trueLabel = getNewBlock("andTrue");
+        BasicBlock falseLabel = getNewBlock("andFalse");
+        BasicBlock resultLabel = getNewBlock("andResult");
         // goto False if expr1 == 0, else continue to expr2
-        emit("br i1 " + exp1 + ", label %" + exp2Label + ", label %" + falseLabel);
+        builder.createCondBr(exp1, exp2Label, falseLabel);
         // Evaluate expr2
-        emitLabel(exp2Label);
-        String exp2 = n.f2.accept(this, "rvalue");
+        startBlock(exp2Label);
+        Value exp2 = n.f2.accept(this, "rvalue");
         // False if expr2 == 0, else goto True
-        emit("br i1 " + exp2 + ", label %" + trueLabel + ", label %" + falseLabel);
+        builder.createCondBr(exp2, trueLabel, falseLabel);
         // True
-        emitLabel(trueLabel);
-        emit("br label %" + resultLabel);
+        startBlock(trueLabel);
+        builder.createBr(resultLabel);
         // False
-        emitLabel(falseLabel);
-        emit("br label %" + resultLabel);
+        startBlock(falseLabel);
+        builder.createBr(resultLabel);
         // Result
-        emitLabel(resultLabel);
-        emit(resultReg + " = phi i1 [" + 1 + ", %" + trueLabel + "], [" + 0 + ", %" + falseLabel + "]");
-        return resultReg;
+        startBlock(resultLabel);
+        PhiInst result = builder.createPhi(IRType.I1);
+        result.addIncoming(ConstantInt.TRUE, trueLabel);
+        result.addIncoming(ConstantInt.FALSE, falseLabel);
+        return result;
     }
 
     /**
@@ -836,23 +1292,38 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f4 -> Statement()
      */
     @Override
-    public String visit(WhileStatement n, String argu) throws Exception {
-        String check = getNewLabel("whileCheck");
-        String body = getNewLabel("whileBody");
-        String exit = getNewLabel("whileExit");
+    public Value visit(WhileStatement n, String argu) throws Exception {
+        BasicBlock check = getNewBlock("whileCheck");
+        BasicBlock body = getNewBlock("whileBody");
+        BasicBlock exit = getNewBlock("whileExit");
         // Condition check
-        emit("br label %" + check);
-        emitLabel(check);
+        builder.createBr(check);
+        startBlock(check);
         // Condition expression evaluation
-        String condition = n.f2.accept(this, "rvalue");
-        emit("br i1 " + condition + ", label %" + body + ", label %" + exit);
+        Value condition = n.f2.accept(this, "rvalue");
+        if (this.foldConstants && condition == ConstantInt.FALSE)
+        {
+            // The body is never executed
+            builder.createBr(exit);
+            startBlock(exit);
+            return null;
+        }
+        if (this.foldConstants && condition == ConstantInt.TRUE)
+        {
+            // Never exits (the exit block is only kept for the following statements, which are never executed)
+            builder.createBr(body);
+        }
+        else
+        {
+            builder.createCondBr(condition, body, exit);
+        }
         // Loop body
-        emitLabel(body);
+        startBlock(body);
         n.f4.accept(this, null);
         // Check condition again
-        emit("br label %" + check);
+        builder.createBr(check);
         // Exit loop
-        emitLabel(exit);
+        startBlock(exit);
         return null;
     }
 
@@ -866,30 +1337,57 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f6 -> Statement()
      */
     @Override
-    public String visit(IfStatement n, String argu) throws Exception {
+    public Value visit(IfStatement n, String argu) throws Exception {
         // Evaluate expression
-        String expResult = n.f2.accept(this, "rvalue");
-        String trueLabel = getNewLabel("ifTrue");
-        String falseLabel = getNewLabel("ifFalse");
-        String end = getNewLabel("ifEnd");
+        Value expResult = n.f2.accept(this, "rvalue");
+        if (this.foldConstants && expResult instanceof ConstantInt)
+        {
+            // Only the statement that is executed is generated
+            if (expResult == ConstantInt.TRUE)
+            {
+                n.f4.accept(this, null);
+            }
+            else
+            {
+                n.f6.accept(this, null);
+            }
+            return null;
+        }
+        BasicBlock trueLabel = getNewBlock("ifTrue");
+        BasicBlock falseLabel = getNewBlock("ifFalse");
+        BasicBlock end = getNewBlock("ifEnd");
         // Check if expression is true/false
-        emit("br i1 " + expResult + ", label %" + trueLabel + ", label %" + falseLabel);
+        builder.createCondBr(expResult, trueLabel, falseLabel);
         // True
-        emitLabel(trueLabel);
+        startBlock(trueLabel);
         // Statement
         n.f4.accept(this, null);
         // Skip false
-        emit("br label %" + end);
+        builder.createBr(end);
         // False
-        emitLabel(falseLabel);
+        startBlock(falseLabel);
         // Statement
         n.f6.accept(this, null);
         // Exit
-        emit("br label %" + end);
-        emitLabel(end);
+        builder.createBr(end);
+        startBlock(end);
         return null;
     }
 
+    /**
+     * Returns the given result of a constant expression (evaluated at compile time), or {@code null}
+     * if the expression is not constant or constant folding is disabled, so it must be generated.
+     */
+    private Value fold(ConstantInt result)
+    {
+        if (!this.foldConstants || result == null)
+        {
+            return null;
+        }
+        this.foldedConstants++;
+        return result;
+    }
+
     /**
      * Grammar production:
      * f0 -> PrimaryExpression()
@@ -897,12 +1395,11 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f2 -> PrimaryExpression()
      */
     @Override
-    public String visit(CompareExpression n, String argu) throws Exception {
-        String exp1 = n.f0.accept(this, "rvalue");
-        String exp2 = n.f2.accept(this, "rvalue");
-        String result = getNewRegister();
-        emit(result + " = icmp slt i32 " + exp1 + ", " + exp2);
-        return result;
+    public Value visit(CompareExpression n, String argu) throws Exception {
+        Value exp1 = n.f0.accept(this, "rvalue");
+        Value exp2 = n.f2.accept(this, "rvalue");
+        Value folded = fold(ConstantFolder.foldICmp(ICmpInst.Predicate.SLT, exp1, exp2));
+        return (folded != null) ? folded : builder.createICmp(ICmpInst.Predicate.SLT, exp1, exp2);
     }
 
     /**
@@ -911,23 +1408,22 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f1 -> PrimaryExpression()
      */
     @Override
-    public String visit(NotExpression n, String argu) throws Exception {
-        String exp = n.f1.accept(this, "rvalue");
-        String result = getNewRegister();
-        emit(result + " = icmp eq i1 0, " + exp);
-        return result;
+    public Value visit(NotExpression n, String argu) throws Exception {
+        Value exp = n.f1.accept(this, "rvalue");
+        Value folded = fold(ConstantFolder.foldICmp(ICmpInst.Predicate.EQ, ConstantInt.FALSE, exp));
+        return (folded != null) ? folded : builder.createICmp(ICmpInst.Predicate.EQ, ConstantInt.FALSE, exp);
     }
 
     @Override
-    public String visit(PrintStatement n, String argu) throws Exception {
-        String expRegister = n.f2.accept(this, "rvalue");
-        emit("call void (i32) @print_int(i32 " + expRegister + ")");
+    public Value visit(PrintStatement n, String argu) throws Exception {
+        Value exp = n.f2.accept(this, "rvalue");
+        builder.createCall(printInt, exp);
         return null;
     }
 
     @Override
-    public String visit(ThisExpression n, String argu) throws Exception {
-        return "%this";
+    public Value visit(ThisExpression n, String argu) throws Exception {
+        return this.thisValue;
     }
 
     /**
@@ -936,69 +1432,41 @@ public class IRGenerator extends GJDepthFirst<String, String> {
      * f2 -> PrimaryExpression()
      */
     @Override
-    public String visit(PlusExpression n, String argu) throws Exception {
-        String expr1 = n.f0.accept(this, "rvalue");
-        String expr2 = n.f2.accept(this, "rvalue");
-        String result = getNewRegister();
-        emit(result + " = add i32 " + expr1 + ", " + expr2);
-        return result;
-    }
-    @Override
-    public String visit(MinusExpression n, String argu) throws Exception {
-        String expr1 = n.f0.accept(this, "rvalue");
-        String expr2 = n.f2.accept(this, "rvalue");
-        String result = getNewRegister();
-        emit(result + " = sub i32 " + expr1 + ", " + expr2);
-        return result;
-    }
-
-    @Override
-    public String visit(TimesExpression n, String argu) throws Exception {
-        String expr1 = n.f0.accept(this, "rvalue");
-        String expr2 = n.f2.accept(this, "rvalue");
-        String result = getNewRegister();
-        emit(result + " = mul i32 " + expr1 + ", " + expr2);
-        return result;
-    }
-
-    /**
-     * f0 -> ArrayType()
-     *       | BooleanType()
-     *       | IntegerType()
-     *       | Identifier()
-     */
-    @Override
-    public String visit(Type n, String argu) throws Exception {
-        return n.f0.accept(this, null);
-    }
-
-    @Override
-    public String visit(ArrayType n, String argu) throws Exception {
-        return "int[]";
+    public Value visit(PlusExpression n, String argu) throws Exception {
+        Value expr1 = n.f0.accept(this, "rvalue");
+        Value expr2 = n.f2.accept(this, "rvalue");
+        Value folded = fold(ConstantFolder.foldBinary(Instruction.Opcode.ADD, expr1, expr2));
+        return (folded != null) ? folded : builder.createAdd(expr1, expr2);
     }
 
     @Override
-    public String visit(IntegerType n, String argu) throws Exception {
-        return "int";
+    public Value visit(MinusExpression n, String argu) throws Exception {
+        Value expr1 = n.f0.accept(this, "rvalue");
+        Value expr2 = n.f2.accept(this, "rvalue");
+        Value folded = fold(ConstantFolder.foldBinary(Instruction.Opcode.SUB, expr1, expr2));
+        return (folded != null) ? folded : builder.createSub(expr1, expr2);
     }
 
     @Override
-    public String visit(BooleanType n, String argu) throws Exception {
-        return "boolean";
+    public Value visit(TimesExpression n, String argu) throws Exception {
+        Value expr1 = n.f0.accept(this, "rvalue");
+        Value expr2 = n.f2.accept(this, "rvalue");
+        Value folded = fold(ConstantFolder.foldBinary(Instruction.Opcode.MUL, expr1, expr2));
+        return (folded != null) ? folded : builder.createMul(expr1, expr2);
     }
 
     @Override
-    public String visit(IntegerLiteral n, String argu) throws Exception {
-        return n.f0.toString();
+    public Value visit(IntegerLiteral n, String argu) throws Exception {
+        return ConstantInt.getInt32(Integer.parseInt(n.f0.toString()));
     }
 
     @Override
-    public String visit(FalseLiteral n, String argu) throws Exception {
-        return "0";
+    public Value visit(FalseLiteral n, String argu) throws Exception {
+        return ConstantInt.FALSE;
     }
 
     @Override
-    public String visit(TrueLiteral n, String argu) throws Exception {
-        return "1";
+    public Value visit(TrueLiteral n, String argu) throws Exception {
+        return ConstantInt.TRUE;
     }
 }
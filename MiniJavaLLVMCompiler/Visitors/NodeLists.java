@@ -0,0 +1,55 @@
+/**
+ * File: NodeLists.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+package Visitors;
+
+import syntaxtree.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers that return the elements of the comma-separated lists of the Parse Tree,
+ * so that Visitors can process them one by one, instead of having them
+ * concatenated in a single String.
+ */
+class NodeLists {
+
+    /**
+     * Returns the parameters of the given {@code ( FormalParameterList() )?} node.
+     */
+    static List<FormalParameter> formalParameters(NodeOptional list)
+    {
+        List<FormalParameter> params = new ArrayList<FormalParameter>();
+        if (list.present())
+        {
+            FormalParameterList paramList = (FormalParameterList) list.node;
+            params.add(paramList.f0);
+            for (Node node: paramList.f1.f0.nodes)
+            {
+                params.add(((FormalParameterTerm) node).f1);
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Returns the expressions of the given {@code ( ExpressionList() )?} node.
+     */
+    static List<Expression> expressions(NodeOptional list)
+    {
+        List<Expression> exprs = new ArrayList<Expression>();
+        if (list.present())
+        {
+            ExpressionList exprList = (ExpressionList) list.node;
+            exprs.add(exprList.f0);
+            for (Node node: exprList.f1.f0.nodes)
+            {
+                exprs.add(((ExpressionTerm) node).f1);
+            }
+        }
+        return exprs;
+    }
+}
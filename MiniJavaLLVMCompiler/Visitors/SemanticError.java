@@ -21,4 +21,24 @@ public class SemanticError extends Exception {
     {
         return message;
     }
+
+    /**
+     * Returns the source line of the error, taken from the {@code "Line <n>: "} prefix
+     * of its description, or {@code -1} if it has none.
+     */
+    public int getLine()
+    {
+        String prefix = "Semantic Error: Line ";
+        if (!message.startsWith(prefix))
+        {
+            return -1;
+        }
+        int end = message.indexOf(':', prefix.length());
+        try {
+            return Integer.parseInt(message.substring(prefix.length(), end));
+        }
+        catch (RuntimeException ex) {
+            return -1;
+        }
+    }
 }
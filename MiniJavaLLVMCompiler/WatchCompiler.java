@@ -0,0 +1,309 @@
+/**
+ * File: WatchCompiler.java
+ * Pavlos Spanoudakis (sdi1800184)
+ */
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import IROutput.NullIRSink;
+
+/**
+ * Keeps the compiler resident and recompiles the watched files whenever they change ({@code java Main --watch}),
+ * so that only the first compilation pays for the JVM startup and the JIT warm-up.
+ *
+ * The watched paths are MiniJava files, and directories whose {@code .java} files (including the ones in
+ * their subdirectories, and the ones created later) are watched. All of them are compiled once in the beginning,
+ * and the compiler is then warmed up by compiling them in memory for a short time.
+ * After that, the file system events of the watched directories are collected until no event has arrived
+ * for {@link #DEBOUNCE_MS} (editors usually save a file in a burst of events), and each file that changed
+ * (i.e. its size or modification time) is recompiled. The messages of each compilation are printed,
+ * followed by a latency line.
+ */
+public class WatchCompiler {
+
+    /** Creates the compiler of a file, with the options of the run (e.g. the output format). */
+    public interface CompilerFactory {
+        FileCompiler create(String filepath);
+    }
+
+    /** The time (in ms) without file system events after which the changed files are recompiled. */
+    public static final long DEBOUNCE_MS = 50;
+    /** The time (in ms) spent warming up the compiler, after the first compilation. */
+    private static final long WARMUP_MS = 1000;
+
+    private final CompilerFactory factory;
+    /** The stream of the messages meant for {@code System.out}. */
+    private final PrintStream out;
+    private WatchService watcher;
+    /** The watched directories (as absolute paths), by their watch keys. */
+    private final Map<WatchKey, Path> directories;
+    /** The watched files (as absolute paths), mapped to the paths they are compiled as. */
+    private final Map<Path, String> files;
+    /** The watched directory trees (as absolute paths), mapped to the paths they were given as. */
+    private final Map<Path, Path> trees;
+    /** The size & modification time of each file when it was last compiled. */
+    private final Map<Path, String> compiledVersions;
+
+    public WatchCompiler(CompilerFactory factory, PrintStream out)
+    {
+        this.factory = factory;
+        this.out = out;
+        this.watcher = null;
+        this.directories = new HashMap<WatchKey, Path>();
+        this.files = new LinkedHashMap<Path, String>();
+        this.trees = new HashMap<Path, Path>();
+        this.compiledVersions = new HashMap<Path, String>();
+    }
+
+    /**
+     * Compiles the given files (and the files of the given directories), and then recompiles them
+     * whenever they change. Only returns if the watch service is closed (or fails).
+     */
+    public void watch(List<String> paths) throws IOException, InterruptedException
+    {
+        this.watcher = FileSystems.getDefault().newWatchService();
+        try {
+            for (String path: paths)
+            {
+                Path absolute = Paths.get(path).toAbsolutePath().normalize();
+                if (Files.isDirectory(absolute))
+                {
+                    this.trees.put(absolute, Paths.get(path));
+                    registerTree(absolute);
+                }
+                else
+                {
+                    this.files.put(absolute, path);
+                    register(absolute.getParent());
+                }
+            }
+
+            // The first compilation of each file (which also loads the compiler classes)
+            for (Map.Entry<Path, String> file: new ArrayList<Map.Entry<Path, String>>(this.files.entrySet()))
+            {
+                recompile(file.getKey(), -1);
+            }
+            warmUp();
+            this.out.println();
+            this.out.println("Watching " + this.files.size() + " file(s) for changes (press Ctrl-C to stop).");
+            this.out.flush();
+
+            while (true)
+            {
+                WatchKey key = this.watcher.take();
+                long firstEvent = System.nanoTime();
+                Set<Path> changed = new LinkedHashSet<Path>();
+                // Collect the events until none arrives for a while
+                while (key != null)
+                {
+                    collectEvents(key, changed);
+                    key = this.watcher.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                }
+                for (Path file: changed)
+                {
+                    recompile(file, firstEvent);
+                }
+                this.out.flush();
+            }
+        }
+        catch (ClosedWatchServiceException ex) {
+            // Stopped
+        }
+        finally {
+            this.watcher.close();
+        }
+    }
+
+    /** Watches the given directory, unless it is already watched. */
+    private void register(Path directory) throws IOException
+    {
+        if (!this.directories.containsValue(directory))
+        {
+            WatchKey key = directory.register(this.watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                                              StandardWatchEventKinds.ENTRY_MODIFY);
+            this.directories.put(key, directory);
+        }
+    }
+
+    /** Watches the given directory & its subdirectories, and the {@code .java} files in them. */
+    private void registerTree(Path root) throws IOException
+    {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException
+            {
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+            {
+                addTreeFile(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Starts watching the given file of a watched directory tree, if it is a {@code .java} file. */
+    private boolean addTreeFile(Path file)
+    {
+        if (this.files.containsKey(file))
+        {
+            return true;
+        }
+        if (!file.getFileName().toString().endsWith(".java"))
+        {
+            return false;
+        }
+        for (Path parent = file.getParent(); parent != null; parent = parent.getParent())
+        {
+            Path given = this.trees.get(parent);
+            if (given != null)
+            {
+                // Compiled as a path inside the directory, as it was given
+                this.files.put(file, given.resolve(parent.relativize(file)).toString());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the watched files that have been created or modified, according to the events of the given key,
+     * to the given set. New subdirectories of the watched trees are watched too.
+     */
+    private void collectEvents(WatchKey key, Set<Path> changed) throws IOException
+    {
+        Path directory = this.directories.get(key);
+        for (WatchEvent<?> event: key.pollEvents())
+        {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null)
+            {
+                // Some events were lost: check all the files
+                changed.addAll(this.files.keySet());
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (Files.isDirectory(path))
+            {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && isInTree(path))
+                {
+                    // Its files are compiled when they are modified
+                    registerTree(path);
+                    for (Path file: this.files.keySet())
+                    {
+                        if (file.startsWith(path))
+                        {
+                            changed.add(file);
+                        }
+                    }
+                }
+            }
+            else if (this.files.containsKey(path) || addTreeFile(path))
+            {
+                changed.add(path);
+            }
+        }
+        if (!key.reset())
+        {
+            // The directory is no longer accessible
+            this.directories.remove(key);
+        }
+    }
+
+    /** Returns {@code true} if the given path is inside a watched directory tree. */
+    private boolean isInTree(Path path)
+    {
+        for (Path tree: this.trees.keySet())
+        {
+            if (path.startsWith(tree))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Recompiles the given file, unless it no longer exists or has not changed since it was last compiled,
+     * and prints its messages and the time the compilation took (and the time since the first event of the change,
+     * unless it is -1).
+     */
+    private void recompile(Path file, long firstEvent) throws IOException
+    {
+        String version;
+        try {
+            version = Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+        }
+        catch (IOException ex) {
+            // e.g. deleted, or replaced by the editor and not created yet
+            return;
+        }
+        if (version.equals(this.compiledVersions.get(file)))
+        {
+            return;
+        }
+        this.compiledVersions.put(file, version);
+
+        String filepath = this.files.get(file);
+        long start = System.nanoTime();
+        FileCompiler compiler = this.factory.create(filepath);
+        compiler.compile();
+        long end = System.nanoTime();
+        compiler.printMessages(this.out, System.err);
+        String latency = (firstEvent == -1) ? "" : String.format(", %.2f ms after the change", (end - firstEvent) / 1e6);
+        this.out.println(String.format("[watch] %s: compiled in %.2f ms (%s)%s", filepath, (end - start) / 1e6,
+                                       compiler.succeeded() ? "ok" : "failed", latency));
+    }
+
+    /**
+     * Warms up the compiler (i.e. the JIT) by compiling the watched files in memory (without writing any output),
+     * for about {@link #WARMUP_MS}, so that the first recompilation is not much slower than the rest.
+     */
+    private void warmUp()
+    {
+        List<ByteBuffer> sources = new ArrayList<ByteBuffer>();
+        for (Path file: this.files.keySet())
+        {
+            try {
+                sources.add(ByteBuffer.wrap(Files.readAllBytes(file)));
+            }
+            catch (IOException ex) {
+                // Not warmed up with it
+            }
+        }
+        if (sources.isEmpty())
+        {
+            return;
+        }
+        MiniJavaCompiler compiler = new MiniJavaCompiler();
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WARMUP_MS);
+        for (int i = 0; System.nanoTime() < end; i = (i + 1) % sources.size())
+        {
+            compiler.compile(sources.get(i), new NullIRSink());
+        }
+    }
+}